@@ -0,0 +1,45 @@
+package com.cloudprovideragentic.benchmarks;
+
+import com.cloudprovideragentic.IaexamplesApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Starts the agent on the {@code replay} profile: no terminal, no network, model answers from
+ * {@code fixtures/chat-replay.jsonl}.
+ */
+final class AgentContext {
+
+    private AgentContext() {
+    }
+
+    /**
+     * @param modelLatency Delay injected before each model answer
+     * @param properties   Extra {@code key=value} properties; they override application.properties
+     */
+    static ConfigurableApplicationContext start(Duration modelLatency, String... properties) throws IOException {
+        List<String> args = new ArrayList<>(List.of(
+                "agent.replay.file=" + Fixtures.file("chat-replay.jsonl"),
+                "agent.replay.latency=" + modelLatency.toMillis() + "ms",
+                "agent.chat.interactive=false",
+                // Respostas bloqueantes: o streaming imprime o plano no terminal
+                "agent.streaming.enabled=false",
+                // Sem cache: cada pedido passa pelo modelo e pela validação
+                "terraform.plan-cache.max-entries=0",
+                // Sem templates: o pedido de referência seria atendido sem o modelo
+                "terraform.templates.enabled=false",
+                "agent.metrics.dump-file=",
+                "logging.level.root=WARN"));
+        args.addAll(List.of(properties));
+        // Passadas como argumentos de linha de comando para terem precedência sobre application.properties
+        return new SpringApplicationBuilder(IaexamplesApplication.class)
+                .profiles("replay")
+                .logStartupInfo(false)
+                .run(args.stream().map(property -> "--" + property).toArray(String[]::new));
+    }
+}
@@ -0,0 +1,85 @@
+package com.cloudprovideragentic.benchmarks;
+
+import com.cloudprovideragentic.IaexamplesApplication.TerraformChatRunner;
+import com.cloudprovideragentic.fuctions.terraform.TerraformCodeGeneratorService;
+import com.cloudprovideragentic.fuctions.terraform.model.plans.PlanResponse;
+import com.cloudprovideragentic.fuctions.terraform.model.plans.TerraformPlanResult;
+import com.cloudprovideragentic.fuctions.terraform.model.terraform.TerraformRequest;
+import com.cloudprovideragentic.fuctions.terraform.session.SessionContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * The agent flow end to end on recorded Bedrock answers ({@code replay} profile), with no network.
+ * {@code chat} is one operator message through {@link TerraformChatRunner}: a model round that calls
+ * planejarInfra, the plan generation and validation, and the final answer. {@code planejarInfra} is the tool
+ * bean alone and {@code generate} the code generator alone. {@code latencyMs} is injected before each model
+ * answer; with 0 only the agent's own overhead is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AgentFlowBenchmark {
+
+    private static final String REQUEST = "Crie um bucket S3 chamado bench-logs com versionamento";
+
+    @Param({"0"})
+    public int latencyMs;
+
+    private ConfigurableApplicationContext context;
+    private TerraformChatRunner runner;
+    private TerraformCodeGeneratorService codeGenerator;
+    private BiFunction<TerraformRequest, ToolContext, PlanResponse> planejarInfra;
+    private final ToolContext toolContext = new ToolContext(Map.of(SessionContext.SESSION_ID, "benchmark"));
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException {
+        // Sem plano especulativo: nenhum terraform roda em segundo plano durante a medição
+        context = AgentContext.start(Duration.ofMillis(latencyMs), "terraform.speculative-plan.enabled=false");
+        runner = context.getBean(TerraformChatRunner.class);
+        codeGenerator = context.getBean(TerraformCodeGeneratorService.class);
+        planejarInfra = context.getBean("planejarInfra", BiFunction.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String chat() {
+        return runner.reply(REQUEST, visible -> {});
+    }
+
+    @Benchmark
+    public PlanResponse planejarInfra() {
+        return planejarInfra.apply(new TerraformRequest(REQUEST, null), toolContext);
+    }
+
+    @Benchmark
+    public TerraformPlanResult generate() {
+        return codeGenerator.generate(REQUEST);
+    }
+}
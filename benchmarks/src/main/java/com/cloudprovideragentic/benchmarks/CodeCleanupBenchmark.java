@@ -0,0 +1,43 @@
+package com.cloudprovideragentic.benchmarks;
+
+import com.cloudprovideragentic.fuctions.terraform.TerraformCodeGeneratorService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The regex/replace chain that strips markdown fences and JSON escapes from every generated plan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodeCleanupBenchmark {
+
+    @Param({"s3", "ecs", "large"})
+    public String stack;
+
+    private String modelOutput;
+
+    @Setup
+    public void setUp() {
+        modelOutput = Fixtures.modelOutput(Fixtures.stack(stack));
+    }
+
+    @Benchmark
+    public String cleanCode() {
+        return TerraformCodeGeneratorService.cleanCode(modelOutput);
+    }
+}
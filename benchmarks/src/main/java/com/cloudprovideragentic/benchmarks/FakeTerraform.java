@@ -0,0 +1,47 @@
+package com.cloudprovideragentic.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+/**
+ * Installs {@code fake-terraform/terraform}, a bash script that stands in for terraform: each phase
+ * ({@code init}, {@code plan}, {@code apply}) prints a number of lines, sleeps and fails at a given rate,
+ * then writes the files the agent expects (lock file, {@code tfplan}, state).
+ */
+final class FakeTerraform {
+
+    private static final String SCRIPT = "/fake-terraform/terraform";
+
+    private FakeTerraform() {
+    }
+
+    /**
+     * @param dir      Directory to install into
+     * @param settings Script variables such as {@code PLAN_SLEEP} (seconds), {@code PLAN_LINES} and
+     *                 {@code PLAN_FAIL} (percent), written to {@code fake-terraform.conf}
+     * @return Path of the executable
+     */
+    static Path install(Path dir, Map<String, String> settings) throws IOException {
+        Files.createDirectories(dir);
+        Path executable = dir.resolve("terraform");
+        try (InputStream in = FakeTerraform.class.getResourceAsStream(SCRIPT)) {
+            if (in == null) {
+                throw new IllegalStateException("Script não encontrado: " + SCRIPT);
+            }
+            Files.copy(in, executable, StandardCopyOption.REPLACE_EXISTING);
+        }
+        // O bit de execução se perde dentro do jar
+        if (!executable.toFile().setExecutable(true)) {
+            throw new IOException("Não foi possível tornar executável: " + executable);
+        }
+
+        StringBuilder conf = new StringBuilder();
+        settings.forEach((name, value) -> conf.append(name).append('=').append(value).append('\n'));
+        Files.writeString(dir.resolve("fake-terraform.conf"), conf);
+        return executable;
+    }
+}
@@ -0,0 +1,103 @@
+package com.cloudprovideragentic.benchmarks;
+
+import com.cloudprovideragentic.fuctions.terraform.utils.HclScanner;
+import com.cloudprovideragentic.fuctions.terraform.utils.TerraformBlock;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Terraform code of increasing size used by the benchmarks.
+ * <ul>
+ *     <li>{@code s3}: a 20-line S3 stack</li>
+ *     <li>{@code ecs}: a 150-line ECS Fargate stack with network, IAM, heredoc and jsonencode</li>
+ *     <li>{@code large}: a main.tf of about 4000 lines, the ECS resources repeated under different names,
+ *     as it looks after many requests appended to the same stack</li>
+ * </ul>
+ */
+public final class Fixtures {
+
+    private static final int LARGE_COPIES = 30;
+
+    private static final Pattern RESOURCE_HEADER = Pattern.compile("^(resource \"[^\"]+\" \"[^\"]+)\"", Pattern.MULTILINE);
+
+    private Fixtures() {
+    }
+
+    public static String stack(String name) {
+        return switch (name) {
+            case "s3" -> resource("s3.tf");
+            case "ecs" -> resource("ecs.tf");
+            case "large" -> large();
+            default -> throw new IllegalArgumentException("Fixture desconhecida: " + name);
+        };
+    }
+
+    /**
+     * Copies a fixture to a temporary file, for code that reads a path.
+     */
+    public static Path file(String name) throws IOException {
+        Path file = Files.createTempFile("fixture-", "-" + name);
+        Files.writeString(file, resource(name));
+        file.toFile().deleteOnExit();
+        return file;
+    }
+
+    /**
+     * @return The code as the model returns it inside the JSON field: wrapped in a markdown fence, with
+     * newlines and quotes still escaped
+     */
+    public static String modelOutput(String code) {
+        return "```hcl\n" + code.replace("\"", "\\\"").replace("\n", "\\n") + "\n```";
+    }
+
+    /**
+     * @return The text of a chat answer as the model streams it, with a {@code <thinking>} span before the
+     * visible answer
+     */
+    public static String chatAnswer(String code) {
+        return "<thinking>O usuário quer criar a infraestrutura abaixo; vou chamar planejarInfra.</thinking>\n"
+                + "Plano gerado:\n" + code;
+    }
+
+    /**
+     * Splits text into chunks of the size of typical stream tokens.
+     */
+    public static List<String> chunks(String text, int size) {
+        List<String> chunks = new ArrayList<>(text.length() / size + 1);
+        for (int i = 0; i < text.length(); i += size) {
+            chunks.add(text.substring(i, Math.min(text.length(), i + size)));
+        }
+        return chunks;
+    }
+
+    private static String large() {
+        String ecs = resource("ecs.tf");
+        StringBuilder code = new StringBuilder(ecs);
+        List<TerraformBlock> resources = HclScanner.scan(ecs).stream().filter(TerraformBlock::isResource).toList();
+        for (int copy = 1; copy < LARGE_COPIES; copy++) {
+            for (TerraformBlock block : resources) {
+                code.append("\n\n").append(RESOURCE_HEADER.matcher(block.text(ecs)).replaceFirst("$1_" + copy + "\""));
+            }
+        }
+        return code.append('\n').toString();
+    }
+
+    private static String resource(String name) {
+        try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) {
+                throw new IllegalStateException("Fixture não encontrada: " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
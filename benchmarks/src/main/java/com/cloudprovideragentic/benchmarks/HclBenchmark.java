@@ -0,0 +1,52 @@
+package com.cloudprovideragentic.benchmarks;
+
+import com.cloudprovideragentic.fuctions.terraform.utils.HclDiagnostic;
+import com.cloudprovideragentic.fuctions.terraform.utils.HclScanner;
+import com.cloudprovideragentic.fuctions.terraform.utils.HclValidator;
+import com.cloudprovideragentic.fuctions.terraform.utils.TerraformBlock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Block extraction used when merging into main.tf and sharding, and the local validation of generated code.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HclBenchmark {
+
+    @Param({"s3", "ecs", "large"})
+    public String stack;
+
+    private String code;
+
+    @Setup
+    public void setUp() {
+        code = Fixtures.stack(stack);
+    }
+
+    @Benchmark
+    public List<TerraformBlock> scan() {
+        return HclScanner.scan(code);
+    }
+
+    @Benchmark
+    public List<HclDiagnostic> validate() {
+        return HclValidator.validate(code);
+    }
+}
@@ -0,0 +1,292 @@
+package com.cloudprovideragentic.benchmarks;
+
+import com.cloudprovideragentic.fuctions.terraform.job.JobManager;
+import com.cloudprovideragentic.fuctions.terraform.job.JobState;
+import com.cloudprovideragentic.fuctions.terraform.job.TerraformJob;
+import com.cloudprovideragentic.fuctions.terraform.metrics.PipelineMetrics;
+import com.cloudprovideragentic.fuctions.terraform.model.jobs.JobResponse;
+import com.cloudprovideragentic.fuctions.terraform.model.plans.PlanResponse;
+import com.cloudprovideragentic.fuctions.terraform.model.terraform.ExecuteRequest;
+import com.cloudprovideragentic.fuctions.terraform.model.terraform.TerraformRequest;
+import com.cloudprovideragentic.fuctions.terraform.session.PendingPlanStore;
+import com.cloudprovideragentic.fuctions.terraform.session.SessionContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * Load test of the planejarInfra → executarInfra flow. {@code sessions} simulated operators run in parallel,
+ * each doing {@code rounds} cycles of: plan, review for {@code think} ms, confirm, wait for the job. The
+ * model answers come from the recording ({@code model-latency} ms each) and terraform is
+ * {@link FakeTerraform}, so nothing leaves the machine.
+ * <p>
+ * At the end it prints p50/p95/p99 of every pipeline phase (the {@code agent.phase} timers plus
+ * {@code load.cycle}, one whole cycle), the throughput in cycles per second, peak heap and pending plans.
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.cloudprovideragentic.benchmarks.LoadTest \
+ *     sessions=50 rounds=3 think=1000 model-latency=800 plan.sleep=3 apply.sleep=5 apply.lines=2000 apply.fail=2
+ * </pre>
+ * Options are {@code key=value}; see {@link #DEFAULTS}. With {@code shared-stack=true} every session works on
+ * the same stack, which measures lock contention instead of parallelism. With {@code backend=simulated} no process
+ * is started at all, which leaves only the agent's own overhead.
+ */
+public final class LoadTest {
+
+    private static final String REQUEST = "Crie um bucket S3 chamado bench-logs com versionamento";
+
+    static final Map<String, String> DEFAULTS = defaults();
+
+    private final Map<String, String> options;
+    private final MeterRegistry registry;
+    private final PipelineMetrics metrics;
+    private final JobManager jobManager;
+    private final PendingPlanStore planStore;
+    private final BiFunction<TerraformRequest, ToolContext, PlanResponse> planejarInfra;
+    private final BiFunction<ExecuteRequest, ToolContext, JobResponse> executarInfra;
+    private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    private LoadTest(ConfigurableApplicationContext context, Map<String, String> options) {
+        this.options = options;
+        this.registry = context.getBean(MeterRegistry.class);
+        this.metrics = context.getBean(PipelineMetrics.class);
+        this.jobManager = context.getBean(JobManager.class);
+        this.planStore = context.getBean(PendingPlanStore.class);
+        this.planejarInfra = context.getBean("planejarInfra", BiFunction.class);
+        this.executarInfra = context.getBean("executarInfra", BiFunction.class);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = options(args);
+        Path workDir = Files.createTempDirectory("agent-load");
+        Path terraform = FakeTerraform.install(workDir.resolve("bin"), fakeTerraformSettings(options));
+        // TerraformFileManager cria infra/ a partir de user.dir: as stacks do teste ficam no diretório temporário
+        System.setProperty("user.dir", workDir.toString());
+        System.out.println("Diretório de trabalho: " + workDir);
+
+        try (ConfigurableApplicationContext context = AgentContext.start(
+                Duration.ofMillis(Long.parseLong(options.get("model-latency"))),
+                "terraform.binary=" + terraform,
+                "terraform.backend.default=" + options.get("backend"),
+                "terraform.backend.simulated.enabled=" + options.get("backend").equals("simulated"),
+                "terraform.jobs.batch-window=" + options.get("batch-window"),
+                "terraform.plugin-cache-dir=" + workDir.resolve("plugin-cache"),
+                "terraform.plan-cache.file=" + workDir.resolve("plan-cache.jsonl"),
+                "terraform.provider-mirror-dir=",
+                "terraform.output.spill-dir=" + workDir.resolve("output"),
+                "terraform.speculative-plan.enabled=" + options.get("speculative"),
+                // Percentis sobre o teste inteiro, não só sobre os últimos minutos
+                "management.metrics.distribution.expiry.agent.phase=24h")) {
+            new LoadTest(context, options).run();
+        }
+    }
+
+    private void run() throws InterruptedException {
+        int sessions = Integer.parseInt(options.get("sessions"));
+        Sampler sampler = new Sampler(planStore);
+        Thread samplerThread = Thread.ofVirtual().name("load-sampler").start(sampler);
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < sessions; i++) {
+                String sessionId = "load-" + i;
+                executor.submit(() -> session(sessionId));
+            }
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        samplerThread.interrupt();
+        samplerThread.join();
+
+        report(elapsed, sampler, gcCount() - gcCount, gcMillis() - gcMillis);
+    }
+
+    private Void session(String sessionId) {
+        int rounds = Integer.parseInt(options.get("rounds"));
+        long think = Long.parseLong(options.get("think"));
+        Duration timeout = Duration.ofSeconds(Long.parseLong(options.get("timeout")));
+        String stack = Boolean.parseBoolean(options.get("shared-stack")) ? "load" : sessionId;
+        ToolContext toolContext = new ToolContext(Map.of(SessionContext.SESSION_ID, sessionId));
+
+        for (int round = 0; round < rounds; round++) {
+            try (PipelineMetrics.Phase cycle = metrics.start("load.cycle")) {
+                PlanResponse plan = planejarInfra.apply(new TerraformRequest(REQUEST, stack), toolContext);
+                if ("ERRO".equals(plan.status())) {
+                    count("planejarInfra ERRO");
+                    continue;
+                }
+                // O operador lê o plano antes de confirmar
+                Thread.sleep(think);
+
+                JobResponse started = executarInfra.apply(new ExecuteRequest(true), toolContext);
+                TerraformJob job = jobManager.find(sessionId, started.jobId()).orElse(null);
+                if (job == null) {
+                    count("executarInfra " + started.status());
+                    continue;
+                }
+                if (!job.await(timeout)) {
+                    jobManager.cancel(job);
+                    count("TIMEOUT");
+                    continue;
+                }
+                count(job.state().name());
+                cycle.succeeded(job.state() == JobState.SUCESSO);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (RuntimeException e) {
+                count("exceção " + e.getClass().getSimpleName());
+            }
+        }
+        return null;
+    }
+
+    private void count(String outcome) {
+        outcomes.computeIfAbsent(outcome, o -> new LongAdder()).increment();
+    }
+
+    private void report(Duration elapsed, Sampler sampler, long gcCount, long gcMillis) {
+        int sessions = Integer.parseInt(options.get("sessions"));
+        int rounds = Integer.parseInt(options.get("rounds"));
+        long cycles = outcomes.values().stream().mapToLong(LongAdder::sum).sum();
+        double seconds = elapsed.toMillis() / 1000.0;
+
+        System.out.println();
+        System.out.printf(Locale.ROOT, "%d sessões x %d ciclos em %.1f s (opções: %s)%n", sessions, rounds, seconds, options);
+        System.out.println("Resultados: " + new TreeMap<>(outcomes));
+        System.out.printf(Locale.ROOT, "Vazão: %.2f ciclos/s (%.1f ciclos/min)%n", cycles / seconds, cycles * 60 / seconds);
+        System.out.printf(Locale.ROOT, "Heap: pico %d MB, final %d MB, máximo %d MB; GC: %d coletas, %d ms%n",
+                sampler.peakHeap.get() >> 20, heapUsed() >> 20,
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax() >> 20, gcCount, gcMillis);
+        System.out.printf(Locale.ROOT, "Planos pendentes: pico %d, %d KB%n",
+                sampler.peakPlans.get(), sampler.peakPlanBytes.get() >> 10);
+
+        System.out.println();
+        System.out.printf(Locale.ROOT, "%-28s %-10s %7s %10s %10s %10s %10s%n",
+                "fase", "resultado", "qtd", "p50 ms", "p95 ms", "p99 ms", "máx ms");
+        List<Timer> timers = registry.find(PipelineMetrics.PHASE_TIMER).timers().stream()
+                .sorted(Comparator.comparing((Timer t) -> t.getId().getTag("phase"))
+                        .thenComparing(t -> t.getId().getTag("outcome")))
+                .toList();
+        for (Timer timer : timers) {
+            Map<Double, Double> percentiles = new LinkedHashMap<>();
+            for (ValueAtPercentile value : timer.takeSnapshot().percentileValues()) {
+                percentiles.put(value.percentile(), value.value(TimeUnit.MILLISECONDS));
+            }
+            System.out.printf(Locale.ROOT, "%-28s %-10s %7d %10.1f %10.1f %10.1f %10.1f%n",
+                    timer.getId().getTag("phase"), timer.getId().getTag("outcome"), timer.count(),
+                    percentiles.getOrDefault(0.5, Double.NaN), percentiles.getOrDefault(0.95, Double.NaN),
+                    percentiles.getOrDefault(0.99, Double.NaN), timer.max(TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private static Map<String, String> defaults() {
+        Map<String, String> defaults = new LinkedHashMap<>();
+        defaults.put("sessions", "20");
+        defaults.put("rounds", "3");
+        defaults.put("think", "500");           // ms entre o plano e a confirmação
+        defaults.put("model-latency", "0");     // ms antes de cada resposta do modelo
+        defaults.put("timeout", "600");         // s por job
+        defaults.put("shared-stack", "false");
+        defaults.put("speculative", "true");
+        defaults.put("backend", "local");       // local | pool | simulated (sem o terraform falso)
+        defaults.put("batch-window", "0s");     // com shared-stack=true, agrupa as confirmações em um apply
+        for (String phase : List.of("init", "plan", "apply")) {
+            defaults.put(phase + ".sleep", phase.equals("apply") ? "5" : phase.equals("plan") ? "3" : "2");
+            defaults.put(phase + ".lines", "200");
+            defaults.put(phase + ".fail", "0");
+        }
+        return defaults;
+    }
+
+    static Map<String, String> options(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            String key = equals > 0 ? arg.substring(0, equals) : "";
+            if (!options.containsKey(key)) {
+                throw new IllegalArgumentException("Opção desconhecida: " + arg + "; opções: " + DEFAULTS.keySet());
+            }
+            options.put(key, arg.substring(equals + 1));
+        }
+        return options;
+    }
+
+    /**
+     * @return {@code plan.sleep=3} as the script variable {@code PLAN_SLEEP=3}, and so on
+     */
+    static Map<String, String> fakeTerraformSettings(Map<String, String> options) {
+        Map<String, String> settings = new LinkedHashMap<>();
+        options.forEach((key, value) -> {
+            if (key.contains(".")) {
+                settings.put(key.replace('.', '_').toUpperCase(Locale.ROOT), value);
+            }
+        });
+        return settings;
+    }
+
+    private static long heapUsed() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    /**
+     * Samples heap use and pending plans every 100 ms, keeping the peaks.
+     */
+    private static final class Sampler implements Runnable {
+
+        private final PendingPlanStore planStore;
+        private final AtomicLong peakHeap = new AtomicLong();
+        private final AtomicLong peakPlans = new AtomicLong();
+        private final AtomicLong peakPlanBytes = new AtomicLong();
+
+        private Sampler(PendingPlanStore planStore) {
+            this.planStore = planStore;
+        }
+
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                peakHeap.accumulateAndGet(heapUsed(), Math::max);
+                peakPlans.accumulateAndGet(planStore.size(), Math::max);
+                peakPlanBytes.accumulateAndGet(planStore.usedBytes(), Math::max);
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
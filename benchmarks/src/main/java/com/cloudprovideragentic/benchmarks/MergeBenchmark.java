@@ -0,0 +1,67 @@
+package com.cloudprovideragentic.benchmarks;
+
+import com.cloudprovideragentic.fuctions.terraform.metrics.PipelineMetrics;
+import com.cloudprovideragentic.fuctions.terraform.utils.TerraformFileManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merging generated code into an existing main.tf. {@code unchanged} re-merges the whole stack, which only
+ * compares block hashes; {@code replace} changes one block per call, which rewrites the file and the index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MergeBenchmark {
+
+    private static final String BENCH_BLOCK = "resource \"aws_s3_bucket\" \"bench\" {\n  bucket = \"bench-%d\"\n}\n";
+
+    @Param({"s3", "ecs", "large"})
+    public String stack;
+
+    private final TerraformFileManager fileManager = new TerraformFileManager(new PipelineMetrics(new SimpleMeterRegistry()));
+    private Path dir;
+    private String code;
+    private long version;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("merge-benchmark");
+        code = Fixtures.stack(stack);
+        fileManager.prepareDirectory(dir, code + "\n" + BENCH_BLOCK.formatted(version));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        fileManager.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public Path unchanged() throws IOException {
+        return fileManager.prepareDirectory(dir, code);
+    }
+
+    @Benchmark
+    public Path replace() throws IOException {
+        return fileManager.prepareDirectory(dir, BENCH_BLOCK.formatted(++version));
+    }
+}
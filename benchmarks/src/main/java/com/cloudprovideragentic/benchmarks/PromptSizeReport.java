@@ -0,0 +1,60 @@
+package com.cloudprovideragentic.benchmarks;
+
+import com.cloudprovideragentic.fuctions.terraform.prompt.ServiceModule;
+import com.cloudprovideragentic.fuctions.terraform.prompt.SystemPrompts;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Size of the code generation system prompt assembled for typical requests, against the full prompt with
+ * every service module, and the time the service detection takes. Tokens are estimated at 4 characters each;
+ * the real counts per request are in the {@code agent.tokens{operation=bedrock.generate,type=prompt}} metric.
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.cloudprovideragentic.benchmarks.PromptSizeReport
+ * </pre>
+ */
+public final class PromptSizeReport {
+
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int DETECT_ITERATIONS = 100_000;
+
+    private static final List<String> REQUESTS = List.of(
+            "Crie um bucket S3 chamado bench-logs com versionamento",
+            "Crie uma fila SQS FIFO chamada pedidos com DLQ",
+            "Suba um serviço ECS Fargate com 2 tarefas nginx",
+            "Crie um banco de dados PostgreSQL no RDS",
+            "Crie uma função Lambda exposta por um API Gateway",
+            "Crie um bucket para uploads e uma fila que recebe as notificações",
+            "Crie uma tabela DynamoDB chamada sessoes");
+
+    private PromptSizeReport() {
+    }
+
+    public static void main(String[] args) {
+        int full = SystemPrompts.full().length();
+        System.out.printf(Locale.ROOT, "prompt completo: %d caracteres, ~%d tokens%n%n", full, full / CHARS_PER_TOKEN);
+        System.out.printf(Locale.ROOT, "%-68s %-40s %8s %8s %9s%n", "pedido", "módulos", "tokens", "redução", "detecção");
+
+        for (String request : REQUESTS) {
+            Set<ServiceModule> modules = SystemPrompts.detect(request);
+            int size = SystemPrompts.forRequest(request).length();
+            System.out.printf(Locale.ROOT, "%-68s %-40s %8d %7.0f%% %6.2f µs%n", request, modules,
+                    size / CHARS_PER_TOKEN, 100.0 * (full - size) / full, detectMicros(request));
+        }
+    }
+
+    private static double detectMicros(String request) {
+        int sink = 0;
+        for (int i = 0; i < DETECT_ITERATIONS; i++) {
+            sink += SystemPrompts.detect(request).size();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < DETECT_ITERATIONS; i++) {
+            sink += SystemPrompts.detect(request).size();
+        }
+        double micros = (System.nanoTime() - start) / 1000.0 / DETECT_ITERATIONS;
+        return sink > 0 ? micros : -1;
+    }
+}
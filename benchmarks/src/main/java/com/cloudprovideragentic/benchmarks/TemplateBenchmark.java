@@ -0,0 +1,56 @@
+package com.cloudprovideragentic.benchmarks;
+
+import com.cloudprovideragentic.fuctions.terraform.metrics.PipelineMetrics;
+import com.cloudprovideragentic.fuctions.terraform.model.plans.TerraformPlanResult;
+import com.cloudprovideragentic.fuctions.terraform.template.TemplatePlanner;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The template fast path: request parsing plus HCL rendering for a bucket and a FIFO queue with DLQ, and
+ * the cost of a miss, a request that falls back to the model.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemplateBenchmark {
+
+    private static final Map<String, String> REQUESTS = Map.of(
+            "s3", "Crie um bucket S3 chamado bench-logs com versionamento e criptografia",
+            "sqs", "Crie uma fila SQS FIFO chamada pedidos com DLQ e timeout de visibilidade de 60 segundos",
+            "miss", "Crie uma tabela DynamoDB chamada sessoes com chave de partição id");
+
+    @Param({"s3", "sqs", "miss"})
+    public String request;
+
+    private String userPrompt;
+    private TemplatePlanner planner;
+
+    @Setup
+    public void setUp() {
+        userPrompt = REQUESTS.get(request);
+        planner = new TemplatePlanner(true, new PipelineMetrics(new SimpleMeterRegistry()));
+    }
+
+    @Benchmark
+    public Optional<TerraformPlanResult> plan() {
+        return planner.plan(userPrompt);
+    }
+}
@@ -0,0 +1,59 @@
+package com.cloudprovideragentic.benchmarks;
+
+import com.cloudprovideragentic.chat.ThinkingTagFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code <thinking>} removal from chat answers: the incremental filter fed with stream chunks, against the
+ * regex applied to the whole answer that it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThinkingFilterBenchmark {
+
+    private static final int CHUNK_SIZE = 16;
+
+    @Param({"s3", "ecs", "large"})
+    public String stack;
+
+    private String answer;
+    private List<String> chunks;
+
+    @Setup
+    public void setUp() {
+        answer = Fixtures.chatAnswer(Fixtures.stack(stack));
+        chunks = Fixtures.chunks(answer, CHUNK_SIZE);
+    }
+
+    @Benchmark
+    public String regex() {
+        return answer.replaceAll("(?s)<thinking>.*?</thinking>\\s*", "").trim();
+    }
+
+    @Benchmark
+    public void streamingFilter(Blackhole blackhole) {
+        ThinkingTagFilter filter = new ThinkingTagFilter();
+        for (String chunk : chunks) {
+            blackhole.consume(filter.accept(chunk));
+        }
+        blackhole.consume(filter.finish());
+    }
+}
@@ -1,15 +1,23 @@
 package com.cloudprovideragentic;
 
-import com.cloudprovideragentic.fuctions.terraform.TerraformCodeHolder;
+import com.cloudprovideragentic.chat.StreamTimer;
+import com.cloudprovideragentic.chat.ThinkingTagFilter;
+import com.cloudprovideragentic.chat.memory.TokenBudgetChatMemory;
+import com.cloudprovideragentic.fuctions.terraform.session.PendingPlanStore;
+import com.cloudprovideragentic.fuctions.terraform.session.SessionContext;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
-import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
 import java.util.Scanner;
+import java.util.UUID;
+import java.util.function.Consumer;
 
 @SpringBootApplication
 public class IaexamplesApplication {
@@ -19,15 +27,28 @@ public class IaexamplesApplication {
 	}
 
 	@Component
-	static class TerraformChatRunner implements CommandLineRunner {
+	public static class TerraformChatRunner implements CommandLineRunner {
 
 		private final ChatClient chatClient;
-		private final TerraformCodeHolder codeHolder;
-
-		TerraformChatRunner(ChatClient.Builder builder, TerraformCodeHolder codeHolder) {
-			this.codeHolder = codeHolder;
-			MessageWindowChatMemory memory = MessageWindowChatMemory.builder()
-					.maxMessages(10)
+		private final PendingPlanStore planStore;
+		private final boolean streaming;
+		private final boolean interactive;
+		// Cada terminal é uma conversa própria, com memória e plano pendente isolados
+		private final String sessionId = UUID.randomUUID().toString();
+
+		TerraformChatRunner(ChatClient.Builder builder,
+							PendingPlanStore planStore,
+							@Value("${agent.streaming.enabled}") boolean streaming,
+							@Value("${agent.chat.interactive}") boolean interactive,
+							@Value("${agent.memory.max-tokens}") int memoryTokens,
+							@Value("${agent.memory.payload-tokens}") int payloadTokens) {
+			this.planStore = planStore;
+			this.streaming = streaming;
+			this.interactive = interactive;
+			// Limitada por tokens: código antigo vira referência e turnos antigos viram resumo
+			ChatMemory memory = TokenBudgetChatMemory.builder()
+					.maxTokens(memoryTokens)
+					.payloadTokens(payloadTokens)
 					.build();
 			this.chatClient = builder
 					.defaultAdvisors(MessageChatMemoryAdvisor.builder(memory).build())
@@ -51,7 +72,9 @@ public class IaexamplesApplication {
 						1. Repasse o pedido do usuario INTEGRALMENTE para a tool, incluindo nome, regiao e opcoes.
 						2. Se a 'region' nao for informada, use 'us-east-1' como padrao.
 						3. Chame a tool 'planejarInfra' passando:
-						   {"userPrompt": "<pedido completo do usuario>"}
+						   {"userPrompt": "<pedido completo do usuario>", "stack": "<stack>"}
+						   Informe 'stack' somente se o usuario indicar uma stack, projeto ou ambiente
+						   (ex: "pagamentos", "staging"); caso contrario omita o campo.
 						4. Apresente ao usuario o resultado com:
 						   - O plano (recursos que serao criados)
 						   - O codigo Terraform gerado
@@ -65,7 +88,13 @@ public class IaexamplesApplication {
 						Qualquer variacao de: "nao", "cancelar", "nao execute", "no"
 
 						POS-EXECUCAO (apos executarInfra retornar):
-						- Reporte o resultado diretamente: sucesso ou mensagem de erro exata.
+						- A execucao roda em segundo plano: informe o 'jobId' retornado e que o usuario pode
+						  continuar conversando enquanto o terraform executa.
+						- Para saber o andamento ou o resultado, chame 'statusInfra' com {"jobId": "<jobId>"}.
+						  Reporte o resultado diretamente: sucesso ou mensagem de erro exata.
+						- Para ver a saida recente do terraform, chame 'logInfra' com {"jobId": "<jobId>", "lines": 50}.
+						- Se o usuario pedir para parar/abortar uma execucao, chame 'cancelarInfra' com {"jobId": "<jobId>"}.
+						- Se o usuario nao informar o jobId, omita o campo para usar a execucao mais recente.
 						- NAO sugira modificacoes, regioes alternativas ou novos parametros.
 						- NAO faca novas perguntas de confirmacao. Aguarde o proximo pedido do usuario.
 						- Se houve erro, explique o que aconteceu e encerre. O usuario decidira o que fazer.
@@ -76,12 +105,18 @@ public class IaexamplesApplication {
 						- NUNCA inclua tags <thinking> ou blocos de raciocinio na resposta.
 						- Responda sempre de forma direta, clara e em portugues.
 						""")
-					.defaultToolNames("planejarInfra", "executarInfra")
+					.defaultToolNames("planejarInfra", "executarInfra", "statusInfra", "logInfra", "cancelarInfra")
+					.defaultAdvisors(a -> a.param(ChatMemory.CONVERSATION_ID, sessionId))
+					.defaultToolContext(Map.of(SessionContext.SESSION_ID, sessionId))
 					.build();
 		}
 
 		@Override
 		public void run(String... args) {
+			// Sem terminal (benchmarks, testes) o runner só responde via reply()
+			if (!interactive) {
+				return;
+			}
 			Scanner scanner = new Scanner(System.in);
 
 			System.out.println("===========================================");
@@ -94,6 +129,8 @@ public class IaexamplesApplication {
 				String input = scanner.nextLine().trim();
 
 				if (input.equalsIgnoreCase("sair") || input.equalsIgnoreCase("exit")) {
+					// Fim da sessão: o plano não confirmado e sua cópia especulativa da stack são descartados
+					planStore.clear(sessionId);
 					System.out.println("Encerrando. Até logo!");
 					break;
 				}
@@ -103,13 +140,12 @@ public class IaexamplesApplication {
 				}
 
 				try {
-					System.out.println("\nProcessando...");
-					String response = chatClient.prompt()
-												.user(input)
-												.call()
-												.content();
-					String cleanResponse = response.replaceAll("(?s)<thinking>.*?</thinking>\\s*", "").trim();
-					System.out.println("\nAgente> " + cleanResponse);
+					if (streaming) {
+						streamResponse(input);
+					} else {
+						System.out.println("\nProcessando...");
+						System.out.println("\nAgente> " + reply(input, visible -> {}));
+					}
 				} catch (Exception e) {
 					System.out.println("\nErro: " + e.getMessage());
 				}
@@ -117,5 +153,66 @@ public class IaexamplesApplication {
 
 			scanner.close();
 		}
+
+		/**
+		 * Sends one message of the operator to the agent, streaming or not according to
+		 * {@code agent.streaming.enabled}.
+		 *
+		 * @param input   The operator's message
+		 * @param visible Receives the answer without {@code <thinking>} spans, chunk by chunk when streaming
+		 * @return The whole visible answer
+		 */
+		public String reply(String input, Consumer<String> visible) {
+			return reply(input, visible, plan -> {});
+		}
+
+		/**
+		 * Like {@link #reply(String, Consumer)}, also streaming the plan generated by {@code planejarInfra}
+		 * while the model writes it.
+		 *
+		 * @param plan Receives the plan description and code chunk by chunk when streaming; they are not
+		 *             part of the answer
+		 */
+		public String reply(String input, Consumer<String> visible, Consumer<String> plan) {
+			ThinkingTagFilter filter = new ThinkingTagFilter();
+			StringBuilder answer = new StringBuilder();
+			Consumer<String> show = text -> {
+				answer.append(text);
+				visible.accept(text);
+			};
+
+			if (streaming) {
+				chatClient.prompt()
+						  .user(input)
+						  .toolContext(Map.of(SessionContext.PLAN_LISTENER, plan))
+						  .stream()
+						  .content()
+						  .doOnNext(chunk -> show.accept(filter.accept(chunk)))
+						  .blockLast();
+			} else {
+				show.accept(filter.accept(chatClient.prompt()
+													.user(input)
+													.call()
+													.content()));
+			}
+			show.accept(filter.finish());
+			return answer.toString();
+		}
+
+		private void streamResponse(String input) {
+			StreamTimer timer = new StreamTimer();
+
+			System.out.print("\nAgente> ");
+			// Os tokens do plano aparecem no terminal enquanto o planejarInfra gera o código
+			reply(input, visible -> print(visible, timer), plan -> print(plan, timer));
+			timer.stop();
+			System.out.println("\n\n(" + timer + ")");
+		}
+
+		private void print(String visible, StreamTimer timer) {
+			timer.visible(visible);
+			System.out.print(visible);
+			System.out.flush();
+		}
 	}
 }
@@ -0,0 +1,228 @@
+package com.cloudprovideragentic.chat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Incremental reader for the flat JSON object a model streams back, e.g.
+ * {@code {"planDescription": "...", "terraformCode": "..."}}.
+ * <p>
+ * Each string field is reported as soon as its closing quote arrives, without waiting for the rest of the
+ * object. One field can be streamed: its unescaped text is forwarded chunk by chunk while it is read, so a
+ * long value is visible before it ends. Text before the opening brace (e.g. a markdown fence) and after the
+ * closing one is ignored; non-string values are skipped. Escapes and {@code \}{@code uXXXX} sequences may be
+ * split across chunks. Not thread-safe; use one instance per response.
+ */
+public class JsonStreamReader {
+
+    private enum State { BEFORE_OBJECT, KEY_OR_END, KEY, COLON, VALUE, STRING, OTHER_VALUE, COMMA_OR_END, DONE }
+
+    private final String streamedField;
+    private final Consumer<String> streamedChunks;
+    private final BiConsumer<String, String> fieldListener;
+    private final Map<String, String> fields = new HashMap<>();
+
+    private State state = State.BEFORE_OBJECT;
+    private final StringBuilder key = new StringBuilder();
+    private StringBuilder value = new StringBuilder();
+    private final StringBuilder emitted = new StringBuilder();
+    private boolean streaming;
+    private boolean escape;
+    private int unicodeDigits = -1;
+    private int unicode;
+    private int otherDepth;
+    private boolean otherInString;
+
+    /**
+     * @param streamedField  Name of the field whose text is forwarded while it is read
+     * @param streamedChunks Receives the unescaped text of the streamed field
+     * @param fieldListener  Receives each string field (name, value) once it is complete
+     */
+    public JsonStreamReader(String streamedField, Consumer<String> streamedChunks, BiConsumer<String, String> fieldListener) {
+        this.streamedField = streamedField;
+        this.streamedChunks = streamedChunks;
+        this.fieldListener = fieldListener;
+    }
+
+    /**
+     * Consumes the next chunk of the response.
+     */
+    public void accept(CharSequence chunk) {
+        for (int i = 0; i < chunk.length() && state != State.DONE; i++) {
+            next(chunk.charAt(i));
+        }
+        if (streaming) {
+            flush(false);
+        }
+    }
+
+    /**
+     * @return {@code true} once the closing brace of the object was read
+     */
+    public boolean complete() {
+        return state == State.DONE;
+    }
+
+    /**
+     * @return The value of a complete string field, or {@code null} if it was not read
+     */
+    public String field(String name) {
+        return fields.get(name);
+    }
+
+    private void next(char c) {
+        switch (state) {
+            case BEFORE_OBJECT -> {
+                if (c == '{') {
+                    state = State.KEY_OR_END;
+                }
+            }
+            case KEY_OR_END -> {
+                if (c == '"') {
+                    key.setLength(0);
+                    state = State.KEY;
+                } else if (c == '}') {
+                    state = State.DONE;
+                }
+            }
+            case KEY -> {
+                if (decode(c, key)) {
+                    state = State.COLON;
+                }
+            }
+            case COLON -> {
+                if (c == ':') {
+                    state = State.VALUE;
+                }
+            }
+            case VALUE -> {
+                if (c == '"') {
+                    streaming = key.toString().equals(streamedField);
+                    value = new StringBuilder();
+                    state = State.STRING;
+                } else if (!Character.isWhitespace(c)) {
+                    otherDepth = 0;
+                    otherInString = false;
+                    state = State.OTHER_VALUE;
+                    other(c);
+                }
+            }
+            case STRING -> {
+                int before = value.length();
+                boolean closed = decode(c, value);
+                if (streaming) {
+                    emitted.append(value, before, value.length());
+                }
+                if (closed) {
+                    closeString();
+                }
+            }
+            case OTHER_VALUE -> other(c);
+            case COMMA_OR_END -> {
+                if (c == ',') {
+                    state = State.KEY_OR_END;
+                } else if (c == '}') {
+                    state = State.DONE;
+                }
+            }
+            case DONE -> {
+            }
+        }
+    }
+
+    /**
+     * Appends one character of a string body to {@code out}, resolving escapes.
+     *
+     * @return {@code true} if the character is the closing quote
+     */
+    private boolean decode(char c, StringBuilder out) {
+        if (unicodeDigits >= 0) {
+            unicode = unicode * 16 + Character.digit(c, 16);
+            if (++unicodeDigits == 4) {
+                out.append((char) unicode);
+                unicodeDigits = -1;
+            }
+            return false;
+        }
+        if (escape) {
+            escape = false;
+            switch (c) {
+                case 'n' -> out.append('\n');
+                case 't' -> out.append('\t');
+                case 'r' -> out.append('\r');
+                case 'b' -> out.append('\b');
+                case 'f' -> out.append('\f');
+                case 'u' -> {
+                    unicodeDigits = 0;
+                    unicode = 0;
+                }
+                default -> out.append(c);
+            }
+            return false;
+        }
+        if (c == '\\') {
+            escape = true;
+            return false;
+        }
+        if (c == '"') {
+            return true;
+        }
+        out.append(c);
+        return false;
+    }
+
+    /**
+     * Skips a number, literal, object or array value up to the comma or brace that ends it.
+     */
+    private void other(char c) {
+        if (otherInString) {
+            if (escape) {
+                escape = false;
+            } else if (c == '\\') {
+                escape = true;
+            } else if (c == '"') {
+                otherInString = false;
+            }
+        } else if (c == '"') {
+            otherInString = true;
+        } else if (c == '{' || c == '[') {
+            otherDepth++;
+        } else if ((c == '}' || c == ']') && otherDepth > 0) {
+            otherDepth--;
+        } else if (otherDepth == 0 && c == ',') {
+            state = State.KEY_OR_END;
+        } else if (otherDepth == 0 && c == '}') {
+            state = State.DONE;
+        }
+    }
+
+    private void closeString() {
+        if (streaming) {
+            flush(true);
+            streaming = false;
+        }
+        String name = key.toString();
+        String text = value.toString();
+        value = new StringBuilder();
+        fields.put(name, text);
+        fieldListener.accept(name, text);
+        state = State.COMMA_OR_END;
+    }
+
+    /**
+     * Forwards the text of the streamed field read so far. A trailing high surrogate waits for its pair
+     * unless the string is closed.
+     */
+    private void flush(boolean closed) {
+        int end = emitted.length();
+        if (!closed && end > 0 && Character.isHighSurrogate(emitted.charAt(end - 1))) {
+            end--;
+        }
+        if (end > 0) {
+            streamedChunks.accept(emitted.substring(0, end));
+            emitted.delete(0, end);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.cloudprovideragentic.chat;
+
+/**
+ * Measures time-to-first-visible-token and total duration of a streamed response.
+ */
+public class StreamTimer {
+
+    private final long start = System.nanoTime();
+    private long firstVisible = -1;
+    private long end = -1;
+
+    public void visible(String text) {
+        if (firstVisible < 0 && !text.isEmpty()) {
+            firstVisible = System.nanoTime();
+        }
+    }
+
+    public void stop() {
+        end = System.nanoTime();
+    }
+
+    /**
+     * @return Milliseconds until the first visible token, or -1 if nothing was shown
+     */
+    public long firstTokenMillis() {
+        return firstVisible < 0 ? -1 : (firstVisible - start) / 1_000_000;
+    }
+
+    public long totalMillis() {
+        return ((end < 0 ? System.nanoTime() : end) - start) / 1_000_000;
+    }
+
+    @Override
+    public String toString() {
+        return "primeiro token em " + firstTokenMillis() + " ms, total " + totalMillis() + " ms";
+    }
+}
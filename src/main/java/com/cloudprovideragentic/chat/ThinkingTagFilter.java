@@ -0,0 +1,108 @@
+package com.cloudprovideragentic.chat;
+
+/**
+ * Incremental filter that removes {@code <thinking>...</thinking>} spans from a token stream.
+ * <p>
+ * Tags may be split across chunks, so a trailing partial tag is held back until the next chunk
+ * decides it. The output matches {@code replaceAll("(?s)<thinking>.*?</thinking>\\s*", "").trim()}
+ * applied to the whole response: leading and trailing whitespace is dropped, and so is the
+ * whitespace right after a closing tag. Not thread-safe; use one instance per response.
+ */
+public class ThinkingTagFilter {
+
+    private static final String OPEN = "<thinking>";
+    private static final String CLOSE = "</thinking>";
+
+    private final StringBuilder pending = new StringBuilder();
+    private final StringBuilder heldWhitespace = new StringBuilder();
+    private boolean inThinking;
+    private boolean skipWhitespace = true;
+
+    /**
+     * Consumes the next chunk and returns the text that can be shown now (possibly empty).
+     */
+    public String accept(String chunk) {
+        pending.append(chunk);
+        StringBuilder visible = new StringBuilder();
+        int pos = 0;
+
+        while (pos < pending.length()) {
+            if (inThinking) {
+                int close = pending.indexOf(CLOSE, pos);
+                if (close < 0) {
+                    pos = holdPartialTag(pos, CLOSE);
+                    break;
+                }
+                pos = close + CLOSE.length();
+                inThinking = false;
+                skipWhitespace = true;
+            } else {
+                int open = pending.indexOf(OPEN, pos);
+                int end = open < 0 ? holdPartialTag(pos, OPEN) : open;
+                emit(visible, pos, end);
+                pos = end;
+                if (open < 0) {
+                    break;
+                }
+                pos = open + OPEN.length();
+                inThinking = true;
+            }
+        }
+
+        pending.delete(0, pos);
+        return visible.toString();
+    }
+
+    /**
+     * Flushes the stream end. A dangling partial opening tag is plain text; an unclosed thinking
+     * span is discarded together with the trailing whitespace.
+     */
+    public String finish() {
+        StringBuilder visible = new StringBuilder();
+        if (!inThinking) {
+            emit(visible, 0, pending.length());
+            // Espaços finais retidos são descartados, como no trim()
+        }
+        pending.setLength(0);
+        heldWhitespace.setLength(0);
+        return visible.toString();
+    }
+
+    /**
+     * Returns the index where a suffix that could start {@code tag} begins, or the buffer end.
+     */
+    private int holdPartialTag(int from, String tag) {
+        int max = Math.min(tag.length() - 1, pending.length() - from);
+        for (int len = max; len > 0; len--) {
+            int start = pending.length() - len;
+            if (startsTag(start, tag, len)) {
+                return start;
+            }
+        }
+        return pending.length();
+    }
+
+    private boolean startsTag(int start, String tag, int len) {
+        for (int i = 0; i < len; i++) {
+            if (pending.charAt(start + i) != tag.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void emit(StringBuilder visible, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = pending.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (!skipWhitespace) {
+                    heldWhitespace.append(c);
+                }
+            } else {
+                skipWhitespace = false;
+                visible.append(heldWhitespace).append(c);
+                heldWhitespace.setLength(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.cloudprovideragentic.chat;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Chat model that gets one answer per round from {@link #exchange(Prompt)} and runs the requested tools
+ * itself, the way Bedrock's model does, until the model answers without tool calls. Each round is then a
+ * separate exchange that can be recorded, replayed or retried, while the tool beans still run for real and
+ * only once.
+ */
+public abstract class ToolLoopChatModel implements ChatModel {
+
+    private final ToolCallingManager toolCallingManager;
+
+    protected ToolLoopChatModel(ToolCallingManager toolCallingManager) {
+        this.toolCallingManager = toolCallingManager;
+    }
+
+    /**
+     * @return The model's answer to one round, without running any tool
+     */
+    protected abstract ChatResponse exchange(Prompt prompt);
+
+    /**
+     * @return The model's answer to one round as a stream, without running any tool
+     */
+    protected abstract Flux<ChatResponse> exchangeStream(Prompt prompt);
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        ChatResponse response = exchange(prompt);
+        while (isToolExecutionRequired(prompt, response)) {
+            ToolExecutionResult result = toolCallingManager.executeToolCalls(prompt, response);
+            if (result.returnDirect()) {
+                return ChatResponse.builder()
+                        .from(response)
+                        .generations(ToolExecutionResult.buildGenerations(result))
+                        .build();
+            }
+            prompt = new Prompt(result.conversationHistory(), prompt.getOptions());
+            response = exchange(prompt);
+        }
+        return response;
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return Flux.defer(() -> {
+            AtomicReference<ChatResponse> toolCalls = new AtomicReference<>();
+            Flux<ChatResponse> round = exchangeStream(prompt)
+                    .doOnNext(response -> {
+                        if (isToolExecutionRequired(prompt, response)) {
+                            toolCalls.set(response);
+                        }
+                    })
+                    // Do chunk com chamadas de tool só o texto segue adiante; as chamadas ficam para a rodada seguinte
+                    .filter(response -> !isToolExecutionRequired(prompt, response) || hasText(response))
+                    .map(response -> isToolExecutionRequired(prompt, response) ? withoutToolCalls(response) : response);
+            return round.concatWith(Flux.defer(() -> {
+                ChatResponse response = toolCalls.get();
+                if (response == null) {
+                    return Flux.<ChatResponse>empty();
+                }
+                ToolExecutionResult result = toolCallingManager.executeToolCalls(prompt, response);
+                if (result.returnDirect()) {
+                    return Flux.just(ChatResponse.builder()
+                            .from(response)
+                            .generations(ToolExecutionResult.buildGenerations(result))
+                            .build());
+                }
+                return stream(new Prompt(result.conversationHistory(), prompt.getOptions()));
+            }).subscribeOn(Schedulers.boundedElastic()));
+        });
+    }
+
+    /**
+     * @return The prompt with the model's own tool execution switched off, for a delegate that must answer a
+     * single round
+     */
+    protected static Prompt withoutToolExecution(Prompt prompt) {
+        if (!(prompt.getOptions() instanceof ToolCallingChatOptions options)) {
+            return prompt;
+        }
+        ToolCallingChatOptions copy = options.copy();
+        copy.setInternalToolExecutionEnabled(false);
+        return new Prompt(prompt.getInstructions(), copy);
+    }
+
+    private static boolean hasText(ChatResponse response) {
+        return response.getResults().stream().anyMatch(ToolLoopChatModel::hasText);
+    }
+
+    private static boolean hasText(Generation generation) {
+        String text = generation.getOutput().getText();
+        return text != null && !text.isEmpty();
+    }
+
+    /**
+     * @return The response with only the text of each generation, so a consumer of the stream never sees
+     * tool calls this model runs itself
+     */
+    private static ChatResponse withoutToolCalls(ChatResponse response) {
+        List<Generation> generations = response.getResults().stream()
+                .filter(ToolLoopChatModel::hasText)
+                .map(generation -> new Generation(AssistantMessage.builder()
+                        .content(generation.getOutput().getText())
+                        .build()))
+                .toList();
+        return ChatResponse.builder().from(response).generations(generations).build();
+    }
+
+    private static boolean isToolExecutionRequired(Prompt prompt, ChatResponse response) {
+        return response != null && response.hasToolCalls()
+                && (prompt.getOptions() == null
+                || ToolCallingChatOptions.isInternalToolExecutionEnabled(prompt.getOptions()));
+    }
+}
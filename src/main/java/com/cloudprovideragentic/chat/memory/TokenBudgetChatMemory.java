@@ -0,0 +1,271 @@
+package com.cloudprovideragentic.chat.memory;
+
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Chat memory bounded by an estimate of prompt tokens instead of a message count.
+ * <p>
+ * Messages are kept per conversation in turns: a user message and the answers that follow it. Once a turn
+ * is no longer the latest, its code blocks above {@code payloadTokens} are replaced by a short reference and
+ * texts above twice that are cut; the operator has already seen them and the plan itself waits in the
+ * pending plan store.
+ * When the conversation still exceeds {@code maxTokens}, the oldest turns are folded into a rolling summary
+ * of one line per message, capped at a quarter of the budget. The summary is put in front of the first
+ * remaining user message, so the history still starts with the user and alternates as Bedrock requires.
+ * Tokens are estimated at {@value #CHARS_PER_TOKEN} characters each.
+ */
+public class TokenBudgetChatMemory implements ChatMemory {
+
+    static final int CHARS_PER_TOKEN = 4;
+    static final String SUMMARY_HEADER = "[Resumo da conversa anterior]";
+
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+    private static final int SUMMARY_LINE_CHARS = 200;
+    private static final Pattern CODE_BLOCK = Pattern.compile("```([\\w-]*)[^\\n]*\\n(.*?)```", Pattern.DOTALL);
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final int maxTokens;
+    private final int payloadTokens;
+    private final Map<String, Conversation> conversations = new ConcurrentHashMap<>();
+
+    private TokenBudgetChatMemory(int maxTokens, int payloadTokens) {
+        this.maxTokens = maxTokens;
+        this.payloadTokens = payloadTokens;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        Conversation conversation = conversations.computeIfAbsent(conversationId, id -> new Conversation());
+        synchronized (conversation) {
+            conversation.messages.addAll(messages);
+            compact(conversation);
+        }
+    }
+
+    @Override
+    public List<Message> get(String conversationId) {
+        Conversation conversation = conversations.get(conversationId);
+        if (conversation == null) {
+            return List.of();
+        }
+        synchronized (conversation) {
+            List<Message> messages = new ArrayList<>(conversation.messages);
+            if (conversation.summary.isEmpty()) {
+                return messages;
+            }
+            String summary = SUMMARY_HEADER + "\n" + String.join("\n", conversation.summary);
+            if (!messages.isEmpty() && messages.get(0) instanceof UserMessage first) {
+                messages.set(0, new UserMessage(summary + "\n\n" + first.getText()));
+            } else {
+                messages.add(0, new UserMessage(summary));
+            }
+            return messages;
+        }
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        conversations.remove(conversationId);
+    }
+
+    /**
+     * @return The estimated prompt tokens of what {@link #get(String)} returns
+     */
+    public int tokens(String conversationId) {
+        return get(conversationId).stream().mapToInt(TokenBudgetChatMemory::estimate).sum();
+    }
+
+    private void compact(Conversation conversation) {
+        List<Message> messages = conversation.messages;
+
+        // 1. Turnos anteriores ao último: trocar código e textos longos por referências
+        int latest = turnStart(messages, messages.size());
+        for (int i = conversation.compacted; i < latest; i++) {
+            messages.set(i, withoutPayloads(messages.get(i)));
+        }
+        conversation.compacted = Math.max(conversation.compacted, latest);
+
+        // 2. Acima do orçamento: os turnos mais antigos viram linhas do resumo, nunca o último
+        while (tokens(conversation) > maxTokens) {
+            int next = nextTurn(messages);
+            if (next == messages.size()) {
+                break;
+            }
+            List<Message> evicted = messages.subList(0, next);
+            evicted.stream().map(TokenBudgetChatMemory::summaryLine).filter(line -> !line.isEmpty())
+                    .forEach(conversation.summary::addLast);
+            evicted.clear();
+            conversation.compacted = Math.max(0, conversation.compacted - next);
+        }
+
+        int summaryChars = maxTokens / 4 * CHARS_PER_TOKEN;
+        while (conversation.summary.size() > 1
+                && conversation.summary.stream().mapToInt(String::length).sum() > summaryChars) {
+            conversation.summary.removeFirst();
+        }
+    }
+
+    private static int tokens(Conversation conversation) {
+        int summary = conversation.summary.stream().mapToInt(String::length).sum() / CHARS_PER_TOKEN;
+        return summary + conversation.messages.stream().mapToInt(TokenBudgetChatMemory::estimate).sum();
+    }
+
+    /**
+     * @return The index of the user message that starts the turn containing {@code end - 1}, or 0
+     */
+    private static int turnStart(List<Message> messages, int end) {
+        for (int i = end - 1; i > 0; i--) {
+            if (messages.get(i).getMessageType() == MessageType.USER) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return The index of the second turn's user message, or the list size when there is a single turn
+     */
+    private static int nextTurn(List<Message> messages) {
+        for (int i = 1; i < messages.size(); i++) {
+            if (messages.get(i).getMessageType() == MessageType.USER) {
+                return i;
+            }
+        }
+        return messages.size();
+    }
+
+    private Message withoutPayloads(Message message) {
+        if (!(message instanceof UserMessage) && !(message instanceof AssistantMessage)) {
+            return message;
+        }
+        String text = message.getText() == null ? "" : message.getText();
+        String compacted = shorten(referenceCode(text));
+        if (compacted.equals(text)) {
+            return message;
+        }
+        if (message instanceof AssistantMessage assistant) {
+            return AssistantMessage.builder().content(compacted).toolCalls(assistant.getToolCalls()).build();
+        }
+        return new UserMessage(compacted);
+    }
+
+    private String referenceCode(String text) {
+        Matcher block = CODE_BLOCK.matcher(text);
+        StringBuilder result = new StringBuilder();
+        while (block.find()) {
+            String code = block.group(2);
+            String replacement = code.length() / CHARS_PER_TOKEN <= payloadTokens ? block.group()
+                    : "[bloco de código " + (block.group(1).isEmpty() ? "" : block.group(1) + " ")
+                      + "com " + code.lines().count() + " linhas omitido da memória; o operador já o viu]";
+            block.appendReplacement(result, Matcher.quoteReplacement(replacement));
+        }
+        block.appendTail(result);
+        return result.toString();
+    }
+
+    private String shorten(String text) {
+        int maxChars = 2 * payloadTokens * CHARS_PER_TOKEN;
+        if (text.length() <= maxChars) {
+            return text;
+        }
+        int cut = text.lastIndexOf('\n', maxChars / 2);
+        String head = text.substring(0, cut > 0 ? cut : maxChars / 2);
+        long omitted = text.substring(head.length()).lines().count();
+        return head + "\n[... " + omitted + " linhas omitidas da memória]";
+    }
+
+    private static String summaryLine(Message message) {
+        return switch (message.getMessageType()) {
+            case USER -> "- Operador: " + oneLine(message.getText());
+            case ASSISTANT -> {
+                AssistantMessage assistant = (AssistantMessage) message;
+                String text = oneLine(assistant.getText());
+                if (text.isEmpty() && assistant.hasToolCalls()) {
+                    yield "- Agente chamou " + assistant.getToolCalls().stream()
+                            .map(AssistantMessage.ToolCall::name).collect(Collectors.joining(", "));
+                }
+                yield "- Agente: " + text;
+            }
+            case TOOL -> "- Resultado de " + ((ToolResponseMessage) message).getResponses().stream()
+                    .map(response -> response.name() + ": " + oneLine(response.responseData()))
+                    .collect(Collectors.joining("; "));
+            default -> "";
+        };
+    }
+
+    private static String oneLine(String text) {
+        if (text == null) {
+            return "";
+        }
+        String line = WHITESPACE.matcher(CODE_BLOCK.matcher(text).replaceAll("[código]")).replaceAll(" ").strip();
+        return line.length() > SUMMARY_LINE_CHARS ? line.substring(0, SUMMARY_LINE_CHARS - 3) + "..." : line;
+    }
+
+    static int estimate(Message message) {
+        int chars = message.getText() == null ? 0 : message.getText().length();
+        if (message instanceof AssistantMessage assistant && assistant.hasToolCalls()) {
+            chars += assistant.getToolCalls().stream().mapToInt(call -> call.name().length() + call.arguments().length()).sum();
+        } else if (message instanceof ToolResponseMessage tool) {
+            chars += tool.getResponses().stream().mapToInt(response -> response.responseData().length()).sum();
+        }
+        return chars / CHARS_PER_TOKEN + MESSAGE_OVERHEAD_TOKENS;
+    }
+
+    private static final class Conversation {
+        private final Deque<String> summary = new ArrayDeque<>();
+        private final List<Message> messages = new ArrayList<>();
+        // Mensagens iniciais já compactadas, para não reprocessá-las a cada turno
+        private int compacted;
+    }
+
+    public static final class Builder {
+
+        private int maxTokens = 6000;
+        private int payloadTokens = 400;
+
+        private Builder() {
+        }
+
+        /**
+         * @param maxTokens Estimated tokens the history, summary included, may take in a prompt
+         */
+        public Builder maxTokens(int maxTokens) {
+            this.maxTokens = maxTokens;
+            return this;
+        }
+
+        /**
+         * @param payloadTokens Code blocks above this size are replaced by a reference once their turn is over
+         */
+        public Builder payloadTokens(int payloadTokens) {
+            this.payloadTokens = payloadTokens;
+            return this;
+        }
+
+        public TokenBudgetChatMemory build() {
+            if (maxTokens <= 0 || payloadTokens <= 0) {
+                throw new IllegalArgumentException("agent.memory.max-tokens e agent.memory.payload-tokens devem ser maiores que zero");
+            }
+            return new TokenBudgetChatMemory(maxTokens, payloadTokens);
+        }
+    }
+}
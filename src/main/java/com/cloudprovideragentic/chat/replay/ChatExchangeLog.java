@@ -0,0 +1,248 @@
+package com.cloudprovideragentic.chat.replay;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Append-only JSON lines log of model exchanges, written by {@link RecordingChatModel} and served by
+ * {@link ReplayChatModel}.
+ * <p>
+ * An exchange is keyed on what the caller asked: the first paragraph of the system prompt, the first
+ * paragraph of the last user message and the tool round (how many tool results follow that message).
+ * Chat memory, tool results and the JSON output format Spring AI appends to the user message are not
+ * part of the key, so a log survives prompt tuning and runs with random plan and job IDs. Only the
+ * answer is stored: its text, tool calls and token usage. Requests recorded more than once are served
+ * in the recorded order, starting over after the last one.
+ */
+public class ChatExchangeLog {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatExchangeLog.class);
+
+    // Início das instruções de formato que o BeanOutputConverter acrescenta à mensagem do usuário
+    private static final String FORMAT_INSTRUCTIONS = "Your response should be in JSON format.";
+    private static final Pattern BLANK_LINE = Pattern.compile("\\R[ \\t]*\\R");
+
+    private final Path file;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<Key, List<Exchange>> exchanges = new HashMap<>();
+    private final Map<Key, AtomicInteger> cursors = new ConcurrentHashMap<>();
+
+    public ChatExchangeLog(Path file) {
+        this.file = file;
+        load();
+    }
+
+    /**
+     * @return The key of the exchange a prompt starts
+     */
+    public static Key key(Prompt prompt) {
+        List<Message> messages = prompt.getInstructions();
+        String system = "";
+        int lastUser = -1;
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            if (message.getMessageType() == MessageType.SYSTEM && system.isEmpty()) {
+                system = head(message.getText());
+            } else if (message.getMessageType() == MessageType.USER) {
+                lastUser = i;
+            }
+        }
+        int round = 0;
+        for (int i = lastUser + 1; i < messages.size(); i++) {
+            if (messages.get(i).getMessageType() == MessageType.TOOL) {
+                round++;
+            }
+        }
+        String user = lastUser >= 0 ? head(messages.get(lastUser).getText()) : "";
+        return new Key(system, user, round);
+    }
+
+    /**
+     * Appends one answer of the model to the log. For a stream, pass every chunk: the text is joined and
+     * the usage is taken from the last chunk that reports it.
+     */
+    public synchronized void record(Key key, List<ChatResponse> responses) {
+        Exchange exchange = Exchange.of(key, responses);
+        exchanges.computeIfAbsent(key, k -> new ArrayList<>()).add(exchange);
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Files.writeString(file, objectMapper.writeValueAsString(exchange) + "\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.warn("Falha ao gravar troca com o modelo em {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * @return The next recorded answer for the key
+     * @throws IllegalStateException if the request was never recorded
+     */
+    public Exchange next(Key key) {
+        List<Exchange> recorded;
+        synchronized (this) {
+            recorded = exchanges.get(key);
+        }
+        if (recorded == null) {
+            throw new IllegalStateException("Nenhuma resposta gravada em " + file + " para " + key);
+        }
+        int index = cursors.computeIfAbsent(key, k -> new AtomicInteger()).getAndIncrement();
+        return recorded.get(Math.floorMod(index, recorded.size()));
+    }
+
+    public synchronized int size() {
+        return exchanges.values().stream().mapToInt(List::size).sum();
+    }
+
+    /**
+     * @return The text up to the first blank line, without the output format instructions
+     */
+    static String head(String text) {
+        if (text == null) {
+            return "";
+        }
+        int format = text.indexOf(FORMAT_INSTRUCTIONS);
+        String head = (format >= 0 ? text.substring(0, format) : text).strip();
+        Matcher blank = BLANK_LINE.matcher(head);
+        return blank.find() ? head.substring(0, blank.start()).strip() : head;
+    }
+
+    private void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    Exchange exchange = objectMapper.readValue(line, Exchange.class);
+                    exchanges.computeIfAbsent(exchange.key(), k -> new ArrayList<>()).add(exchange);
+                } catch (JsonProcessingException e) {
+                    // Linha truncada por uma gravação interrompida: ignorar
+                    log.warn("Registro inválido ignorado em {}", file);
+                }
+            }
+            log.info("Trocas com o modelo carregadas: {} de {}", size(), file);
+        } catch (IOException e) {
+            log.warn("Falha ao carregar trocas com o modelo {}: {}", file, e.getMessage());
+        }
+    }
+
+    public record Key(String system, String user, int round) {
+
+        @Override
+        public String toString() {
+            return "system=\"" + system + "\", user=\"" + user + "\", round=" + round;
+        }
+    }
+
+    public record ToolCall(String id, String name, String arguments) {}
+
+    /**
+     * One recorded answer of the model.
+     */
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    public record Exchange(String system, String user, int round, String text, List<ToolCall> toolCalls,
+                           Integer promptTokens, Integer completionTokens) {
+
+        @JsonIgnore
+        public Key key() {
+            return new Key(system, user, round);
+        }
+
+        static Exchange of(Key key, List<ChatResponse> responses) {
+            StringBuilder text = new StringBuilder();
+            List<ToolCall> toolCalls = new ArrayList<>();
+            Usage usage = null;
+            for (ChatResponse response : responses) {
+                for (Generation generation : response.getResults()) {
+                    AssistantMessage output = generation.getOutput();
+                    if (output == null) {
+                        continue;
+                    }
+                    if (output.getText() != null) {
+                        text.append(output.getText());
+                    }
+                    for (AssistantMessage.ToolCall call : output.getToolCalls()) {
+                        toolCalls.add(new ToolCall(call.id(), call.name(), call.arguments()));
+                    }
+                }
+                Usage chunkUsage = response.getMetadata() != null ? response.getMetadata().getUsage() : null;
+                if (chunkUsage != null && chunkUsage.getTotalTokens() != null && chunkUsage.getTotalTokens() > 0) {
+                    usage = chunkUsage;
+                }
+            }
+            return new Exchange(key.system(), key.user(), key.round(), text.toString(), toolCalls,
+                    usage != null ? usage.getPromptTokens() : null, usage != null ? usage.getCompletionTokens() : null);
+        }
+
+        /**
+         * @return The answer as one response
+         */
+        public ChatResponse toResponse() {
+            return response(text != null ? text : "", true);
+        }
+
+        /**
+         * @return The answer split into stream chunks of {@code chunkSize} characters; the last chunk
+         * carries the tool calls and the usage
+         */
+        public List<ChatResponse> toChunks(int chunkSize) {
+            String content = text != null ? text : "";
+            List<ChatResponse> chunks = new ArrayList<>();
+            for (int start = 0; start < content.length(); start += chunkSize) {
+                int end = Math.min(content.length(), start + chunkSize);
+                chunks.add(response(content.substring(start, end), end == content.length()));
+            }
+            if (chunks.isEmpty()) {
+                chunks.add(response("", true));
+            }
+            return chunks;
+        }
+
+        private ChatResponse response(String content, boolean last) {
+            List<AssistantMessage.ToolCall> calls = new ArrayList<>();
+            if (last && toolCalls != null) {
+                for (ToolCall call : toolCalls) {
+                    calls.add(new AssistantMessage.ToolCall(call.id(), "function", call.name(), call.arguments()));
+                }
+            }
+            AssistantMessage message = AssistantMessage.builder().content(content).toolCalls(calls).build();
+            ChatResponseMetadata metadata = last
+                    ? ChatResponseMetadata.builder()
+                            .usage(new DefaultUsage(promptTokens != null ? promptTokens : 0,
+                                    completionTokens != null ? completionTokens : 0))
+                            .build()
+                    : ChatResponseMetadata.builder().build();
+            return new ChatResponse(List.of(new Generation(message)), metadata);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.cloudprovideragentic.chat.replay;
+
+import com.cloudprovideragentic.chat.resilience.ResilienceSettings;
+import com.cloudprovideragentic.chat.resilience.ResilientChatModel;
+import com.cloudprovideragentic.fuctions.terraform.metrics.PipelineMetrics;
+import org.springframework.ai.bedrock.converse.BedrockProxyChatModel;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Chat model stand-ins selected by profile:
+ * <ul>
+ *     <li>{@code record}: Bedrock is called as usual, through the {@link ResilientChatModel}, and every exchange is
+ *     appended to {@code agent.replay.file}</li>
+ *     <li>{@code replay}: Bedrock is not configured; answers come from {@code agent.replay.file}, with the
+ *     optional {@code agent.replay.latency} and {@code agent.replay.chunk-latency}</li>
+ * </ul>
+ */
+@Configuration
+public class ChatReplayConfiguration {
+
+    @Bean
+    @Primary
+    @Profile("record")
+    ChatModel recordingChatModel(BedrockProxyChatModel bedrock,
+                                 ToolCallingManager toolCallingManager,
+                                 ResilienceSettings resilienceSettings,
+                                 PipelineMetrics metrics,
+                                 @Value("${agent.replay.file}") String file) {
+        ChatModel model = new ResilientChatModel(bedrock, toolCallingManager, resilienceSettings, metrics);
+        return new RecordingChatModel(model, new ChatExchangeLog(Path.of(file)), toolCallingManager);
+    }
+
+    @Bean
+    @Profile("replay")
+    ChatModel replayChatModel(ToolCallingManager toolCallingManager,
+                              @Value("${agent.replay.file}") String file,
+                              @Value("${agent.replay.latency}") Duration latency,
+                              @Value("${agent.replay.chunk-latency}") Duration chunkLatency) {
+        return new ReplayChatModel(new ChatExchangeLog(Path.of(file)), toolCallingManager, latency, chunkLatency);
+    }
+}
@@ -0,0 +1,52 @@
+package com.cloudprovideragentic.chat.replay;
+
+import com.cloudprovideragentic.chat.ToolLoopChatModel;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Passes every request to the real model and appends each answer to a {@link ChatExchangeLog}.
+ * <p>
+ * Tool execution is switched off in the real model and done here instead, so every round of a tool
+ * conversation is recorded as its own exchange and can be replayed by {@link ReplayChatModel}.
+ */
+public class RecordingChatModel extends ToolLoopChatModel {
+
+    private final ChatModel delegate;
+    private final ChatExchangeLog exchangeLog;
+
+    public RecordingChatModel(ChatModel delegate, ChatExchangeLog exchangeLog, ToolCallingManager toolCallingManager) {
+        super(toolCallingManager);
+        this.delegate = delegate;
+        this.exchangeLog = exchangeLog;
+    }
+
+    @Override
+    protected ChatResponse exchange(Prompt prompt) {
+        ChatResponse response = delegate.call(withoutToolExecution(prompt));
+        exchangeLog.record(ChatExchangeLog.key(prompt), List.of(response));
+        return response;
+    }
+
+    @Override
+    protected Flux<ChatResponse> exchangeStream(Prompt prompt) {
+        return Flux.defer(() -> {
+            List<ChatResponse> chunks = new ArrayList<>();
+            return delegate.stream(withoutToolExecution(prompt))
+                    .doOnNext(chunks::add)
+                    .doOnComplete(() -> exchangeLog.record(ChatExchangeLog.key(prompt), chunks));
+        });
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return delegate.getDefaultOptions();
+    }
+}
@@ -0,0 +1,65 @@
+package com.cloudprovideragentic.chat.replay;
+
+import com.cloudprovideragentic.chat.ToolLoopChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+
+/**
+ * Answers from a {@link ChatExchangeLog} instead of calling a model, so the agent flow runs without
+ * network and with the same answers every time. Requested tools are executed for real.
+ * <p>
+ * Latency can be injected: {@code latency} before each answer (the time to the first token) and
+ * {@code chunkLatency} between stream chunks of {@value #CHUNK_CHARS} characters.
+ */
+public class ReplayChatModel extends ToolLoopChatModel {
+
+    static final int CHUNK_CHARS = 16;
+
+    private final ChatExchangeLog exchangeLog;
+    private final Duration latency;
+    private final Duration chunkLatency;
+
+    public ReplayChatModel(ChatExchangeLog exchangeLog, ToolCallingManager toolCallingManager,
+                           Duration latency, Duration chunkLatency) {
+        super(toolCallingManager);
+        this.exchangeLog = exchangeLog;
+        this.latency = latency;
+        this.chunkLatency = chunkLatency;
+    }
+
+    @Override
+    protected ChatResponse exchange(Prompt prompt) {
+        ChatExchangeLog.Exchange exchange = exchangeLog.next(ChatExchangeLog.key(prompt));
+        if (latency.isPositive()) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Resposta gravada interrompida", e);
+            }
+        }
+        return exchange.toResponse();
+    }
+
+    @Override
+    protected Flux<ChatResponse> exchangeStream(Prompt prompt) {
+        return Flux.defer(() -> {
+            Flux<ChatResponse> chunks = Flux.fromIterable(exchangeLog.next(ChatExchangeLog.key(prompt)).toChunks(CHUNK_CHARS));
+            if (chunkLatency.isPositive()) {
+                chunks = chunks.delayElements(chunkLatency);
+            }
+            return latency.isPositive() ? chunks.delaySubscription(latency) : chunks;
+        });
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return ToolCallingChatOptions.builder().build();
+    }
+}
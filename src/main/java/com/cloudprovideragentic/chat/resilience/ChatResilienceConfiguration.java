@@ -0,0 +1,46 @@
+package com.cloudprovideragentic.chat.resilience;
+
+import com.cloudprovideragentic.fuctions.terraform.metrics.PipelineMetrics;
+import org.springframework.ai.bedrock.converse.BedrockProxyChatModel;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+import java.time.Duration;
+
+/**
+ * Puts Bedrock behind a {@link ResilientChatModel} for the chat loop and the code generator. The
+ * {@code record} profile wraps the same model in its recorder; {@code replay} does not call Bedrock at all.
+ */
+@Configuration
+public class ChatResilienceConfiguration {
+
+    @Bean
+    ResilienceSettings resilienceSettings(@Value("${agent.model.timeout}") Duration timeout,
+                                          @Value("${agent.model.hedge.enabled}") boolean hedge,
+                                          @Value("${agent.model.hedge.percentile}") double hedgePercentile,
+                                          @Value("${agent.model.hedge.min-samples}") int hedgeMinSamples,
+                                          @Value("${agent.model.hedge.min-delay}") Duration hedgeMinDelay,
+                                          @Value("${agent.model.retry.max-attempts}") int maxAttempts,
+                                          @Value("${agent.model.retry.base-backoff}") Duration baseBackoff,
+                                          @Value("${agent.model.retry.max-backoff}") Duration maxBackoff,
+                                          @Value("${agent.model.circuit.failure-threshold}") int failureThreshold,
+                                          @Value("${agent.model.circuit.open-duration}") Duration openDuration) {
+        return new ResilienceSettings(timeout, hedge, hedgePercentile, hedgeMinSamples, hedgeMinDelay,
+                maxAttempts, baseBackoff, maxBackoff, failureThreshold, openDuration);
+    }
+
+    @Bean
+    @Primary
+    @Profile("!record & !replay")
+    ChatModel resilientChatModel(BedrockProxyChatModel bedrock,
+                                 ToolCallingManager toolCallingManager,
+                                 ResilienceSettings settings,
+                                 PipelineMetrics metrics) {
+        return new ResilientChatModel(bedrock, toolCallingManager, settings, metrics);
+    }
+}
@@ -0,0 +1,77 @@
+package com.cloudprovideragentic.chat.resilience;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Consecutive-failure circuit breaker. After {@code failureThreshold} failures in a row the circuit opens and
+ * calls fail at once for {@code openDuration}; then a single trial call goes through, closing the circuit
+ * on success and opening it again on failure. A trial that never reports back is replaced after another
+ * {@code openDuration}.
+ */
+final class CircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final Clock clock;
+
+    private int failures;
+    private Instant openedAt;
+    private Instant trialStartedAt;
+
+    CircuitBreaker(int failureThreshold, Duration openDuration, Clock clock) {
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.clock = clock;
+    }
+
+    /**
+     * @throws IllegalStateException if the circuit is open, or half-open with a trial call in flight
+     */
+    synchronized void acquire() {
+        if (openedAt == null) {
+            return;
+        }
+        Instant now = clock.instant();
+        Instant retryAt = trialStartedAt != null ? trialStartedAt.plus(openDuration) : openedAt.plus(openDuration);
+        if (now.isBefore(retryAt)) {
+            throw new IllegalStateException("Bedrock indisponível após " + failures + " falha(s) seguida(s); "
+                                            + "nova tentativa em " + Duration.between(now, retryAt).toSeconds() + "s");
+        }
+        trialStartedAt = now;
+    }
+
+    /**
+     * @return Whether calls go through normally, i.e. neither open nor on a trial call
+     */
+    synchronized boolean closed() {
+        return openedAt == null;
+    }
+
+    synchronized void succeeded() {
+        if (openedAt != null) {
+            log.info("Bedrock voltou a responder; circuito fechado");
+        }
+        failures = 0;
+        openedAt = null;
+        trialStartedAt = null;
+    }
+
+    synchronized void failed() {
+        failures++;
+        if (failureThreshold <= 0 || (openedAt == null && failures < failureThreshold)) {
+            return;
+        }
+        if (openedAt == null) {
+            log.warn("Bedrock falhou {} vez(es) seguida(s); chamadas recusadas por {}", failures, openDuration);
+        }
+        openedAt = clock.instant();
+        trialStartedAt = null;
+    }
+}
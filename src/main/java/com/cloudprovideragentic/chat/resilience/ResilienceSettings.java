@@ -0,0 +1,38 @@
+package com.cloudprovideragentic.chat.resilience;
+
+import java.time.Duration;
+
+/**
+ * Limits of the calls to the model, from the {@code agent.model.*} properties.
+ *
+ * @param timeout          Deadline of each call, and of the first and every following chunk of a stream
+ * @param hedge            Whether a slow call gets a second, identical request
+ * @param hedgePercentile  Latency percentile after which the second request is sent, e.g. 0.95
+ * @param hedgeMinSamples  Calls observed before the percentile is trusted; no hedging until then
+ * @param hedgeMinDelay    Never hedge earlier than this
+ * @param maxAttempts      Attempts of a throttled call, the first one included
+ * @param baseBackoff      Wait before the second attempt; it doubles each attempt, with jitter
+ * @param maxBackoff       Upper bound of the wait
+ * @param failureThreshold Failures in a row (timeouts, throttling, unavailability) that open the circuit; 0 disables it
+ * @param openDuration     How long an open circuit refuses calls before letting one through
+ */
+public record ResilienceSettings(
+        Duration timeout,
+        boolean hedge,
+        double hedgePercentile,
+        int hedgeMinSamples,
+        Duration hedgeMinDelay,
+        int maxAttempts,
+        Duration baseBackoff,
+        Duration maxBackoff,
+        int failureThreshold,
+        Duration openDuration
+) {
+
+    public ResilienceSettings {
+        if (!timeout.isPositive() || maxAttempts < 1 || hedgePercentile <= 0 || hedgePercentile >= 1) {
+            throw new IllegalArgumentException("agent.model.timeout deve ser positivo, agent.model.retry.max-attempts "
+                                               + "ao menos 1 e agent.model.hedge.percentile entre 0 e 1");
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.cloudprovideragentic.chat.resilience;
+
+import com.cloudprovideragentic.chat.ToolLoopChatModel;
+import com.cloudprovideragentic.fuctions.terraform.metrics.PipelineMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * Bounds every model round in time and keeps a slow, throttled or failing Bedrock from holding the operator.
+ * <ul>
+ *     <li>Each call has a deadline, and so do the first and each following chunk of a stream.</li>
+ *     <li>A call still running past the observed latency percentile gets a second, identical request; the
+ *     first answer wins and the other is cancelled. Streams are not hedged, their chunks are already on
+ *     screen.</li>
+ *     <li>Throttled calls are retried with exponential backoff and jitter; streams only until the first
+ *     chunk.</li>
+ *     <li>Timeouts, throttling and unavailability count towards a {@link CircuitBreaker}, which makes new
+ *     calls fail at once while Bedrock is degraded.</li>
+ * </ul>
+ * Tools run in {@link ToolLoopChatModel}, outside the retried and hedged part, so each runs once per round.
+ */
+public class ResilientChatModel extends ToolLoopChatModel implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ResilientChatModel.class);
+
+    private static final int LATENCY_WINDOW = 200;
+    private static final Set<String> UNAVAILABLE = Set.of(
+            "ThrottlingException", "ServiceUnavailableException", "ModelNotReadyException", "InternalServerException");
+    private static final Pattern THROTTLING = Pattern.compile(
+            "Throttling|TooManyRequests|Too many requests|Rate exceeded|status code: 429", Pattern.CASE_INSENSITIVE);
+
+    private final ChatModel delegate;
+    private final ResilienceSettings settings;
+    private final CircuitBreaker circuit;
+    private final PipelineMetrics metrics;
+    private final ExecutorService calls = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private int latencyCount;
+    // System.nanoTime() da última limitação da AWS; 0 se nunca houve
+    private volatile long throttledAt;
+
+    public ResilientChatModel(ChatModel delegate, ToolCallingManager toolCallingManager,
+                              ResilienceSettings settings, PipelineMetrics metrics) {
+        this(delegate, toolCallingManager, settings, metrics, Clock.systemUTC());
+    }
+
+    ResilientChatModel(ChatModel delegate, ToolCallingManager toolCallingManager,
+                       ResilienceSettings settings, PipelineMetrics metrics, Clock clock) {
+        super(toolCallingManager);
+        this.delegate = delegate;
+        this.settings = settings;
+        this.circuit = new CircuitBreaker(settings.failureThreshold(), settings.openDuration(), clock);
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected ChatResponse exchange(Prompt prompt) {
+        Prompt round = withoutToolExecution(prompt);
+        acquire();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                ChatResponse response = hedged(round);
+                circuit.succeeded();
+                return response;
+            } catch (RuntimeException e) {
+                Duration backoff = retryAfter(e, attempt);
+                if (backoff == null) {
+                    settle(e);
+                    throw e;
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Chamada ao modelo interrompida", interrupted);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected Flux<ChatResponse> exchangeStream(Prompt prompt) {
+        Prompt round = withoutToolExecution(prompt);
+        return Flux.defer(() -> {
+            acquire();
+            return streamAttempt(round, 1);
+        });
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return delegate.getDefaultOptions();
+    }
+
+    @Override
+    public void close() {
+        calls.shutdownNow();
+    }
+
+    private Flux<ChatResponse> streamAttempt(Prompt round, int attempt) {
+        AtomicBoolean started = new AtomicBoolean();
+        return delegate.stream(round)
+                .timeout(Mono.delay(settings.timeout()), chunk -> Mono.delay(settings.timeout()))
+                .doOnNext(chunk -> started.set(true))
+                .doOnComplete(circuit::succeeded)
+                .onErrorResume(error -> {
+                    RuntimeException failure = error instanceof TimeoutException
+                            ? timeout(error)
+                            : error instanceof RuntimeException runtime ? runtime : new IllegalStateException(error);
+                    Duration backoff = started.get() ? null : retryAfter(failure, attempt);
+                    if (backoff != null) {
+                        return Mono.delay(backoff).thenMany(streamAttempt(round, attempt + 1));
+                    }
+                    settle(failure);
+                    return Flux.error(failure);
+                });
+    }
+
+    /**
+     * Runs the call on a virtual thread and, once it passes the hedge delay, a second copy of it; returns the
+     * first answer and cancels the other.
+     *
+     * @throws IllegalStateException with a {@link TimeoutException} cause if no answer comes before the deadline
+     */
+    private ChatResponse hedged(Prompt round) {
+        CompletionService<ChatResponse> completion = new ExecutorCompletionService<>(calls);
+        Map<Future<ChatResponse>, Long> started = new HashMap<>();
+        long now = System.nanoTime();
+        long deadline = now + settings.timeout().toNanos();
+        Duration hedgeDelay = hedgeDelay();
+        long hedgeAt = hedgeDelay != null ? now + hedgeDelay.toNanos() : Long.MAX_VALUE;
+        Future<ChatResponse> primary = completion.submit(() -> delegate.call(round));
+        started.put(primary, now);
+
+        RuntimeException failure = null;
+        int pending = 1;
+        try {
+            while (pending > 0) {
+                long wait = Math.min(deadline, hedgeAt) - System.nanoTime();
+                Future<ChatResponse> done = completion.poll(Math.max(wait, 0), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    if (System.nanoTime() >= deadline) {
+                        throw timeout(null);
+                    }
+                    log.debug("Chamada ao modelo passou de {}; enviando pedido duplicado", hedgeDelay);
+                    metrics.modelCall("hedge");
+                    started.put(completion.submit(() -> delegate.call(round)), System.nanoTime());
+                    hedgeAt = Long.MAX_VALUE;
+                    pending++;
+                    continue;
+                }
+                pending--;
+                try {
+                    ChatResponse response = done.get();
+                    if (done != primary) {
+                        metrics.modelCall("hedge.won");
+                    }
+                    recordLatency(System.nanoTime() - started.get(done));
+                    return response;
+                } catch (ExecutionException e) {
+                    failure = e.getCause() instanceof RuntimeException runtime ? runtime : new IllegalStateException(e.getCause());
+                    // Limitado pela AWS: o pedido duplicado só pioraria, a nova tentativa espera o backoff
+                    if (throttled(failure)) {
+                        break;
+                    }
+                }
+            }
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Chamada ao modelo interrompida", e);
+        } finally {
+            started.keySet().forEach(call -> call.cancel(true));
+        }
+    }
+
+    private void acquire() {
+        try {
+            circuit.acquire();
+        } catch (IllegalStateException e) {
+            metrics.modelCall("rejected");
+            throw e;
+        }
+    }
+
+    /**
+     * @return The wait before the next attempt when the call was throttled and has attempts left, otherwise
+     * {@code null}
+     */
+    private Duration retryAfter(RuntimeException failure, int attempt) {
+        if (!throttled(failure)) {
+            return null;
+        }
+        throttledAt = System.nanoTime();
+        metrics.modelCall("throttled");
+        if (attempt >= settings.maxAttempts()) {
+            return null;
+        }
+        Duration backoff = backoff(attempt);
+        log.warn("Bedrock limitou a chamada (tentativa {}/{}); nova tentativa em {} ms",
+                attempt, settings.maxAttempts(), backoff.toMillis());
+        metrics.modelCall("retry");
+        return backoff;
+    }
+
+    /**
+     * Counts a failed call against the circuit when it says Bedrock is degraded; other errors, such as an
+     * invalid request, mean Bedrock answered.
+     */
+    private void settle(RuntimeException failure) {
+        if (failure.getCause() instanceof TimeoutException || unavailable(failure)) {
+            circuit.failed();
+        } else {
+            circuit.succeeded();
+        }
+    }
+
+    /**
+     * Exponential backoff with equal jitter: half of {@code base * 2^(attempt-1)}, capped at the maximum, plus
+     * a random part up to the other half.
+     */
+    Duration backoff(int attempt) {
+        long cap = Math.min(settings.maxBackoff().toMillis(),
+                settings.baseBackoff().toMillis() << Math.min(attempt - 1, 20));
+        long half = cap / 2;
+        return Duration.ofMillis(half + ThreadLocalRandom.current().nextLong(cap - half + 1));
+    }
+
+    /**
+     * @return When to send the duplicate request, or {@code null} not to: hedging is off, too few calls were
+     * observed, the circuit is not closed or Bedrock throttled within the maximum backoff
+     */
+    Duration hedgeDelay() {
+        if (!settings.hedge() || !circuit.closed()
+            || (throttledAt != 0 && System.nanoTime() - throttledAt < settings.maxBackoff().toNanos())) {
+            return null;
+        }
+        long[] window;
+        synchronized (latencies) {
+            if (latencyCount < settings.hedgeMinSamples()) {
+                return null;
+            }
+            window = Arrays.copyOf(latencies, Math.min(latencyCount, LATENCY_WINDOW));
+        }
+        Arrays.sort(window);
+        int index = (int) Math.ceil(settings.hedgePercentile() * window.length) - 1;
+        Duration percentile = Duration.ofNanos(window[Math.max(index, 0)]);
+        return percentile.compareTo(settings.hedgeMinDelay()) > 0 ? percentile : settings.hedgeMinDelay();
+    }
+
+    private void recordLatency(long nanos) {
+        synchronized (latencies) {
+            latencies[latencyCount % LATENCY_WINDOW] = nanos;
+            latencyCount++;
+        }
+    }
+
+    private IllegalStateException timeout(Throwable cause) {
+        metrics.modelCall("timeout");
+        TimeoutException timeout = cause instanceof TimeoutException t ? t : new TimeoutException();
+        return new IllegalStateException("O modelo não respondeu em " + settings.timeout().toSeconds() + "s", timeout);
+    }
+
+    static boolean throttled(Throwable failure) {
+        for (Throwable error = failure; error != null; error = error.getCause()) {
+            if (error.getClass().getSimpleName().equals("ThrottlingException")
+                || (error.getMessage() != null && THROTTLING.matcher(error.getMessage()).find())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean unavailable(Throwable failure) {
+        for (Throwable error = failure; error != null; error = error.getCause()) {
+            if (UNAVAILABLE.contains(error.getClass().getSimpleName())) {
+                return true;
+            }
+        }
+        return throttled(failure);
+    }
+}
@@ -1,90 +1,283 @@
 package com.cloudprovideragentic.fuctions.terraform;
 
+import com.cloudprovideragentic.chat.JsonStreamReader;
+import com.cloudprovideragentic.chat.StreamTimer;
+import com.cloudprovideragentic.chat.ThinkingTagFilter;
+import com.cloudprovideragentic.fuctions.terraform.cache.PlanCache;
+import com.cloudprovideragentic.fuctions.terraform.metrics.PipelineMetrics;
 import com.cloudprovideragentic.fuctions.terraform.model.plans.TerraformPlanResult;
+import com.cloudprovideragentic.fuctions.terraform.prompt.SystemPrompts;
+import com.cloudprovideragentic.fuctions.terraform.template.TemplatePlanner;
+import com.cloudprovideragentic.fuctions.terraform.utils.HclDiagnostic;
+import com.cloudprovideragentic.fuctions.terraform.utils.HclValidator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.ResponseEntity;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 @Service
 public class TerraformCodeGeneratorService {
 
+    private static final Logger log = LoggerFactory.getLogger(TerraformCodeGeneratorService.class);
+
     private final ChatClient chatClient;
+    private final PlanCache planCache;
+    private final TemplatePlanner templatePlanner;
+    private final PipelineMetrics metrics;
+    private final int repairRounds;
 
-    private static final String SYSTEM_PROMPT = """
-            Você é um especialista em Terraform para AWS.
-            Dado o pedido do usuário, gere um JSON com exatamente esta estrutura:
+    private static final String DESCRIPTION_FIELD = "planDescription";
+    private static final String CODE_FIELD = "terraformCode";
 
-            {
-              "planDescription": "Descrição clara e legível dos recursos que serão criados",
-              "terraformCode": "terraform {\\n  required_providers {\\n    aws = {\\n      source = \\"hashicorp/aws\\"\\n    }\\n  }\\n}\\n\\nprovider \\"aws\\" {\\n  region = \\"us-east-1\\"\\n}\\n\\nresource \\"aws_s3_bucket\\" \\"example\\" {\\n  bucket = \\"example\\"\\n}"
-            }
+    private static final String REPAIR_PROMPT = """
+            Pedido original do usuário:
+            %s
+
+            O código Terraform que você gerou foi rejeitado pela validação local:
+            %s
+
+            Código rejeitado:
+            %s
 
-            Retorne APENAS o JSON, sem blocos de código markdown, sem explicações fora do JSON.
-
-            FORMATO OBRIGATÓRIO DO TERRAFORM:
-            - Use EXCLUSIVAMENTE sintaxe HCL (HashiCorp Configuration Language)
-            - NUNCA use JSON Terraform format (nunca use { "resource": { "aws_s3_bucket": ... } })
-            - Exemplo correto de HCL: resource "aws_s3_bucket" "name" { bucket = "name" }
-            - O campo "terraformCode" é uma string JSON: newlines devem ser \\n e aspas devem ser \\"
-
-            INSTRUÇÕES GERAIS PARA O CÓDIGO TERRAFORM:
-            - Sempre inclua o bloco terraform{} com required_providers para aws (source = "hashicorp/aws")
-            - Sempre inclua o bloco provider "aws" com a região adequada (padrão: us-east-1)
-            - Use nomes de recursos compatíveis com Terraform (sem espaços, use hifens ou underscores)
-
-            INSTRUÇÕES PARA S3:
-            - Crie aws_s3_bucket com o nome especificado
-            - Se versionamento solicitado, adicione aws_s3_bucket_versioning com status "Enabled"
-            - Se criptografia solicitada, adicione aws_s3_bucket_server_side_encryption_configuration
-            - Adicione aws_s3_bucket_public_access_block com todos os campos true por padrão
-
-            INSTRUÇÕES PARA SQS:
-            - Crie aws_sqs_queue com o nome especificado
-            - Se FIFO solicitado, o nome deve terminar com .fifo e adicione content_based_deduplication = true
-            - Configure visibility_timeout_seconds conforme solicitado (padrão: 30)
-            - Se Dead Letter Queue solicitada, crie uma segunda fila e configure redrive_policy
-
-            INSTRUÇÕES PARA ECS:
-            - Use FARGATE como launch_type
-            - Crie aws_ecs_cluster, aws_ecs_task_definition e aws_ecs_service
-            - Crie IAM role de execução com a policy AmazonECSTaskExecutionRolePolicy
-            - Crie infraestrutura de rede: aws_vpc, aws_subnet, aws_internet_gateway,
-              aws_route_table, aws_route_table_association, aws_security_group
-            - Configure network_mode = "awsvpc" na task definition
-
-            INSTRUÇÕES PARA OUTROS SERVIÇOS AWS:
-            - Para RDS: use aws_db_instance com security groups e subnet groups adequados
-            - Para Lambda: use aws_lambda_function com aws_iam_role e aws_lambda_permission
-            - Para API Gateway: use aws_api_gateway_rest_api integrado com o backend adequado
-            - Para qualquer outro serviço AWS não listado acima, siga os mesmos padrões estabelecidos:
-              blocos terraform{} e provider, recursos nomeados coerentemente, referências entre recursos
-              via atributos (ex: .id, .arn), e código estritamente compatível com a documentação
-              oficial do Terraform Registry (registry.terraform.io/providers/hashicorp/aws)
+            Corrija exatamente esses problemas, sem mudar os recursos pedidos, e devolva o JSON completo
+            no mesmo formato (planDescription e terraformCode).
             """;
 
-    public TerraformCodeGeneratorService(ChatClient.Builder builder) {
+    /**
+     * @param repairRounds How many times invalid code is sent back to the model with the validation
+     *                     diagnostics before the plan is rejected
+     */
+    public TerraformCodeGeneratorService(
+            ChatClient.Builder builder,
+            PlanCache planCache,
+            TemplatePlanner templatePlanner,
+            PipelineMetrics metrics,
+            @Value("${terraform.validation.repair-rounds}") int repairRounds
+    ) {
         this.chatClient = builder.build();
+        this.planCache = planCache;
+        this.templatePlanner = templatePlanner;
+        this.metrics = metrics;
+        this.repairRounds = repairRounds;
     }
 
+    /**
+     * Plans a request: from a template when {@link TemplatePlanner} fully understands it, otherwise from the
+     * plan cache or the model, with local validation and repair rounds.
+     */
     public TerraformPlanResult generate(String userPrompt) {
-        TerraformPlanResult result = chatClient.prompt()
-                .system(SYSTEM_PROMPT)
-                .user(Objects.requireNonNull(userPrompt, "userPrompt não pode ser nulo"))
-                .call()
-                .entity(TerraformPlanResult.class);
+        Objects.requireNonNull(userPrompt, "userPrompt não pode ser nulo");
+
+        Optional<TerraformPlanResult> template = templatePlanner.plan(userPrompt);
+        if (template.isPresent()) {
+            return template.get();
+        }
+
+        String systemPrompt = systemPrompt(userPrompt);
+        String cacheKey = planCache.key(userPrompt, systemPrompt);
+        Optional<TerraformPlanResult> cached = planCache.get(cacheKey);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        return validateAndCache(userPrompt, systemPrompt,
+                clean(call("bedrock.generate", systemPrompt, userPrompt)), cacheKey);
+    }
+
+    /**
+     * Streaming variant of {@link #generate(String)}: parses the model's JSON while it arrives, without
+     * {@code <thinking>} spans. The plan description is shown as soon as its field closes, and the code is
+     * shown unescaped while it is generated.
+     *
+     * @param userPrompt    The user request
+     * @param tokenListener Receives the description, then the code chunk by chunk
+     */
+    public TerraformPlanResult generate(String userPrompt, Consumer<String> tokenListener) {
+        Objects.requireNonNull(userPrompt, "userPrompt não pode ser nulo");
+
+        Optional<TerraformPlanResult> template = templatePlanner.plan(userPrompt);
+        if (template.isPresent()) {
+            return show(template.get(), tokenListener);
+        }
 
+        String systemPrompt = systemPrompt(userPrompt);
+        String cacheKey = planCache.key(userPrompt, systemPrompt);
+        Optional<TerraformPlanResult> cached = planCache.get(cacheKey);
+        if (cached.isPresent()) {
+            return show(cached.get(), tokenListener);
+        }
+
+        StreamTimer timer = new StreamTimer();
+        Consumer<String> show = text -> {
+            timer.visible(text);
+            tokenListener.accept(text);
+        };
+        // O código é o único campo guardado enquanto chega; a resposta bruta não é acumulada
+        JsonStreamReader reader = new JsonStreamReader(CODE_FIELD, show, (field, value) -> {
+            if (DESCRIPTION_FIELD.equals(field)) {
+                log.debug("Descrição do plano disponível em {} ms", timer.totalMillis());
+                show.accept(value + "\n\n");
+            }
+        });
+        ThinkingTagFilter filter = new ThinkingTagFilter();
+        AtomicReference<ChatResponse> lastUsage = new AtomicReference<>();
+
+        try (PipelineMetrics.Phase phase = metrics.start("bedrock.stream")) {
+            chatClient.prompt()
+                    .system(systemPrompt)
+                    .user(userPrompt)
+                    .stream()
+                    .chatResponse()
+                    .doOnNext(response -> {
+                        // O uso de tokens vem no metadado do último chunk
+                        if (usage(response) != null) {
+                            lastUsage.set(response);
+                        }
+                        reader.accept(filter.accept(text(response)));
+                    })
+                    .blockLast();
+            reader.accept(filter.finish());
+            phase.succeeded(reader.complete());
+        }
+        timer.stop();
+        recordUsage("bedrock.stream", lastUsage.get());
+        log.info("Plano gerado em streaming: {}", timer);
+
+        TerraformPlanResult result = reader.complete() && reader.field(CODE_FIELD) != null
+                ? new TerraformPlanResult(reader.field(DESCRIPTION_FIELD), reader.field(CODE_FIELD))
+                : null;
+        // As rodadas de correção não são transmitidas: só o plano final interessa ao operador
+        return validateAndCache(userPrompt, systemPrompt, clean(result), cacheKey);
+    }
+
+    /**
+     * Shows a plan that was not streamed from the model in the same order as a streamed one: the
+     * description, then the code.
+     */
+    private static TerraformPlanResult show(TerraformPlanResult plan, Consumer<String> tokenListener) {
+        tokenListener.accept(plan.planDescription() + "\n\n");
+        tokenListener.accept(plan.terraformCode());
+        return plan;
+    }
+
+    /**
+     * @return The base instructions plus only the modules of the AWS services the request mentions
+     */
+    private static String systemPrompt(String userPrompt) {
+        String systemPrompt = SystemPrompts.forRequest(userPrompt);
+        log.debug("Serviços detectados no pedido: {} ({} caracteres de instruções)",
+                SystemPrompts.detect(userPrompt), systemPrompt.length());
+        return systemPrompt;
+    }
+
+    private TerraformPlanResult call(String phaseName, String systemPrompt, String userMessage) {
+        try (PipelineMetrics.Phase phase = metrics.start(phaseName)) {
+            ResponseEntity<ChatResponse, TerraformPlanResult> response = chatClient.prompt()
+                    .system(systemPrompt)
+                    .user(userMessage)
+                    .call()
+                    .responseEntity(TerraformPlanResult.class);
+            recordUsage(phaseName, response.getResponse());
+            phase.succeeded(response.getEntity() != null);
+            return response.getEntity();
+        }
+    }
+
+    private void recordUsage(String operation, ChatResponse response) {
+        Usage usage = usage(response);
+        if (usage != null) {
+            metrics.tokens(operation, usage.getPromptTokens(), usage.getCompletionTokens());
+        }
+    }
+
+    /**
+     * @return The token usage of a response, or {@code null} when the model did not report any
+     */
+    private static Usage usage(ChatResponse response) {
+        if (response == null || response.getMetadata() == null) {
+            return null;
+        }
+        Usage usage = response.getMetadata().getUsage();
+        return usage != null && usage.getTotalTokens() != null && usage.getTotalTokens() > 0 ? usage : null;
+    }
+
+    private static String text(ChatResponse response) {
+        Generation generation = response.getResult();
+        if (generation == null || generation.getOutput() == null || generation.getOutput().getText() == null) {
+            return "";
+        }
+        return generation.getOutput().getText();
+    }
+
+    /**
+     * Validates the generated code locally and, while it has problems, asks the model to fix them, up to
+     * {@link #repairRounds} times. Only valid plans are cached.
+     *
+     * @throws IllegalStateException if the code is still invalid after the last repair round
+     */
+    private TerraformPlanResult validateAndCache(String userPrompt, String systemPrompt, TerraformPlanResult plan,
+                                                 String cacheKey) {
+        List<HclDiagnostic> diagnostics = validate(plan.terraformCode());
+        for (int round = 1; !diagnostics.isEmpty() && round <= repairRounds; round++) {
+            log.warn("Código gerado com {} problema(s), rodada de correção {}/{}: {}",
+                    diagnostics.size(), round, repairRounds, diagnostics);
+            plan = clean(call("bedrock.repair", systemPrompt,
+                    REPAIR_PROMPT.formatted(userPrompt, bullets(diagnostics), plan.terraformCode())));
+            diagnostics = validate(plan.terraformCode());
+        }
+        if (!diagnostics.isEmpty()) {
+            throw new IllegalStateException("O código Terraform gerado continua inválido após " + repairRounds
+                    + " rodada(s) de correção:\n" + bullets(diagnostics));
+        }
+
+        planCache.put(cacheKey, plan);
+        return plan;
+    }
+
+    private List<HclDiagnostic> validate(String code) {
+        try (PipelineMetrics.Phase phase = metrics.start("hcl.validate")) {
+            List<HclDiagnostic> diagnostics = HclValidator.validate(code);
+            phase.succeeded(diagnostics.isEmpty());
+            return diagnostics;
+        }
+    }
+
+    private static String bullets(List<HclDiagnostic> diagnostics) {
+        StringBuilder text = new StringBuilder();
+        for (HclDiagnostic diagnostic : diagnostics) {
+            text.append("- ").append(diagnostic).append('\n');
+        }
+        return text.toString().stripTrailing();
+    }
+
+    private TerraformPlanResult clean(TerraformPlanResult result) {
         if (result == null) {
             throw new IllegalStateException("O modelo não retornou um plano válido.");
         }
 
-        String cleanCode = result.terraformCode()
+        return new TerraformPlanResult(result.planDescription(), cleanCode(result.terraformCode()));
+    }
+
+    /**
+     * Removes the markdown fences and the JSON escapes the model sometimes leaves in the code.
+     */
+    public static String cleanCode(String terraformCode) {
+        return terraformCode
                 .replaceAll("```(?:terraform|hcl)?\\n?", "")
                 .replaceAll("```", "")
                 .replace("\\n", "\n")
                 .replace("\\\"", "\"")
                 .trim();
-
-        return new TerraformPlanResult(result.planDescription(), cleanCode);
     }
 }
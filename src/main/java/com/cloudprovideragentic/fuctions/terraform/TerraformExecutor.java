@@ -1,77 +1,580 @@
 package com.cloudprovideragentic.fuctions.terraform;
 
+import com.cloudprovideragentic.fuctions.terraform.backend.ExecutionBackends;
+import com.cloudprovideragentic.fuctions.terraform.backend.TerraformInvocation;
+import com.cloudprovideragentic.fuctions.terraform.metrics.PipelineMetrics;
+import com.cloudprovideragentic.fuctions.terraform.model.terraform.ResourceChange;
 import com.cloudprovideragentic.fuctions.terraform.model.terraform.TerraformResponse;
+import com.cloudprovideragentic.fuctions.terraform.policy.RunChoice;
+import com.cloudprovideragentic.fuctions.terraform.policy.RunPolicy;
+import com.cloudprovideragentic.fuctions.terraform.process.OutputBuffer;
+import com.cloudprovideragentic.fuctions.terraform.process.OutputLine;
+import com.cloudprovideragentic.fuctions.terraform.process.ProcessResult;
+import com.cloudprovideragentic.fuctions.terraform.shard.StateShardManager;
+import com.cloudprovideragentic.fuctions.terraform.speculative.PreparedPlan;
+import com.cloudprovideragentic.fuctions.terraform.summary.ChangeSummary;
+import com.cloudprovideragentic.fuctions.terraform.summary.PlanJsonReader;
+import com.cloudprovideragentic.fuctions.terraform.stack.StackLease;
+import com.cloudprovideragentic.fuctions.terraform.stack.StackLocks;
+import com.cloudprovideragentic.fuctions.terraform.stack.StackName;
+import com.cloudprovideragentic.fuctions.terraform.utils.HclScanner;
+import com.cloudprovideragentic.fuctions.terraform.utils.TerraformBlock;
 import com.cloudprovideragentic.fuctions.terraform.utils.TerraformFileManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 @Component
 public class TerraformExecutor {
 
+    private static final Logger log = LoggerFactory.getLogger(TerraformExecutor.class);
+
+    private static final int DEFAULT_OUTPUT_MAX_LINES = 500;
+    private static final String SPECULATIVE_DIR = ".speculative";
+    private static final String DEPENDENCY_LOCK_FILE = ".terraform.lock.hcl";
+    private static final Set<String> ADDRESSED_BLOCKS = Set.of("resource", "data", "module");
+
     private final Environment env;
     private final TerraformFileManager fileManager;
+    private final TerraformInitCache initCache;
+    private final StackLocks stackLocks;
+    private final StateShardManager shardManager;
+    private final ExecutionBackends backends;
+    private final RunPolicy runPolicy;
+    private final PipelineMetrics metrics;
 
-    public TerraformExecutor(Environment env, TerraformFileManager fileManager) {
+    public TerraformExecutor(Environment env, TerraformFileManager fileManager, TerraformInitCache initCache,
+                             StackLocks stackLocks, StateShardManager shardManager, ExecutionBackends backends,
+                             RunPolicy runPolicy, PipelineMetrics metrics) {
         this.env = env;
         this.fileManager = fileManager;
+        this.initCache = initCache;
+        this.stackLocks = stackLocks;
+        this.shardManager = shardManager;
+        this.backends = backends;
+        this.runPolicy = runPolicy;
+        this.metrics = metrics;
     }
 
     public TerraformResponse execute(String tfCode) {
+        return execute(StackName.DEFAULT, tfCode);
+    }
+
+    public TerraformResponse execute(String stack, String tfCode) {
+        return execute(stack, tfCode, line -> {});
+    }
+
+    /**
+     * Runs init, plan and apply on the stack directory, publishing every output line to the listener
+     * as it is produced. Executions on the same stack are serialized, also across processes sharing
+     * the infra volume; different stacks run in parallel. With sharding enabled only the state shards
+     * touched by the code are planned and applied, dependencies first.
+     *
+     * @param stack    The stack name
+     * @param tfCode   The Terraform code to apply
+     * @param listener Receives stdout/stderr lines of every phase while the process is running
+     */
+    public TerraformResponse execute(String stack, String tfCode, Consumer<OutputLine> listener) {
+        return execute(stack, tfCode, listener, null);
+    }
+
+    /**
+     * Like {@link #execute(String, String, Consumer)}, but applies the speculative plan when the stack is
+     * still exactly as it was when the plan was computed; otherwise runs the full init, plan and apply.
+     *
+     * @param prepared A plan from {@link #prepare(String, String, String)} for the same code, or {@code null}
+     */
+    public TerraformResponse execute(String stack, String tfCode, Consumer<OutputLine> listener, PreparedPlan prepared) {
+        try (PipelineMetrics.Phase phase = metrics.start("terraform.execute")) {
+            TerraformResponse response = executeOnStack(stack, tfCode, listener, prepared);
+            phase.outcome(outcome(response.status()));
+            return response;
+        }
+    }
+
+    private TerraformResponse executeOnStack(String stack, String tfCode, Consumer<OutputLine> listener, PreparedPlan prepared) {
         try {
-            // 1. Preparar diretório infra e escrever arquivo .tf
-            Path workDir = fileManager.prepareInfraDirectory(tfCode);
+            String stackName = StackName.of(stack);
+            try (StackLease ignored = lock(stackName)) {
+                if (prepared != null && !shardManager.enabled()
+                        && prepared.baseFingerprint().equals(fileManager.workingStateFingerprint(fileManager.stackDirectory(stackName)))) {
+                    return applyPrepared(stackName, tfCode, listener, prepared);
+                }
+                return executeLocked(stackName, tfCode, listener);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new TerraformResponse("CANCELADO", tfCode, "Execucao interrompida.");
+        } catch (Exception e) {
+            return new TerraformResponse("ERRO", tfCode, e.getMessage());
+        }
+    }
+
+    /**
+     * Acquires the stack, recording the wait as the {@code stack.lock} phase.
+     */
+    private StackLease lock(String stack) throws IOException, InterruptedException, TimeoutException {
+        try (PipelineMetrics.Phase phase = metrics.start("stack.lock")) {
+            StackLease lease = stackLocks.acquire(stack, fileManager.stackDirectory(stack));
+            phase.outcome(PipelineMetrics.OK);
+            return lease;
+        }
+    }
 
-            // 2. Executar terraform init
-            Process initProcess = buildProcess(workDir, "terraform", "init", "-no-color").start();
-            int initCode = initProcess.waitFor();
+    private static String outcome(String status) {
+        return switch (status) {
+            case "SUCESSO" -> PipelineMetrics.OK;
+            case "CANCELADO" -> PipelineMetrics.CANCELLED;
+            default -> PipelineMetrics.ERROR;
+        };
+    }
+
+    private TerraformResponse executeLocked(String stack, String tfCode, Consumer<OutputLine> listener) throws Exception {
+        if (!shardManager.enabled()) {
+            // 1. Preparar diretório da stack e escrever arquivo .tf
+            return executeIn(fileManager.prepareStackDirectory(stack, tfCode), tfCode, listener);
+        }
 
-            if (initCode != 0) {
-                String error = readProcessOutput(initProcess.getErrorStream());
-                return new TerraformResponse("ERRO", tfCode, error);
+        // 1. Distribuir os blocos entre os shards e aplicar só os shards alterados
+        List<Path> shards = shardManager.prepare(fileManager.stackDirectory(stack), tfCode);
+        if (shards.isEmpty()) {
+            return new TerraformResponse("SUCESSO", tfCode, "Nenhuma alteração: todos os blocos já existem na stack sem mudanças.");
+        }
+        StringBuilder output = new StringBuilder();
+        List<ResourceChange> changes = new ArrayList<>();
+        for (Path shard : shards) {
+            TerraformResponse response = executeIn(shard, tfCode, listener);
+            if (!"SUCESSO".equals(response.status())) {
+                return new TerraformResponse(response.status(), tfCode, "Shard " + shard.getFileName() + ": " + response.output());
             }
+            output.append("# Shard ").append(shard.getFileName()).append("\n").append(response.output()).append("\n");
+            changes.addAll(response.changes());
+        }
+        return new TerraformResponse("SUCESSO", tfCode, output.toString(), changes);
+    }
 
-            // 3. Executar terraform plan
-            Process planProcess = buildProcess(workDir, "terraform", "plan", "-no-color", "-out=tfplan").start();
-            readProcessOutput(planProcess.getInputStream());
-            int planCode = planProcess.waitFor();
+    /**
+     * Applies several confirmed codes to the same stack with a single init, plan and apply, so the state is
+     * refreshed once for the whole batch. Returns one response per code, in the same order.
+     * <p>
+     * When the plan fails, main.tf is restored: the codes whose blocks the errors name fail, and the others
+     * are planned again without them, or one by one when the errors name none. When the apply fails, a code
+     * succeeds only if all its resources are in the state and none is named in the errors. With state
+     * sharding the codes run one after the other under a single stack lock.
+     */
+    public List<TerraformResponse> executeBatch(String stack, List<String> tfCodes, Consumer<OutputLine> listener) {
+        if (tfCodes.size() == 1) {
+            return List.of(execute(stack, tfCodes.get(0), listener));
+        }
+        try (PipelineMetrics.Phase phase = metrics.start("terraform.batch")) {
+            List<TerraformResponse> responses = executeBatchOnStack(stack, tfCodes, listener);
+            phase.succeeded(responses.stream().allMatch(response -> "SUCESSO".equals(response.status())));
+            return responses;
+        }
+    }
 
-            if (planCode != 0) {
-                String error = readProcessOutput(planProcess.getErrorStream());
-                return new TerraformResponse("ERRO", tfCode, error);
+    private List<TerraformResponse> executeBatchOnStack(String stack, List<String> tfCodes, Consumer<OutputLine> listener) {
+        try {
+            String stackName = StackName.of(stack);
+            try (StackLease ignored = lock(stackName)) {
+                return shardManager.enabled()
+                        ? executeEachLocked(stackName, tfCodes, listener)
+                        : executeBatchLocked(stackName, tfCodes, listener);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return respondAll(tfCodes, "CANCELADO", "Execucao interrompida.");
+        } catch (Exception e) {
+            return respondAll(tfCodes, "ERRO", e.getMessage());
+        }
+    }
+
+    private List<TerraformResponse> executeBatchLocked(String stack, List<String> tfCodes, Consumer<OutputLine> listener)
+            throws Exception {
+        if (tfCodes.size() == 1) {
+            return List.of(executeLocked(stack, tfCodes.get(0), listener));
+        }
+        Path stackDir = fileManager.stackDirectory(stack);
+        String previous = fileManager.readConfiguration(stackDir);
 
-            // 4. Executar terraform apply
-            Process applyProcess = buildProcess(workDir, "terraform", "apply", "-no-color", "-auto-approve", "tfplan").start();
-            String applyOutput = readProcessOutput(applyProcess.getInputStream());
-            int applyCode = applyProcess.waitFor();
+        // 1. Mesclar os códigos do lote em um único main.tf, na ordem de confirmação
+        Path workDir = stackDir;
+        for (String tfCode : tfCodes) {
+            workDir = fileManager.prepareStackDirectory(stack, tfCode);
+        }
 
-            if (applyCode != 0) {
-                String error = readProcessOutput(applyProcess.getErrorStream());
-                return new TerraformResponse("ERRO", tfCode, error);
+        // 2. Init e plan uma única vez; se falharem, o estado não mudou e o main.tf volta ao que era
+        try (ProcessResult init = init(workDir, listener)) {
+            if (init != null && !init.succeeded()) {
+                fileManager.restoreConfiguration(stackDir, previous);
+                return executeEachLocked(stack, tfCodes, listener);
             }
+        }
+        String planError;
+        try (ProcessResult plan = run(workDir, runPolicy.plan(workDir, tfCodes), listener, "plan", "-no-color", "-out=tfplan")) {
+            planError = plan.succeeded() ? null : plan.errorText();
+        }
+        if (planError != null) {
+            fileManager.restoreConfiguration(stackDir, previous);
+            return retryWithoutNamed(stack, tfCodes, planError, listener);
+        }
+        Optional<List<ResourceChange>> changes = showPlan(workDir, "tfplan");
 
-            return new TerraformResponse("SUCESSO", tfCode, applyOutput);
+        // 3. Um apply para o lote inteiro
+        String batchNote = "Aplicado em lote com " + tfCodes.size() + " planos confirmados.\n";
+        String errorText;
+        try (ProcessResult apply = run(workDir, runPolicy.apply(workDir), listener, "apply", "-no-color", "-auto-approve", "tfplan")) {
+            if (apply.succeeded()) {
+                return tfCodes.stream()
+                        .map(tfCode -> applied(tfCode, changes.map(all -> ChangeSummary.declaredBy(all, tfCode)),
+                                apply.stdout().text(), batchNote))
+                        .toList();
+            }
+            errorText = apply.errorText();
+        }
 
+        // 4. Apply parcial: só tem sucesso o código cujos recursos estão todos no estado e sem erro
+        Optional<Set<String>> applied = stateAddresses(workDir);
+        List<TerraformResponse> responses = new ArrayList<>();
+        for (String tfCode : tfCodes) {
+            boolean succeeded = applied.isPresent() && !namedIn(errorText, tfCode)
+                    && applied.get().containsAll(resourceAddresses(tfCode));
+            responses.add(succeeded
+                    ? new TerraformResponse("SUCESSO", tfCode, batchNote + "Os recursos deste plano foram aplicados; "
+                            + "outro plano do lote falhou:\n" + errorText)
+                    : new TerraformResponse("ERRO", tfCode, errorText));
+        }
+        return responses;
+    }
+
+    /**
+     * After a failed batch plan: the codes named in the errors fail with them, the others are batched again.
+     * When the errors name no code, or every code, each one runs on its own.
+     */
+    private List<TerraformResponse> retryWithoutNamed(String stack, List<String> tfCodes, String errorText,
+                                                      Consumer<OutputLine> listener) throws Exception {
+        List<String> others = tfCodes.stream().filter(tfCode -> !namedIn(errorText, tfCode)).toList();
+        if (others.isEmpty() || others.size() == tfCodes.size()) {
+            return executeEachLocked(stack, tfCodes, listener);
+        }
+        Iterator<TerraformResponse> retried = executeBatchLocked(stack, others, listener).iterator();
+        List<TerraformResponse> responses = new ArrayList<>();
+        for (String tfCode : tfCodes) {
+            responses.add(others.contains(tfCode) ? retried.next() : new TerraformResponse("ERRO", tfCode, errorText));
+        }
+        return responses;
+    }
+
+    private List<TerraformResponse> executeEachLocked(String stack, List<String> tfCodes, Consumer<OutputLine> listener)
+            throws Exception {
+        List<TerraformResponse> responses = new ArrayList<>();
+        for (String tfCode : tfCodes) {
+            responses.add(executeLocked(stack, tfCode, listener));
+        }
+        return responses;
+    }
+
+    private static List<TerraformResponse> respondAll(List<String> tfCodes, String status, String output) {
+        return tfCodes.stream().map(tfCode -> new TerraformResponse(status, tfCode, output)).toList();
+    }
+
+    /**
+     * @return The resource changes of the saved plan from {@code terraform show -json}, or empty when they
+     * could not be read; the apply then answers with terraform's own output
+     */
+    private Optional<List<ResourceChange>> showPlan(Path workDir, String planFile) throws IOException, InterruptedException {
+        // O JSON do plano é lido direto da saída do processo: não passa por buffer nem pelo log do job
+        AtomicReference<List<ResourceChange>> changes = new AtomicReference<>();
+        TerraformInvocation invocation = new TerraformInvocation(workDir, "show",
+                List.of("show", "-json", "-no-color", planFile), environment());
+        try (PipelineMetrics.Phase timer = metrics.start("terraform.show");
+             OutputBuffer stderr = new OutputBuffer(outputMaxLines(), spillDir())) {
+            int exitCode;
+            try {
+                exitCode = backends.forPhase("show").run(invocation,
+                        stdout -> changes.set(PlanJsonReader.read(new InputStreamReader(stdout, StandardCharsets.UTF_8))),
+                        stderr);
+            } catch (InterruptedException e) {
+                timer.outcome(PipelineMetrics.CANCELLED);
+                throw e;
+            }
+            timer.succeeded(exitCode == 0);
+            if (exitCode != 0 || changes.get() == null) {
+                log.info("Resumo do plano indisponível em {}: terraform show falhou: {}", workDir, stderr.text().strip());
+                return Optional.empty();
+            }
+            return Optional.of(changes.get());
+        } catch (IOException e) {
+            log.info("Resumo do plano indisponível em {}: {}", workDir, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static TerraformResponse applied(String tfCode, Optional<List<ResourceChange>> changes, String applyOutput,
+                                             String note) {
+        return changes
+                .map(list -> new TerraformResponse("SUCESSO", tfCode, note + ChangeSummary.describe(list, applyOutput), list))
+                .orElseGet(() -> new TerraformResponse("SUCESSO", tfCode, note + applyOutput));
+    }
+
+    /**
+     * @return The resource addresses in the state, or empty when {@code terraform state list} failed or part
+     * of its output was lost
+     */
+    private Optional<Set<String>> stateAddresses(Path workDir) throws IOException, InterruptedException {
+        try (ProcessResult list = run(workDir, "state", line -> {}, "state", "list")) {
+            OutputBuffer stdout = list.stdout();
+            if (!list.succeeded() || stdout.droppedLines() > 0) {
+                return Optional.empty();
+            }
+            Set<String> addresses = new HashSet<>();
+            if (stdout.spillFile() != null) {
+                addresses.addAll(Files.readAllLines(stdout.spillFile()));
+            }
+            stdout.text().lines().filter(line -> !line.startsWith("[... ")).forEach(addresses::add);
+            return Optional.of(addresses);
+        }
+    }
+
+    /**
+     * @return Whether terraform's error text names one of the resource, data or module blocks of the code,
+     * as {@code aws_s3_bucket.logs} or as {@code resource "aws_s3_bucket" "logs"}
+     */
+    static boolean namedIn(String errorText, String tfCode) {
+        for (TerraformBlock block : HclScanner.scan(tfCode)) {
+            if (!ADDRESSED_BLOCKS.contains(block.type())) {
+                continue;
+            }
+            String declaration = block.type() + " " + block.labels().stream()
+                    .map(label -> "\"" + label + "\"").collect(Collectors.joining(" "));
+            if (errorText.contains(declaration)
+                    || Pattern.compile("(?<![\\w.-])" + Pattern.quote(block.address()) + "(?![\\w-])").matcher(errorText).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> resourceAddresses(String tfCode) {
+        return HclScanner.scan(tfCode).stream().filter(TerraformBlock::isResource).map(TerraformBlock::address).toList();
+    }
+
+    private TerraformResponse executeIn(Path workDir, String tfCode, Consumer<OutputLine> listener) throws Exception {
+        // 2. Executar terraform init (pulado se providers e lock file não mudaram)
+        try (ProcessResult init = init(workDir, listener)) {
+            if (init != null && !init.succeeded()) {
+                return new TerraformResponse("ERRO", tfCode, init.errorText());
+            }
+        }
+
+        // 3. Executar terraform plan
+        try (ProcessResult plan = run(workDir, runPolicy.plan(workDir, List.of(tfCode)), listener,
+                "plan", "-no-color", "-out=tfplan")) {
+            if (!plan.succeeded()) {
+                return new TerraformResponse("ERRO", tfCode, plan.errorText());
+            }
+        }
+        Optional<List<ResourceChange>> changes = showPlan(workDir, "tfplan");
+
+        // 4. Executar terraform apply
+        try (ProcessResult apply = run(workDir, runPolicy.apply(workDir), listener, "apply", "-no-color", "-auto-approve", "tfplan")) {
+            if (!apply.succeeded()) {
+                return new TerraformResponse("ERRO", tfCode, apply.errorText());
+            }
+            return applied(tfCode, changes, apply.stdout().text(), "");
+        }
+    }
+
+    /**
+     * Applies a plan computed by {@link #prepare(String, String, String)}: the code is merged into the stack
+     * exactly as in the speculative copy, and the saved plan is applied without planning again.
+     */
+    private TerraformResponse applyPrepared(String stack, String tfCode, Consumer<OutputLine> listener,
+                                            PreparedPlan prepared) throws Exception {
+        Path workDir = fileManager.prepareStackDirectory(stack, tfCode);
+        // O init especulativo pode ter atualizado o lock file com providers novos
+        Path lockFile = prepared.directory().resolve(DEPENDENCY_LOCK_FILE);
+        if (Files.exists(lockFile)) {
+            Files.copy(lockFile, workDir.resolve(DEPENDENCY_LOCK_FILE), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        try (ProcessResult init = init(workDir, listener)) {
+            if (init != null && !init.succeeded()) {
+                return new TerraformResponse("ERRO", tfCode, init.errorText());
+            }
+        }
+
+        try (ProcessResult apply = run(workDir, runPolicy.apply(workDir), listener, "apply", "-no-color", "-auto-approve",
+                prepared.planFile().toString())) {
+            if (!apply.succeeded()) {
+                return new TerraformResponse("ERRO", tfCode, apply.errorText());
+            }
+            return applied(tfCode, Optional.ofNullable(prepared.changes()), apply.stdout().text(), "");
+        }
+    }
+
+    /**
+     * Runs init and plan for code that was not confirmed yet, in a copy of the stack directory under
+     * {@code .speculative/<planId>/}, so the stack itself is not touched. The stack is only locked while
+     * its files are copied. Not available with state sharding.
+     *
+     * @return The saved plan, or empty when it could not be computed
+     * @throws InterruptedException if cancelled; terraform is stopped and the copy deleted
+     */
+    public Optional<PreparedPlan> prepare(String planId, String stack, String tfCode) throws InterruptedException {
+        if (shardManager.enabled()) {
+            return Optional.empty();
+        }
+        String stackName = StackName.of(stack);
+        Path stackDir = fileManager.stackDirectory(stackName);
+        Path workDir = stackDir.resolve(SPECULATIVE_DIR).resolve(planId);
+        boolean prepared = false;
+        try {
+            String fingerprint;
+            try (StackLease ignored = stackLocks.acquire(stackName, stackDir)) {
+                fingerprint = fileManager.workingStateFingerprint(stackDir);
+                fileManager.deleteDirectory(workDir);
+                fileManager.copyWorkingState(stackDir, workDir);
+            }
+            fileManager.prepareDirectory(workDir, tfCode);
+
+            try (ProcessResult init = init(workDir, line -> {})) {
+                if (init != null && !init.succeeded()) {
+                    log.info("Plano especulativo {} descartado: init falhou", planId);
+                    return Optional.empty();
+                }
+            }
+            try (ProcessResult plan = run(workDir, runPolicy.plan(stackDir, workDir, List.of(tfCode)), line -> {},
+                    "plan", "-no-color", "-input=false", "-out=" + PreparedPlan.PLAN_FILE)) {
+                if (!plan.succeeded()) {
+                    log.info("Plano especulativo {} descartado: plan falhou", planId);
+                    return Optional.empty();
+                }
+            }
+            List<ResourceChange> changes = showPlan(workDir, PreparedPlan.PLAN_FILE).orElse(null);
+            prepared = true;
+            log.info("Plano especulativo {} pronto na stack {}", planId, stackName);
+            return Optional.of(new PreparedPlan(planId, stackName, workDir, fingerprint, changes));
+        } catch (InterruptedException e) {
+            throw e;
         } catch (Exception e) {
-            return new TerraformResponse("ERRO", tfCode, e.getMessage());
+            log.info("Plano especulativo {} descartado: {}", planId, e.getMessage());
+            return Optional.empty();
+        } finally {
+            if (!prepared) {
+                deleteQuietly(workDir);
+            }
+        }
+    }
+
+    /**
+     * Deletes the copy of the stack directory used by a speculative plan.
+     */
+    public void release(PreparedPlan prepared) {
+        deleteQuietly(prepared.directory());
+    }
+
+    private void deleteQuietly(Path dir) {
+        try {
+            fileManager.deleteDirectory(dir);
+        } catch (IOException e) {
+            log.warn("Falha ao remover {}: {}", dir, e.getMessage());
+        }
+    }
+
+    /**
+     * Runs terraform init unless the providers and lock file did not change since the last init.
+     *
+     * @return The init result, or {@code null} when init was skipped
+     */
+    private ProcessResult init(Path workDir, Consumer<OutputLine> listener)
+            throws IOException, InterruptedException, TimeoutException {
+        if (initCache.isUpToDate(workDir)) {
+            initCache.recordSkipped();
+            return null;
+        }
+        // O cache de plugins do terraform não é seguro enquanto um init instala providers nele;
+        // inits que só ligam pacotes já em cache rodam juntos
+        boolean install = initCache.installsProviders(workDir);
+        try (StackLease ignored = stackLocks.acquirePluginCache(initCache.cacheRoot(), install)) {
+            boolean cold = initCache.isCold();
+            long start = System.nanoTime();
+            ProcessResult init = run(workDir, "init", listener, "init", "-no-color", "-input=false");
+            // Um init simulado não instalou nada: não pode liberar o próximo init real
+            if (init.succeeded() && !backends.forPhase("init").simulated()) {
+                initCache.markInitialized(workDir, Duration.ofNanos(System.nanoTime() - start), cold);
+            }
+            return init;
         }
     }
 
-    private ProcessBuilder buildProcess(Path workDir, String... command) {
-        ProcessBuilder pb = new ProcessBuilder(command);
-        pb.directory(workDir.toFile());
-        configureAwsEnv(pb);
-        return pb;
+    /**
+     * Runs a plan or apply with the refresh and parallelism arguments of the choice right after the command,
+     * and reports how it went back to the policy.
+     */
+    private ProcessResult run(Path workDir, RunChoice choice, Consumer<OutputLine> listener, String... arguments)
+            throws IOException, InterruptedException {
+        List<String> withChoice = new ArrayList<>();
+        withChoice.add(arguments[0]);
+        withChoice.addAll(choice.arguments());
+        withChoice.addAll(List.of(arguments).subList(1, arguments.length));
+        long start = System.nanoTime();
+        ProcessResult result = run(workDir, choice.phase(), listener, withChoice.toArray(String[]::new));
+        runPolicy.record(choice, result, Duration.ofNanos(System.nanoTime() - start));
+        return result;
     }
 
-    private void configureAwsEnv(ProcessBuilder pb) {
-        Map<String, String> environment = pb.environment();
+    private ProcessResult run(Path workDir, String phase, Consumer<OutputLine> listener, String... arguments)
+            throws IOException, InterruptedException {
+        try (PipelineMetrics.Phase timer = metrics.start("terraform." + phase)) {
+            OutputBuffer stdout = new OutputBuffer(outputMaxLines(), spillDir());
+            OutputBuffer stderr = new OutputBuffer(outputMaxLines(), spillDir());
+            TerraformInvocation invocation = new TerraformInvocation(workDir, phase, List.of(arguments), environment());
+            ProcessResult result = null;
+            try {
+                int exitCode = backends.forPhase(phase).run(invocation, stdout, stderr, listener);
+                result = new ProcessResult(exitCode, stdout, stderr);
+                timer.succeeded(result.succeeded());
+                return result;
+            } catch (InterruptedException e) {
+                timer.outcome(PipelineMetrics.CANCELLED);
+                throw e;
+            } finally {
+                if (result == null) {
+                    stdout.close();
+                    stderr.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The plugin cache settings and the AWS credentials, for the terraform process
+     */
+    private Map<String, String> environment() {
+        Map<String, String> environment = new HashMap<>(initCache.environment());
         String accessKey = env.getProperty("aws_access_key_id");
         String secretKey = env.getProperty("aws_secret_access_key");
         if (accessKey != null) {
@@ -80,9 +583,16 @@ public class TerraformExecutor {
         if (secretKey != null) {
             environment.put("AWS_SECRET_ACCESS_KEY", secretKey.trim());
         }
+        return environment;
+    }
+
+    private int outputMaxLines() {
+        String maxLines = env.getProperty("terraform.output.max-lines");
+        return maxLines != null ? Integer.parseInt(maxLines.trim()) : DEFAULT_OUTPUT_MAX_LINES;
     }
 
-    private String readProcessOutput(InputStream inputStream) throws IOException {
-        return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+    private Path spillDir() {
+        String spillDir = env.getProperty("terraform.output.spill-dir");
+        return Path.of(spillDir != null ? spillDir.trim() : System.getProperty("java.io.tmpdir"));
     }
-}
\ No newline at end of file
+}
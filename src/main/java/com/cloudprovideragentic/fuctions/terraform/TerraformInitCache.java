@@ -0,0 +1,285 @@
+package com.cloudprovideragentic.fuctions.terraform;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Manages the shared provider plugin cache and decides when {@code terraform init} can be skipped.
+ * <p>
+ * Every terraform process gets a CLI config pointing at one plugin cache directory (and at the
+ * optional filesystem mirror baked into the Docker image), so providers are downloaded once per
+ * host instead of once per run. Init is skipped when the provider requirements, the providers implied by
+ * the resource and data types and the {@code .terraform.lock.hcl} of a work directory are unchanged since
+ * its last successful init.
+ */
+@Component
+public class TerraformInitCache {
+
+    private static final Logger log = LoggerFactory.getLogger(TerraformInitCache.class);
+
+    static final String FINGERPRINT_FILE = "agent-init.fingerprint";
+    private static final String LOCK_FILE = ".terraform.lock.hcl";
+    private static final String CLI_CONFIG_FILE = "agent.terraformrc";
+
+    // Linhas que alteram o resultado do init: providers, versões, módulos e backend
+    private static final Pattern INIT_RELEVANT_LINE = Pattern.compile(
+            "^\\s*(?:(?:source|version|required_version)\\s*=|backend\\s+\"|module\\s+\"|cloud\\s*\\{).*");
+    // Cabeçalho de provider, ou de resource/data cujo prefixo do tipo é o provider implícito (random_id -> random)
+    private static final Pattern IMPLICIT_PROVIDER = Pattern.compile(
+            "^\\s*(?:provider\\s+\"([a-z0-9-]+)\"|(?:resource|data)\\s+\"([a-z0-9-]+)_).*");
+    // Entrada do lock file: endereço do provider seguido da versão escolhida
+    private static final Pattern LOCKED_PROVIDER = Pattern.compile(
+            "^provider\\s+\"([^\"]+)\"\\s*\\{\\s*version\\s*=\\s*\"([^\"]+)\"", Pattern.MULTILINE);
+    // Módulos podem exigir providers que o código da stack não mostra
+    private static final Pattern MODULE_BLOCK = Pattern.compile("^\\s*module\\s+\".*");
+    // Provider embutido no terraform (terraform_data, terraform_remote_state): não é instalado pelo init
+    private static final String BUILTIN_PROVIDER = "terraform";
+
+    private final Path pluginCacheDir;
+    private final Path mirrorDir;
+    private final Path cliConfigFile;
+
+    private final AtomicLong coldInits = new AtomicLong();
+    private final AtomicLong coldInitNanos = new AtomicLong();
+    private final AtomicLong warmInits = new AtomicLong();
+    private final AtomicLong warmInitNanos = new AtomicLong();
+    private final AtomicLong skippedInits = new AtomicLong();
+
+    public TerraformInitCache(@Value("${terraform.plugin-cache-dir}") String pluginCacheDir,
+                              @Value("${terraform.provider-mirror-dir:}") String mirrorDir) {
+        this.pluginCacheDir = Path.of(pluginCacheDir);
+        this.mirrorDir = mirrorDir == null || mirrorDir.isBlank() ? null : Path.of(mirrorDir);
+        this.cliConfigFile = this.pluginCacheDir.resolveSibling(CLI_CONFIG_FILE);
+        writeCliConfig();
+    }
+
+    /**
+     * @return Environment variables that point terraform at the managed cache and CLI config
+     */
+    public Map<String, String> environment() {
+        return Map.of(
+                "TF_PLUGIN_CACHE_DIR", pluginCacheDir.toString(),
+                "TF_CLI_CONFIG_FILE", cliConfigFile.toString());
+    }
+
+    /**
+     * @return Directory holding the plugin cache and the managed CLI config
+     */
+    public Path cacheRoot() {
+        return cliConfigFile.getParent();
+    }
+
+    /**
+     * Returns true when the work directory was initialized before and neither its provider
+     * requirements, the providers its resource and data types imply nor its lock file changed since then.
+     */
+    public boolean isUpToDate(Path workDir) throws IOException {
+        Path fingerprintFile = workDir.resolve(".terraform").resolve(FINGERPRINT_FILE);
+        if (!Files.exists(fingerprintFile)) {
+            return false;
+        }
+        return Files.readString(fingerprintFile).equals(fingerprint(workDir));
+    }
+
+    /**
+     * True when the cache holds no provider package yet, i.e. the next init has to download.
+     */
+    public boolean isCold() throws IOException {
+        if (!Files.isDirectory(pluginCacheDir)) {
+            return true;
+        }
+        try (Stream<Path> entries = Files.list(pluginCacheDir)) {
+            return entries.findAny().isEmpty();
+        }
+    }
+
+    /**
+     * True unless the lock file pins every provider the work directory uses and each pinned version is already
+     * in the plugin cache. Work directories calling modules always count as installing. Only an init that
+     * installs providers writes to the cache; the others just link cached packages into the work directory.
+     */
+    public boolean installsProviders(Path workDir) throws IOException {
+        Path lockFile = workDir.resolve(LOCK_FILE);
+        if (!Files.exists(lockFile)) {
+            return true;
+        }
+        Set<String> providers = new TreeSet<>();
+        for (Path tfFile : tfFiles(workDir)) {
+            for (String line : Files.readAllLines(tfFile)) {
+                if (MODULE_BLOCK.matcher(line).matches()) {
+                    return true;
+                }
+                addProvider(line, providers);
+            }
+        }
+        Set<String> locked = new TreeSet<>();
+        Matcher entry = LOCKED_PROVIDER.matcher(Files.readString(lockFile));
+        while (entry.find()) {
+            if (!Files.isDirectory(pluginCacheDir.resolve(entry.group(1)).resolve(entry.group(2)))) {
+                return true;
+            }
+            String address = entry.group(1);
+            locked.add(address.substring(address.lastIndexOf('/') + 1));
+        }
+        return !locked.containsAll(providers);
+    }
+
+    /**
+     * Records a successful init and stores the fingerprint that allows the next one to be skipped.
+     */
+    public void markInitialized(Path workDir, Duration elapsed, boolean cold) throws IOException {
+        Path terraformDir = workDir.resolve(".terraform");
+        Files.createDirectories(terraformDir);
+        Files.writeString(terraformDir.resolve(FINGERPRINT_FILE), fingerprint(workDir));
+
+        if (cold) {
+            coldInits.incrementAndGet();
+            coldInitNanos.addAndGet(elapsed.toNanos());
+        } else {
+            warmInits.incrementAndGet();
+            warmInitNanos.addAndGet(elapsed.toNanos());
+        }
+        log.info("terraform init {} em {} ms ({})", cold ? "frio" : "quente", elapsed.toMillis(), stats());
+    }
+
+    public void recordSkipped() {
+        skippedInits.incrementAndGet();
+        log.info("terraform init pulado: providers e lock file inalterados ({})", stats());
+    }
+
+    public InitStats stats() {
+        return new InitStats(
+                coldInits.get(), average(coldInitNanos.get(), coldInits.get()),
+                warmInits.get(), average(warmInitNanos.get(), warmInits.get()),
+                skippedInits.get());
+    }
+
+    String fingerprint(Path workDir) throws IOException {
+        MessageDigest digest = sha256();
+        Set<String> providers = new TreeSet<>();
+        for (Path tfFile : tfFiles(workDir)) {
+            for (String line : Files.readAllLines(tfFile)) {
+                if (INIT_RELEVANT_LINE.matcher(line).matches()) {
+                    digest.update((line.trim() + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+                addProvider(line, providers);
+            }
+        }
+        // Um recurso de um provider novo (ex.: random_id) exige init mesmo sem required_providers
+        for (String provider : providers) {
+            digest.update(("provider " + provider + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        Path lockFile = workDir.resolve(LOCK_FILE);
+        if (Files.exists(lockFile)) {
+            digest.update(Files.readAllBytes(lockFile));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static List<Path> tfFiles(Path workDir) throws IOException {
+        try (Stream<Path> files = Files.list(workDir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".tf")).sorted().toList();
+        }
+    }
+
+    /**
+     * Adds the local name of the provider the line declares, or implies through a resource or data type.
+     */
+    private static void addProvider(String line, Set<String> providers) {
+        Matcher provider = IMPLICIT_PROVIDER.matcher(line);
+        if (provider.matches()) {
+            String name = provider.group(1) != null ? provider.group(1) : provider.group(2);
+            if (!name.equals(BUILTIN_PROVIDER)) {
+                providers.add(name);
+            }
+        }
+    }
+
+    private void writeCliConfig() {
+        try {
+            Files.createDirectories(pluginCacheDir);
+            StringBuilder config = new StringBuilder()
+                    .append("plugin_cache_dir = \"").append(pluginCacheDir).append("\"\n")
+                    .append("plugin_cache_may_break_dependency_lock_file = true\n");
+
+            List<String> mirrored = mirroredProviders();
+            if (!mirrored.isEmpty()) {
+                String include = String.join(", ", mirrored.stream().map(p -> "\"" + p + "\"").toList());
+                config.append("\nprovider_installation {\n")
+                      .append("  filesystem_mirror {\n")
+                      .append("    path    = \"").append(mirrorDir).append("\"\n")
+                      .append("    include = [").append(include).append("]\n")
+                      .append("  }\n")
+                      .append("  direct {\n")
+                      .append("    exclude = [").append(include).append("]\n")
+                      .append("  }\n")
+                      .append("}\n");
+            }
+            Files.writeString(cliConfigFile, config.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Falha ao preparar cache de providers em " + pluginCacheDir, e);
+        }
+    }
+
+    /**
+     * Lists the providers available in the mirror as {@code hostname/namespace/type}.
+     */
+    private List<String> mirroredProviders() throws IOException {
+        List<String> providers = new ArrayList<>();
+        if (mirrorDir == null || !Files.isDirectory(mirrorDir)) {
+            return providers;
+        }
+        try (Stream<Path> paths = Files.find(mirrorDir, 3, (p, attrs) -> attrs.isDirectory())) {
+            paths.filter(p -> mirrorDir.relativize(p).getNameCount() == 3)
+                 .map(p -> mirrorDir.relativize(p).toString().replace('\\', '/'))
+                 .sorted()
+                 .forEach(providers::add);
+        }
+        return providers;
+    }
+
+    private static long average(long totalNanos, long count) {
+        return count == 0 ? 0 : Duration.ofNanos(totalNanos / count).toMillis();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public record InitStats(long coldInits, long coldAverageMillis,
+                            long warmInits, long warmAverageMillis,
+                            long skippedInits) {
+
+        @Override
+        public String toString() {
+            return "frios=" + coldInits + " media=" + coldAverageMillis + "ms"
+                    + ", quentes=" + warmInits + " media=" + warmAverageMillis + "ms"
+                    + ", pulados=" + skippedInits;
+        }
+    }
+}
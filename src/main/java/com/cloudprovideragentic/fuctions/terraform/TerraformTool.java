@@ -1,53 +1,135 @@
 package com.cloudprovideragentic.fuctions.terraform;
 
+import com.cloudprovideragentic.fuctions.terraform.job.JobManager;
+import com.cloudprovideragentic.fuctions.terraform.job.TerraformJob;
+import com.cloudprovideragentic.fuctions.terraform.metrics.PipelineMetrics;
+import com.cloudprovideragentic.fuctions.terraform.model.jobs.JobLogRequest;
+import com.cloudprovideragentic.fuctions.terraform.model.jobs.JobRequest;
+import com.cloudprovideragentic.fuctions.terraform.model.jobs.JobResponse;
 import com.cloudprovideragentic.fuctions.terraform.model.plans.PlanResponse;
 import com.cloudprovideragentic.fuctions.terraform.model.plans.TerraformPlanResult;
 import com.cloudprovideragentic.fuctions.terraform.model.terraform.ExecuteRequest;
 import com.cloudprovideragentic.fuctions.terraform.model.terraform.TerraformRequest;
 import com.cloudprovideragentic.fuctions.terraform.model.terraform.TerraformResponse;
+import com.cloudprovideragentic.fuctions.terraform.session.PendingPlan;
+import com.cloudprovideragentic.fuctions.terraform.session.PendingPlanStore;
+import com.cloudprovideragentic.fuctions.terraform.session.SessionContext;
+import com.cloudprovideragentic.fuctions.terraform.speculative.SpeculativePlanner;
+import com.cloudprovideragentic.fuctions.terraform.stack.StackName;
+import org.springframework.ai.chat.model.ToolContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 @Configuration
 public class TerraformTool {
 
+    private static final int DEFAULT_LOG_LINES = 50;
+
+    private final PipelineMetrics metrics;
+
+    public TerraformTool(PipelineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     @Bean(name = "planejarInfra")
-    Function<TerraformRequest, PlanResponse> planejarInfra(
+    BiFunction<TerraformRequest, ToolContext, PlanResponse> planejarInfra(
             TerraformCodeGeneratorService codeGenerator,
-            TerraformCodeHolder codeHolder
+            PendingPlanStore planStore,
+            SpeculativePlanner speculativePlanner
     ) {
-        return request -> {
+        return timed("planejarInfra", PlanResponse::status, (request, toolContext) -> {
             try {
-                TerraformPlanResult result = codeGenerator.generate(request.userPrompt());
-                codeHolder.store(result.terraformCode());
-                return new PlanResponse("PLANO_GERADO", result.planDescription(), result.terraformCode());
+                // Se quem chama transmite a resposta, recebe os tokens do plano enquanto são gerados
+                String stack = StackName.of(request.stack());
+                Optional<Consumer<String>> listener = SessionContext.planListener(toolContext);
+                TerraformPlanResult result = listener.isPresent()
+                        ? codeGenerator.generate(request.userPrompt(), listener.get())
+                        : codeGenerator.generate(request.userPrompt());
+                PendingPlan plan = planStore.store(SessionContext.sessionId(toolContext), stack, result.terraformCode());
+                // init e plan começam enquanto o operador revisa o plano
+                speculativePlanner.start(plan);
+                return new PlanResponse("PLANO_GERADO", result.planDescription(), result.terraformCode(), plan.id(), stack);
             } catch (Exception e) {
-                return new PlanResponse("ERRO", e.getMessage(), "");
+                return new PlanResponse("ERRO", e.getMessage(), "", "", "");
             }
-        };
+        });
     }
 
     @Bean(name = "executarInfra")
-    Function<ExecuteRequest, TerraformResponse> executarInfra(
-            TerraformCodeHolder codeHolder,
-            TerraformExecutor executor
+    BiFunction<ExecuteRequest, ToolContext, JobResponse> executarInfra(
+            PendingPlanStore planStore,
+            SpeculativePlanner speculativePlanner,
+            JobManager jobManager
     ) {
-        return request -> {
+        return timed("executarInfra", JobResponse::status, (request, toolContext) -> {
+            String sessionId = SessionContext.sessionId(toolContext);
+
             if (!request.confirmar()) {
-                codeHolder.clear();
-                return new TerraformResponse("CANCELADO", "", "Execucao cancelada pelo usuario.");
+                planStore.clear(sessionId);
+                speculativePlanner.discard(sessionId);
+                return new JobResponse("CANCELADO", "", "", "Execucao cancelada pelo usuario.");
             }
 
-            if (!codeHolder.hasPendingCode()) {
-                return new TerraformResponse("ERRO", "", "Nenhum plano pendente. Chame 'planejarInfra' primeiro.");
+            Optional<PendingPlan> plan = planStore.take(sessionId);
+            if (plan.isEmpty()) {
+                return new JobResponse("ERRO", "", "", "Nenhum plano pendente. Chame 'planejarInfra' primeiro.");
             }
 
-            String tfCode = codeHolder.retrieve();
-            TerraformResponse response = executor.execute(tfCode);
-            codeHolder.clear();
-            return response;
+            // O apply roda em segundo plano; o chat acompanha pelo jobId
+            TerraformJob job = jobManager.submit(plan.get());
+            return new JobResponse(job.state().name(), job.id(), job.stack(),
+                    "Execucao iniciada em segundo plano. Use 'statusInfra' para acompanhar.");
+        });
+    }
+
+    @Bean(name = "statusInfra")
+    BiFunction<JobRequest, ToolContext, JobResponse> statusInfra(JobManager jobManager) {
+        return timed("statusInfra", JobResponse::status, (request, toolContext) -> withJob(jobManager, request.jobId(), toolContext, job -> {
+            TerraformResponse result = job.result();
+            String output = result != null ? result.output() : "Execucao em andamento desde " + job.startedAt() + ".";
+            return new JobResponse(job.state().name(), job.id(), job.stack(), output);
+        }));
+    }
+
+    @Bean(name = "logInfra")
+    BiFunction<JobLogRequest, ToolContext, JobResponse> logInfra(JobManager jobManager) {
+        return timed("logInfra", JobResponse::status, (request, toolContext) -> withJob(jobManager, request.jobId(), toolContext, job -> {
+            int lines = request.lines() != null && request.lines() > 0 ? request.lines() : DEFAULT_LOG_LINES;
+            return new JobResponse(job.state().name(), job.id(), job.stack(), String.join("\n", job.tail(lines)));
+        }));
+    }
+
+    @Bean(name = "cancelarInfra")
+    BiFunction<JobRequest, ToolContext, JobResponse> cancelarInfra(JobManager jobManager) {
+        return timed("cancelarInfra", JobResponse::status, (request, toolContext) -> withJob(jobManager, request.jobId(), toolContext, job -> jobManager.cancel(job)
+                ? new JobResponse("CANCELADO", job.id(), job.stack(), "Execucao cancelada; processos do terraform encerrados.")
+                : new JobResponse(job.state().name(), job.id(), job.stack(), "O job ja havia terminado.")));
+    }
+
+    /**
+     * Records every call of a tool as the {@code tool.<name>} phase; a response with status ERRO counts as
+     * a failure.
+     */
+    private <Q, R> BiFunction<Q, ToolContext, R> timed(String tool, Function<R, String> status,
+                                                       BiFunction<Q, ToolContext, R> function) {
+        return (request, toolContext) -> {
+            try (PipelineMetrics.Phase phase = metrics.start("tool." + tool)) {
+                R response = function.apply(request, toolContext);
+                phase.succeeded(!"ERRO".equals(status.apply(response)));
+                return response;
+            }
         };
     }
+
+    private static JobResponse withJob(JobManager jobManager, String jobId, ToolContext toolContext,
+                                       Function<TerraformJob, JobResponse> action) {
+        return jobManager.find(SessionContext.sessionId(toolContext), jobId)
+                .map(action)
+                .orElseGet(() -> new JobResponse("ERRO", jobId == null ? "" : jobId, "", "Job nao encontrado nesta sessao."));
+    }
 }
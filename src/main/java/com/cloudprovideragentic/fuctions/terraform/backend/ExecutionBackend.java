@@ -0,0 +1,70 @@
+package com.cloudprovideragentic.fuctions.terraform.backend;
+
+import com.cloudprovideragentic.fuctions.terraform.process.OutputBuffer;
+import com.cloudprovideragentic.fuctions.terraform.process.OutputLine;
+import com.cloudprovideragentic.fuctions.terraform.process.OutputReader;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Runs terraform commands for {@link com.cloudprovideragentic.fuctions.terraform.TerraformExecutor}.
+ * The executor decides what to run and where; a backend decides how: a local process, a process
+ * behind a bounded pool, or no process at all. Backends are Spring beans selected by name through
+ * {@link ExecutionBackends}.
+ */
+public interface ExecutionBackend {
+
+    /**
+     * @return The name used in {@code terraform.backend.*}
+     */
+    String name();
+
+    /**
+     * Runs the command, appending every output line to its buffer and publishing it to the listener
+     * while the command runs.
+     *
+     * @return The exit code
+     * @throws InterruptedException if cancelled; the command is stopped before this is thrown
+     */
+    int run(TerraformInvocation invocation, OutputBuffer stdout, OutputBuffer stderr, Consumer<OutputLine> listener)
+            throws IOException, InterruptedException;
+
+    /**
+     * Runs the command, handing its stdout to the reader as it is produced instead of buffering lines;
+     * stderr is still appended to its buffer. Nothing is published.
+     *
+     * @return The exit code
+     * @throws IOException if the command could not run or the reader failed
+     * @throws InterruptedException if cancelled; the command is stopped before this is thrown
+     */
+    int run(TerraformInvocation invocation, OutputReader stdout, OutputBuffer stderr)
+            throws IOException, InterruptedException;
+
+    /**
+     * @return {@code true} when the backend does not run terraform, so nothing it produces describes the
+     * real work directory
+     */
+    default boolean simulated() {
+        return false;
+    }
+
+    /**
+     * @return Commands running now
+     */
+    int active();
+
+    /**
+     * @return Commands waiting for a free slot
+     */
+    default int queued() {
+        return 0;
+    }
+
+    /**
+     * @return Maximum number of commands running at once, or 0 when unbounded
+     */
+    default int capacity() {
+        return 0;
+    }
+}
@@ -0,0 +1,89 @@
+package com.cloudprovideragentic.fuctions.terraform.backend;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Picks the {@link ExecutionBackend} for each terraform phase. {@code terraform.backend.default} names the
+ * backend for every phase; {@code terraform.backend.init}, {@code .plan} and {@code .apply} override it for
+ * one phase, e.g. {@code apply} on {@code pool} while init and plan stay {@code local}.
+ * <p>
+ * Every backend is published as the gauges {@code terraform.backend.active} and {@code terraform.backend.queued}
+ * (tag {@code backend}); bounded backends also as {@code terraform.backend.utilization}, active over capacity.
+ */
+@Component
+public class ExecutionBackends {
+
+    public static final String ACTIVE_GAUGE = "terraform.backend.active";
+    public static final String QUEUED_GAUGE = "terraform.backend.queued";
+    public static final String UTILIZATION_GAUGE = "terraform.backend.utilization";
+
+    private final ExecutionBackend defaultBackend;
+    private final Map<String, ExecutionBackend> byPhase = new HashMap<>();
+
+    public ExecutionBackends(List<ExecutionBackend> backends,
+                             @Value("${terraform.backend.default}") String defaultBackend,
+                             @Value("${terraform.backend.init:}") String initBackend,
+                             @Value("${terraform.backend.plan:}") String planBackend,
+                             @Value("${terraform.backend.apply:}") String applyBackend,
+                             MeterRegistry registry) {
+        Map<String, ExecutionBackend> byName = new TreeMap<>();
+        backends.forEach(backend -> byName.put(backend.name(), backend));
+        this.defaultBackend = find(byName, defaultBackend);
+        route(byName, "init", initBackend);
+        route(byName, "plan", planBackend);
+        route(byName, "apply", applyBackend);
+
+        byName.values().forEach(backend -> register(backend, registry));
+    }
+
+    /**
+     * @param phase A terraform phase such as {@code init}, {@code plan} or {@code apply}
+     */
+    public ExecutionBackend forPhase(String phase) {
+        return byPhase.getOrDefault(phase, defaultBackend);
+    }
+
+    private void route(Map<String, ExecutionBackend> byName, String phase, String name) {
+        if (name != null && !name.isBlank()) {
+            byPhase.put(phase, find(byName, name));
+        }
+    }
+
+    private static ExecutionBackend find(Map<String, ExecutionBackend> byName, String name) {
+        ExecutionBackend backend = name == null ? null : byName.get(name.trim());
+        if (backend == null && name != null && name.trim().equals(SimulatedBackend.NAME)) {
+            throw new IllegalArgumentException("O backend " + SimulatedBackend.NAME
+                    + " só existe com terraform.backend.simulated.enabled=true.");
+        }
+        if (backend == null) {
+            throw new IllegalArgumentException("Backend de execução inválido: '" + name
+                    + "'. Use " + String.join(", ", byName.keySet()) + ".");
+        }
+        return backend;
+    }
+
+    private static void register(ExecutionBackend backend, MeterRegistry registry) {
+        Gauge.builder(ACTIVE_GAUGE, backend, ExecutionBackend::active)
+                .description("Terraform commands running on the backend")
+                .tag("backend", backend.name())
+                .register(registry);
+        Gauge.builder(QUEUED_GAUGE, backend, ExecutionBackend::queued)
+                .description("Terraform commands waiting for a backend slot")
+                .tag("backend", backend.name())
+                .register(registry);
+        if (backend.capacity() > 0) {
+            Gauge.builder(UTILIZATION_GAUGE, backend, b -> (double) b.active() / b.capacity())
+                    .description("Share of the backend slots in use")
+                    .tag("backend", backend.name())
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.cloudprovideragentic.fuctions.terraform.backend;
+
+import com.cloudprovideragentic.fuctions.terraform.process.OutputBuffer;
+import com.cloudprovideragentic.fuctions.terraform.process.OutputLine;
+import com.cloudprovideragentic.fuctions.terraform.process.OutputReader;
+import com.cloudprovideragentic.fuctions.terraform.process.ProcessOutputPump;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs terraform as a child process of the JVM, with no limit on how many run at once.
+ */
+@Component
+public class LocalProcessBackend implements ExecutionBackend {
+
+    public static final String NAME = "local";
+
+    private static final Duration PROCESS_STOP_GRACE = Duration.ofSeconds(10);
+
+    private final String binary;
+    private final AtomicInteger active = new AtomicInteger();
+
+    /**
+     * @param binary The terraform executable; {@code terraform} from the PATH when blank
+     */
+    public LocalProcessBackend(@Value("${terraform.binary:terraform}") String binary) {
+        this.binary = binary == null || binary.isBlank() ? "terraform" : binary.trim();
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public int run(TerraformInvocation invocation, OutputBuffer stdout, OutputBuffer stderr, Consumer<OutputLine> listener)
+            throws IOException, InterruptedException {
+        active.incrementAndGet();
+        try {
+            return launch(invocation, stdout, stderr, listener);
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    @Override
+    public int run(TerraformInvocation invocation, OutputReader stdout, OutputBuffer stderr)
+            throws IOException, InterruptedException {
+        active.incrementAndGet();
+        try {
+            return launch(invocation, stdout, stderr);
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    /**
+     * Runs the process without counting it as active here; {@link PooledProcessBackend} keeps its own count.
+     */
+    int launch(TerraformInvocation invocation, OutputBuffer stdout, OutputBuffer stderr, Consumer<OutputLine> listener)
+            throws IOException, InterruptedException {
+        return launch(invocation, process -> ProcessOutputPump.start(process, invocation.phase(), stdout, stderr, listener));
+    }
+
+    int launch(TerraformInvocation invocation, OutputReader stdout, OutputBuffer stderr)
+            throws IOException, InterruptedException {
+        return launch(invocation, process -> ProcessOutputPump.start(process, invocation.phase(), stdout, stderr));
+    }
+
+    private int launch(TerraformInvocation invocation, Function<Process, ProcessOutputPump> pumps)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(binary);
+        command.addAll(invocation.arguments());
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.directory(invocation.workDir().toFile());
+        pb.environment().putAll(invocation.environment());
+
+        Process process = pb.start();
+        ProcessOutputPump pump = pumps.apply(process);
+        try {
+            int exitCode = process.waitFor();
+            pump.await();
+            return exitCode;
+        } catch (InterruptedException e) {
+            destroyTree(process);
+            throw e;
+        }
+    }
+
+    @Override
+    public int active() {
+        return active.get();
+    }
+
+    /**
+     * Stops terraform and the provider plugins it started. Terraform gets a chance to exit cleanly
+     * (releasing the state lock) before the whole tree is killed.
+     */
+    private static void destroyTree(Process process) {
+        List<ProcessHandle> tree = process.descendants().toList();
+        tree.forEach(ProcessHandle::destroy);
+        process.destroy();
+        try {
+            if (process.waitFor(PROCESS_STOP_GRACE.toMillis(), TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        tree.forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+}
@@ -0,0 +1,90 @@
+package com.cloudprovideragentic.fuctions.terraform.backend;
+
+import com.cloudprovideragentic.fuctions.terraform.metrics.PipelineMetrics;
+import com.cloudprovideragentic.fuctions.terraform.process.OutputBuffer;
+import com.cloudprovideragentic.fuctions.terraform.process.OutputLine;
+import com.cloudprovideragentic.fuctions.terraform.process.OutputReader;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Runs terraform as a local process, but at most {@code terraform.backend.pool.size} at once; further
+ * commands wait in arrival order. Meant for the heavy phases (usually apply), so a burst of
+ * confirmations cannot start more terraform processes, and provider plugins, than the host can take.
+ * The wait is recorded as the {@code backend.pool.wait} phase.
+ */
+@Component
+public class PooledProcessBackend implements ExecutionBackend {
+
+    public static final String NAME = "pool";
+
+    private final LocalProcessBackend processes;
+    private final PipelineMetrics metrics;
+    private final int size;
+    private final Semaphore slots;
+
+    public PooledProcessBackend(LocalProcessBackend processes, PipelineMetrics metrics,
+                                @Value("${terraform.backend.pool.size}") int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("terraform.backend.pool.size deve ser maior que zero");
+        }
+        this.processes = processes;
+        this.metrics = metrics;
+        this.size = size;
+        this.slots = new Semaphore(size, true);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public int run(TerraformInvocation invocation, OutputBuffer stdout, OutputBuffer stderr, Consumer<OutputLine> listener)
+            throws IOException, InterruptedException {
+        acquire();
+        try {
+            return processes.launch(invocation, stdout, stderr, listener);
+        } finally {
+            slots.release();
+        }
+    }
+
+    @Override
+    public int run(TerraformInvocation invocation, OutputReader stdout, OutputBuffer stderr)
+            throws IOException, InterruptedException {
+        acquire();
+        try {
+            return processes.launch(invocation, stdout, stderr);
+        } finally {
+            slots.release();
+        }
+    }
+
+    @Override
+    public int active() {
+        return size - slots.availablePermits();
+    }
+
+    @Override
+    public int queued() {
+        return slots.getQueueLength();
+    }
+
+    @Override
+    public int capacity() {
+        return size;
+    }
+
+    private void acquire() throws InterruptedException {
+        try (PipelineMetrics.Phase wait = metrics.start("backend.pool.wait")) {
+            wait.outcome(PipelineMetrics.CANCELLED);
+            slots.acquire();
+            wait.outcome(PipelineMetrics.OK);
+        }
+    }
+}
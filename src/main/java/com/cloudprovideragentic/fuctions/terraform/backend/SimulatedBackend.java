@@ -0,0 +1,110 @@
+package com.cloudprovideragentic.fuctions.terraform.backend;
+
+import com.cloudprovideragentic.fuctions.terraform.process.OutputBuffer;
+import com.cloudprovideragentic.fuctions.terraform.process.OutputLine;
+import com.cloudprovideragentic.fuctions.terraform.process.OutputReader;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Pretends to run terraform: waits {@code terraform.backend.simulated.latency}, prints one line and succeeds.
+ * The plan file named by {@code -out=} is created empty so a saved plan can be applied later, and
+ * {@code show -json} prints a plan without changes. No process is started and no cloud resource is touched;
+ * for benchmarks and demos only, so the bean exists only with {@code terraform.backend.simulated.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(name = "terraform.backend.simulated.enabled", havingValue = "true")
+public class SimulatedBackend implements ExecutionBackend {
+
+    public static final String NAME = "simulated";
+
+    private static final String PLAN_OUT = "-out=";
+    private static final String EMPTY_PLAN_JSON = "{\"format_version\":\"1.2\",\"resource_changes\":[]}";
+
+    private final Duration latency;
+    private final AtomicInteger active = new AtomicInteger();
+
+    public SimulatedBackend(@Value("${terraform.backend.simulated.latency}") Duration latency) {
+        this.latency = latency;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean simulated() {
+        return true;
+    }
+
+    @Override
+    public int run(TerraformInvocation invocation, OutputBuffer stdout, OutputBuffer stderr, Consumer<OutputLine> listener)
+            throws IOException, InterruptedException {
+        active.incrementAndGet();
+        try {
+            String line = simulate(invocation);
+            stdout.append(line);
+            try {
+                listener.accept(new OutputLine(invocation.phase(), OutputLine.Source.STDOUT, line));
+            } catch (RuntimeException ignored) {
+                // Mesma regra do processo real: um assinante com falha não interrompe a execução
+            }
+            return 0;
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    @Override
+    public int run(TerraformInvocation invocation, OutputReader stdout, OutputBuffer stderr)
+            throws IOException, InterruptedException {
+        active.incrementAndGet();
+        try {
+            String line = simulate(invocation) + "\n";
+            stdout.read(new ByteArrayInputStream(line.getBytes(StandardCharsets.UTF_8)));
+            return 0;
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    @Override
+    public int active() {
+        return active.get();
+    }
+
+    /**
+     * Waits the configured latency and creates the plan file, if any.
+     *
+     * @return The line the command prints
+     */
+    private String simulate(TerraformInvocation invocation) throws IOException, InterruptedException {
+        if (latency.isPositive()) {
+            Thread.sleep(latency);
+        }
+        for (String argument : invocation.arguments()) {
+            if (argument.startsWith(PLAN_OUT)) {
+                Files.write(invocation.workDir().resolve(argument.substring(PLAN_OUT.length())), new byte[0]);
+            }
+        }
+
+        return switch (invocation.phase()) {
+            case "init" -> "Terraform has been successfully initialized! (simulado)";
+            case "plan" -> "No changes. Your infrastructure matches the configuration. (simulado)";
+            case "apply" -> "Apply complete! Resources: 0 added, 0 changed, 0 destroyed. (simulado)";
+            case "show" -> invocation.arguments().contains("-json") ? EMPTY_PLAN_JSON
+                    : "No changes. (simulado)";
+            default -> "terraform " + String.join(" ", invocation.arguments()) + " (simulado)";
+        };
+    }
+}
@@ -0,0 +1,21 @@
+package com.cloudprovideragentic.fuctions.terraform.backend;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One terraform command to run.
+ *
+ * @param workDir     Directory the command runs in
+ * @param phase       Pipeline phase, e.g. {@code init}, {@code plan}, {@code apply}
+ * @param arguments   Arguments after the executable, e.g. {@code plan -no-color -out=tfplan}
+ * @param environment Variables added to the process environment (plugin cache, AWS credentials)
+ */
+public record TerraformInvocation(Path workDir, String phase, List<String> arguments, Map<String, String> environment) {
+
+    public TerraformInvocation {
+        arguments = List.copyOf(arguments);
+        environment = Map.copyOf(environment);
+    }
+}
@@ -0,0 +1,216 @@
+package com.cloudprovideragentic.fuctions.terraform.cache;
+
+import com.cloudprovideragentic.fuctions.terraform.model.plans.TerraformPlanResult;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Size-bounded LRU cache of generated plans with TTL, keyed on the normalized user prompt plus a
+ * hash of the system prompt and model options.
+ * <p>
+ * Entries are persisted in an append-only JSON lines file, replayed on startup and compacted once
+ * the file holds twice as many records as the cache, so the cache survives restarts.
+ */
+@Component
+public class PlanCache {
+
+    private static final Logger log = LoggerFactory.getLogger(PlanCache.class);
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern PUNCTUATION = Pattern.compile("[,;:!?\"'()]+|\\.(?=\\s|$)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final int maxEntries;
+    private final Duration ttl;
+    private final Path file;
+    private final String modelOptions;
+    private final Clock clock;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private int persistedRecords;
+
+    @Autowired
+    public PlanCache(@Value("${terraform.plan-cache.max-entries}") int maxEntries,
+                     @Value("${terraform.plan-cache.ttl}") Duration ttl,
+                     @Value("${terraform.plan-cache.file}") String file,
+                     @Value("${terraform.plan-cache.model-options}") String modelOptions) {
+        this(maxEntries, ttl, Path.of(file), modelOptions, Clock.systemUTC());
+    }
+
+    PlanCache(int maxEntries, Duration ttl, Path file, String modelOptions, Clock clock) {
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.file = file;
+        this.modelOptions = modelOptions;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > PlanCache.this.maxEntries;
+            }
+        };
+        load();
+    }
+
+    /**
+     * Builds the cache key for a prompt. Accents, sentence punctuation, extra whitespace and the
+     * capitalization of the first letter are ignored; the case of the remaining words is kept
+     * because resource names such as SQS queues are case-sensitive.
+     */
+    public String key(String userPrompt, String systemPrompt) {
+        return sha256(normalize(userPrompt) + "\u0000" + sha256(systemPrompt) + "\u0000" + modelOptions);
+    }
+
+    public synchronized Optional<TerraformPlanResult> get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && isExpired(entry)) {
+            entries.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+        hits.incrementAndGet();
+        log.debug("Plano servido do cache ({})", stats());
+        return Optional.of(new TerraformPlanResult(entry.planDescription(), entry.terraformCode()));
+    }
+
+    public synchronized void put(String key, TerraformPlanResult result) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        Entry entry = new Entry(key, result.planDescription(), result.terraformCode(), clock.millis());
+        entries.put(key, entry);
+        append(entry);
+    }
+
+    public synchronized CacheStats stats() {
+        return new CacheStats(hits.get(), misses.get(), entries.size());
+    }
+
+    static String normalize(String prompt) {
+        String text = Normalizer.normalize(prompt, Normalizer.Form.NFD);
+        text = DIACRITICS.matcher(text).replaceAll("");
+        text = PUNCTUATION.matcher(text).replaceAll(" ");
+        text = WHITESPACE.matcher(text).replaceAll(" ").trim();
+        if (text.isEmpty()) {
+            return text;
+        }
+        return Character.toLowerCase(text.charAt(0)) + text.substring(1);
+    }
+
+    private boolean isExpired(Entry entry) {
+        return clock.millis() - entry.createdAt() > ttl.toMillis();
+    }
+
+    private void load() {
+        if (maxEntries <= 0 || !Files.exists(file)) {
+            return;
+        }
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            for (String line : lines) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    Entry entry = objectMapper.readValue(line, Entry.class);
+                    if (!isExpired(entry)) {
+                        entries.put(entry.key(), entry);
+                    }
+                } catch (JsonProcessingException e) {
+                    // Linha truncada por uma escrita interrompida: ignorar
+                    log.warn("Registro inválido ignorado no cache de planos {}", file);
+                }
+            }
+            persistedRecords = lines.size();
+            log.info("Cache de planos carregado: {} entradas de {}", entries.size(), file);
+        } catch (IOException e) {
+            log.warn("Falha ao carregar cache de planos {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void append(Entry entry) {
+        if (persistedRecords >= 2 * maxEntries) {
+            rewrite();
+            return;
+        }
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Files.writeString(file, objectMapper.writeValueAsString(entry) + "\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            persistedRecords++;
+        } catch (IOException e) {
+            log.warn("Falha ao persistir cache de planos {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Compacts the log to the live entries, replacing the file atomically.
+     */
+    private void rewrite() {
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, "plan-cache-", ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Entry entry : entries.values()) {
+                    writer.write(objectMapper.writeValueAsString(entry));
+                    writer.newLine();
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            persistedRecords = entries.size();
+        } catch (IOException e) {
+            log.warn("Falha ao compactar cache de planos {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    record Entry(String key, String planDescription, String terraformCode, long createdAt) {}
+
+    public record CacheStats(long hits, long misses, int size) {
+
+        @Override
+        public String toString() {
+            return "hits=" + hits + ", misses=" + misses + ", entradas=" + size;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.cloudprovideragentic.fuctions.terraform.job;
+
+import com.cloudprovideragentic.fuctions.terraform.model.terraform.TerraformResponse;
+import com.cloudprovideragentic.fuctions.terraform.session.PendingPlan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Confirmed plans of one stack that are applied together. Plans join while the batch is open; when its
+ * window ends the batch closes and all its plans run as one terraform plan/apply.
+ */
+final class ApplyBatch {
+
+    /**
+     * A job waiting in the batch for its own response.
+     */
+    record Member(ApplyBatch batch, TerraformJob job, PendingPlan plan, CompletableFuture<TerraformResponse> result) {
+    }
+
+    private final String stack;
+    private final List<Member> members = new ArrayList<>();
+    private boolean closed;
+
+    ApplyBatch(String stack) {
+        this.stack = stack;
+    }
+
+    String stack() {
+        return stack;
+    }
+
+    /**
+     * @return The new member, or empty if the batch is already closed
+     */
+    synchronized Optional<Member> join(TerraformJob job, PendingPlan plan) {
+        if (closed) {
+            return Optional.empty();
+        }
+        Member member = new Member(this, job, plan, new CompletableFuture<>());
+        members.add(member);
+        return Optional.of(member);
+    }
+
+    /**
+     * Removes a member whose job was cancelled.
+     *
+     * @return {@code false} if the batch had already closed, so the plan stays part of the running apply
+     */
+    synchronized boolean leave(Member member) {
+        if (closed) {
+            return false;
+        }
+        members.remove(member);
+        return true;
+    }
+
+    /**
+     * Closes the batch to new plans.
+     *
+     * @return The members, in the order they joined
+     */
+    synchronized List<Member> close() {
+        closed = true;
+        return List.copyOf(members);
+    }
+}
@@ -0,0 +1,233 @@
+package com.cloudprovideragentic.fuctions.terraform.job;
+
+import com.cloudprovideragentic.fuctions.terraform.TerraformExecutor;
+import com.cloudprovideragentic.fuctions.terraform.model.terraform.TerraformResponse;
+import com.cloudprovideragentic.fuctions.terraform.session.PendingPlan;
+import com.cloudprovideragentic.fuctions.terraform.speculative.PreparedPlan;
+import com.cloudprovideragentic.fuctions.terraform.speculative.SpeculativePlanner;
+import com.cloudprovideragentic.fuctions.terraform.stack.StackName;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs confirmed plans as background jobs, one virtual thread each, so the chat stays responsive
+ * during long applies and several jobs can run at once. Jobs are visible only to the session that
+ * started them and are forgotten {@code terraform.jobs.retention} after they finish.
+ * <p>
+ * With a {@code terraform.jobs.batch-window}, plans confirmed for the same stack within the window are
+ * applied together by {@link TerraformExecutor#executeBatch}, paying init and the state refresh once.
+ * Each job still gets its own response. Cancelling a job while its batch waits only removes its plan;
+ * once the batch is running, cancelling only ends the job's own wait, and the shared run goes on for the others.
+ */
+@Component
+public class JobManager {
+
+    private static final Logger log = LoggerFactory.getLogger(JobManager.class);
+
+    private final TerraformExecutor executor;
+    private final SpeculativePlanner speculativePlanner;
+    private final int tailLines;
+    private final Duration retention;
+    private final Duration batchWindow;
+    private final Clock clock;
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, TerraformJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, ApplyBatch> batches = new ConcurrentHashMap<>();
+
+    @Autowired
+    public JobManager(TerraformExecutor executor,
+                      SpeculativePlanner speculativePlanner,
+                      @Value("${terraform.jobs.tail-lines}") int tailLines,
+                      @Value("${terraform.jobs.retention}") Duration retention,
+                      @Value("${terraform.jobs.batch-window}") Duration batchWindow) {
+        this(executor, speculativePlanner, tailLines, retention, batchWindow, Clock.systemUTC());
+    }
+
+    JobManager(TerraformExecutor executor, SpeculativePlanner speculativePlanner, int tailLines, Duration retention,
+               Duration batchWindow, Clock clock) {
+        if (tailLines <= 0) {
+            throw new IllegalArgumentException("terraform.jobs.tail-lines deve ser maior que zero");
+        }
+        this.executor = executor;
+        this.speculativePlanner = speculativePlanner;
+        this.tailLines = tailLines;
+        this.retention = retention;
+        this.batchWindow = batchWindow;
+        this.clock = clock;
+    }
+
+    /**
+     * Starts executing the plan in the background.
+     *
+     * @return The job, already running
+     */
+    public TerraformJob submit(PendingPlan plan) {
+        purgeFinished();
+        TerraformJob job = new TerraformJob(UUID.randomUUID().toString().substring(0, 8), plan.sessionId(),
+                plan.stack(), clock.instant(), tailLines);
+        jobs.put(job.id(), job);
+        job.start(workers.submit(() -> run(job, plan)));
+        log.info("Job {} iniciado na stack {}", job.id(), job.stack());
+        return job;
+    }
+
+    private void run(TerraformJob job, PendingPlan plan) {
+        TerraformResponse response;
+        if (job.state() == JobState.CANCELADO) {
+            response = new TerraformResponse("CANCELADO", plan.terraformCode(), "Job cancelado antes de iniciar.");
+        } else {
+            try {
+                response = batchWindow.isPositive() ? executeInBatch(job, plan) : executeAlone(job, plan);
+            } catch (InterruptedException e) {
+                response = new TerraformResponse("CANCELADO", plan.terraformCode(), "Execucao interrompida.");
+            }
+        }
+        job.finish(response, clock.instant());
+        log.info("Job {} finalizado: {}", job.id(), job.state());
+    }
+
+    private TerraformResponse executeAlone(TerraformJob job, PendingPlan plan) throws InterruptedException {
+        Optional<PreparedPlan> prepared = Optional.empty();
+        try {
+            // Se o plano especulativo ainda está rodando, esperar por ele é mais rápido que recomeçar
+            prepared = speculativePlanner.claim(plan);
+            return executor.execute(plan.stack(), plan.terraformCode(), job::append, prepared.orElse(null));
+        } catch (RuntimeException e) {
+            return new TerraformResponse("ERRO", plan.terraformCode(), e.getMessage());
+        } finally {
+            prepared.ifPresent(speculativePlanner::release);
+        }
+    }
+
+    /**
+     * Joins the open batch of the plan's stack, opening one if needed, and waits for the plan's response.
+     */
+    private TerraformResponse executeInBatch(TerraformJob job, PendingPlan plan) throws InterruptedException {
+        String stack;
+        try {
+            stack = StackName.of(plan.stack());
+        } catch (IllegalArgumentException e) {
+            return executeAlone(job, plan);
+        }
+
+        ApplyBatch.Member member = null;
+        while (member == null) {
+            ApplyBatch batch = batches.computeIfAbsent(stack, this::openBatch);
+            member = batch.join(job, plan).orElse(null);
+            if (member == null) {
+                // O lote fechou entre a busca e a entrada: abrir o próximo
+                batches.remove(stack, batch);
+            }
+        }
+        try {
+            return member.result().get();
+        } catch (InterruptedException e) {
+            if (member.batch().leave(member)) {
+                throw e;
+            }
+            // O lote já roda com planos de outras sessões: interromper o apply deixaria todos pela metade
+            return new TerraformResponse("CANCELADO", plan.terraformCode(),
+                    "Cancelado só para esta sessão: o lote em andamento com outros planos não foi interrompido e pode "
+                    + "aplicar este código. Confira o estado da stack depois que ele terminar.");
+        } catch (ExecutionException e) {
+            return new TerraformResponse("ERRO", plan.terraformCode(), e.getCause().getMessage());
+        }
+    }
+
+    private ApplyBatch openBatch(String stack) {
+        ApplyBatch batch = new ApplyBatch(stack);
+        workers.submit(() -> runBatch(batch));
+        return batch;
+    }
+
+    private void runBatch(ApplyBatch batch) {
+        List<ApplyBatch.Member> members = List.of();
+        try {
+            Thread.sleep(batchWindow);
+            members = batch.close();
+            batches.remove(batch.stack(), batch);
+            if (members.size() == 1) {
+                ApplyBatch.Member member = members.get(0);
+                member.result().complete(executeAlone(member.job(), member.plan()));
+                return;
+            }
+            if (members.isEmpty()) {
+                return;
+            }
+
+            // Cada plano do lote passaria pelo próprio plan especulativo; o lote planeja tudo de uma vez
+            members.forEach(member -> speculativePlanner.discard(member.plan()));
+            List<ApplyBatch.Member> batchMembers = members;
+            List<TerraformResponse> responses = executor.executeBatch(batch.stack(),
+                    members.stream().map(member -> member.plan().terraformCode()).toList(),
+                    line -> batchMembers.forEach(member -> member.job().append(line)));
+            for (int i = 0; i < members.size(); i++) {
+                members.get(i).result().complete(responses.get(i));
+            }
+            log.info("Lote de {} planos aplicado na stack {}", members.size(), batch.stack());
+        } catch (InterruptedException e) {
+            // Só o desligamento interrompe o lote; se ele já estava rodando, parte do código pode ter sido aplicada
+            String output = members.isEmpty() ? "Lote cancelado antes de iniciar."
+                    : "Lote interrompido durante a execução: parte dos recursos pode já estar no estado da stack.";
+            members = batch.close();
+            batches.remove(batch.stack(), batch);
+            members.forEach(member -> member.result().complete(new TerraformResponse("CANCELADO",
+                    member.plan().terraformCode(), output)));
+        } catch (RuntimeException e) {
+            members.forEach(member -> member.result().completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Finds a job of the session. A blank ID selects the most recently started job of the session.
+     */
+    public Optional<TerraformJob> find(String sessionId, String jobId) {
+        if (jobId == null || jobId.isBlank()) {
+            return jobs.values().stream()
+                    .filter(job -> job.sessionId().equals(sessionId))
+                    .max(Comparator.comparing(TerraformJob::startedAt));
+        }
+        return Optional.ofNullable(jobs.get(jobId.trim())).filter(job -> job.sessionId().equals(sessionId));
+    }
+
+    /**
+     * Cancels a running job, destroying its terraform process tree.
+     *
+     * @return {@code false} if the job had already finished
+     */
+    public boolean cancel(TerraformJob job) {
+        boolean cancelled = job.cancel();
+        if (cancelled) {
+            log.info("Job {} cancelado", job.id());
+        }
+        return cancelled;
+    }
+
+    private void purgeFinished() {
+        Instant limit = clock.instant().minus(retention);
+        jobs.values().removeIf(job -> job.finishedAt() != null && job.finishedAt().isBefore(limit));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        jobs.values().forEach(TerraformJob::cancel);
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,13 @@
+package com.cloudprovideragentic.fuctions.terraform.job;
+
+public enum JobState {
+
+    EM_EXECUCAO,
+    SUCESSO,
+    ERRO,
+    CANCELADO;
+
+    public boolean finished() {
+        return this != EM_EXECUCAO;
+    }
+}
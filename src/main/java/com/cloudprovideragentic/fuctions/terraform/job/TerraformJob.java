@@ -0,0 +1,130 @@
+package com.cloudprovideragentic.fuctions.terraform.job;
+
+import com.cloudprovideragentic.fuctions.terraform.model.terraform.TerraformResponse;
+import com.cloudprovideragentic.fuctions.terraform.process.OutputLine;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A terraform init/plan/apply running in the background, with the last lines of its output.
+ */
+public final class TerraformJob {
+
+    private final String id;
+    private final String sessionId;
+    private final String stack;
+    private final Instant startedAt;
+    private final int tailLines;
+    private final AtomicReference<JobState> state = new AtomicReference<>(JobState.EM_EXECUCAO);
+    private final Deque<String> tail = new ArrayDeque<>();
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private volatile TerraformResponse result;
+    private volatile Instant finishedAt;
+    private volatile Future<?> future;
+
+    TerraformJob(String id, String sessionId, String stack, Instant startedAt, int tailLines) {
+        this.id = id;
+        this.sessionId = sessionId;
+        this.stack = stack;
+        this.startedAt = startedAt;
+        this.tailLines = tailLines;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public String sessionId() {
+        return sessionId;
+    }
+
+    public String stack() {
+        return stack;
+    }
+
+    public Instant startedAt() {
+        return startedAt;
+    }
+
+    public JobState state() {
+        return state.get();
+    }
+
+    /**
+     * @return The response of the execution, or {@code null} while it is running
+     */
+    public TerraformResponse result() {
+        return result;
+    }
+
+    public Instant finishedAt() {
+        return finishedAt;
+    }
+
+    /**
+     * @return The last {@code lines} output lines, oldest first
+     */
+    public synchronized List<String> tail(int lines) {
+        List<String> all = new ArrayList<>(tail);
+        return all.subList(Math.max(0, all.size() - lines), all.size());
+    }
+
+    /**
+     * Waits for the job to finish.
+     *
+     * @return {@code true} if the job finished within the timeout
+     */
+    public boolean await(Duration timeout) throws InterruptedException {
+        return done.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void append(OutputLine line) {
+        if (tail.size() == tailLines) {
+            tail.removeFirst();
+        }
+        tail.addLast("[" + line.phase() + "] " + line.text());
+    }
+
+    void start(Future<?> future) {
+        this.future = future;
+    }
+
+    void finish(TerraformResponse response, Instant now) {
+        // Um job cancelado continua cancelado, mesmo que o terraform tenha respondido depois
+        JobState finalState = switch (response.status()) {
+            case "SUCESSO" -> JobState.SUCESSO;
+            case "CANCELADO" -> JobState.CANCELADO;
+            default -> JobState.ERRO;
+        };
+        state.compareAndSet(JobState.EM_EXECUCAO, finalState);
+        result = response;
+        finishedAt = now;
+        done.countDown();
+    }
+
+    /**
+     * Marks the job as cancelled and interrupts it, which destroys the terraform process tree.
+     *
+     * @return {@code false} if the job had already finished
+     */
+    boolean cancel() {
+        if (!state.compareAndSet(JobState.EM_EXECUCAO, JobState.CANCELADO)) {
+            return false;
+        }
+        Future<?> running = future;
+        if (running != null) {
+            running.cancel(true);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,77 @@
+package com.cloudprovideragentic.fuctions.terraform.metrics;
+
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes all meters in Prometheus text format to a local file, periodically and at shutdown, so a
+ * session can be inspected without a metrics backend. Disabled when the file is blank.
+ */
+@Component
+public class MetricsDump {
+
+    private static final Logger log = LoggerFactory.getLogger(MetricsDump.class);
+
+    private final PrometheusMeterRegistry registry;
+    private final Path file;
+    private final ScheduledExecutorService scheduler;
+
+    public MetricsDump(PrometheusMeterRegistry registry,
+                       @Value("${agent.metrics.dump-file}") String file,
+                       @Value("${agent.metrics.dump-interval}") Duration interval) {
+        this.registry = registry;
+        this.file = file.isBlank() ? null : Path.of(file);
+        if (this.file == null || interval.isZero() || interval.isNegative()) {
+            this.scheduler = null;
+            return;
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("metrics-dump").factory());
+        scheduler.scheduleAtFixedRate(this::dumpQuietly, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes the current values, replacing the previous dump atomically.
+     */
+    public void dump() throws IOException {
+        if (file == null) {
+            return;
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        Files.writeString(tmp, registry.scrape());
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void dumpQuietly() {
+        try {
+            dump();
+        } catch (IOException e) {
+            log.warn("Falha ao gravar métricas em {}: {}", file, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        dumpQuietly();
+        if (file != null) {
+            log.info("Métricas gravadas em {}", file);
+        }
+    }
+}
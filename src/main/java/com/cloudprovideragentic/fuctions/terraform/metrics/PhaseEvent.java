@@ -0,0 +1,25 @@
+package com.cloudprovideragentic.fuctions.terraform.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event spanning one phase of the plan/execute pipeline; mirrors the {@code agent.phase} timer.
+ */
+@Name("com.cloudprovideragentic.Phase")
+@Label("Pipeline Phase")
+@Category({"Cloud Provider Agentic"})
+@Description("A Bedrock call, terraform process, file write or tool invocation")
+@StackTrace(false)
+class PhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Outcome")
+    String outcome;
+}
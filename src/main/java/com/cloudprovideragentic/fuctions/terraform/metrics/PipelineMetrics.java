@@ -0,0 +1,150 @@
+package com.cloudprovideragentic.fuctions.terraform.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Latency and throughput of each phase of the plan/execute pipeline.
+ * <p>
+ * Every phase is recorded twice: as the Micrometer timer {@code agent.phase} (tags {@code phase} and
+ * {@code outcome}), whose count gives the throughput, and as a {@link PhaseEvent} JFR event for offline
+ * profiling. Token usage reported by the model goes to the
+ * {@code agent.tokens} counter and to {@link TokenUsageEvent}.
+ */
+@Component
+public class PipelineMetrics {
+
+    public static final String PHASE_TIMER = "agent.phase";
+    public static final String TOKENS_COUNTER = "agent.tokens";
+    public static final String TERRAFORM_RUN_TIMER = "agent.terraform.run";
+    public static final String MODEL_CALLS_COUNTER = "agent.model.calls";
+
+    public static final String OK = "ok";
+    public static final String ERROR = "error";
+    public static final String CANCELLED = "cancelled";
+    public static final String FALLBACK = "fallback";
+
+    private final MeterRegistry registry;
+
+    public PipelineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Starts timing a phase. The phase ends when the returned span is closed; its outcome is
+     * {@link #ERROR} unless set otherwise, so a phase left by an exception counts as failed.
+     *
+     * @param phase Phase name, e.g. {@code bedrock.generate}, {@code terraform.apply}, {@code tool.planejarInfra}
+     */
+    public Phase start(String phase) {
+        return new Phase(phase);
+    }
+
+    /**
+     * Records the tokens the model reported for one call. Missing counts are ignored.
+     */
+    public void tokens(String operation, Integer promptTokens, Integer completionTokens) {
+        int prompt = promptTokens != null ? promptTokens : 0;
+        int completion = completionTokens != null ? completionTokens : 0;
+        if (prompt == 0 && completion == 0) {
+            return;
+        }
+        counter(operation, "prompt").increment(prompt);
+        counter(operation, "completion").increment(completion);
+
+        TokenUsageEvent event = new TokenUsageEvent();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.promptTokens = prompt;
+            event.completionTokens = completion;
+            event.commit();
+        }
+    }
+
+    /**
+     * Records a terraform plan or apply under the refresh and parallelism it ran with, so the durations of
+     * the different choices can be compared.
+     *
+     * @param refresh     {@code full}, {@code skipped}, {@code targeted}, or {@code none} for an apply
+     * @param throttled   Whether AWS throttled the run
+     */
+    public void terraformRun(String phase, String refresh, int parallelism, boolean throttled, Duration elapsed) {
+        Timer.builder(TERRAFORM_RUN_TIMER)
+                .description("Duration of a terraform plan or apply by refresh and parallelism")
+                .tag("phase", phase)
+                .tag("refresh", refresh)
+                .tag("parallelism", String.valueOf(parallelism))
+                .tag("throttled", String.valueOf(throttled))
+                .register(registry)
+                .record(elapsed);
+    }
+
+    /**
+     * Counts what the resilience layer did around a model call.
+     *
+     * @param event {@code retry}, {@code hedge}, {@code hedge.won}, {@code timeout}, {@code throttled} or
+     *              {@code rejected} (open circuit)
+     */
+    public void modelCall(String event) {
+        Counter.builder(MODEL_CALLS_COUNTER)
+                .description("Retries, hedged requests, timeouts and rejections of model calls")
+                .tag("event", event)
+                .register(registry)
+                .increment();
+    }
+
+    private Counter counter(String operation, String type) {
+        return Counter.builder(TOKENS_COUNTER)
+                .description("Tokens reported by the model")
+                .tag("operation", operation)
+                .tag("type", type)
+                .register(registry);
+    }
+
+    /**
+     * A running phase; close it to record its duration.
+     */
+    public final class Phase implements AutoCloseable {
+
+        private final String name;
+        private final Timer.Sample sample;
+        private final PhaseEvent event = new PhaseEvent();
+        private String outcome = ERROR;
+
+        private Phase(String name) {
+            this.name = name;
+            this.sample = Timer.start(registry);
+            event.begin();
+        }
+
+        public Phase outcome(String outcome) {
+            this.outcome = outcome;
+            return this;
+        }
+
+        public Phase succeeded(boolean succeeded) {
+            return outcome(succeeded ? OK : ERROR);
+        }
+
+        @Override
+        public void close() {
+            sample.stop(Timer.builder(PHASE_TIMER)
+                    .description("Duration of a plan/execute pipeline phase")
+                    .tag("phase", name)
+                    .tag("outcome", outcome)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(registry));
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = name;
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+}
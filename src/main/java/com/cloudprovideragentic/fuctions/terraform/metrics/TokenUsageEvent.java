@@ -0,0 +1,26 @@
+package com.cloudprovideragentic.fuctions.terraform.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event with the tokens reported by the model for one call; mirrors the {@code agent.tokens} counter.
+ */
+@Name("com.cloudprovideragentic.TokenUsage")
+@Label("Model Token Usage")
+@Category({"Cloud Provider Agentic"})
+@StackTrace(false)
+class TokenUsageEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Prompt Tokens")
+    int promptTokens;
+
+    @Label("Completion Tokens")
+    int completionTokens;
+}
@@ -0,0 +1,3 @@
+package com.cloudprovideragentic.fuctions.terraform.model.jobs;
+
+public record JobLogRequest(String jobId, Integer lines) {}
@@ -0,0 +1,3 @@
+package com.cloudprovideragentic.fuctions.terraform.model.jobs;
+
+public record JobResponse(String status, String jobId, String stack, String output) {}
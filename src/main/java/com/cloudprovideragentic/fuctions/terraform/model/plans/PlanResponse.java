@@ -1,3 +1,4 @@
 package com.cloudprovideragentic.fuctions.terraform.model.plans;
 
-public record PlanResponse(String status, String planDescription, String terraformCode) {}
+public record PlanResponse(String status, String planDescription, String terraformCode, String planId,
+                           String stack) {}
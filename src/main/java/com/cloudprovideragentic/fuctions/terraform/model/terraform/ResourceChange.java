@@ -0,0 +1,23 @@
+package com.cloudprovideragentic.fuctions.terraform.model.terraform;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One entry of a plan's {@code resource_changes}, reduced to what a reader needs.
+ *
+ * @param address    The resource address, e.g. {@code aws_s3_bucket.logs} or {@code module.vpc.aws_subnet.a[0]}
+ * @param action     {@code create}, {@code update}, {@code replace}, {@code delete} or {@code read}
+ * @param attributes Identifying attributes with their planned values ({@code bucket}, {@code name}, ...),
+ *                   never sensitive ones
+ * @param changed    For updates and replacements, the top-level attributes that change or force the replacement
+ */
+public record ResourceChange(String address, String action, Map<String, String> attributes, List<String> changed) {
+
+    public ResourceChange {
+        attributes = Collections.unmodifiableMap(new LinkedHashMap<>(attributes));
+        changed = List.copyOf(changed);
+    }
+}
@@ -1,3 +1,3 @@
 package com.cloudprovideragentic.fuctions.terraform.model.terraform;
 
-public record TerraformRequest(String userPrompt) {}
+public record TerraformRequest(String userPrompt, String stack) {}
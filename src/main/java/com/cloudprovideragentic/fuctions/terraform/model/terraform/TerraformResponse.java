@@ -1,3 +1,18 @@
 package com.cloudprovideragentic.fuctions.terraform.model.terraform;
 
-public record TerraformResponse(String status, String tfCode, String output) {}
+import java.util.List;
+
+/**
+ * @param output  A compact summary of the applied changes, or terraform's output when there is no summary
+ * @param changes The resource changes of the applied plan; empty when it failed or could not be read
+ */
+public record TerraformResponse(String status, String tfCode, String output, List<ResourceChange> changes) {
+
+    public TerraformResponse {
+        changes = changes == null ? List.of() : List.copyOf(changes);
+    }
+
+    public TerraformResponse(String status, String tfCode, String output) {
+        this(status, tfCode, output, List.of());
+    }
+}
@@ -0,0 +1,30 @@
+package com.cloudprovideragentic.fuctions.terraform.policy;
+
+import java.util.Locale;
+
+/**
+ * How {@code terraform plan} refreshes the state before comparing it with the configuration.
+ */
+public enum RefreshMode {
+
+    /** Refresh every resource in the state, terraform's default. */
+    FULL,
+
+    /** Skip the refresh when the same state was fully refreshed less than {@code terraform.refresh.max-age} ago. */
+    RECENT,
+
+    /** Plan, and therefore refresh, only the resources and modules of the code being applied. */
+    TARGETED;
+
+    public static RefreshMode of(String value) {
+        if (value == null || value.isBlank()) {
+            return FULL;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Modo de refresh inválido: '" + value
+                    + "'. Use full, recent ou targeted.");
+        }
+    }
+}
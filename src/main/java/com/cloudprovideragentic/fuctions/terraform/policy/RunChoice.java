@@ -0,0 +1,20 @@
+package com.cloudprovideragentic.fuctions.terraform.policy;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The refresh and parallelism chosen for one terraform plan or apply.
+ *
+ * @param stateDir    Directory whose state the run reads; refresh and parallelism are tracked per state
+ * @param phase       {@code plan} or {@code apply}
+ * @param refresh     {@code full}, {@code skipped} or {@code targeted}; {@code none} for an apply
+ * @param parallelism Value of {@code -parallelism}
+ * @param arguments   Extra terraform arguments implementing the choice
+ */
+public record RunChoice(Path stateDir, String phase, String refresh, int parallelism, List<String> arguments) {
+
+    public RunChoice {
+        arguments = List.copyOf(arguments);
+    }
+}
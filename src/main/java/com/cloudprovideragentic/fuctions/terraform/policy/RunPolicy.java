@@ -0,0 +1,194 @@
+package com.cloudprovideragentic.fuctions.terraform.policy;
+
+import com.cloudprovideragentic.fuctions.terraform.metrics.PipelineMetrics;
+import com.cloudprovideragentic.fuctions.terraform.process.ProcessResult;
+import com.cloudprovideragentic.fuctions.terraform.utils.HclScanner;
+import com.cloudprovideragentic.fuctions.terraform.utils.TerraformBlock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Chooses how each terraform plan refreshes the state and how many operations plan and apply run at once.
+ * <p>
+ * Refresh follows {@code terraform.refresh.mode} (see {@link RefreshMode}). Parallelism is tracked per state:
+ * it starts at {@code terraform.parallelism.max}, or at half of it when the configuration has more than
+ * {@code terraform.parallelism.large-stack} resources, is halved (down to {@code terraform.parallelism.min})
+ * after a run that AWS throttled and grows by one after every clean run. Each run is recorded with its choice
+ * as the {@code agent.terraform.run} timer.
+ */
+@Component
+public class RunPolicy {
+
+    private static final Logger log = LoggerFactory.getLogger(RunPolicy.class);
+
+    private static final String TF_FILENAME = "main.tf";
+    private static final Set<String> TARGETABLE_BLOCKS = Set.of("resource", "module");
+
+    // Erros de limite de taxa das APIs da AWS, como aparecem na saída do provider
+    static final Pattern THROTTLING = Pattern.compile(
+            "Throttling|ThrottledException|RequestLimitExceeded|Rate exceeded|TooManyRequests|SlowDown|RequestThrottled");
+
+    private final RefreshMode mode;
+    private final Duration maxAge;
+    private final int maxParallelism;
+    private final int minParallelism;
+    private final int largeStack;
+    private final PipelineMetrics metrics;
+    private final Clock clock;
+    private final Map<Path, Instant> refreshedAt = new ConcurrentHashMap<>();
+    private final Map<Path, Integer> parallelism = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RunPolicy(@Value("${terraform.refresh.mode}") String mode,
+                     @Value("${terraform.refresh.max-age}") Duration maxAge,
+                     @Value("${terraform.parallelism.max}") int maxParallelism,
+                     @Value("${terraform.parallelism.min}") int minParallelism,
+                     @Value("${terraform.parallelism.large-stack}") int largeStack,
+                     PipelineMetrics metrics) {
+        this(RefreshMode.of(mode), maxAge, maxParallelism, minParallelism, largeStack, metrics, Clock.systemUTC());
+    }
+
+    RunPolicy(RefreshMode mode, Duration maxAge, int maxParallelism, int minParallelism, int largeStack,
+              PipelineMetrics metrics, Clock clock) {
+        if (minParallelism <= 0 || maxParallelism < minParallelism) {
+            throw new IllegalArgumentException("terraform.parallelism.min deve ser maior que zero e até terraform.parallelism.max");
+        }
+        this.mode = mode;
+        this.maxAge = maxAge;
+        this.maxParallelism = maxParallelism;
+        this.minParallelism = minParallelism;
+        this.largeStack = largeStack;
+        this.metrics = metrics;
+        this.clock = clock;
+    }
+
+    public RunChoice plan(Path workDir, List<String> tfCodes) {
+        return plan(workDir, workDir, tfCodes);
+    }
+
+    /**
+     * @param stateDir The directory whose state is planned; a speculative copy passes its stack directory
+     * @param workDir  The directory terraform runs in, whose configuration contains the targets
+     * @param tfCodes  The code being applied, for targeting
+     */
+    public RunChoice plan(Path stateDir, Path workDir, List<String> tfCodes) {
+        Path key = key(stateDir);
+        int level = parallelism(key);
+        List<String> arguments = new ArrayList<>(List.of("-parallelism=" + level));
+        String refresh = "full";
+        switch (mode) {
+            case RECENT -> {
+                Instant last = refreshedAt.get(key);
+                if (last != null && last.plus(maxAge).isAfter(clock.instant())) {
+                    arguments.add("-refresh=false");
+                    refresh = "skipped";
+                }
+            }
+            case TARGETED -> {
+                Set<String> targets = targets(tfCodes, workDir);
+                if (!targets.isEmpty()) {
+                    targets.forEach(target -> arguments.add("-target=" + target));
+                    refresh = "targeted";
+                }
+            }
+            case FULL -> {
+            }
+        }
+        return new RunChoice(key, "plan", refresh, level, arguments);
+    }
+
+    /**
+     * @param stateDir The directory whose state is applied
+     */
+    public RunChoice apply(Path stateDir) {
+        Path key = key(stateDir);
+        int level = parallelism(key);
+        return new RunChoice(key, "apply", "none", level, List.of("-parallelism=" + level));
+    }
+
+    /**
+     * Learns from a finished run: throttling halves the parallelism of its state, a clean run raises it by
+     * one, and a successful full refresh starts the {@code terraform.refresh.max-age} period.
+     */
+    public void record(RunChoice choice, ProcessResult result, Duration elapsed) {
+        boolean throttled = throttled(result);
+        if (throttled) {
+            parallelism.put(choice.stateDir(), Math.max(minParallelism, choice.parallelism() / 2));
+        } else if (result.succeeded()) {
+            parallelism.computeIfPresent(choice.stateDir(), (dir, level) -> Math.min(maxParallelism, level + 1));
+        }
+        if (result.succeeded() && "plan".equals(choice.phase()) && "full".equals(choice.refresh())) {
+            refreshedAt.put(choice.stateDir(), clock.instant());
+        }
+
+        metrics.terraformRun(choice.phase(), choice.refresh(), choice.parallelism(), throttled, elapsed);
+        log.info("terraform {} em {}: refresh={}, parallelism={}, {} ms{}", choice.phase(), choice.stateDir(),
+                choice.refresh(), choice.parallelism(), elapsed.toMillis(), throttled ? ", limitado pela AWS" : "");
+    }
+
+    static boolean throttled(ProcessResult result) {
+        return THROTTLING.matcher(result.stderr().text()).find() || THROTTLING.matcher(result.stdout().text()).find();
+    }
+
+    private int parallelism(Path key) {
+        return parallelism.computeIfAbsent(key, dir -> resourceCount(dir) > largeStack
+                ? Math.max(minParallelism, maxParallelism / 2)
+                : maxParallelism);
+    }
+
+    /**
+     * @return The resources and modules of the codes that the configuration in workDir declares; with state
+     * sharding a shard only holds part of them
+     */
+    private static Set<String> targets(List<String> tfCodes, Path workDir) {
+        Set<String> declared = configuration(workDir).stream().map(TerraformBlock::address).collect(Collectors.toSet());
+        Set<String> targets = new LinkedHashSet<>();
+        for (String tfCode : tfCodes) {
+            for (TerraformBlock block : HclScanner.scan(tfCode)) {
+                if (TARGETABLE_BLOCKS.contains(block.type()) && declared.contains(block.address())) {
+                    targets.add(block.address());
+                }
+            }
+        }
+        return targets;
+    }
+
+    private static int resourceCount(Path dir) {
+        return (int) configuration(dir).stream().filter(TerraformBlock::isResource).count();
+    }
+
+    private static List<TerraformBlock> configuration(Path dir) {
+        Path tfFile = dir.resolve(TF_FILENAME);
+        if (!Files.exists(tfFile)) {
+            return List.of();
+        }
+        try {
+            return HclScanner.scan(Files.readString(tfFile));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Path key(Path stateDir) {
+        return stateDir.toAbsolutePath().normalize();
+    }
+}
@@ -0,0 +1,166 @@
+package com.cloudprovideragentic.fuctions.terraform.process;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Bounded ring buffer of output lines. Only the most recent {@code capacity} lines stay
+ * on the heap; older lines are spilled to a temporary file, which is deleted when the buffer
+ * is closed. Appending never fails: if the spill file cannot be written, older lines are
+ * dropped and counted instead, so the process output keeps being drained.
+ */
+public class OutputBuffer implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(OutputBuffer.class);
+
+    private final String[] lines;
+    private final Path spillDir;
+    private int head;
+    private int size;
+    private long spilledLines;
+    private long droppedLines;
+    private Path spillFile;
+    private BufferedWriter spillWriter;
+    private boolean finished;
+    private String spillError;
+
+    /**
+     * @param capacity Maximum number of lines kept in memory
+     * @param spillDir Directory where evicted lines are written (created lazily)
+     */
+    public OutputBuffer(int capacity, Path spillDir) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity deve ser maior que zero");
+        }
+        this.lines = new String[capacity];
+        this.spillDir = spillDir;
+    }
+
+    public synchronized void append(String line) {
+        if (size == lines.length) {
+            spill(lines[head]);
+            lines[head] = line;
+            head = (head + 1) % lines.length;
+        } else {
+            lines[(head + size) % lines.length] = line;
+            size++;
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    public synchronized long spilledLines() {
+        return spilledLines;
+    }
+
+    /**
+     * @return Evicted lines that could not be written to the spill file and are lost
+     */
+    public synchronized long droppedLines() {
+        return droppedLines;
+    }
+
+    /**
+     * @return The spill file, or {@code null} if no line was ever written to it
+     */
+    public synchronized Path spillFile() {
+        return spillFile;
+    }
+
+    /**
+     * Returns the lines kept in memory. When older lines were evicted, the text starts with
+     * a marker counting them, and the dropped ones with the reason.
+     */
+    public synchronized String text() {
+        StringBuilder sb = new StringBuilder();
+        if (spilledLines + droppedLines > 0) {
+            sb.append("[... ").append(spilledLines + droppedLines).append(" linhas anteriores omitidas");
+            if (droppedLines > 0) {
+                sb.append("; ").append(droppedLines).append(" perdidas por falha ao gravar o log: ").append(spillError);
+            }
+            sb.append("]\n");
+        }
+        for (int i = 0; i < size; i++) {
+            sb.append(lines[(head + i) % lines.length]).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Flushes and closes the spill file once the stream has ended, so it can be read; the buffer
+     * keeps its lines. Lines evicted after this are dropped.
+     */
+    public synchronized void finish() {
+        finished = true;
+        if (spillWriter != null) {
+            try {
+                spillWriter.close();
+            } catch (IOException e) {
+                // O que estava no buffer do writer se perdeu: o arquivo inteiro deixa de ser confiável
+                spillFailed(e);
+                droppedLines += spilledLines;
+                spilledLines = 0;
+            }
+            spillWriter = null;
+        }
+    }
+
+    /**
+     * Finishes the buffer and deletes the spill file.
+     */
+    @Override
+    public synchronized void close() {
+        finish();
+        if (spillFile != null) {
+            try {
+                Files.deleteIfExists(spillFile);
+            } catch (IOException e) {
+                log.warn("Falha ao remover {}: {}", spillFile, e.getMessage());
+            }
+        }
+    }
+
+    private void spill(String line) {
+        if (spillError != null || finished) {
+            droppedLines++;
+            return;
+        }
+        try {
+            if (spillWriter == null) {
+                Files.createDirectories(spillDir);
+                spillFile = Files.createTempFile(spillDir, "terraform-", ".log");
+                spillWriter = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8);
+            }
+            spillWriter.write(line);
+            spillWriter.newLine();
+            spilledLines++;
+        } catch (IOException e) {
+            spillFailed(e);
+            droppedLines++;
+        }
+    }
+
+    private void spillFailed(IOException e) {
+        if (spillError == null) {
+            spillError = e.getMessage();
+            log.warn("Falha ao gravar saída do terraform em {}; linhas antigas serão descartadas: {}",
+                    spillDir, e.getMessage());
+        }
+        if (spillWriter != null) {
+            try {
+                spillWriter.close();
+            } catch (IOException ignored) {
+                // O arquivo já está com falha; as linhas seguintes são só contadas
+            }
+            spillWriter = null;
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.cloudprovideragentic.fuctions.terraform.process;
+
+public record OutputLine(String phase, Source source, String text) {
+
+    public enum Source { STDOUT, STDERR }
+}
@@ -0,0 +1,14 @@
+package com.cloudprovideragentic.fuctions.terraform.process;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Consumes the stdout of a command as a byte stream while it runs, for output that is parsed rather than
+ * shown, such as {@code terraform show -json}. Whatever it leaves unread is drained and discarded.
+ */
+@FunctionalInterface
+public interface OutputReader {
+
+    void read(InputStream output) throws IOException;
+}
@@ -0,0 +1,103 @@
+package com.cloudprovideragentic.fuctions.terraform.process;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Drains stdout and stderr of a process concurrently on virtual threads, so the child never
+ * blocks on a full pipe. Every line is appended to its buffer and published to the listener
+ * while the process is still running. Alternatively stdout goes, unbuffered, to an {@link OutputReader}.
+ */
+public class ProcessOutputPump {
+
+    private final Thread stdoutThread;
+    private final Thread stderrThread;
+    private volatile IOException failure;
+
+    private ProcessOutputPump(Process process, String phase, OutputBuffer stdout, OutputBuffer stderr,
+                              Consumer<OutputLine> listener) {
+        this.stdoutThread = pump(process.getInputStream(), phase, OutputLine.Source.STDOUT, stdout, listener);
+        this.stderrThread = pump(process.getErrorStream(), phase, OutputLine.Source.STDERR, stderr, listener);
+    }
+
+    private ProcessOutputPump(Process process, String phase, OutputReader stdout, OutputBuffer stderr) {
+        this.stdoutThread = read(process.getInputStream(), phase, stdout);
+        this.stderrThread = pump(process.getErrorStream(), phase, OutputLine.Source.STDERR, stderr, line -> {});
+    }
+
+    public static ProcessOutputPump start(Process process, String phase, OutputBuffer stdout, OutputBuffer stderr,
+                                          Consumer<OutputLine> listener) {
+        return new ProcessOutputPump(process, phase, stdout, stderr, listener);
+    }
+
+    /**
+     * Hands stdout to the reader and buffers only stderr; nothing is published.
+     */
+    public static ProcessOutputPump start(Process process, String phase, OutputReader stdout, OutputBuffer stderr) {
+        return new ProcessOutputPump(process, phase, stdout, stderr);
+    }
+
+    /**
+     * Waits until both streams reach end of file.
+     *
+     * @throws IOException if reading one of the streams failed
+     */
+    public void await() throws InterruptedException, IOException {
+        stdoutThread.join();
+        stderrThread.join();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private Thread pump(InputStream in, String phase, OutputLine.Source source, OutputBuffer buffer,
+                        Consumer<OutputLine> listener) {
+        return Thread.ofVirtual()
+                .name("terraform-" + phase + "-" + source.name().toLowerCase())
+                .start(() -> {
+                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            buffer.append(line);
+                            publish(listener, new OutputLine(phase, source, line));
+                        }
+                    } catch (IOException e) {
+                        failure = e;
+                    } finally {
+                        buffer.finish();
+                    }
+                });
+    }
+
+    private Thread read(InputStream in, String phase, OutputReader reader) {
+        return Thread.ofVirtual()
+                .name("terraform-" + phase + "-stdout")
+                .start(() -> {
+                    try (in) {
+                        try {
+                            reader.read(in);
+                        } finally {
+                            // O que o leitor não consumiu precisa ser drenado, senão o processo trava no pipe cheio
+                            in.transferTo(OutputStream.nullOutputStream());
+                        }
+                    } catch (IOException e) {
+                        failure = e;
+                    } catch (RuntimeException e) {
+                        failure = new IOException(e.getMessage(), e);
+                    }
+                });
+    }
+
+    private void publish(Consumer<OutputLine> listener, OutputLine line) {
+        try {
+            listener.accept(line);
+        } catch (RuntimeException ignored) {
+            // Um assinante com falha não pode interromper a drenagem do processo
+        }
+    }
+}
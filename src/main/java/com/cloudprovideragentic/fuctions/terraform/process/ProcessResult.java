@@ -0,0 +1,25 @@
+package com.cloudprovideragentic.fuctions.terraform.process;
+
+/**
+ * Exit code and output of one terraform command. Closing it deletes the spill files of both buffers,
+ * so close it once the response built from the output is ready.
+ */
+public record ProcessResult(int exitCode, OutputBuffer stdout, OutputBuffer stderr) implements AutoCloseable {
+
+    public boolean succeeded() {
+        return exitCode == 0;
+    }
+
+    /**
+     * Terraform reports errors on stderr; falls back to stdout when stderr is empty.
+     */
+    public String errorText() {
+        return stderr.isEmpty() ? stdout.text() : stderr.text();
+    }
+
+    @Override
+    public void close() {
+        stdout.close();
+        stderr.close();
+    }
+}
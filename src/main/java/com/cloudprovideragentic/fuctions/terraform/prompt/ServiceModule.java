@@ -0,0 +1,70 @@
+package com.cloudprovideragentic.fuctions.terraform.prompt;
+
+import java.util.regex.Pattern;
+
+/**
+ * Instructions for one AWS service, added to the code generation prompt only when the request mentions
+ * the service. Keywords are matched as whole words on the request in lower case and without accents.
+ */
+public enum ServiceModule {
+
+    S3("s3|buckets?|baldes?", """
+            INSTRUÇÕES PARA S3:
+            - Crie aws_s3_bucket com o nome especificado
+            - Se versionamento solicitado, adicione aws_s3_bucket_versioning com status "Enabled"
+            - Se criptografia solicitada, adicione aws_s3_bucket_server_side_encryption_configuration
+            - Adicione aws_s3_bucket_public_access_block com todos os campos true por padrão
+            """),
+
+    SQS("sqs|filas?|queues?|dlq|dead[ -]letter|fifo", """
+            INSTRUÇÕES PARA SQS:
+            - Crie aws_sqs_queue com o nome especificado
+            - Se FIFO solicitado, o nome deve terminar com .fifo e adicione content_based_deduplication = true
+            - Configure visibility_timeout_seconds conforme solicitado (padrão: 30)
+            - Se Dead Letter Queue solicitada, crie uma segunda fila e configure redrive_policy
+            """),
+
+    ECS("ecs|fargate|containers?|conteineres|conteiner|task definitions?", """
+            INSTRUÇÕES PARA ECS:
+            - Use FARGATE como launch_type
+            - Crie aws_ecs_cluster, aws_ecs_task_definition e aws_ecs_service
+            - Crie IAM role de execução com a policy AmazonECSTaskExecutionRolePolicy
+            - Crie infraestrutura de rede: aws_vpc, aws_subnet, aws_internet_gateway,
+              aws_route_table, aws_route_table_association, aws_security_group
+            - Configure network_mode = "awsvpc" na task definition
+            """),
+
+    RDS("rds|bancos? de dados|databases?|postgres(ql)?|mysql|mariadb|aurora", """
+            INSTRUÇÕES PARA RDS:
+            - Use aws_db_instance com security groups e subnet groups adequados
+            """),
+
+    LAMBDA("lambdas?|serverless", """
+            INSTRUÇÕES PARA LAMBDA:
+            - Use aws_lambda_function com aws_iam_role e aws_lambda_permission
+            """),
+
+    API_GATEWAY("api ?gateway|apis? rest|rest apis?|http apis?", """
+            INSTRUÇÕES PARA API GATEWAY:
+            - Use aws_api_gateway_rest_api integrado com o backend adequado
+            """);
+
+    private final Pattern keywords;
+    private final String instructions;
+
+    ServiceModule(String keywords, String instructions) {
+        this.keywords = Pattern.compile("\\b(?:" + keywords + ")\\b");
+        this.instructions = instructions;
+    }
+
+    /**
+     * @param normalizedRequest The request in lower case, without accents
+     */
+    boolean mentionedIn(String normalizedRequest) {
+        return keywords.matcher(normalizedRequest).find();
+    }
+
+    public String instructions() {
+        return instructions;
+    }
+}
@@ -0,0 +1,91 @@
+package com.cloudprovideragentic.fuctions.terraform.prompt;
+
+import java.text.Normalizer;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Assembles the code generation system prompt for a request.
+ * <p>
+ * Every prompt starts with the same {@link #BASE} (JSON format, HCL rules, general instructions), so the
+ * provider can cache that prefix across requests. Then come the {@link ServiceModule}s the request
+ * mentions, always in declaration order, and the guidance for other services. A request that mentions
+ * none of the modules gets all of them, as before modules existed.
+ */
+public final class SystemPrompts {
+
+    // O primeiro parágrafo identifica o prompt nas gravações do perfil replay: não alterar
+    static final String BASE = """
+            Você é um especialista em Terraform para AWS.
+            Dado o pedido do usuário, gere um JSON com exatamente esta estrutura:
+
+            {
+              "planDescription": "Descrição clara e legível dos recursos que serão criados",
+              "terraformCode": "terraform {\\n  required_providers {\\n    aws = {\\n      source = \\"hashicorp/aws\\"\\n    }\\n  }\\n}\\n\\nprovider \\"aws\\" {\\n  region = \\"us-east-1\\"\\n}\\n\\nresource \\"aws_s3_bucket\\" \\"example\\" {\\n  bucket = \\"example\\"\\n}"
+            }
+
+            Retorne APENAS o JSON, sem blocos de código markdown, sem explicações fora do JSON.
+
+            FORMATO OBRIGATÓRIO DO TERRAFORM:
+            - Use EXCLUSIVAMENTE sintaxe HCL (HashiCorp Configuration Language)
+            - NUNCA use JSON Terraform format (nunca use { "resource": { "aws_s3_bucket": ... } })
+            - Exemplo correto de HCL: resource "aws_s3_bucket" "name" { bucket = "name" }
+            - O campo "terraformCode" é uma string JSON: newlines devem ser \\n e aspas devem ser \\"
+
+            INSTRUÇÕES GERAIS PARA O CÓDIGO TERRAFORM:
+            - Sempre inclua o bloco terraform{} com required_providers para aws (source = "hashicorp/aws")
+            - Sempre inclua o bloco provider "aws" com a região adequada (padrão: us-east-1)
+            - Use nomes de recursos compatíveis com Terraform (sem espaços, use hifens ou underscores)
+            """;
+
+    static final String OTHER_SERVICES = """
+            INSTRUÇÕES PARA OUTROS SERVIÇOS AWS:
+            - Para qualquer serviço AWS sem instruções acima, siga os mesmos padrões estabelecidos:
+              blocos terraform{} e provider, recursos nomeados coerentemente, referências entre recursos
+              via atributos (ex: .id, .arn), e código estritamente compatível com a documentação
+              oficial do Terraform Registry (registry.terraform.io/providers/hashicorp/aws)
+            """;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    private SystemPrompts() {
+    }
+
+    /**
+     * @return The services whose keywords appear in the request; all of them when none does
+     */
+    public static Set<ServiceModule> detect(String userPrompt) {
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(userPrompt, Normalizer.Form.NFD))
+                .replaceAll("").toLowerCase(Locale.ROOT);
+        Set<ServiceModule> modules = EnumSet.noneOf(ServiceModule.class);
+        for (ServiceModule module : ServiceModule.values()) {
+            if (module.mentionedIn(normalized)) {
+                modules.add(module);
+            }
+        }
+        return modules.isEmpty() ? EnumSet.allOf(ServiceModule.class) : modules;
+    }
+
+    public static String forRequest(String userPrompt) {
+        return assemble(detect(userPrompt));
+    }
+
+    /**
+     * @return The prompt with every module, the one sent for any request before modules existed
+     */
+    public static String full() {
+        return assemble(EnumSet.allOf(ServiceModule.class));
+    }
+
+    static String assemble(Set<ServiceModule> modules) {
+        StringBuilder prompt = new StringBuilder(BASE);
+        for (ServiceModule module : ServiceModule.values()) {
+            if (modules.contains(module)) {
+                prompt.append('\n').append(module.instructions());
+            }
+        }
+        return prompt.append('\n').append(OTHER_SERVICES).toString();
+    }
+}
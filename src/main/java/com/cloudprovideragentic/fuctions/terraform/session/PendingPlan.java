@@ -0,0 +1,13 @@
+package com.cloudprovideragentic.fuctions.terraform.session;
+
+import java.time.Instant;
+
+public record PendingPlan(String id, String sessionId, String stack, String terraformCode, Instant createdAt) {
+
+    /**
+     * Approximate heap footprint of the code (UTF-16), used for the store memory cap.
+     */
+    public long sizeInBytes() {
+        return terraformCode.length() * 2L;
+    }
+}
@@ -0,0 +1,212 @@
+package com.cloudprovideragentic.fuctions.terraform.session;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Concurrent store of plans awaiting confirmation, one per conversation.
+ * <p>
+ * Sessions never block each other: every operation touches a single map entry. Plans idle for
+ * longer than the configured timeout expire, and when the stored code exceeds the memory cap the
+ * least recently used plans of other sessions are evicted. Expired plans are also swept once per
+ * timeout, so idle sessions release them too. Every plan that leaves the store without being taken
+ * (expired, evicted, replaced or cleared) is handed to the {@link #onDiscard(Consumer) discard listeners}.
+ */
+@Component
+public class PendingPlanStore {
+
+    private static final Logger log = LoggerFactory.getLogger(PendingPlanStore.class);
+
+    private final Duration idleTimeout;
+    private final long maxBytes;
+    private final Clock clock;
+    private final Map<String, Slot> plans = new ConcurrentHashMap<>();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final List<Consumer<PendingPlan>> discardListeners = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService sweeper;
+
+    @Autowired
+    public PendingPlanStore(@Value("${terraform.pending-plans.idle-timeout}") Duration idleTimeout,
+                            @Value("${terraform.pending-plans.max-memory}") DataSize maxMemory) {
+        this(idleTimeout, maxMemory.toBytes(), Clock.systemUTC());
+        if (idleTimeout.isPositive()) {
+            this.sweeper = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("pending-plans-sweep").factory());
+            sweeper.scheduleAtFixedRate(this::evictExpired, idleTimeout.toMillis(), idleTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    PendingPlanStore(Duration idleTimeout, long maxBytes, Clock clock) {
+        this.idleTimeout = idleTimeout;
+        this.maxBytes = maxBytes;
+        this.clock = clock;
+    }
+
+    /**
+     * Stores a new pending plan for the session, replacing the previous one.
+     *
+     * @param sessionId The conversation that owns the plan
+     * @param stack     The stack the plan targets
+     * @param tfCode    The generated Terraform code
+     * @throws IllegalArgumentException if the code alone exceeds the memory cap
+     */
+    public PendingPlan store(String sessionId, String stack, String tfCode) {
+        Instant now = clock.instant();
+        PendingPlan plan = new PendingPlan(UUID.randomUUID().toString(), sessionId, stack, tfCode, now);
+        if (plan.sizeInBytes() > maxBytes) {
+            throw new IllegalArgumentException("Plano excede o limite de memória de planos pendentes.");
+        }
+
+        Slot previous = plans.put(sessionId, new Slot(plan, now));
+        usedBytes.addAndGet(plan.sizeInBytes() - (previous != null ? previous.plan().sizeInBytes() : 0));
+        if (previous != null) {
+            discarded(previous.plan());
+        }
+
+        evictExpired(now);
+        evictOverCap(sessionId);
+        return plan;
+    }
+
+    /**
+     * Returns the pending plan of the session and refreshes its idle timer.
+     */
+    public Optional<PendingPlan> get(String sessionId) {
+        Instant now = clock.instant();
+        Slot current = plans.get(sessionId);
+        if (current == null) {
+            return Optional.empty();
+        }
+        if (isExpired(current, now)) {
+            if (plans.remove(sessionId, current)) {
+                usedBytes.addAndGet(-current.plan().sizeInBytes());
+                discarded(current.plan());
+            }
+            return Optional.empty();
+        }
+        plans.replace(sessionId, current, new Slot(current.plan(), now));
+        return Optional.of(current.plan());
+    }
+
+    /**
+     * Atomically removes and returns the pending plan, so a plan is executed at most once even
+     * when confirmations race.
+     */
+    public Optional<PendingPlan> take(String sessionId) {
+        Slot slot = plans.remove(sessionId);
+        if (slot == null) {
+            return Optional.empty();
+        }
+        usedBytes.addAndGet(-slot.plan().sizeInBytes());
+        if (isExpired(slot, clock.instant())) {
+            discarded(slot.plan());
+            return Optional.empty();
+        }
+        return Optional.of(slot.plan());
+    }
+
+    public boolean hasPendingPlan(String sessionId) {
+        return get(sessionId).isPresent();
+    }
+
+    /**
+     * Removes the pending plan of the session, e.g. when the operator declines it or the session ends.
+     */
+    public void clear(String sessionId) {
+        take(sessionId).ifPresent(this::discarded);
+    }
+
+    /**
+     * Registers a listener for the plans that leave the store without being taken, so resources kept for
+     * them (such as a speculative plan) can be released.
+     */
+    public void onDiscard(Consumer<PendingPlan> listener) {
+        discardListeners.add(listener);
+    }
+
+    /**
+     * Removes every plan idle for longer than the timeout.
+     */
+    public void evictExpired() {
+        evictExpired(clock.instant());
+    }
+
+    public int size() {
+        return plans.size();
+    }
+
+    public long usedBytes() {
+        return usedBytes.get();
+    }
+
+    private boolean isExpired(Slot slot, Instant now) {
+        return Duration.between(slot.lastAccess(), now).compareTo(idleTimeout) > 0;
+    }
+
+    private void evictExpired(Instant now) {
+        plans.forEach((sessionId, slot) -> {
+            if (isExpired(slot, now) && plans.remove(sessionId, slot)) {
+                usedBytes.addAndGet(-slot.plan().sizeInBytes());
+                log.info("Plano pendente {} da sessão {} expirou por inatividade", slot.plan().id(), sessionId);
+                discarded(slot.plan());
+            }
+        });
+    }
+
+    private void evictOverCap(String protectedSession) {
+        while (usedBytes.get() > maxBytes) {
+            Optional<Map.Entry<String, Slot>> eldest = plans.entrySet().stream()
+                    .filter(e -> !e.getKey().equals(protectedSession))
+                    .min(Comparator.comparing(e -> e.getValue().lastAccess()));
+            if (eldest.isEmpty()) {
+                return;
+            }
+            Slot slot = eldest.get().getValue();
+            if (plans.remove(eldest.get().getKey(), slot)) {
+                usedBytes.addAndGet(-slot.plan().sizeInBytes());
+                log.info("Plano pendente {} da sessão {} descartado: limite de memória atingido",
+                        slot.plan().id(), eldest.get().getKey());
+                discarded(slot.plan());
+            }
+        }
+    }
+
+    private void discarded(PendingPlan plan) {
+        for (Consumer<PendingPlan> listener : discardListeners) {
+            try {
+                listener.accept(plan);
+            } catch (RuntimeException e) {
+                log.warn("Falha ao liberar recursos do plano pendente {}: {}", plan.id(), e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    private record Slot(PendingPlan plan, Instant lastAccess) {}
+}
@@ -0,0 +1,41 @@
+package com.cloudprovideragentic.fuctions.terraform.session;
+
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.model.ToolContext;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Carries the conversation ID, and optionally a listener for the plan being generated, from the chat client
+ * to the tool beans through the {@link ToolContext}.
+ */
+public final class SessionContext {
+
+    public static final String SESSION_ID = "sessionId";
+    public static final String PLAN_LISTENER = "planListener";
+
+    private SessionContext() {
+    }
+
+    /**
+     * @return The session of the tool call, or the default conversation when none was given
+     */
+    public static String sessionId(ToolContext toolContext) {
+        if (toolContext == null || !(toolContext.getContext().get(SESSION_ID) instanceof String sessionId)) {
+            return ChatMemory.DEFAULT_CONVERSATION_ID;
+        }
+        return sessionId;
+    }
+
+    /**
+     * @return The {@code Consumer<String>} that shows the plan while it is generated, when the caller streams
+     */
+    @SuppressWarnings("unchecked")
+    public static Optional<Consumer<String>> planListener(ToolContext toolContext) {
+        if (toolContext == null || !(toolContext.getContext().get(PLAN_LISTENER) instanceof Consumer<?> listener)) {
+            return Optional.empty();
+        }
+        return Optional.of((Consumer<String>) listener);
+    }
+}
@@ -0,0 +1,30 @@
+package com.cloudprovideragentic.fuctions.terraform.shard;
+
+import java.util.Locale;
+
+/**
+ * How resources of a stack are grouped into state shards.
+ */
+public enum ShardingMode {
+
+    /** Single state per stack: every resource is appended to the stack's main.tf. */
+    OFF,
+
+    /** One shard per AWS service, derived from the resource type (s3, sqs, ecs, network, iam, ...). */
+    SERVICE,
+
+    /** One shard per executed request. */
+    REQUEST;
+
+    public static ShardingMode of(String value) {
+        if (value == null || value.isBlank()) {
+            return OFF;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Modo de sharding inválido: '" + value
+                    + "'. Use off, service ou request.");
+        }
+    }
+}
@@ -0,0 +1,510 @@
+package com.cloudprovideragentic.fuctions.terraform.shard;
+
+import com.cloudprovideragentic.fuctions.terraform.utils.HclScanner;
+import com.cloudprovideragentic.fuctions.terraform.utils.TerraformBlock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Splits the resources of a stack into separate Terraform roots ("shards"), each with its own state,
+ * so that a change only plans and applies the shards it touches instead of refreshing every resource
+ * the stack ever created.
+ * <p>
+ * Shards live under {@code <stack>/shards/<shard>/}. A reference to a resource owned by another shard is
+ * rewritten to a {@code terraform_remote_state} output: the owning shard exports the attribute in
+ * {@code exports.tf} and the referencing shard reads it through {@code remote_state.tf}. Both files are
+ * regenerated from the references found in the shards' {@code main.tf}. Every shard also gets the stack's
+ * terraform and provider blocks in {@code providers.tf}, rewritten whenever a request brings changed ones.
+ */
+@Component
+public class StateShardManager {
+
+    private static final Logger log = LoggerFactory.getLogger(StateShardManager.class);
+
+    static final String SHARDS_DIR = "shards";
+    static final String MAIN_TF = "main.tf";
+    static final String PROVIDERS_TF = "providers.tf";
+    static final String EXPORTS_TF = "exports.tf";
+    static final String REMOTE_STATE_TF = "remote_state.tf";
+
+    // tipo.nome.atributo, com índice opcional (tipo.nome[0].atributo, tipo.nome[*].atributo), sem ser
+    // continuação de outra expressão (ex.: data.aws_x.y.id)
+    private static final Pattern REFERENCE = Pattern.compile(
+            "(?<![\\w.-])([a-z][a-z0-9_]*)\\.([A-Za-z_][A-Za-z0-9_-]*)(\\[[^\\]]*\\])?\\.([A-Za-z_][A-Za-z0-9_]*)");
+    private static final Pattern REMOTE_OUTPUT = Pattern.compile(
+            "data\\.terraform_remote_state\\.([a-z0-9_]+)\\.outputs\\.([A-Za-z0-9_-]+)");
+    // data.tipo.nome, var.x, local.x e module.x: blocos que acompanham o recurso que os usa
+    private static final Pattern SUPPORT_REFERENCE = Pattern.compile(
+            "(?<![\\w.-])(?:data\\.[A-Za-z_][A-Za-z0-9_-]*\\.|var\\.|local\\.|module\\.)[A-Za-z_][A-Za-z0-9_-]*");
+    // tipo.nome de um recurso citado por um output, moved, import...
+    private static final Pattern RESOURCE_ADDRESS = Pattern.compile(
+            "(?<![\\w.-])[a-z][a-z0-9_]*\\.[A-Za-z_][A-Za-z0-9_-]*");
+    private static final Set<String> SUPPORT_TYPES = Set.of("data", "variable", "locals", "module");
+    private static final String OUTPUT_SEPARATOR = "__";
+    // Sufixos do nome no output de um recurso com count (lista) ou for_each (mapa por chave)
+    private static final String LIST_OUTPUT = "__all";
+    private static final String MAP_OUTPUT = "__each";
+
+    // Recursos de rede ficam juntos, pois quase sempre se referenciam
+    private static final Map<String, String> SERVICE_ALIASES = Map.ofEntries(
+            Map.entry("vpc", "network"),
+            Map.entry("subnet", "network"),
+            Map.entry("internet", "network"),
+            Map.entry("nat", "network"),
+            Map.entry("route", "network"),
+            Map.entry("security", "network"),
+            Map.entry("network", "network"),
+            Map.entry("eip", "network"),
+            Map.entry("default", "network"),
+            Map.entry("db", "rds"),
+            Map.entry("api", "apigateway"));
+
+    private final ShardingMode mode;
+
+    public StateShardManager(@Value("${terraform.sharding.mode}") String mode) {
+        this.mode = ShardingMode.of(mode);
+    }
+
+    public boolean enabled() {
+        return mode != ShardingMode.OFF;
+    }
+
+    /**
+     * Distributes the blocks of the new code among the shards of the stack and refreshes the cross-shard
+     * exports. A resource goes to the shard that already owns its address, or to a new one; the data,
+     * variable, locals and module blocks it references, directly or through each other, are carried into
+     * its shard. Outputs and the other blocks go to the shard of the first resource they name. Blocks no
+     * resource references go to the shard of the first resource of the code. Within a shard, identical
+     * blocks are kept, changed blocks replaced in place and new blocks appended.
+     *
+     * @param stackDir The stack directory
+     * @param tfCode   The generated Terraform code
+     * @return The directories of the shards whose code changed, dependencies first
+     * @throws IOException              if reading or writing shard files fails
+     * @throws IllegalArgumentException if the code declares blocks but no resource, or a locals block
+     *                                  overlaps a different locals block of the shard
+     * @throws IllegalStateException    if the touched shards reference each other in a cycle
+     */
+    public List<Path> prepare(Path stackDir, String tfCode) throws IOException {
+        Path shardsDir = stackDir.resolve(SHARDS_DIR);
+        Files.createDirectories(shardsDir);
+
+        List<TerraformBlock> blocks = HclScanner.scan(tfCode);
+        String header = blocks.stream()
+                .filter(StateShardManager::isHeader)
+                .map(b -> b.text(tfCode))
+                .collect(Collectors.joining("\n\n"));
+        List<TerraformBlock> resources = blocks.stream().filter(TerraformBlock::isResource).toList();
+        List<TerraformBlock> others = blocks.stream().filter(b -> !isHeader(b) && !b.isResource()).toList();
+        if (resources.isEmpty() && !others.isEmpty()) {
+            throw new IllegalArgumentException("Com sharding de estado o código precisa declarar ao menos um recurso; "
+                    + "não há shard para " + others.stream().map(TerraformBlock::address).collect(Collectors.joining(", ")));
+        }
+        String requestShard = "req_" + sha256(resources.stream().map(b -> b.text(tfCode))
+                .collect(Collectors.joining("\n"))).substring(0, 12);
+
+        // 1. Atribuir cada recurso ao shard que já o possui, ou a um shard novo
+        Map<String, String> owners = indexOwners(shardsDir);
+        Map<String, Set<TerraformBlock>> assigned = new LinkedHashMap<>();
+        for (TerraformBlock resource : resources) {
+            String shard = owners.computeIfAbsent(resource.address(), address ->
+                    mode == ShardingMode.SERVICE ? serviceShard(resource.labels().get(0)) : requestShard);
+            assigned.computeIfAbsent(shard, s -> new LinkedHashSet<>()).add(resource);
+        }
+
+        // 2. Outputs, moved, import...: shard do primeiro recurso que citam; data, variable, locals e module
+        //    acompanham os blocos que os referenciam
+        String primary = resources.isEmpty() ? null : owners.get(resources.get(0).address());
+        Map<String, TerraformBlock> definitions = new HashMap<>();
+        for (TerraformBlock block : others) {
+            if (SUPPORT_TYPES.contains(block.type())) {
+                for (String key : definitionKeys(block, tfCode)) {
+                    definitions.put(key, block);
+                }
+            } else {
+                String shard = resourceOwner(block.text(tfCode), owners);
+                assigned.computeIfAbsent(shard == null ? primary : shard, s -> new LinkedHashSet<>()).add(block);
+            }
+        }
+        Set<TerraformBlock> carried = new HashSet<>();
+        for (Set<TerraformBlock> shardBlocks : assigned.values()) {
+            carry(shardBlocks, definitions, tfCode);
+            carried.addAll(shardBlocks);
+        }
+        List<TerraformBlock> unreferenced = others.stream().filter(b -> !carried.contains(b)).toList();
+        if (!unreferenced.isEmpty()) {
+            log.info("Blocos não referenciados por recursos vão para o shard {}: {}", primary,
+                    unreferenced.stream().map(TerraformBlock::address).toList());
+            Set<TerraformBlock> primaryBlocks = assigned.computeIfAbsent(primary, s -> new LinkedHashSet<>());
+            primaryBlocks.addAll(unreferenced);
+            carry(primaryBlocks, definitions, tfCode);
+        }
+
+        // 3. Escrever os blocos, trocando referências a outros shards por remote state
+        Set<String> touched = new LinkedHashSet<>();
+        for (Map.Entry<String, Set<TerraformBlock>> entry : assigned.entrySet()) {
+            String shard = entry.getKey();
+            Path shardDir = shardsDir.resolve(shard);
+            Files.createDirectories(shardDir);
+            Path providers = shardDir.resolve(PROVIDERS_TF);
+            if (header.isEmpty() && !Files.exists(providers)) {
+                Files.writeString(providers, existingHeader(shardsDir));
+            }
+            ShardCode code = ShardCode.load(shardDir.resolve(MAIN_TF), shard);
+            entry.getValue().stream()
+                    .sorted(Comparator.comparingInt(TerraformBlock::start))
+                    .forEach(block -> code.put(block, rewriteReferences(block.text(tfCode), shard, owners),
+                            block.type().equals("locals") ? HclScanner.attributes(tfCode, block) : List.of()));
+            if (code.save()) {
+                touched.add(shard);
+            }
+        }
+
+        // 4. O cabeçalho vale para a stack inteira: região ou provider novo chega a todos os shards
+        if (!header.isEmpty()) {
+            for (Path shardDir : shardDirs(shardsDir)) {
+                if (writeIfChanged(shardDir.resolve(PROVIDERS_TF), header + "\n")) {
+                    touched.add(shardDir.getFileName().toString());
+                }
+            }
+        }
+
+        // 5. Regenerar exports/remote state; quem passou a exportar algo novo também precisa de apply
+        Map<String, Set<String>> dependencies = new HashMap<>();
+        touched.addAll(syncRemoteState(shardsDir, dependencies));
+
+        return order(touched, dependencies).stream().map(shardsDir::resolve).toList();
+    }
+
+    private static boolean isHeader(TerraformBlock block) {
+        return block.type().equals("terraform") || block.type().equals("provider");
+    }
+
+    /**
+     * @return The references through which other blocks use a data, variable, locals or module block,
+     * e.g. {@code local.prefix} for each name a locals block defines
+     */
+    private static List<String> definitionKeys(TerraformBlock block, String tfCode) {
+        if (block.type().equals("locals")) {
+            return HclScanner.attributes(tfCode, block).stream().map(name -> "local." + name).toList();
+        }
+        return List.of(block.address());
+    }
+
+    /**
+     * Adds to the shard blocks every data, variable, locals and module block they reference, transitively.
+     */
+    private static void carry(Set<TerraformBlock> shardBlocks, Map<String, TerraformBlock> definitions, String tfCode) {
+        Deque<TerraformBlock> pending = new ArrayDeque<>(shardBlocks);
+        while (!pending.isEmpty()) {
+            Matcher matcher = SUPPORT_REFERENCE.matcher(pending.pop().text(tfCode));
+            while (matcher.find()) {
+                TerraformBlock definition = definitions.get(matcher.group());
+                if (definition != null && shardBlocks.add(definition)) {
+                    pending.push(definition);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The shard owning the first resource named in the text, or {@code null}
+     */
+    private static String resourceOwner(String text, Map<String, String> owners) {
+        Matcher matcher = RESOURCE_ADDRESS.matcher(text);
+        while (matcher.find()) {
+            String owner = owners.get(matcher.group());
+            if (owner != null) {
+                return owner;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The address of every resource mapped to the shard that owns it
+     */
+    private Map<String, String> indexOwners(Path shardsDir) throws IOException {
+        Map<String, String> owners = new HashMap<>();
+        for (Path shardDir : shardDirs(shardsDir)) {
+            Path mainTf = shardDir.resolve(MAIN_TF);
+            if (!Files.exists(mainTf)) {
+                continue;
+            }
+            for (TerraformBlock block : HclScanner.scan(Files.readString(mainTf))) {
+                if (block.isResource()) {
+                    owners.put(block.address(), shardDir.getFileName().toString());
+                }
+            }
+        }
+        return owners;
+    }
+
+    /**
+     * Rewrites references to resources of other shards as remote state outputs. An indexed reference reads a
+     * list output (count) or a map output (for_each, quoted key) of the whole attribute, indexed the same way.
+     */
+    private String rewriteReferences(String text, String shard, Map<String, String> owners) {
+        Matcher matcher = REFERENCE.matcher(text);
+        StringBuilder rewritten = new StringBuilder();
+        while (matcher.find()) {
+            String owner = owners.get(matcher.group(1) + "." + matcher.group(2));
+            String index = matcher.group(3);
+            String replacement;
+            if (owner == null || owner.equals(shard)) {
+                replacement = matcher.group();
+            } else {
+                String name = index == null ? matcher.group(2)
+                        : matcher.group(2) + (index.startsWith("[\"") ? MAP_OUTPUT : LIST_OUTPUT);
+                replacement = "data.terraform_remote_state." + owner + ".outputs."
+                        + String.join(OUTPUT_SEPARATOR, matcher.group(1), name, matcher.group(4))
+                        + (index == null ? "" : index);
+            }
+            matcher.appendReplacement(rewritten, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(rewritten);
+        return rewritten.toString();
+    }
+
+    /**
+     * Rewrites {@code exports.tf} and {@code remote_state.tf} of every shard from the remote state
+     * references found in the shards' code.
+     *
+     * @param dependencies Filled with the producer shards of every consumer shard
+     * @return The shards whose exports changed
+     */
+    private Set<String> syncRemoteState(Path shardsDir, Map<String, Set<String>> dependencies) throws IOException {
+        Map<String, Set<String>> exports = new TreeMap<>();
+        for (Path shardDir : shardDirs(shardsDir)) {
+            Path mainTf = shardDir.resolve(MAIN_TF);
+            if (!Files.exists(mainTf)) {
+                continue;
+            }
+            String consumer = shardDir.getFileName().toString();
+            Matcher matcher = REMOTE_OUTPUT.matcher(Files.readString(mainTf));
+            while (matcher.find()) {
+                dependencies.computeIfAbsent(consumer, s -> new TreeSet<>()).add(matcher.group(1));
+                exports.computeIfAbsent(matcher.group(1), s -> new TreeSet<>()).add(matcher.group(2));
+            }
+        }
+
+        Set<String> changed = new LinkedHashSet<>();
+        for (Path shardDir : shardDirs(shardsDir)) {
+            String shard = shardDir.getFileName().toString();
+            if (writeIfChanged(shardDir.resolve(EXPORTS_TF), exportsCode(exports.getOrDefault(shard, Set.of())))) {
+                changed.add(shard);
+            }
+            writeIfChanged(shardDir.resolve(REMOTE_STATE_TF), remoteStateCode(dependencies.getOrDefault(shard, Set.of())));
+        }
+        return changed;
+    }
+
+    private static String exportsCode(Set<String> outputs) {
+        StringBuilder code = new StringBuilder();
+        for (String output : outputs) {
+            String[] parts = output.split(OUTPUT_SEPARATOR, 2);
+            int attribute = parts.length < 2 ? -1 : parts[1].lastIndexOf(OUTPUT_SEPARATOR);
+            if (attribute < 0) {
+                continue;
+            }
+            String name = parts[1].substring(0, attribute);
+            String field = parts[1].substring(attribute + OUTPUT_SEPARATOR.length());
+            String value;
+            if (name.endsWith(LIST_OUTPUT)) {
+                value = parts[0] + "." + name.substring(0, name.length() - LIST_OUTPUT.length()) + "[*]." + field;
+            } else if (name.endsWith(MAP_OUTPUT)) {
+                value = "{ for key, item in " + parts[0] + "." + name.substring(0, name.length() - MAP_OUTPUT.length())
+                        + " : key => item." + field + " }";
+            } else {
+                value = parts[0] + "." + name + "." + field;
+            }
+            code.append("output \"").append(output).append("\" {\n  value = ").append(value).append("\n}\n\n");
+        }
+        return code.toString();
+    }
+
+    private static String remoteStateCode(Set<String> producers) {
+        StringBuilder code = new StringBuilder();
+        for (String producer : producers) {
+            code.append("data \"terraform_remote_state\" \"").append(producer).append("\" {\n")
+                    .append("  backend = \"local\"\n")
+                    .append("  config = {\n")
+                    .append("    path = \"../").append(producer).append("/terraform.tfstate\"\n")
+                    .append("  }\n")
+                    .append("}\n\n");
+        }
+        return code.toString();
+    }
+
+    /**
+     * Orders the touched shards so that every shard comes after the touched shards it reads from.
+     */
+    private static List<String> order(Set<String> touched, Map<String, Set<String>> dependencies) {
+        List<String> ordered = new ArrayList<>();
+        Set<String> visiting = new LinkedHashSet<>();
+        for (String shard : new TreeSet<>(touched)) {
+            visit(shard, touched, dependencies, visiting, ordered);
+        }
+        return ordered;
+    }
+
+    private static void visit(String shard, Set<String> touched, Map<String, Set<String>> dependencies,
+                              Set<String> visiting, List<String> ordered) {
+        if (ordered.contains(shard)) {
+            return;
+        }
+        if (!visiting.add(shard)) {
+            throw new IllegalStateException("Dependência circular entre os shards: " + String.join(" -> ", visiting)
+                    + " -> " + shard);
+        }
+        for (String producer : dependencies.getOrDefault(shard, Set.of())) {
+            if (touched.contains(producer)) {
+                visit(producer, touched, dependencies, visiting, ordered);
+            }
+        }
+        visiting.remove(shard);
+        ordered.add(shard);
+    }
+
+    /**
+     * Maps a resource type to its service shard, e.g. {@code aws_s3_bucket_versioning -> s3}.
+     */
+    static String serviceShard(String resourceType) {
+        String[] parts = resourceType.split("_");
+        if (parts.length < 2) {
+            return resourceType;
+        }
+        return SERVICE_ALIASES.getOrDefault(parts[1], parts[1]);
+    }
+
+    private static String existingHeader(Path shardsDir) throws IOException {
+        for (Path shardDir : shardDirs(shardsDir)) {
+            Path providers = shardDir.resolve(PROVIDERS_TF);
+            if (Files.exists(providers)) {
+                return Files.readString(providers);
+            }
+        }
+        return "";
+    }
+
+    private static List<Path> shardDirs(Path shardsDir) throws IOException {
+        try (Stream<Path> dirs = Files.list(shardsDir)) {
+            return dirs.filter(Files::isDirectory).sorted().toList();
+        }
+    }
+
+    private static boolean writeIfChanged(Path file, String content) throws IOException {
+        if (Files.exists(file) ? Files.readString(file).equals(content) : content.isEmpty()) {
+            return false;
+        }
+        Files.writeString(file, content);
+        return true;
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The main.tf of a shard, updated block by block.
+     */
+    private static final class ShardCode {
+
+        private final Path file;
+        private final String shard;
+        private String content;
+        private boolean changed;
+
+        private ShardCode(Path file, String shard, String content) {
+            this.file = file;
+            this.shard = shard;
+            this.content = content;
+        }
+
+        static ShardCode load(Path file, String shard) throws IOException {
+            return new ShardCode(file, shard, Files.exists(file) ? Files.readString(file) : "");
+        }
+
+        /**
+         * Keeps an identical block, replaces the block with the same address (for locals, the same names)
+         * and appends anything else.
+         *
+         * @param locals The names the block defines when it is a locals block
+         */
+        void put(TerraformBlock block, String text, List<String> locals) {
+            TerraformBlock existing = find(block, text, locals);
+            if (existing == null) {
+                content = content + text + "\n\n";
+                changed = true;
+            } else if (!existing.text(content).equals(text)) {
+                content = content.substring(0, existing.start()) + text + content.substring(existing.end());
+                changed = true;
+            }
+        }
+
+        private TerraformBlock find(TerraformBlock block, String text, List<String> locals) {
+            for (TerraformBlock candidate : HclScanner.scan(content)) {
+                if (!candidate.type().equals(block.type())) {
+                    continue;
+                }
+                if (block.type().equals("locals")) {
+                    Set<String> names = new TreeSet<>(HclScanner.attributes(content, candidate));
+                    if (names.equals(new TreeSet<>(locals))) {
+                        return candidate;
+                    }
+                    if (locals.stream().anyMatch(names::contains)) {
+                        throw new IllegalArgumentException("O bloco locals que define " + locals + " se sobrepõe ao bloco "
+                                + "locals do shard " + shard + " que define " + names
+                                + "; declare esses locals sempre no mesmo bloco.");
+                    }
+                } else if (block.labels().isEmpty() ? candidate.text(content).equals(text)
+                        : candidate.labels().equals(block.labels())) {
+                    return candidate;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return {@code true} if main.tf changed and was written
+         */
+        boolean save() throws IOException {
+            if (changed) {
+                Files.writeString(file, content);
+            }
+            return changed;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.cloudprovideragentic.fuctions.terraform.speculative;
+
+import com.cloudprovideragentic.fuctions.terraform.model.terraform.ResourceChange;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A saved terraform plan computed ahead of confirmation in a copy of the stack directory.
+ *
+ * @param planId          The pending plan the code came from
+ * @param stack           The stack name
+ * @param directory       The copy of the stack directory holding the merged code and the plan file
+ * @param baseFingerprint Fingerprint of the stack's configuration, lock file and state when they were copied
+ * @param changes         The resource changes of the plan, or {@code null} if {@code terraform show} failed
+ */
+public record PreparedPlan(String planId, String stack, Path directory, String baseFingerprint,
+                           List<ResourceChange> changes) {
+
+    public static final String PLAN_FILE = "tfplan";
+
+    public Path planFile() {
+        return directory.resolve(PLAN_FILE);
+    }
+}
@@ -0,0 +1,152 @@
+package com.cloudprovideragentic.fuctions.terraform.speculative;
+
+import com.cloudprovideragentic.fuctions.terraform.TerraformExecutor;
+import com.cloudprovideragentic.fuctions.terraform.session.PendingPlan;
+import com.cloudprovideragentic.fuctions.terraform.session.PendingPlanStore;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Starts {@code terraform init} and {@code terraform plan -out} for a pending plan while the operator is
+ * still reviewing it, so that confirming only has to apply. Each session has at most one speculation:
+ * a new plan or a cancellation discards the previous one and stops its terraform process. A plan that
+ * leaves the {@link PendingPlanStore} without being confirmed (expired, evicted or cleared when the
+ * session ends) discards its speculation too, deleting the copy of the stack.
+ */
+@Component
+public class SpeculativePlanner {
+
+    private final TerraformExecutor executor;
+    private final boolean enabled;
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, Speculation> speculations = new ConcurrentHashMap<>();
+
+    public SpeculativePlanner(TerraformExecutor executor, PendingPlanStore planStore,
+                              @Value("${terraform.speculative-plan.enabled}") boolean enabled) {
+        this.executor = executor;
+        this.enabled = enabled;
+        if (enabled) {
+            planStore.onDiscard(this::discard);
+        }
+    }
+
+    /**
+     * Starts planning the pending plan in the background, replacing the session's previous speculation.
+     */
+    public void start(PendingPlan plan) {
+        if (!enabled) {
+            return;
+        }
+        Speculation speculation = new Speculation(plan.id());
+        speculation.future = workers.submit(() -> speculation.complete(
+                executor.prepare(plan.id(), plan.stack(), plan.terraformCode())));
+        Speculation previous = speculations.put(plan.sessionId(), speculation);
+        if (previous != null) {
+            discard(previous);
+        }
+    }
+
+    /**
+     * Takes the speculation of a confirmed plan, waiting for it if it is still running.
+     *
+     * @return The prepared plan, or empty if there was no successful speculation for this plan
+     * @throws InterruptedException if interrupted while waiting; the speculation is discarded
+     */
+    public Optional<PreparedPlan> claim(PendingPlan plan) throws InterruptedException {
+        Speculation speculation = speculations.get(plan.sessionId());
+        if (speculation == null || !speculation.planId.equals(plan.id())
+                || !speculations.remove(plan.sessionId(), speculation)) {
+            return Optional.empty();
+        }
+        try {
+            return speculation.future.get();
+        } catch (ExecutionException e) {
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            discard(speculation);
+            throw e;
+        }
+    }
+
+    /**
+     * Discards the session's speculation, stopping terraform if it is still running.
+     */
+    public void discard(String sessionId) {
+        Speculation speculation = speculations.remove(sessionId);
+        if (speculation != null) {
+            discard(speculation);
+        }
+    }
+
+    /**
+     * Discards the speculation of a plan that will be applied without it or will not be applied at all,
+     * if it is still the session's speculation.
+     */
+    public void discard(PendingPlan plan) {
+        Speculation speculation = speculations.get(plan.sessionId());
+        if (speculation != null && speculation.planId.equals(plan.id())
+                && speculations.remove(plan.sessionId(), speculation)) {
+            discard(speculation);
+        }
+    }
+
+    /**
+     * Deletes the files of a prepared plan once it was applied or is no longer needed.
+     */
+    public void release(PreparedPlan prepared) {
+        executor.release(prepared);
+    }
+
+    private void discard(Speculation speculation) {
+        speculation.discard().ifPresent(this::release);
+        // Ainda em execução: a interrupção encerra o terraform e apaga a cópia da stack
+        speculation.future.cancel(true);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        speculations.keySet().forEach(this::discard);
+        workers.shutdownNow();
+    }
+
+    /**
+     * Hands the prepared plan over exactly once: to the caller if the speculation is still wanted,
+     * otherwise to {@link #release(PreparedPlan)}, whichever of completion and discard happens last.
+     */
+    private final class Speculation {
+
+        private final String planId;
+        private volatile Future<Optional<PreparedPlan>> future;
+        private Optional<PreparedPlan> completed = Optional.empty();
+        private boolean discarded;
+
+        private Speculation(String planId) {
+            this.planId = planId;
+        }
+
+        synchronized Optional<PreparedPlan> complete(Optional<PreparedPlan> prepared) {
+            if (discarded) {
+                prepared.ifPresent(SpeculativePlanner.this::release);
+                return Optional.empty();
+            }
+            completed = prepared;
+            return prepared;
+        }
+
+        synchronized Optional<PreparedPlan> discard() {
+            discarded = true;
+            Optional<PreparedPlan> prepared = completed;
+            completed = Optional.empty();
+            return prepared;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.cloudprovideragentic.fuctions.terraform.stack;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Hold on a stack or the plugin cache: the in-JVM lock plus the file lock shared with other processes.
+ * Must be closed by the thread that acquired it.
+ */
+public class StackLease implements AutoCloseable {
+
+    private final Lock lock;
+    private final Closeable fileLock;
+
+    /**
+     * @param fileLock Releases the file lock
+     */
+    StackLease(Lock lock, Closeable fileLock) {
+        this.lock = lock;
+        this.fileLock = fileLock;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            fileLock.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
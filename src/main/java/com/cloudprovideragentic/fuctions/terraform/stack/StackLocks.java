@@ -0,0 +1,173 @@
+package com.cloudprovideragentic.fuctions.terraform.stack;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Serializes work on the same stack while letting different stacks run in parallel.
+ * <p>
+ * Inside the JVM, every stack name has its own lock, so two stacks never wait on each other. Across processes (containers
+ * sharing the {@code ./infra} volume), an OS file lock on {@code .agent.lock} in the stack directory
+ * acts as a lease; the OS drops it if the holder dies, so a crashed container never leaves a stack
+ * locked. The lock file records the current holder for diagnostics.
+ */
+@Component
+public class StackLocks {
+
+    static final String LOCK_FILE = ".agent.lock";
+    private static final String PLUGIN_CACHE = "plugin-cache";
+    private static final long POLL_MILLIS = 100;
+
+    // Uma entrada por nome de stack; as stacks são diretórios em disco, então o mapa não cresce sem limite
+    private final ConcurrentMap<String, Lock> stacks = new ConcurrentHashMap<>();
+    private final ReadWriteLock pluginCacheLock = new ReentrantReadWriteLock();
+    private final Lock sharedCacheGuard = new ReentrantLock();
+    private FileLock sharedCacheFile;
+    private int sharedCacheHolders;
+    private final Duration timeout;
+
+    public StackLocks(@Value("${terraform.stack.lock-timeout}") Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Acquires the stack, waiting up to the configured timeout.
+     *
+     * @param stack    The stack name
+     * @param stackDir The stack directory, where the lock file lives
+     * @throws TimeoutException if another execution holds the stack for longer than the timeout
+     */
+    public StackLease acquire(String stack, Path stackDir) throws IOException, InterruptedException, TimeoutException {
+        return lease(stack, stacks.computeIfAbsent(stack, name -> new ReentrantLock()), stackDir);
+    }
+
+    /**
+     * Acquires the shared provider plugin cache, which terraform does not protect against an init that
+     * installs providers while other inits use it. Inits that only link cached packages share the cache;
+     * an installing init holds it alone.
+     *
+     * @param install Whether the init may download providers into the cache
+     */
+    public StackLease acquirePluginCache(Path cacheRoot, boolean install)
+            throws IOException, InterruptedException, TimeoutException {
+        if (install) {
+            return lease(PLUGIN_CACHE, pluginCacheLock.writeLock(), cacheRoot);
+        }
+        long deadline = System.nanoTime() + timeout.toNanos();
+        Lock lock = pluginCacheLock.readLock();
+        if (!lock.tryLock(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+            throw busy(PLUGIN_CACHE);
+        }
+        try {
+            acquireSharedCacheFile(cacheRoot, deadline);
+            return new StackLease(lock, this::releaseSharedCacheFile);
+        } catch (IOException | InterruptedException | TimeoutException | RuntimeException e) {
+            lock.unlock();
+            throw e;
+        }
+    }
+
+    private StackLease lease(String stack, Lock lock, Path stackDir)
+            throws IOException, InterruptedException, TimeoutException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        if (!lock.tryLock(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+            throw busy(stack);
+        }
+        try {
+            FileLock fileLock = lockFile(stack, stackDir, false, deadline);
+            writeHolder(fileLock.channel());
+            return new StackLease(lock, () -> release(fileLock));
+        } catch (IOException | InterruptedException | TimeoutException | RuntimeException e) {
+            lock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * The JVM refuses two overlapping file locks on one file, even shared ones, so the inits sharing the
+     * plugin cache share a single file lock; the last one out releases it.
+     */
+    private void acquireSharedCacheFile(Path cacheRoot, long deadline)
+            throws IOException, InterruptedException, TimeoutException {
+        sharedCacheGuard.lockInterruptibly();
+        try {
+            if (sharedCacheFile == null) {
+                sharedCacheFile = lockFile(PLUGIN_CACHE, cacheRoot, true, deadline);
+            }
+            sharedCacheHolders++;
+        } finally {
+            sharedCacheGuard.unlock();
+        }
+    }
+
+    private void releaseSharedCacheFile() throws IOException {
+        sharedCacheGuard.lock();
+        try {
+            if (--sharedCacheHolders == 0) {
+                FileLock fileLock = sharedCacheFile;
+                sharedCacheFile = null;
+                release(fileLock);
+            }
+        } finally {
+            sharedCacheGuard.unlock();
+        }
+    }
+
+    private static FileLock lockFile(String stack, Path dir, boolean shared, long deadline)
+            throws IOException, InterruptedException, TimeoutException {
+        Files.createDirectories(dir);
+        FileChannel channel = FileChannel.open(dir.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock fileLock;
+            while ((fileLock = channel.tryLock(0, Long.MAX_VALUE, shared)) == null) {
+                if (System.nanoTime() > deadline) {
+                    throw busy(stack);
+                }
+                Thread.sleep(POLL_MILLIS);
+            }
+            return fileLock;
+        } catch (IOException | InterruptedException | TimeoutException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static void release(FileLock fileLock) throws IOException {
+        try {
+            fileLock.release();
+        } finally {
+            fileLock.channel().close();
+        }
+    }
+
+    private static void writeHolder(FileChannel channel) throws IOException {
+        String holder = ManagementFactory.getRuntimeMXBean().getName() + " " + Instant.now() + "\n";
+        channel.truncate(0);
+        channel.write(ByteBuffer.wrap(holder.getBytes(StandardCharsets.UTF_8)), 0);
+    }
+
+    private static TimeoutException busy(String stack) {
+        return new TimeoutException("Stack '" + stack + "' em uso por outra execução.");
+    }
+}
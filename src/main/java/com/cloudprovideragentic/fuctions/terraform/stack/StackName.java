@@ -0,0 +1,33 @@
+package com.cloudprovideragentic.fuctions.terraform.stack;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Validates stack names, which become directory names under {@code infra/}.
+ */
+public final class StackName {
+
+    public static final String DEFAULT = "default";
+
+    private static final Pattern VALID = Pattern.compile("[a-z0-9][a-z0-9_-]{0,62}");
+
+    private StackName() {
+    }
+
+    /**
+     * @return The normalized stack name, or {@link #DEFAULT} when none was given
+     * @throws IllegalArgumentException if the name is not a safe directory name
+     */
+    public static String of(String name) {
+        if (name == null || name.isBlank()) {
+            return DEFAULT;
+        }
+        String normalized = name.trim().toLowerCase(Locale.ROOT);
+        if (!VALID.matcher(normalized).matches()) {
+            throw new IllegalArgumentException("Nome de stack inválido: '" + name
+                    + "'. Use letras minúsculas, números, '-' ou '_' (até 63 caracteres).");
+        }
+        return normalized;
+    }
+}
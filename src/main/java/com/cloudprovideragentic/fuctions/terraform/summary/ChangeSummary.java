@@ -0,0 +1,104 @@
+package com.cloudprovideragentic.fuctions.terraform.summary;
+
+import com.cloudprovideragentic.fuctions.terraform.model.terraform.ResourceChange;
+import com.cloudprovideragentic.fuctions.terraform.utils.HclScanner;
+import com.cloudprovideragentic.fuctions.terraform.utils.TerraformBlock;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Turns the resource changes of an applied plan into the short text returned to the model in place of
+ * terraform's log: one count line, one line per resource and the outputs printed by the apply.
+ */
+public final class ChangeSummary {
+
+    static final int MAX_LISTED_CHANGES = 50;
+    static final int MAX_OUTPUT_LINES = 20;
+
+    private static final Set<String> ADDRESSED_BLOCKS = Set.of("resource", "data", "module");
+    private static final Map<String, String> SYMBOLS = Map.of(
+            "create", "+", "update", "~", "replace", "-/+", "delete", "-", "read", "<=");
+
+    private ChangeSummary() {
+    }
+
+    /**
+     * @param changes     The changes read from the plan
+     * @param applyOutput The stdout of the apply, for its outputs
+     */
+    public static String describe(List<ResourceChange> changes, String applyOutput) {
+        StringBuilder summary = new StringBuilder();
+        if (changes.stream().allMatch(change -> "read".equals(change.action()))) {
+            summary.append("Nenhuma alteração: a infraestrutura já corresponde ao código.\n");
+        } else {
+            summary.append("Plano aplicado: ")
+                    .append(count(changes, "create")).append(" para criar, ")
+                    .append(count(changes, "update")).append(" para alterar, ")
+                    .append(count(changes, "replace")).append(" para substituir, ")
+                    .append(count(changes, "delete")).append(" para destruir.\n");
+        }
+
+        changes.stream().limit(MAX_LISTED_CHANGES).forEach(change -> summary.append(line(change)).append('\n'));
+        if (changes.size() > MAX_LISTED_CHANGES) {
+            summary.append("... e mais ").append(changes.size() - MAX_LISTED_CHANGES).append(" recursos.\n");
+        }
+
+        List<String> outputs = outputs(applyOutput);
+        if (!outputs.isEmpty()) {
+            summary.append("Outputs:\n");
+            outputs.forEach(output -> summary.append(output).append('\n'));
+        }
+        return summary.toString();
+    }
+
+    /**
+     * @return The changes to the resource, data and module blocks declared by the code, e.g. to split the
+     * changes of a batched plan among its codes
+     */
+    public static List<ResourceChange> declaredBy(List<ResourceChange> changes, String tfCode) {
+        Set<String> addresses = HclScanner.scan(tfCode).stream()
+                .filter(block -> ADDRESSED_BLOCKS.contains(block.type()))
+                .map(TerraformBlock::address)
+                .collect(Collectors.toSet());
+        return changes.stream()
+                .filter(change -> addresses.stream().anyMatch(address -> change.address().equals(address)
+                        || change.address().startsWith(address + "[") || change.address().startsWith(address + ".")))
+                .toList();
+    }
+
+    private static long count(List<ResourceChange> changes, String action) {
+        return changes.stream().filter(change -> action.equals(change.action())).count();
+    }
+
+    private static String line(ResourceChange change) {
+        StringBuilder line = new StringBuilder(SYMBOLS.getOrDefault(change.action(), change.action()))
+                .append(' ').append(change.address());
+        if (!change.attributes().isEmpty()) {
+            line.append(" (").append(change.attributes().entrySet().stream()
+                    .map(attribute -> attribute.getKey() + "=" + attribute.getValue())
+                    .collect(Collectors.joining(", "))).append(')');
+        }
+        if (!change.changed().isEmpty()) {
+            line.append(": ").append(String.join(", ", change.changed()));
+        }
+        return line.toString();
+    }
+
+    /**
+     * @return The non-blank lines after {@code Outputs:} in the apply output
+     */
+    private static List<String> outputs(String applyOutput) {
+        String text = "\n" + applyOutput;
+        int start = text.indexOf("\nOutputs:\n");
+        if (start < 0) {
+            return List.of();
+        }
+        return text.substring(start + "\nOutputs:\n".length()).lines()
+                .filter(line -> !line.isBlank())
+                .limit(MAX_OUTPUT_LINES)
+                .toList();
+    }
+}
@@ -0,0 +1,152 @@
+package com.cloudprovideragentic.fuctions.terraform.summary;
+
+import com.cloudprovideragentic.fuctions.terraform.model.terraform.ResourceChange;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Reads the resource changes out of {@code terraform show -json <plan>}.
+ * <p>
+ * The document is read as a token stream: everything but {@code resource_changes} (prior state,
+ * configuration, planned values; megabytes on a large stack) is skipped without being materialized, and
+ * each change is reduced to a {@link ResourceChange} as soon as it has been read.
+ */
+public final class PlanJsonReader {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Atributos que identificam o recurso para quem lê o resumo, na ordem em que aparecem
+    private static final List<String> IDENTIFYING_ATTRIBUTES = List.of("name", "bucket", "function_name",
+            "queue_name", "identifier", "cluster_identifier", "instance_type", "cidr_block", "engine", "runtime");
+    private static final int MAX_VALUE_LENGTH = 80;
+
+    private PlanJsonReader() {
+    }
+
+    /**
+     * @return The changes in plan order, without no-ops
+     * @throws IOException if the text is not a JSON plan
+     */
+    public static List<ResourceChange> read(Reader json) throws IOException {
+        List<ResourceChange> changes = new ArrayList<>();
+        try (JsonParser parser = objectMapper.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "A saída do terraform show não é um objeto JSON");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("resource_changes".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        JsonNode resourceChange = parser.readValueAsTree();
+                        reduce(resourceChange).ifPresent(changes::add);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return changes;
+    }
+
+    private static Optional<ResourceChange> reduce(JsonNode resourceChange) {
+        JsonNode change = resourceChange.path("change");
+        String action = action(change.path("actions"));
+        if ("no-op".equals(action)) {
+            return Optional.empty();
+        }
+        boolean deleting = "delete".equals(action);
+        JsonNode values = change.path(deleting ? "before" : "after");
+        JsonNode sensitive = change.path(deleting ? "before_sensitive" : "after_sensitive");
+
+        Map<String, String> attributes = new LinkedHashMap<>();
+        for (String name : IDENTIFYING_ATTRIBUTES) {
+            JsonNode value = values.path(name);
+            if (value.isValueNode() && !value.isNull() && !sensitive(sensitive, name)) {
+                attributes.put(name, shorten(value.asText()));
+            }
+        }
+        JsonNode nameTag = values.path("tags").path("Name");
+        if (nameTag.isTextual() && !sensitive(sensitive, "tags", "Name")) {
+            attributes.put("tags.Name", shorten(nameTag.asText()));
+        }
+
+        List<String> changed = "update".equals(action) || "replace".equals(action) ? changed(change, action) : List.of();
+        return Optional.of(new ResourceChange(resourceChange.path("address").asText(), action, attributes, changed));
+    }
+
+    private static String action(JsonNode actions) {
+        if (actions.size() == 2) {
+            // ["delete", "create"] ou ["create", "delete"] (create_before_destroy)
+            return "replace";
+        }
+        return actions.size() == 1 ? actions.get(0).asText() : "no-op";
+    }
+
+    /**
+     * @return The attributes forcing a replacement, or else the top-level attributes whose value changes
+     */
+    private static List<String> changed(JsonNode change, String action) {
+        List<String> changed = new ArrayList<>();
+        if ("replace".equals(action)) {
+            for (JsonNode path : change.path("replace_paths")) {
+                String attribute = path.path(0).asText();
+                if (!attribute.isEmpty() && !changed.contains(attribute)) {
+                    changed.add(attribute);
+                }
+            }
+        }
+        if (!changed.isEmpty()) {
+            return changed;
+        }
+        JsonNode before = change.path("before");
+        JsonNode after = change.path("after");
+        JsonNode unknown = change.path("after_unknown");
+        Set<String> names = new TreeSet<>();
+        before.fieldNames().forEachRemaining(names::add);
+        after.fieldNames().forEachRemaining(names::add);
+        for (String name : names) {
+            // Valores só conhecidos depois do apply (arn, id, tags_all...) não são mudanças pedidas pelo código
+            if (!orNull(before.path(name)).equals(orNull(after.path(name))) && !unknown.path(name).asBoolean(false)) {
+                changed.add(name);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return Whether {@code *_sensitive} marks the attribute, or one of its parents, as sensitive
+     */
+    private static boolean sensitive(JsonNode sensitive, String... path) {
+        JsonNode node = sensitive;
+        for (String name : path) {
+            if (node.isBoolean()) {
+                return node.asBoolean();
+            }
+            node = node.path(name);
+        }
+        return node.asBoolean(false);
+    }
+
+    private static JsonNode orNull(JsonNode node) {
+        return node.isMissingNode() ? NullNode.getInstance() : node;
+    }
+
+    private static String shorten(String value) {
+        return value.length() > MAX_VALUE_LENGTH ? value.substring(0, MAX_VALUE_LENGTH - 3) + "..." : value;
+    }
+}
@@ -0,0 +1,127 @@
+package com.cloudprovideragentic.fuctions.terraform.template;
+
+import com.cloudprovideragentic.fuctions.terraform.template.RequestIntent.Kind;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Deterministic parser for the simplest requests: one S3 bucket or one SQS queue, with a name and the
+ * options the code generation prompt already fixes.
+ * <p>
+ * It only answers when it understands every word. Each word of the request must be a known service,
+ * option or filler word, a region, a number for the visibility timeout, or the name that follows
+ * "chamado", "nome", "named"... (or a quoted name). Anything else, such as a second service, a plural, a
+ * negation or an option without a template, leaves the request to the model.
+ */
+final class IntentParser {
+
+    static final String DEFAULT_REGION = "us-east-1";
+    static final int DEFAULT_VISIBILITY_TIMEOUT = 30;
+    private static final int MAX_VISIBILITY_TIMEOUT = 43_200;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern QUOTE = Pattern.compile("^[\"'`]");
+    private static final Pattern LEADING = Pattern.compile("^[\"'`(]+");
+    private static final Pattern TRAILING = Pattern.compile("[\"'`),;:!?.]+$");
+    private static final Pattern REGION = Pattern.compile("[a-z]{2}(?:-gov)?-[a-z]+-\\d");
+    private static final Pattern SECONDS = Pattern.compile("(\\d{1,5})s?");
+    private static final Pattern BUCKET_NAME = Pattern.compile("[a-z0-9][a-z0-9.-]{1,61}[a-z0-9]");
+    private static final Pattern IP_ADDRESS = Pattern.compile("\\d+\\.\\d+\\.\\d+\\.\\d+");
+    private static final Pattern QUEUE_NAME = Pattern.compile("[A-Za-z0-9_-]{1,71}(?:\\.fifo)?");
+
+    private static final Set<String> S3 = Set.of("s3", "bucket", "balde");
+    private static final Set<String> SQS = Set.of("sqs", "fila", "queue");
+    private static final Set<String> VERSIONING = Set.of("versionamento", "versionado", "versioning", "versioned");
+    private static final Set<String> ENCRYPTION = Set.of("criptografia", "criptografado", "encriptado", "encryption",
+            "encrypted", "sse", "sse-s3", "aes256", "server-side");
+    private static final Set<String> FIFO = Set.of("fifo");
+    private static final Set<String> DEAD_LETTER = Set.of("dlq", "dead", "letter", "dead-letter", "mortas");
+    private static final Set<String> TIMEOUT = Set.of("timeout", "visibilidade", "visibility");
+    private static final Set<String> NAMING = Set.of("chamado", "chamada", "nome", "nomeado", "nomeada", "named", "called");
+    private static final Set<String> FILLER = Set.of(
+            "crie", "criar", "cria", "provisione", "provisionar", "suba", "subir", "gere", "gerar", "faca", "adicione",
+            "adicionar", "quero", "preciso", "por", "favor", "create", "please", "add",
+            "um", "uma", "o", "a", "novo", "nova", "com", "e", "de", "do", "da", "no", "na", "em", "lado", "servidor",
+            "mensagens", "habilitado", "habilitada", "ativado", "ativada", "regiao", "aws", "amazon",
+            "an", "new", "with", "and", "in", "the", "region", "enabled", "segundos", "seconds");
+
+    private IntentParser() {
+    }
+
+    static Optional<RequestIntent> parse(String userPrompt) {
+        boolean s3 = false;
+        boolean sqs = false;
+        boolean versioning = false;
+        boolean encryption = false;
+        boolean fifo = false;
+        boolean deadLetter = false;
+        boolean timeout = false;
+        Integer seconds = null;
+        String name = null;
+        String region = null;
+        boolean nameNext = false;
+
+        for (String raw : WHITESPACE.split(userPrompt.strip())) {
+            String token = TRAILING.matcher(LEADING.matcher(raw).replaceAll("")).replaceAll("");
+            if (token.isEmpty()) {
+                continue;
+            }
+            String word = DIACRITICS.matcher(Normalizer.normalize(token, Normalizer.Form.NFD)).replaceAll("")
+                    .toLowerCase(Locale.ROOT);
+
+            if (nameNext || QUOTE.matcher(raw).lookingAt()) {
+                // Um segundo nome indica mais de um recurso
+                if (name != null) {
+                    return Optional.empty();
+                }
+                name = token;
+                nameNext = false;
+            } else if (NAMING.contains(word)) {
+                nameNext = true;
+            } else if (REGION.matcher(word).matches() && region == null) {
+                region = word;
+            } else if (SECONDS.matcher(word).matches() && seconds == null) {
+                seconds = Integer.parseInt(word.replace("s", ""));
+            } else if (S3.contains(word)) {
+                s3 = true;
+            } else if (SQS.contains(word)) {
+                sqs = true;
+            } else if (VERSIONING.contains(word)) {
+                versioning = true;
+            } else if (ENCRYPTION.contains(word)) {
+                encryption = true;
+            } else if (FIFO.contains(word)) {
+                fifo = true;
+            } else if (DEAD_LETTER.contains(word)) {
+                deadLetter = true;
+            } else if (TIMEOUT.contains(word)) {
+                timeout = true;
+            } else if (!FILLER.contains(word)) {
+                return Optional.empty();
+            }
+        }
+
+        if (name == null || s3 == sqs || timeout != (seconds != null)) {
+            return Optional.empty();
+        }
+        String awsRegion = region != null ? region : DEFAULT_REGION;
+        if (s3) {
+            boolean valid = BUCKET_NAME.matcher(name).matches() && !IP_ADDRESS.matcher(name).matches()
+                            && !name.contains("..");
+            return valid && !fifo && !deadLetter && !timeout
+                    ? Optional.of(new RequestIntent(Kind.S3_BUCKET, name, awsRegion, versioning, encryption, false, false, 0))
+                    : Optional.empty();
+        }
+        boolean fifoQueue = fifo || name.endsWith(".fifo");
+        boolean valid = QUEUE_NAME.matcher(name).matches() && (seconds == null || seconds <= MAX_VISIBILITY_TIMEOUT);
+        return valid && !versioning && !encryption
+                ? Optional.of(new RequestIntent(Kind.SQS_QUEUE, name, awsRegion, false, false, fifoQueue, deadLetter,
+                        seconds != null ? seconds : DEFAULT_VISIBILITY_TIMEOUT))
+                : Optional.empty();
+    }
+}
@@ -0,0 +1,27 @@
+package com.cloudprovideragentic.fuctions.terraform.template;
+
+/**
+ * A single-resource request understood without the model.
+ *
+ * @param kind                     Which template answers it
+ * @param name                     Bucket or queue name, as the operator wrote it ({@code .fifo} included)
+ * @param region                   AWS region, {@code us-east-1} when not given
+ * @param versioning               S3 only
+ * @param encryption               S3 only: SSE-S3 (AES256) default encryption
+ * @param fifo                     SQS only
+ * @param deadLetterQueue          SQS only: a second queue plus the redrive policy
+ * @param visibilityTimeoutSeconds SQS only
+ */
+record RequestIntent(
+        Kind kind,
+        String name,
+        String region,
+        boolean versioning,
+        boolean encryption,
+        boolean fifo,
+        boolean deadLetterQueue,
+        int visibilityTimeoutSeconds
+) {
+
+    enum Kind { S3_BUCKET, SQS_QUEUE }
+}
@@ -0,0 +1,191 @@
+package com.cloudprovideragentic.fuctions.terraform.template;
+
+import com.cloudprovideragentic.fuctions.terraform.metrics.PipelineMetrics;
+import com.cloudprovideragentic.fuctions.terraform.model.plans.TerraformPlanResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Answers the most common requests, a single S3 bucket or SQS queue, from parameterized HCL templates instead
+ * of the model. The templates follow the same rules the code generation prompt gives the model. Requests the
+ * {@link IntentParser} does not fully understand return empty and go to the model.
+ */
+@Component
+public class TemplatePlanner {
+
+    private static final Logger log = LoggerFactory.getLogger(TemplatePlanner.class);
+
+    static final int MAX_RECEIVE_COUNT = 5;
+
+    private static final String PROVIDERS = """
+            terraform {
+              required_providers {
+                aws = {
+                  source = "hashicorp/aws"
+                }
+              }
+            }
+
+            provider "aws" {
+              region = "%s"
+            }
+            """;
+
+    private final boolean enabled;
+    private final PipelineMetrics metrics;
+
+    public TemplatePlanner(@Value("${terraform.templates.enabled}") boolean enabled, PipelineMetrics metrics) {
+        this.enabled = enabled;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return The plan for the request, or empty when it must be generated by the model
+     */
+    public Optional<TerraformPlanResult> plan(String userPrompt) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        try (PipelineMetrics.Phase phase = metrics.start("template.plan")) {
+            Optional<TerraformPlanResult> plan = IntentParser.parse(userPrompt).map(TemplatePlanner::render);
+            phase.outcome(plan.isPresent() ? PipelineMetrics.OK : PipelineMetrics.FALLBACK);
+            plan.ifPresent(result -> log.debug("Pedido atendido por template, sem chamar o modelo: {}", userPrompt));
+            return plan;
+        }
+    }
+
+    static TerraformPlanResult render(RequestIntent intent) {
+        return switch (intent.kind()) {
+            case S3_BUCKET -> bucket(intent);
+            case SQS_QUEUE -> queue(intent);
+        };
+    }
+
+    private static TerraformPlanResult bucket(RequestIntent intent) {
+        String label = label(intent.name());
+        String bucket = "aws_s3_bucket." + label + ".id";
+        StringBuilder code = new StringBuilder(PROVIDERS.formatted(intent.region()));
+        List<String> features = new ArrayList<>();
+
+        code.append('\n').append(resource("aws_s3_bucket", label, List.of(
+                attribute("bucket", quoted(intent.name())))));
+        if (intent.versioning()) {
+            features.add("versionamento habilitado");
+            code.append('\n').append("""
+                    resource "aws_s3_bucket_versioning" "%s" {
+                      bucket = %s
+                      versioning_configuration {
+                        status = "Enabled"
+                      }
+                    }
+                    """.formatted(label, bucket));
+        }
+        if (intent.encryption()) {
+            features.add("criptografia SSE-S3 (AES256)");
+            code.append('\n').append("""
+                    resource "aws_s3_bucket_server_side_encryption_configuration" "%s" {
+                      bucket = %s
+                      rule {
+                        apply_server_side_encryption_by_default {
+                          sse_algorithm = "AES256"
+                        }
+                      }
+                    }
+                    """.formatted(label, bucket));
+        }
+        features.add("acesso público bloqueado");
+        code.append('\n').append(resource("aws_s3_bucket_public_access_block", label, List.of(
+                attribute("bucket", bucket),
+                attribute("block_public_acls", "true"),
+                attribute("block_public_policy", "true"),
+                attribute("ignore_public_acls", "true"),
+                attribute("restrict_public_buckets", "true"))));
+
+        return new TerraformPlanResult("Será criado o bucket S3 " + intent.name() + " na região " + intent.region()
+                                       + ", com " + joined(features) + ".", code.toString());
+    }
+
+    private static TerraformPlanResult queue(RequestIntent intent) {
+        String base = intent.name().endsWith(".fifo")
+                ? intent.name().substring(0, intent.name().length() - ".fifo".length())
+                : intent.name();
+        String suffix = intent.fifo() ? ".fifo" : "";
+        String label = label(base);
+        StringBuilder code = new StringBuilder(PROVIDERS.formatted(intent.region()));
+        List<String> features = new ArrayList<>();
+        features.add("visibility timeout de " + intent.visibilityTimeoutSeconds() + " segundos");
+        if (intent.fifo()) {
+            features.add("deduplicação baseada em conteúdo");
+        }
+
+        List<Map.Entry<String, String>> attributes = new ArrayList<>();
+        attributes.add(attribute("name", quoted(base + suffix)));
+        if (intent.fifo()) {
+            attributes.add(attribute("fifo_queue", "true"));
+            attributes.add(attribute("content_based_deduplication", "true"));
+        }
+        attributes.add(attribute("visibility_timeout_seconds", String.valueOf(intent.visibilityTimeoutSeconds())));
+
+        if (intent.deadLetterQueue()) {
+            String dlqName = base + "-dlq" + suffix;
+            features.add("dead letter queue " + dlqName + " após " + MAX_RECEIVE_COUNT + " recebimentos");
+            List<Map.Entry<String, String>> dlq = new ArrayList<>(attributes.subList(0, intent.fifo() ? 3 : 1));
+            dlq.set(0, attribute("name", quoted(dlqName)));
+            code.append('\n').append(resource("aws_sqs_queue", label + "_dlq", dlq));
+            attributes.add(attribute("redrive_policy", """
+                    jsonencode({
+                        deadLetterTargetArn = aws_sqs_queue.%s_dlq.arn
+                        maxReceiveCount     = %d
+                      })""".formatted(label, MAX_RECEIVE_COUNT)));
+        }
+        code.append('\n').append(resource("aws_sqs_queue", label, attributes));
+
+        return new TerraformPlanResult("Será criada a fila SQS " + (intent.fifo() ? "FIFO " : "") + base + suffix
+                                       + " na região " + intent.region() + ", com " + joined(features) + ".",
+                code.toString());
+    }
+
+    /**
+     * A resource block with its attributes aligned as {@code terraform fmt} does.
+     */
+    private static String resource(String type, String label, List<Map.Entry<String, String>> attributes) {
+        int width = attributes.stream().mapToInt(attribute -> attribute.getKey().length()).max().orElse(0);
+        StringBuilder block = new StringBuilder("resource \"" + type + "\" \"" + label + "\" {\n");
+        for (Map.Entry<String, String> attribute : attributes) {
+            block.append("  ").append(String.format("%-" + width + "s", attribute.getKey()))
+                    .append(" = ").append(attribute.getValue()).append('\n');
+        }
+        return block.append("}\n").toString();
+    }
+
+    private static Map.Entry<String, String> attribute(String name, String value) {
+        return Map.entry(name, value);
+    }
+
+    private static String quoted(String value) {
+        return "\"" + value + "\"";
+    }
+
+    /**
+     * @return A Terraform identifier for the resource name: letters, digits, underscores and hyphens,
+     * starting with a letter or underscore
+     */
+    static String label(String name) {
+        String label = name.replaceAll("[^A-Za-z0-9_-]", "_");
+        return Character.isLetter(label.charAt(0)) || label.charAt(0) == '_' ? label : "_" + label;
+    }
+
+    private static String joined(List<String> items) {
+        if (items.size() == 1) {
+            return items.get(0);
+        }
+        return String.join(", ", items.subList(0, items.size() - 1)) + " e " + items.get(items.size() - 1);
+    }
+}
@@ -0,0 +1,264 @@
+package com.cloudprovideragentic.fuctions.terraform.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.CRC32C;
+
+/**
+ * Persisted index of the blocks of a main.tf: address, content hash and character offsets.
+ * <p>
+ * The index remembers the size, modification time and CRC-32C of the file it describes. When the size or
+ * modification time differs (e.g. main.tf was edited by hand) it is rebuilt with a single scan of the file.
+ * The CRC-32C is only compared when main.tf is not older than the index itself, i.e. an edit could share the
+ * timestamp of the last save on a filesystem with coarse timestamps. The checksum is kept up to date from
+ * the bytes written, so saving never reads main.tf back. {@code locals} blocks are keyed by the names they
+ * define, so a changed {@code locals} block replaces the one it redefines.
+ */
+final class BlockIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(BlockIndex.class);
+
+    static final String INDEX_FILE = ".agent-index.json";
+
+    private static final String LOCALS = "locals";
+    private static final String LOCALS_PREFIX = "locals:";
+    // Polinômio de Castagnoli refletido, para combinar CRC-32C de trechos consecutivos
+    private static final int CRC32C_POLY = 0x82F63B78;
+    private static final int[] X2N = new int[32];
+
+    static {
+        int p = 1 << 30;
+        X2N[0] = p;
+        for (int n = 1; n < X2N.length; n++) {
+            X2N[n] = p = multModP(p, p);
+        }
+    }
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Path indexFile;
+    private final Map<String, Entry> entries;
+    private int length;
+    private long checksum;
+
+    private BlockIndex(Path indexFile, Map<String, Entry> entries, int length, long checksum) {
+        this.indexFile = indexFile;
+        this.entries = entries;
+        this.length = length;
+        this.checksum = checksum;
+    }
+
+    /**
+     * Loads the index of the given main.tf, rebuilding it when it is missing or stale.
+     */
+    static BlockIndex load(Path tfFile) throws IOException {
+        Path indexFile = tfFile.resolveSibling(INDEX_FILE);
+        if (Files.exists(indexFile)) {
+            try {
+                Snapshot snapshot = objectMapper.readValue(indexFile.toFile(), Snapshot.class);
+                FileTime modified = Files.getLastModifiedTime(tfFile);
+                if (snapshot.size() == Files.size(tfFile) && snapshot.lastModified() == modified.toMillis()) {
+                    BlockIndex index = new BlockIndex(indexFile, new HashMap<>(snapshot.entries()), snapshot.length(),
+                            snapshot.checksum());
+                    if (modified.compareTo(Files.getLastModifiedTime(indexFile)) < 0) {
+                        return index;
+                    }
+                    // Mesmo instante do índice: uma edição logo depois do save teria o mesmo tamanho e mtime
+                    byte[] content = Files.readAllBytes(tfFile);
+                    if (snapshot.checksum() == checksum(content)) {
+                        return index;
+                    }
+                    return build(tfFile, new String(content, StandardCharsets.UTF_8));
+                }
+            } catch (IOException e) {
+                log.warn("Índice {} ilegível, reconstruindo: {}", indexFile, e.getMessage());
+            }
+        }
+        return build(tfFile, Files.readString(tfFile));
+    }
+
+    /**
+     * Builds the index of a file holding exactly {@code content}.
+     */
+    static BlockIndex build(Path tfFile, String content) {
+        BlockIndex index = new BlockIndex(tfFile.resolveSibling(INDEX_FILE), new HashMap<>(), content.length(),
+                checksum(content.getBytes(StandardCharsets.UTF_8)));
+        for (TerraformBlock block : HclScanner.scan(content)) {
+            String text = block.text(content);
+            index.entries.put(key(content, block, text), new Entry(hash(text), block.start(), block.end()));
+        }
+        return index;
+    }
+
+    /**
+     * @return The index key of a block: its address, the sorted names a {@code locals} block defines, or
+     * type plus content hash for the other blocks without an address of their own (moved, import...)
+     */
+    static String key(CharSequence source, TerraformBlock block, String text) {
+        if (block.type().equals(LOCALS)) {
+            return LOCALS_PREFIX + String.join(",", new TreeSet<>(HclScanner.attributes(source, block)));
+        }
+        return block.labels().isEmpty() ? block.type() + "#" + hash(text) : block.address();
+    }
+
+    static String hash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    Entry get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Finds the indexed {@code locals} block that a new {@code locals} block redefines: the one that defines
+     * some of its names. The new block must define every name of the old one, or they would be lost.
+     *
+     * @param key The key of the new block, from {@link #key(CharSequence, TerraformBlock, String)}
+     * @return The key of the block to replace, or {@code null} when no indexed block shares a name
+     * @throws IllegalArgumentException if the indexed block defines names the new one does not, or several
+     *                                  indexed blocks share names with it
+     */
+    String redefinedLocals(String key) {
+        Set<String> names = localNames(key);
+        List<String> overlapping = entries.keySet().stream()
+                .filter(existing -> existing.startsWith(LOCALS_PREFIX))
+                .filter(existing -> localNames(existing).stream().anyMatch(names::contains))
+                .sorted()
+                .toList();
+        if (overlapping.isEmpty()) {
+            return null;
+        }
+        if (overlapping.size() > 1 || !names.containsAll(localNames(overlapping.get(0)))) {
+            throw new IllegalArgumentException("O bloco locals que define " + names + " redefine parte de "
+                    + overlapping.stream().map(BlockIndex::localNames).toList()
+                    + " já declarado no main.tf; repita todos os locals desse bloco no novo bloco locals.");
+        }
+        return overlapping.get(0);
+    }
+
+    private static Set<String> localNames(String key) {
+        String names = key.substring(LOCALS_PREFIX.length());
+        return names.isEmpty() ? Set.of() : new TreeSet<>(List.of(names.split(",")));
+    }
+
+    /**
+     * @return Number of characters of the indexed file
+     */
+    int length() {
+        return length;
+    }
+
+    /**
+     * Records a block written at {@code start}, at the current end of the file.
+     */
+    void appended(String key, String hash, int start, int end) {
+        entries.put(key, new Entry(hash, start, end));
+        length = Math.max(length, end);
+    }
+
+    /**
+     * Records that the block indexed as {@code previousKey}, between {@code start} and {@code end}, was replaced
+     * by a block of {@code newLength} characters indexed as {@code key}, shifting every block that comes after it.
+     */
+    void replaced(String previousKey, String key, String hash, int start, int end, int newLength) {
+        int delta = newLength - (end - start);
+        entries.remove(previousKey);
+        entries.replaceAll((k, e) -> e.start() >= end ? new Entry(e.hash(), e.start() + delta, e.end() + delta) : e);
+        entries.put(key, new Entry(hash, start, start + newLength));
+        length += delta;
+    }
+
+    /**
+     * Records that main.tf was rewritten with exactly {@code content}.
+     */
+    void rewritten(byte[] content) {
+        checksum = checksum(content);
+    }
+
+    /**
+     * Records that {@code bytes} were appended to main.tf.
+     */
+    void appendedBytes(byte[] bytes) {
+        checksum = combine(checksum, checksum(bytes), bytes.length);
+    }
+
+    void save(Path tfFile) throws IOException {
+        Snapshot snapshot = new Snapshot(Files.size(tfFile), Files.getLastModifiedTime(tfFile).toMillis(),
+                checksum, length, entries);
+        Path tmp = indexFile.resolveSibling(INDEX_FILE + ".tmp");
+        objectMapper.writeValue(tmp.toFile(), snapshot);
+        Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long checksum(byte[] content) {
+        CRC32C crc = new CRC32C();
+        crc.update(content);
+        return crc.getValue();
+    }
+
+    /**
+     * @return The CRC-32C of {@code A} followed by {@code B}, from the CRC-32C of each and the length of B
+     */
+    static long combine(long crcA, long crcB, long lengthB) {
+        return (multModP(x8nModP(lengthB), (int) crcA) ^ (int) crcB) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * @return a(x) times b(x) modulo the CRC polynomial, both in reflected bit order
+     */
+    private static int multModP(int a, int b) {
+        int m = 1 << 31;
+        int p = 0;
+        while (true) {
+            if ((a & m) != 0) {
+                p ^= b;
+                if ((a & (m - 1)) == 0) {
+                    return p;
+                }
+            }
+            m >>>= 1;
+            b = (b & 1) != 0 ? (b >>> 1) ^ CRC32C_POLY : b >>> 1;
+        }
+    }
+
+    /**
+     * @return x^(8n) modulo the CRC polynomial: the shift of a CRC over {@code n} bytes
+     */
+    private static int x8nModP(long n) {
+        int p = 1 << 31;
+        int k = 3;
+        while (n != 0) {
+            if ((n & 1) != 0) {
+                p = multModP(X2N[k & 31], p);
+            }
+            n >>>= 1;
+            k++;
+        }
+        return p;
+    }
+
+    record Entry(String hash, int start, int end) {}
+
+    record Snapshot(long size, long lastModified, long checksum, int length, Map<String, Entry> entries) {}
+}
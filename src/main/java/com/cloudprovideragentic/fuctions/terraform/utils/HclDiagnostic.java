@@ -0,0 +1,15 @@
+package com.cloudprovideragentic.fuctions.terraform.utils;
+
+/**
+ * A problem found by {@link HclValidator}.
+ *
+ * @param line    1-based line of the problem, or {@code 0} when it concerns the whole code
+ * @param message Description in the language of the prompts sent back to the model
+ */
+public record HclDiagnostic(int line, String message) {
+
+    @Override
+    public String toString() {
+        return line > 0 ? "linha " + line + ": " + message : message;
+    }
+}
@@ -0,0 +1,452 @@
+package com.cloudprovideragentic.fuctions.terraform.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Single-pass scanner that finds the top-level blocks of HCL code.
+ * <p>
+ * Only block headers are materialized; bodies are skipped by a small lexer that understands quoted
+ * strings with {@code ${}}/{@code %{}} templates, heredocs ({@code <<EOF}, {@code <<-EOF}) and the three
+ * comment styles, so braces inside any of them do not affect block boundaries. It is the only HCL lexer of
+ * the project: {@link HclValidator} gets the structural problems (unclosed literals, mismatched delimiters,
+ * content outside blocks) from it and only adds its own rules.
+ */
+public final class HclScanner {
+
+    /**
+     * Receives the structural problems found while scanning.
+     */
+    @FunctionalInterface
+    interface Problems {
+
+        /**
+         * @param offset  Offset of the problem in the source
+         * @param message Description in the language of the prompts sent back to the model
+         */
+        void report(int offset, String message);
+    }
+
+    private final CharSequence source;
+    private final int length;
+    private final Problems problems;
+    private int pos;
+
+    private HclScanner(CharSequence source, Problems problems) {
+        this.source = source;
+        this.length = source.length();
+        this.problems = problems;
+    }
+
+    /**
+     * @return The top-level blocks of the code, in source order
+     * @throws IllegalArgumentException if a block is not closed
+     */
+    public static List<TerraformBlock> scan(CharSequence source) {
+        return new HclScanner(source, null).blocks();
+    }
+
+    /**
+     * Scans the code reporting every structural problem instead of failing.
+     *
+     * @return The top-level blocks that were closed, in source order
+     */
+    static List<TerraformBlock> scan(CharSequence source, Problems problems) {
+        return new HclScanner(source, problems).blocks();
+    }
+
+    /**
+     * @return The names of the attributes set directly in the block body, e.g. the locals a {@code locals}
+     * block defines; nested blocks and their attributes are not included
+     */
+    public static List<String> attributes(CharSequence source, TerraformBlock block) {
+        HclScanner scanner = new HclScanner(source, null);
+        scanner.pos = block.start();
+        while (scanner.pos < block.end() && source.charAt(scanner.pos) != '{') {
+            scanner.skipToken();
+        }
+        return scanner.bodyAttributes(block.end());
+    }
+
+    private List<TerraformBlock> blocks() {
+        List<TerraformBlock> blocks = new ArrayList<>();
+        while (pos < length) {
+            char c = source.charAt(pos);
+            if (Character.isWhitespace(c)) {
+                pos++;
+            } else if (skipComment()) {
+                continue;
+            } else if (isIdentifierStart(c)) {
+                TerraformBlock block = block();
+                if (block != null) {
+                    blocks.add(block);
+                }
+            } else if (c == '`') {
+                report(pos, "cerca de código markdown (```) no código; remova-a");
+                skipLine();
+            } else {
+                // Atributo ou lixo no nível superior: descarta a linha
+                report(pos, "conteúdo inesperado fora de um bloco: " + lineAt(pos));
+                skipLine();
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Reads a block header ({@code type "label" label ... {}) and skips its body.
+     *
+     * @return The block, or {@code null} when the line is not a block header or the body is not closed
+     */
+    private TerraformBlock block() {
+        int start = pos;
+        String type = identifier();
+        List<String> labels = new ArrayList<>(2);
+        while (pos < length) {
+            char c = source.charAt(pos);
+            if (c == ' ' || c == '\t') {
+                pos++;
+            } else if (c == '"') {
+                int labelStart = pos + 1;
+                if (!skipQuoted()) {
+                    return null;
+                }
+                labels.add(source.subSequence(labelStart, pos - 1).toString());
+            } else if (isIdentifierStart(c)) {
+                labels.add(identifier());
+            } else if (c == '{') {
+                return skipBody(start, type, labels) ? new TerraformBlock(type, List.copyOf(labels), start, pos) : null;
+            } else if (c == '=') {
+                report(start, "atributo '" + type + "' fora de um bloco");
+                skipLine();
+                return null;
+            } else {
+                report(pos, "esperado '{' na mesma linha do cabeçalho do bloco " + type);
+                skipLine();
+                return null;
+            }
+        }
+        report(start, "bloco " + type + " sem corpo");
+        return null;
+    }
+
+    /**
+     * Skips a brace-delimited body starting at the opening brace, leaving {@link #pos} after the closing one.
+     * Brackets and parentheses must be closed by their own delimiter.
+     *
+     * @return {@code true} if the body was closed
+     * @throws IllegalArgumentException if the body is not closed and problems are not being reported
+     */
+    private boolean skipBody(int blockStart, String type, List<String> labels) {
+        Deque<Integer> open = new ArrayDeque<>();
+        while (pos < length) {
+            char c = source.charAt(pos);
+            if (c == '"') {
+                if (!skipQuoted()) {
+                    skipLine();
+                }
+            } else if (c == '<' && startsHeredoc()) {
+                skipHeredoc();
+            } else if (skipComment()) {
+                continue;
+            } else if (c == '{' || c == '[' || c == '(') {
+                open.push(pos++);
+            } else if (c == '}' || c == ']' || c == ')') {
+                int opening = open.pop();
+                char expected = closing(source.charAt(opening));
+                if (c != expected) {
+                    report(pos, "'" + c + "' fecha '" + source.charAt(opening) + "' aberto na linha " + line(opening)
+                                + "; esperado '" + expected + "'");
+                }
+                pos++;
+                if (open.isEmpty()) {
+                    return true;
+                }
+            } else if (c == '`') {
+                report(pos, "cerca de código markdown (```) no código; remova-a");
+                while (pos < length && source.charAt(pos) == '`') {
+                    pos++;
+                }
+            } else {
+                pos++;
+            }
+        }
+        if (problems == null) {
+            throw new IllegalArgumentException("Bloco " + describe(type, labels) + " não foi fechado.");
+        }
+        if (open.size() > 1) {
+            int innermost = open.peek();
+            report(innermost, "'" + source.charAt(innermost) + "' não foi fechado");
+        }
+        report(blockStart, "bloco " + describe(type, labels) + " não foi fechado");
+        return false;
+    }
+
+    /**
+     * Reads the attribute names at depth one of a body, from its opening brace up to {@code end}.
+     */
+    private List<String> bodyAttributes(int end) {
+        List<String> names = new ArrayList<>();
+        int depth = 0;
+        boolean lineStart = true;
+        while (pos < end) {
+            char c = source.charAt(pos);
+            if (c == '\n') {
+                lineStart = true;
+                pos++;
+            } else if (c == ' ' || c == '\t' || c == '\r') {
+                pos++;
+            } else if (depth == 1 && lineStart && isIdentifierStart(c)) {
+                lineStart = false;
+                String name = identifier();
+                while (pos < end && (source.charAt(pos) == ' ' || source.charAt(pos) == '\t')) {
+                    pos++;
+                }
+                if (pos < end && source.charAt(pos) == '=' && peek(1) != '=') {
+                    names.add(name);
+                }
+            } else if (c == '{' || c == '[' || c == '(') {
+                lineStart = false;
+                depth++;
+                pos++;
+            } else if (c == '}' || c == ']' || c == ')') {
+                depth--;
+                pos++;
+            } else {
+                lineStart = false;
+                skipToken();
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Skips one string, heredoc, comment or character.
+     */
+    private void skipToken() {
+        char c = source.charAt(pos);
+        if (c == '"') {
+            skipQuoted();
+        } else if (c == '<' && startsHeredoc()) {
+            skipHeredoc();
+        } else if (!skipComment()) {
+            pos++;
+        }
+    }
+    /**
+     * Skips a quoted string starting at the opening quote, including template interpolations.
+     * A newline also ends the string, since HCL quoted strings cannot span lines.
+     *
+     * @return {@code false} if the string is not closed on its line
+     */
+    private boolean skipQuoted() {
+        int start = pos++;
+        while (pos < length) {
+            char c = source.charAt(pos);
+            if (c == '\\') {
+                pos += 2;
+            } else if (c == '"') {
+                pos++;
+                return true;
+            } else if (c == '\n') {
+                break;
+            } else if ((c == '$' || c == '%') && peek(1) == '{') {
+                pos += 2;
+                skipTemplate();
+            } else if ((c == '$' || c == '%') && peek(1) == c && peek(2) == '{') {
+                // $${ e %%{ são escapes literais
+                pos += 3;
+            } else {
+                pos++;
+            }
+        }
+        pos = Math.min(pos, length);
+        report(start, "string não fechada");
+        return false;
+    }
+
+    /**
+     * Skips a template expression after its {@code ${} or {@code %{} up to the matching closing brace, or
+     * up to the end of the line when it is not closed.
+     */
+    private void skipTemplate() {
+        int depth = 1;
+        while (pos < length && source.charAt(pos) != '\n') {
+            char c = source.charAt(pos);
+            if (c == '"') {
+                if (!skipQuoted()) {
+                    return;
+                }
+            } else if (c == '{') {
+                depth++;
+                pos++;
+            } else if (c == '}') {
+                pos++;
+                if (--depth == 0) {
+                    return;
+                }
+            } else {
+                pos++;
+            }
+        }
+    }
+
+    private boolean startsHeredoc() {
+        if (peek(1) != '<') {
+            return false;
+        }
+        int i = pos + 2;
+        if (i < length && source.charAt(i) == '-') {
+            i++;
+        }
+        return i < length && isIdentifierStart(source.charAt(i));
+    }
+
+    /**
+     * Skips a heredoc up to and including the line holding only its delimiter.
+     */
+    private void skipHeredoc() {
+        int start = pos;
+        pos += 2;
+        if (source.charAt(pos) == '-') {
+            pos++;
+        }
+        String marker = identifier();
+        skipLine();
+        while (pos < length) {
+            int lineStart = ++pos;
+            skipLine();
+            if (isMarkerLine(lineStart, pos, marker)) {
+                return;
+            }
+        }
+        report(start, "heredoc <<" + marker + " não foi fechado");
+    }
+
+    private boolean isMarkerLine(int lineStart, int lineEnd, String marker) {
+        int start = lineStart;
+        int end = lineEnd;
+        while (start < end && Character.isWhitespace(source.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(source.charAt(end - 1))) {
+            end--;
+        }
+        if (end - start != marker.length()) {
+            return false;
+        }
+        for (int i = 0; i < marker.length(); i++) {
+            if (source.charAt(start + i) != marker.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Skips a {@code #}, {@code //} or {@code /* *}{@code /} comment at the current position.
+     *
+     * @return {@code true} if a comment was skipped
+     */
+    private boolean skipComment() {
+        char c = source.charAt(pos);
+        if (c == '#' || (c == '/' && peek(1) == '/')) {
+            skipLine();
+            return true;
+        }
+        if (c == '/' && peek(1) == '*') {
+            int start = pos;
+            pos += 2;
+            while (pos < length && !(source.charAt(pos) == '*' && peek(1) == '/')) {
+                pos++;
+            }
+            if (pos >= length) {
+                report(start, "comentário /* não foi fechado");
+            }
+            pos = Math.min(length, pos + 2);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Moves {@link #pos} to the next newline (or the end of the source).
+     */
+    private void skipLine() {
+        while (pos < length && source.charAt(pos) != '\n') {
+            pos++;
+        }
+    }
+
+    private String identifier() {
+        int start = pos;
+        while (pos < length && isIdentifierPart(source.charAt(pos))) {
+            pos++;
+        }
+        return source.subSequence(start, pos).toString();
+    }
+
+    private char peek(int offset) {
+        return pos + offset < length ? source.charAt(pos + offset) : '\0';
+    }
+
+    private void report(int offset, String message) {
+        if (problems != null) {
+            problems.report(offset, message);
+        }
+    }
+
+    /**
+     * @return The 1-based line holding the offset
+     */
+    private int line(int offset) {
+        int line = 1;
+        for (int i = 0; i < offset && i < length; i++) {
+            if (source.charAt(i) == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+
+    /**
+     * @return The trimmed line holding the offset, shortened for use in a message
+     */
+    private String lineAt(int offset) {
+        int start = offset;
+        while (start > 0 && source.charAt(start - 1) != '\n') {
+            start--;
+        }
+        int end = offset;
+        while (end < length && source.charAt(end) != '\n') {
+            end++;
+        }
+        String text = source.subSequence(start, end).toString().strip();
+        return text.length() > 80 ? text.substring(0, 77) + "..." : text;
+    }
+
+    /**
+     * @return The block header as written in messages, e.g. {@code resource "aws_s3_bucket" "logs"}
+     */
+    private static String describe(String type, List<String> labels) {
+        return labels.isEmpty() ? type : type + " \"" + String.join("\" \"", labels) + "\"";
+    }
+
+    private static char closing(char opening) {
+        return switch (opening) {
+            case '{' -> '}';
+            case '[' -> ']';
+            default -> ')';
+        };
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return Character.isLetter(c) || c == '_';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '-';
+    }
+}
@@ -0,0 +1,124 @@
+package com.cloudprovideragentic.fuctions.terraform.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static java.util.Map.entry;
+
+/**
+ * Fast in-process check of generated HCL, run before any code reaches {@code terraform}.
+ * <p>
+ * {@link HclScanner} reports the structural problems: delimiters, strings, heredocs and comments left open,
+ * and content outside blocks. On top of that the code must not be Terraform JSON, the top level must hold only
+ * blocks of known types with the right number of labels, and the code must declare the AWS provider
+ * requirements. Attributes are not type-checked; that is left to {@code terraform plan}.
+ */
+public final class HclValidator {
+
+    private static final int MAX_DIAGNOSTICS = 20;
+
+    /** Top-level block types and the number of labels each takes. */
+    private static final Map<String, Integer> BLOCK_LABELS = Map.ofEntries(
+            entry("terraform", 0),
+            entry("provider", 1),
+            entry("resource", 2),
+            entry("data", 2),
+            entry("variable", 1),
+            entry("output", 1),
+            entry("locals", 0),
+            entry("module", 1),
+            entry("moved", 0),
+            entry("import", 0),
+            entry("removed", 0),
+            entry("check", 1)
+    );
+
+    private static final Pattern REQUIRED_AWS = Pattern.compile(
+            "required_providers\\s*\\{.*?\\baws\\s*=\\s*\\{[^}]*?source\\s*=\\s*\"hashicorp/aws\"", Pattern.DOTALL);
+
+    private final CharSequence source;
+    private final List<HclDiagnostic> diagnostics = new ArrayList<>();
+
+    private HclValidator(CharSequence source) {
+        this.source = source;
+    }
+
+    /**
+     * @return The problems found, in source order; empty when the code is acceptable
+     */
+    public static List<HclDiagnostic> validate(CharSequence source) {
+        HclValidator validator = new HclValidator(source);
+        validator.check();
+        return List.copyOf(validator.diagnostics);
+    }
+
+    private void check() {
+        int first = 0;
+        while (first < source.length() && Character.isWhitespace(source.charAt(first))) {
+            first++;
+        }
+        if (first < source.length() && source.charAt(first) == '{') {
+            report(first, "código no formato JSON do Terraform; use sintaxe HCL, ex.: resource \"aws_s3_bucket\" \"nome\" { ... }");
+            return;
+        }
+        List<TerraformBlock> blocks = HclScanner.scan(source, this::report);
+        if (blocks.isEmpty() && diagnostics.isEmpty()) {
+            report(0, "o código Terraform está vazio");
+            return;
+        }
+        // Sem estrutura confiável não faz sentido checar os blocos obrigatórios
+        if (diagnostics.isEmpty()) {
+            checkBlocks(blocks);
+        }
+    }
+
+    private void checkBlocks(List<TerraformBlock> blocks) {
+        int terraformBlock = -1;
+        boolean awsRequirement = false;
+        boolean awsProvider = false;
+        for (TerraformBlock block : blocks) {
+            Integer labels = BLOCK_LABELS.get(block.type());
+            if (labels == null) {
+                report(block.start(), "tipo de bloco desconhecido '" + block.type() + "'");
+                continue;
+            }
+            if (block.labels().size() != labels) {
+                report(block.start(), "bloco " + block.type() + " precisa de " + labels + " rótulo(s), encontrado(s) "
+                        + block.labels().size());
+                continue;
+            }
+            if ("terraform".equals(block.type())) {
+                terraformBlock = block.start();
+                awsRequirement |= REQUIRED_AWS.matcher(block.text(source)).find();
+            } else if ("provider".equals(block.type()) && "aws".equals(block.labels().getFirst())) {
+                awsProvider = true;
+            }
+        }
+        if (terraformBlock < 0) {
+            report(-1, "bloco terraform { required_providers { aws = { source = \"hashicorp/aws\" } } } ausente");
+        } else if (!awsRequirement) {
+            report(terraformBlock, "bloco terraform sem required_providers para aws (source = \"hashicorp/aws\")");
+        }
+        if (!awsProvider) {
+            report(-1, "bloco provider \"aws\" ausente");
+        }
+    }
+
+    private void report(int offset, String message) {
+        if (diagnostics.size() < MAX_DIAGNOSTICS) {
+            diagnostics.add(new HclDiagnostic(offset < 0 ? 0 : line(offset), message));
+        }
+    }
+
+    private int line(int offset) {
+        int line = 1;
+        for (int i = 0; i < offset && i < source.length(); i++) {
+            if (source.charAt(i) == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+}
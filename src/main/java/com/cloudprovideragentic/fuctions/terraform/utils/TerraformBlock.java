@@ -0,0 +1,38 @@
+package com.cloudprovideragentic.fuctions.terraform.utils;
+
+import java.util.List;
+
+/**
+ * A top-level HCL block, e.g. {@code resource "aws_s3_bucket" "logs" { ... }}, located by offsets into the
+ * scanned source.
+ *
+ * @param type   The block type ({@code resource}, {@code data}, {@code provider}, {@code terraform}, ...)
+ * @param labels The block labels without quotes
+ * @param start  Offset of the type keyword
+ * @param end    Offset just after the closing brace
+ */
+public record TerraformBlock(String type, List<String> labels, int start, int end) {
+
+    public boolean isResource() {
+        return "resource".equals(type) && labels.size() == 2;
+    }
+
+    /**
+     * @return The Terraform address of the block: {@code aws_s3_bucket.logs}, {@code data.aws_iam_policy.x},
+     * {@code module.vpc}, {@code var.region}, {@code output.arn}, {@code provider.aws}, {@code locals}...
+     */
+    public String address() {
+        if (isResource()) {
+            return labels.get(0) + "." + labels.get(1);
+        }
+        String prefix = "variable".equals(type) ? "var" : type;
+        return labels.isEmpty() ? prefix : prefix + "." + String.join(".", labels);
+    }
+
+    /**
+     * @return The block source, from the type keyword to the closing brace
+     */
+    public String text(CharSequence source) {
+        return source.subSequence(start, end).toString();
+    }
+}
@@ -1,89 +1,256 @@
 package com.cloudprovideragentic.fuctions.terraform.utils;
 
+import com.cloudprovideragentic.fuctions.terraform.metrics.PipelineMetrics;
+import com.cloudprovideragentic.fuctions.terraform.stack.StackName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Component
 public class TerraformFileManager {
 
+    private static final Logger log = LoggerFactory.getLogger(TerraformFileManager.class);
+
     private static final String INFRA_DIR = "infra";
+    private static final String STACKS_DIR = "stacks";
     private static final String TF_FILENAME = "main.tf";
+    private static final List<String> WORKING_STATE_FILES = List.of(TF_FILENAME, ".terraform.lock.hcl", "terraform.tfstate");
+    private static final String APPEND_SEPARATOR = "\n\n# ========================================\n" +
+                                                   "# Recursos adicionados\n" +
+                                                   "# ========================================\n\n";
+
+    private final PipelineMetrics metrics;
+
+    public TerraformFileManager(PipelineMetrics metrics) {
+        this.metrics = metrics;
+    }
 
     /**
-     * Prepares the infrastructure directory and writes the Terraform code.
-     * If main.tf already exists, appends only the resource blocks from the new code.
+     * Prepares the directory of the default stack ({@code infra/}) and writes the Terraform code.
      *
+     * @see #prepareStackDirectory(String, String)
+     */
+    public Path prepareInfraDirectory(String tfCode) throws IOException {
+        return prepareStackDirectory(StackName.DEFAULT, tfCode);
+    }
+
+    /**
+     * Resolves the work directory of a stack. The default stack lives directly in {@code infra/};
+     * named stacks get their own directory, and therefore their own state, under {@code infra/stacks/}.
+     */
+    public Path stackDirectory(String stack) {
+        Path infraDir = Path.of(System.getProperty("user.dir")).resolve(INFRA_DIR);
+        String name = StackName.of(stack);
+        return name.equals(StackName.DEFAULT) ? infraDir : infraDir.resolve(STACKS_DIR).resolve(name);
+    }
+
+    /**
+     * Prepares the stack directory and writes the Terraform code.
+     * If main.tf already exists, merges the blocks of the new code into it by address.
+     *
+     * @param stack  The stack name
      * @param tfCode The Terraform code to write
-     * @return Path to the infra directory where execution should occur
+     * @return Path to the stack directory where execution should occur
      * @throws IOException if directory creation or file writing fails
      */
-    public Path prepareInfraDirectory(String tfCode) throws IOException {
-        Path baseDir = Path.of(System.getProperty("user.dir"));
-        Path infraDir = baseDir.resolve(INFRA_DIR);
+    public Path prepareStackDirectory(String stack, String tfCode) throws IOException {
+        return prepareDirectory(stackDirectory(stack), tfCode);
+    }
 
+    /**
+     * Writes the Terraform code to main.tf of the given directory, merging it into an existing main.tf.
+     *
+     * @see #prepareStackDirectory(String, String)
+     */
+    public Path prepareDirectory(Path infraDir, String tfCode) throws IOException {
         Files.createDirectories(infraDir);
 
         Path tfFile = infraDir.resolve(TF_FILENAME);
+        boolean exists = Files.exists(tfFile);
 
-        if (Files.exists(tfFile)) {
-            // Arquivo existe - fazer append apenas dos recursos
-            String resourcesOnly = extractResourceBlocks(tfCode);
-            if (!resourcesOnly.isEmpty()) {
-                String separator = "\n\n# ========================================\n" +
-                                 "# Recursos adicionados\n" +
-                                 "# ========================================\n\n";
-                Files.writeString(tfFile, separator + resourcesOnly, StandardOpenOption.APPEND);
+        try (PipelineMetrics.Phase phase = metrics.start(exists ? "file.merge" : "file.write")) {
+            if (exists) {
+                // Arquivo existe - mesclar os blocos por endereço
+                mergeBlocks(tfFile, tfCode);
+            } else {
+                // Arquivo não existe - criar com código completo
+                Files.writeString(tfFile, tfCode);
+                BlockIndex.build(tfFile, tfCode).save(tfFile);
             }
-        } else {
-            // Arquivo não existe - criar com código completo
-            Files.writeString(tfFile, tfCode);
+            phase.outcome(PipelineMetrics.OK);
         }
 
         return infraDir;
     }
 
     /**
-     * Extracts only resource blocks from Terraform code.
-     * Ignores terraform{}, provider{}, and other configuration blocks.
+     * @return The main.tf of a work directory, or {@code null} when there is none
      */
-    private String extractResourceBlocks(String tfCode) {
-        StringBuilder resources = new StringBuilder();
-        String[] lines = tfCode.split("\n");
-        boolean inResourceBlock = false;
-        int braceCount = 0;
-        StringBuilder currentBlock = new StringBuilder();
-
-        for (String line : lines) {
-            String trimmed = line.trim();
-
-            // Detectar início de bloco resource
-            if (trimmed.startsWith("resource ")) {
-                inResourceBlock = true;
-                braceCount = 0;
-                currentBlock = new StringBuilder();
-            }
+    public String readConfiguration(Path dir) throws IOException {
+        Path tfFile = dir.resolve(TF_FILENAME);
+        return Files.exists(tfFile) ? Files.readString(tfFile) : null;
+    }
 
-            if (inResourceBlock) {
-                currentBlock.append(line).append("\n");
+    /**
+     * Puts back a main.tf returned by {@link #readConfiguration(Path)}, with its block index;
+     * {@code null} removes main.tf.
+     */
+    public void restoreConfiguration(Path dir, String configuration) throws IOException {
+        Path tfFile = dir.resolve(TF_FILENAME);
+        if (configuration == null) {
+            Files.deleteIfExists(tfFile);
+            Files.deleteIfExists(dir.resolve(BlockIndex.INDEX_FILE));
+            return;
+        }
+        Files.writeString(tfFile, configuration);
+        BlockIndex.build(tfFile, configuration).save(tfFile);
+    }
 
-                // Contar chaves para detectar fim do bloco
-                for (char c : line.toCharArray()) {
-                    if (c == '{') braceCount++;
-                    if (c == '}') braceCount--;
+    /**
+     * Copies the configuration, dependency lock file and local state of a work directory to another
+     * directory, which can then be planned without touching the original.
+     */
+    public void copyWorkingState(Path from, Path to) throws IOException {
+        try (PipelineMetrics.Phase phase = metrics.start("file.copy")) {
+            Files.createDirectories(to);
+            for (String file : WORKING_STATE_FILES) {
+                Path source = from.resolve(file);
+                if (Files.exists(source)) {
+                    Files.copy(source, to.resolve(file), StandardCopyOption.REPLACE_EXISTING);
                 }
+            }
+            phase.outcome(PipelineMetrics.OK);
+        }
+    }
 
-                // Fim do bloco resource
-                if (braceCount == 0 && trimmed.endsWith("}")) {
-                    resources.append(currentBlock).append("\n");
-                    inResourceBlock = false;
-                }
+    /**
+     * @return A hash of the configuration, dependency lock file and local state of a work directory
+     */
+    public String workingStateFingerprint(Path dir) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String file : WORKING_STATE_FILES) {
+                Path path = dir.resolve(file);
+                digest.update(file.getBytes(StandardCharsets.UTF_8));
+                digest.update(Files.exists(path) ? Files.readAllBytes(path) : new byte[0]);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Deletes a directory and everything under it. Missing directories are ignored.
+     */
+    public void deleteDirectory(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * Merges the blocks of the new code into an existing main.tf by address: identical blocks are skipped,
+     * changed blocks are replaced in place and new blocks are appended. A locals block replaces the one
+     * defining the same names, or a subset of them. terraform{} and provider{} stay as
+     * declared by the existing file. Only the new code is scanned; existing blocks are located through the
+     * {@link BlockIndex}, and main.tf is only read back when a block has to be replaced, or when the index
+     * cannot rule out an edit that kept its size and modification time. New blocks are appended without reading
+     * the file.
+     */
+    private void mergeBlocks(Path tfFile, String tfCode) throws IOException {
+        BlockIndex index = BlockIndex.load(tfFile);
+        List<Change> replacements = new ArrayList<>();
+        List<Change> additions = new ArrayList<>();
+        StringBuilder appended = new StringBuilder(APPEND_SEPARATOR);
+        Set<String> seen = new HashSet<>();
+        int unchanged = 0;
+
+        for (TerraformBlock block : HclScanner.scan(tfCode)) {
+            if (block.type().equals("terraform") || block.type().equals("provider")) {
+                continue;
+            }
+            String text = block.text(tfCode);
+            String key = BlockIndex.key(tfCode, block, text);
+            if (!seen.add(key)) {
+                continue;
+            }
+            String hash = BlockIndex.hash(text);
+            // Um locals alterado substitui o bloco que define os mesmos nomes
+            String previousKey = index.get(key) == null && block.type().equals("locals") ? index.redefinedLocals(key) : key;
+            BlockIndex.Entry existing = previousKey == null ? null : index.get(previousKey);
+            if (existing == null) {
+                additions.add(new Change(key, key, hash, text, appended.length(), appended.length() + text.length()));
+                appended.append(text).append("\n\n");
+            } else if (existing.hash().equals(hash)) {
+                unchanged++;
+            } else {
+                replacements.add(new Change(previousKey, key, hash, text, existing.start(), existing.end()));
+            }
+        }
+
+        if (!replacements.isEmpty()) {
+            StringBuilder content = new StringBuilder(Files.readString(tfFile));
+            // Do fim para o início, para que os offsets ainda não aplicados continuem válidos
+            replacements.sort(Comparator.comparingInt(Change::start).reversed());
+            for (Change change : replacements) {
+                content.replace(change.start(), change.end(), change.text());
+                index.replaced(change.previousKey(), change.key(), change.hash(), change.start(), change.end(),
+                        change.text().length());
+            }
+            int base = index.length();
+            if (!additions.isEmpty()) {
+                content.append(appended);
             }
+            byte[] bytes = content.toString().getBytes(StandardCharsets.UTF_8);
+            Files.write(tfFile, bytes);
+            index.rewritten(bytes);
+            recordAdditions(index, additions, base);
+        } else if (!additions.isEmpty()) {
+            int base = index.length();
+            byte[] bytes = appended.toString().getBytes(StandardCharsets.UTF_8);
+            Files.write(tfFile, bytes, StandardOpenOption.APPEND);
+            index.appendedBytes(bytes);
+            recordAdditions(index, additions, base);
         }
 
-        return resources.toString();
+        if (!replacements.isEmpty() || !additions.isEmpty()) {
+            index.save(tfFile);
+        }
+        log.info("main.tf mesclado: {} adicionados, {} substituídos, {} inalterados",
+                additions.size(), replacements.size(), unchanged);
+    }
+
+    private static void recordAdditions(BlockIndex index, List<Change> additions, int base) {
+        for (Change change : additions) {
+            index.appended(change.key(), change.hash(), base + change.start(), base + change.end());
+        }
     }
+
+    /**
+     * A block to write: its offsets are the current position in main.tf for replacements and the
+     * position within the appended text for additions. {@code previousKey} is the key of the replaced block.
+     */
+    private record Change(String previousKey, String key, String hash, String text, int start, int end) {}
 }
@@ -1,11 +1,12 @@
 package com.cloudprovideragentic;
 
-import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
 
-@SpringBootTest
-@Disabled
+// Com o perfil replay o contexto sobe sem Bedrock nem credenciais AWS
+@SpringBootTest(properties = {"agent.chat.interactive=false", "agent.metrics.dump-file="})
+@ActiveProfiles("replay")
 class IaexamplesApplicationTests {
 
 	@Test
@@ -0,0 +1,107 @@
+package com.cloudprovideragentic.chat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonStreamReaderTest {
+
+    private static final String RESPONSE = """
+            {
+              "planDescription": "Será criado: bucket \\"logs\\" com versionamento",
+              "terraformCode": "resource \\"aws_s3_bucket\\" \\"logs\\" {\\n  bucket = \\"logs-${var.env}\\"\\n  tags = { Dono = \\"time\\\\\\\\infra\\" }\\n}\\n# caminho C:\\\\tmp \\u00e9 \\ud83d\\ude80"
+            }""";
+
+    @Test
+    @DisplayName("Should read the same fields as a full JSON parse for every chunk size")
+    void shouldMatchFullParseForEveryChunkSize() throws Exception {
+        JsonNode expected = new ObjectMapper().readTree(RESPONSE);
+
+        for (int size = 1; size <= RESPONSE.length(); size++) {
+            StringBuilder streamed = new StringBuilder();
+            JsonStreamReader reader = new JsonStreamReader("terraformCode", streamed::append, (field, value) -> {});
+
+            for (String chunk : chunks(RESPONSE, size)) {
+                reader.accept(chunk);
+            }
+
+            assertTrue(reader.complete(), "chunk size " + size);
+            assertEquals(expected.get("planDescription").asText(), reader.field("planDescription"), "chunk size " + size);
+            assertEquals(expected.get("terraformCode").asText(), reader.field("terraformCode"), "chunk size " + size);
+            assertEquals(expected.get("terraformCode").asText(), streamed.toString(), "chunk size " + size);
+        }
+    }
+
+    @Test
+    @DisplayName("Should report the description before the code has finished")
+    void shouldReportDescriptionBeforeCodeEnds() {
+        List<String> events = new ArrayList<>();
+        JsonStreamReader reader = new JsonStreamReader("terraformCode", chunk -> events.add("code:" + chunk),
+                (field, value) -> events.add(field + "=" + value));
+
+        reader.accept("{\"planDescription\": \"Fila SQS\", \"terraform");
+        assertEquals(List.of("planDescription=Fila SQS"), events);
+
+        reader.accept("Code\": \"resource \\\"aws_sqs_queue\\\"");
+        reader.accept(" \\\"q\\\" {}\"}");
+
+        assertEquals(List.of(
+                "planDescription=Fila SQS",
+                "code:resource \"aws_sqs_queue\"",
+                "code: \"q\" {}",
+                "terraformCode=resource \"aws_sqs_queue\" \"q\" {}"
+        ), events);
+    }
+
+    @Test
+    @DisplayName("Should not split a surrogate pair between streamed chunks")
+    void shouldHoldBackHighSurrogate() {
+        List<String> streamed = new ArrayList<>();
+        JsonStreamReader reader = new JsonStreamReader("terraformCode", streamed::add, (field, value) -> {});
+
+        reader.accept("{\"terraformCode\": \"a\\ud83d");
+        reader.accept("\\ude80\"}");
+
+        assertEquals(List.of("a", "\ud83d\ude80"), streamed);
+    }
+
+    @Test
+    @DisplayName("Should ignore a markdown fence, trailing text and non-string values")
+    void shouldIgnoreSurroundingTextAndOtherValues() {
+        JsonStreamReader reader = new JsonStreamReader("terraformCode", chunk -> {}, (field, value) -> {});
+
+        reader.accept("```json\n{\"versao\": 2, \"extra\": {\"a\": [1, \"}\"]}, \"terraformCode\": \"ok\", \"nulo\": null}\n```");
+
+        assertTrue(reader.complete());
+        assertEquals("ok", reader.field("terraformCode"));
+        assertNull(reader.field("versao"));
+    }
+
+    @Test
+    @DisplayName("Should not complete a truncated response")
+    void shouldNotCompleteTruncatedResponse() {
+        StringBuilder streamed = new StringBuilder();
+        JsonStreamReader reader = new JsonStreamReader("terraformCode", streamed::append, (field, value) -> {});
+
+        reader.accept("{\"planDescription\": \"d\", \"terraformCode\": \"resource \\\"aws_s3");
+
+        assertFalse(reader.complete());
+        assertEquals("d", reader.field("planDescription"));
+        assertNull(reader.field("terraformCode"));
+        assertEquals("resource \"aws_s3", streamed.toString());
+    }
+
+    private static List<String> chunks(String text, int size) {
+        List<String> chunks = new ArrayList<>();
+        for (int i = 0; i < text.length(); i += size) {
+            chunks.add(text.substring(i, Math.min(text.length(), i + size)));
+        }
+        return chunks;
+    }
+}
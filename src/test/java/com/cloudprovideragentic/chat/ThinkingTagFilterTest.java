@@ -0,0 +1,69 @@
+package com.cloudprovideragentic.chat;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThinkingTagFilterTest {
+
+    private static final List<String> RESPONSES = List.of(
+            "Resposta direta",
+            "<thinking>vou chamar a tool</thinking>\n\nPlano gerado com sucesso.",
+            "Inicio <thinking>a</thinking> meio <thinking>b</thinking>  fim",
+            "  espacos nas pontas  \n",
+            "texto com < e <think sem fechar",
+            "<thinking>\nlinha 1\nlinha 2\n</thinking>\nResultado:\n- item 1\n- item 2\n"
+    );
+
+    @Test
+    @DisplayName("Should match the whole-string regex for every chunk size")
+    void shouldMatchWholeStringRegexForEveryChunkSize() {
+        for (String response : RESPONSES) {
+            String expected = response.replaceAll("(?s)<thinking>.*?</thinking>\\s*", "").trim();
+            for (int size = 1; size <= response.length(); size++) {
+                assertEquals(expected, filterInChunks(response, size), "chunk size " + size + " for: " + response);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should hold back a partial opening tag until the next chunk")
+    void shouldHoldBackPartialOpeningTag() {
+        ThinkingTagFilter filter = new ThinkingTagFilter();
+
+        assertEquals("Ola", filter.accept("Ola <thin"));
+        assertEquals("", filter.accept("king>segredo</thi"));
+        assertEquals(" mundo", filter.accept("nking> mundo"));
+        assertEquals("", filter.finish());
+    }
+
+    @Test
+    @DisplayName("Should emit a dangling partial tag as text at the end")
+    void shouldEmitDanglingPartialTagAtEnd() {
+        ThinkingTagFilter filter = new ThinkingTagFilter();
+
+        assertEquals("a", filter.accept("a <think"));
+        assertEquals(" <think", filter.finish());
+    }
+
+    @Test
+    @DisplayName("Should discard an unclosed thinking span")
+    void shouldDiscardUnclosedThinkingSpan() {
+        ThinkingTagFilter filter = new ThinkingTagFilter();
+
+        assertEquals("ok", filter.accept("ok <thinking>nunca fecha"));
+        assertEquals("", filter.finish());
+    }
+
+    private String filterInChunks(String text, int size) {
+        ThinkingTagFilter filter = new ThinkingTagFilter();
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < text.length(); i += size) {
+            out.append(filter.accept(text.substring(i, Math.min(text.length(), i + size))));
+        }
+        return out.append(filter.finish()).toString();
+    }
+}
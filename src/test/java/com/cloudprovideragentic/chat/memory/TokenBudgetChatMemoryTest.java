@@ -0,0 +1,114 @@
+package com.cloudprovideragentic.chat.memory;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBudgetChatMemoryTest {
+
+    private static final String CONVERSATION = "sessao-1";
+
+    @Test
+    @DisplayName("Should keep short conversations as they are")
+    void shouldKeepShortConversation() {
+        TokenBudgetChatMemory memory = TokenBudgetChatMemory.builder().maxTokens(1000).payloadTokens(100).build();
+
+        turn(memory, "Crie um bucket logs", "Plano pronto. Deseja executar?");
+        turn(memory, "sim", "Execucao iniciada, jobId a1b2c3d4.");
+
+        List<Message> messages = memory.get(CONVERSATION);
+        assertEquals(4, messages.size());
+        assertEquals("Crie um bucket logs", messages.get(0).getText());
+        assertEquals("Execucao iniciada, jobId a1b2c3d4.", messages.get(3).getText());
+    }
+
+    @Test
+    @DisplayName("Should replace large code blocks of older turns with a reference")
+    void shouldReferenceOldCode() {
+        TokenBudgetChatMemory memory = TokenBudgetChatMemory.builder().maxTokens(10_000).payloadTokens(50).build();
+        String answer = "Plano:\n```hcl\n" + hcl(40) + "```\nDeseja executar?";
+
+        turn(memory, "Crie 40 buckets", answer);
+        assertEquals(answer, memory.get(CONVERSATION).get(1).getText());
+
+        turn(memory, "sim", "Execucao iniciada.");
+        String compacted = memory.get(CONVERSATION).get(1).getText();
+        assertEquals("Plano:\n[bloco de código hcl com 40 linhas omitido da memória; o operador já o viu]\nDeseja executar?",
+                compacted);
+        assertInstanceOf(AssistantMessage.class, memory.get(CONVERSATION).get(1));
+    }
+
+    @Test
+    @DisplayName("Should fold the oldest turns into a summary in front of the first kept user message")
+    void shouldSummarizeOldTurns() {
+        TokenBudgetChatMemory memory = TokenBudgetChatMemory.builder().maxTokens(200).payloadTokens(50).build();
+
+        for (int i = 0; i < 20; i++) {
+            turn(memory, "Crie a fila pedidos-" + i + " com retencao de 4 dias e DLQ",
+                    "Plano da fila pedidos-" + i + " pronto. Deseja que eu execute este plano? (sim/nao)");
+        }
+
+        List<Message> messages = memory.get(CONVERSATION);
+        assertTrue(memory.tokens(CONVERSATION) <= 200 + 20, "tokens: " + memory.tokens(CONVERSATION));
+        assertEquals(MessageType.USER, messages.get(0).getMessageType());
+        assertTrue(messages.get(0).getText().startsWith(TokenBudgetChatMemory.SUMMARY_HEADER));
+        assertTrue(messages.get(0).getText().contains("- Operador: Crie a fila pedidos-"));
+        assertFalse(messages.get(0).getText().contains("pedidos-0 "));
+        assertEquals("Plano da fila pedidos-19 pronto. Deseja que eu execute este plano? (sim/nao)",
+                messages.get(messages.size() - 1).getText());
+        for (int i = 1; i < messages.size(); i++) {
+            assertNotEquals(messages.get(i - 1).getMessageType(), messages.get(i).getMessageType());
+        }
+    }
+
+    @Test
+    @DisplayName("Should never drop the latest turn, even above the budget")
+    void shouldKeepLatestTurn() {
+        TokenBudgetChatMemory memory = TokenBudgetChatMemory.builder().maxTokens(50).payloadTokens(10).build();
+        String answer = "```hcl\n" + hcl(30) + "```";
+
+        turn(memory, "Crie um bucket", "Pronto.");
+        turn(memory, "Crie 30 buckets", answer);
+
+        List<Message> messages = memory.get(CONVERSATION);
+        assertEquals(answer, messages.get(messages.size() - 1).getText());
+        assertTrue(messages.get(0).getText().contains("Crie 30 buckets"));
+    }
+
+    @Test
+    @DisplayName("Should forget a cleared conversation")
+    void shouldClearConversation() {
+        TokenBudgetChatMemory memory = TokenBudgetChatMemory.builder().build();
+        turn(memory, "Crie um bucket", "Pronto.");
+
+        memory.clear(CONVERSATION);
+
+        assertEquals(List.of(), memory.get(CONVERSATION));
+    }
+
+    @Test
+    @DisplayName("Should reject a budget that is not positive")
+    void shouldRejectInvalidBudget() {
+        assertThrows(IllegalArgumentException.class, () -> TokenBudgetChatMemory.builder().maxTokens(0).build());
+    }
+
+    private static void turn(TokenBudgetChatMemory memory, String user, String assistant) {
+        memory.add(CONVERSATION, new UserMessage(user));
+        memory.add(CONVERSATION, new AssistantMessage(assistant));
+    }
+
+    private static String hcl(int buckets) {
+        StringBuilder code = new StringBuilder();
+        for (int i = 0; i < buckets; i++) {
+            code.append("resource \"aws_s3_bucket\" \"b").append(i).append("\" { bucket = \"bucket-").append(i).append("\" }\n");
+        }
+        return code.toString();
+    }
+}
@@ -0,0 +1,102 @@
+package com.cloudprovideragentic.chat.replay;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatExchangeLogTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Should key on the first paragraphs of system and user messages, ignoring memory and output format")
+    void shouldKeyOnCallerIntent() {
+        Prompt prompt = new Prompt(List.of(
+                new SystemMessage("Você é um especialista em Terraform.\nGere um JSON.\n\nINSTRUÇÕES PARA S3:\n- ..."),
+                new UserMessage("Crie uma fila"),
+                new AssistantMessage("Plano da fila"),
+                new UserMessage("Crie um bucket logs\nYour response should be in JSON format.\n```{\"type\":\"object\"}```")));
+
+        ChatExchangeLog.Key key = ChatExchangeLog.key(prompt);
+
+        assertEquals(new ChatExchangeLog.Key("Você é um especialista em Terraform.\nGere um JSON.",
+                "Crie um bucket logs", 0), key);
+    }
+
+    @Test
+    @DisplayName("Should replay recorded answers in order after a restart, cycling at the end")
+    void shouldReplayInRecordedOrder() {
+        Path file = tempDir.resolve("replay.jsonl");
+        ChatExchangeLog.Key key = new ChatExchangeLog.Key("Agente", "sim", 0);
+        ChatExchangeLog recorder = new ChatExchangeLog(file);
+        recorder.record(key, List.of(response("Primeira "), response("resposta", 120, 8)));
+        recorder.record(key, List.of(response("Segunda resposta", 130, 9)));
+
+        ChatExchangeLog log = new ChatExchangeLog(file);
+
+        assertEquals(2, log.size());
+        ChatExchangeLog.Exchange first = log.next(key);
+        assertEquals("Primeira resposta", first.text());
+        assertEquals(120, first.promptTokens());
+        assertEquals(8, first.completionTokens());
+        assertEquals("Segunda resposta", log.next(key).text());
+        assertEquals("Primeira resposta", log.next(key).text());
+    }
+
+    @Test
+    @DisplayName("Should rebuild tool calls and split the text into stream chunks")
+    void shouldRebuildToolCallsAndChunks() throws Exception {
+        Path file = tempDir.resolve("replay.jsonl");
+        Files.writeString(file, """
+                {"system":"Agente","user":"Crie um bucket","round":0,"text":"Vou planejar a infraestrutura.","toolCalls":[{"id":"t1","name":"planejarInfra","arguments":"{\\"userPrompt\\":\\"Crie um bucket\\"}"}],"promptTokens":50,"completionTokens":12}
+                linha truncada
+                """);
+
+        ChatExchangeLog.Exchange exchange = new ChatExchangeLog(file).next(new ChatExchangeLog.Key("Agente", "Crie um bucket", 0));
+        List<ChatResponse> chunks = exchange.toChunks(8);
+
+        assertEquals(4, chunks.size());
+        StringBuilder text = new StringBuilder();
+        chunks.forEach(chunk -> text.append(chunk.getResult().getOutput().getText()));
+        assertEquals("Vou planejar a infraestrutura.", text.toString());
+        assertFalse(chunks.get(0).hasToolCalls());
+        AssistantMessage.ToolCall call = chunks.get(3).getResult().getOutput().getToolCalls().get(0);
+        assertEquals("planejarInfra", call.name());
+        assertEquals("{\"userPrompt\":\"Crie um bucket\"}", call.arguments());
+        assertEquals(50, chunks.get(3).getMetadata().getUsage().getPromptTokens());
+    }
+
+    @Test
+    @DisplayName("Should fail for a request that was never recorded")
+    void shouldFailForUnrecordedRequest() {
+        ChatExchangeLog log = new ChatExchangeLog(tempDir.resolve("vazio.jsonl"));
+
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+                () -> log.next(new ChatExchangeLog.Key("Agente", "Crie um bucket", 1)));
+        assertTrue(error.getMessage().contains("user=\"Crie um bucket\", round=1"));
+    }
+
+    private static ChatResponse response(String text) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+
+    private static ChatResponse response(String text, int promptTokens, int completionTokens) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))),
+                ChatResponseMetadata.builder().usage(new DefaultUsage(promptTokens, completionTokens)).build());
+    }
+}
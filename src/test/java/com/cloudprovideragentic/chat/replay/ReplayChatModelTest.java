@@ -0,0 +1,102 @@
+package com.cloudprovideragentic.chat.replay;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReplayChatModelTest {
+
+    private static final String LOG = """
+            {"system":"Agente de infra","user":"Crie um bucket logs","round":0,"toolCalls":[{"id":"t1","name":"planejarInfra","arguments":"{\\"userPrompt\\":\\"Crie um bucket logs\\"}"}],"promptTokens":900,"completionTokens":40}
+            {"system":"Agente de infra","user":"Crie um bucket logs","round":1,"text":"Plano gerado: bucket logs. Deseja que eu execute este plano? (sim/não)","promptTokens":1100,"completionTokens":25}
+            """;
+
+    @Mock
+    private ToolCallingManager toolCallingManager;
+
+    @TempDir
+    Path tempDir;
+
+    private ReplayChatModel model;
+    private Prompt prompt;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path file = tempDir.resolve("replay.jsonl");
+        Files.writeString(file, LOG);
+        model = new ReplayChatModel(new ChatExchangeLog(file), toolCallingManager, Duration.ZERO, Duration.ZERO);
+
+        List<Message> messages = List.of(new SystemMessage("Agente de infra"), new UserMessage("Crie um bucket logs"));
+        prompt = new Prompt(messages, ToolCallingChatOptions.builder().build());
+
+        // A tool "executa" acrescentando a chamada e o resultado ao histórico
+        Message toolResult = mock(Message.class);
+        when(toolResult.getMessageType()).thenReturn(MessageType.TOOL);
+        List<Message> history = new ArrayList<>(messages);
+        history.add(toolResult);
+        when(toolCallingManager.executeToolCalls(any(), any()))
+                .thenReturn(ToolExecutionResult.builder().conversationHistory(history).build());
+    }
+
+    @Test
+    @DisplayName("Should run the recorded tool call and answer with the next round")
+    void shouldRunToolsBetweenRounds() {
+        ChatResponse response = model.call(prompt);
+
+        assertEquals("Plano gerado: bucket logs. Deseja que eu execute este plano? (sim/não)",
+                response.getResult().getOutput().getText());
+        assertEquals(1100, response.getMetadata().getUsage().getPromptTokens());
+        verify(toolCallingManager, times(1)).executeToolCalls(any(), any());
+    }
+
+    @Test
+    @DisplayName("Should stream the final answer in chunks without the tool call chunk")
+    void shouldStreamFinalAnswer() {
+        List<ChatResponse> chunks = model.stream(prompt).collectList().block();
+
+        StringBuilder text = new StringBuilder();
+        chunks.forEach(chunk -> text.append(chunk.getResult().getOutput().getText()));
+        assertEquals("Plano gerado: bucket logs. Deseja que eu execute este plano? (sim/não)", text.toString());
+        assertTrue(chunks.size() > 1);
+        assertTrue(chunks.stream().noneMatch(ChatResponse::hasToolCalls));
+        verify(toolCallingManager, times(1)).executeToolCalls(any(), any());
+    }
+
+    @Test
+    @DisplayName("Should wait the injected latency before answering")
+    void shouldInjectLatency() throws Exception {
+        Path file = tempDir.resolve("replay.jsonl");
+        ReplayChatModel slow = new ReplayChatModel(new ChatExchangeLog(file), toolCallingManager,
+                Duration.ofMillis(50), Duration.ZERO);
+
+        long start = System.nanoTime();
+        slow.call(prompt);
+
+        // Duas rodadas: a chamada da tool e a resposta final
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() >= 100);
+    }
+}
@@ -0,0 +1,104 @@
+package com.cloudprovideragentic.chat.resilience;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private final MutableClock clock = new MutableClock();
+    private final CircuitBreaker circuit = new CircuitBreaker(3, Duration.ofSeconds(30), clock);
+
+    @Test
+    @DisplayName("Should open after the configured failures in a row")
+    void shouldOpenAfterConsecutiveFailures() {
+        circuit.failed();
+        circuit.failed();
+        circuit.succeeded();
+        circuit.failed();
+        circuit.failed();
+        assertTrue(circuit.closed());
+
+        circuit.failed();
+
+        assertFalse(circuit.closed());
+        IllegalStateException error = assertThrows(IllegalStateException.class, circuit::acquire);
+        assertTrue(error.getMessage().contains("3 falha(s)"), error.getMessage());
+    }
+
+    @Test
+    @DisplayName("Should let a single trial call through once the open period is over")
+    void shouldAllowOneTrialCall() {
+        open();
+        clock.advance(Duration.ofSeconds(31));
+
+        circuit.acquire();
+        assertThrows(IllegalStateException.class, circuit::acquire);
+
+        circuit.succeeded();
+        assertTrue(circuit.closed());
+        circuit.acquire();
+    }
+
+    @Test
+    @DisplayName("Should open again when the trial call fails")
+    void shouldReopenWhenTrialFails() {
+        open();
+        clock.advance(Duration.ofSeconds(31));
+        circuit.acquire();
+
+        circuit.failed();
+
+        assertThrows(IllegalStateException.class, circuit::acquire);
+        clock.advance(Duration.ofSeconds(31));
+        circuit.acquire();
+    }
+
+    @Test
+    @DisplayName("Should never open when the threshold is zero")
+    void shouldStayClosedWhenDisabled() {
+        CircuitBreaker disabled = new CircuitBreaker(0, Duration.ofSeconds(30), clock);
+        for (int i = 0; i < 10; i++) {
+            disabled.failed();
+        }
+
+        assertTrue(disabled.closed());
+        disabled.acquire();
+    }
+
+    private void open() {
+        for (int i = 0; i < 3; i++) {
+            circuit.failed();
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
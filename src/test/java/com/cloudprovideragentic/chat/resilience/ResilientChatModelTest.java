@@ -0,0 +1,231 @@
+package com.cloudprovideragentic.chat.resilience;
+
+import com.cloudprovideragentic.fuctions.terraform.metrics.PipelineMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class ResilientChatModelTest {
+
+    private static final Prompt PROMPT = new Prompt(List.of(new UserMessage("Crie um bucket logs")),
+            ToolCallingChatOptions.builder().build());
+
+    @Mock
+    private ToolCallingManager toolCallingManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ResilientChatModel model;
+
+    @AfterEach
+    void tearDown() {
+        if (model != null) {
+            model.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Should fail a call that passes the deadline")
+    void shouldTimeOutSlowCall() {
+        StubModel stub = new StubModel(call -> sleepThenAnswer(Duration.ofSeconds(5)));
+        model = resilient(stub, settings(Duration.ofMillis(200), false, 3, 5));
+
+        long start = System.nanoTime();
+        IllegalStateException error = assertThrows(IllegalStateException.class, () -> model.call(PROMPT));
+
+        assertInstanceOf(TimeoutException.class, error.getCause());
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 2000);
+        assertEquals(1, count("timeout"));
+    }
+
+    @Test
+    @DisplayName("Should retry throttled calls with backoff until one succeeds")
+    void shouldRetryThrottledCalls() {
+        StubModel stub = new StubModel(call -> {
+            if (call < 3) {
+                throw new RuntimeException("ThrottlingException: Too many requests, please wait before trying again.");
+            }
+            return answer("ok");
+        });
+        model = resilient(stub, settings(Duration.ofSeconds(5), false, 3, 5));
+
+        assertEquals("ok", model.call(PROMPT).getResult().getOutput().getText());
+        assertEquals(3, stub.calls.get());
+        assertEquals(2, count("retry"));
+    }
+
+    @Test
+    @DisplayName("Should give up after the last attempt and not retry other errors")
+    void shouldStopRetrying() {
+        StubModel throttled = new StubModel(call -> {
+            throw new RuntimeException("Rate exceeded");
+        });
+        model = resilient(throttled, settings(Duration.ofSeconds(5), false, 3, 5));
+        assertThrows(RuntimeException.class, () -> model.call(PROMPT));
+        assertEquals(3, throttled.calls.get());
+        model.close();
+
+        StubModel invalid = new StubModel(call -> {
+            throw new IllegalArgumentException("ValidationException: invalid model id");
+        });
+        model = resilient(invalid, settings(Duration.ofSeconds(5), false, 3, 5));
+        assertThrows(IllegalArgumentException.class, () -> model.call(PROMPT));
+        assertEquals(1, invalid.calls.get());
+    }
+
+    @Test
+    @DisplayName("Should send a second request when a call passes the latency percentile and keep the first answer")
+    void shouldHedgeSlowCall() {
+        StubModel stub = new StubModel(call -> call == 4 ? sleepThenAnswer(Duration.ofSeconds(10)) : answer("rapida " + call));
+        model = resilient(stub, settings(Duration.ofSeconds(20), true, 3, 5));
+        for (int i = 0; i < 3; i++) {
+            model.call(PROMPT);
+        }
+
+        long start = System.nanoTime();
+        ChatResponse response = model.call(PROMPT);
+
+        assertEquals("rapida 5", response.getResult().getOutput().getText());
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 5000);
+        assertEquals(1, count("hedge"));
+        assertEquals(1, count("hedge.won"));
+    }
+
+    @Test
+    @DisplayName("Should not hedge before enough calls were observed")
+    void shouldNotHedgeWithoutSamples() {
+        model = resilient(new StubModel(call -> answer("ok")), settings(Duration.ofSeconds(5), true, 3, 5));
+
+        assertNull(model.hedgeDelay());
+        for (int i = 0; i < 3; i++) {
+            model.call(PROMPT);
+        }
+        assertEquals(Duration.ofMillis(50), model.hedgeDelay());
+    }
+
+    @Test
+    @DisplayName("Should fail fast without calling the model once the circuit opens")
+    void shouldOpenCircuit() {
+        StubModel stub = new StubModel(call -> {
+            throw new ServiceUnavailableException("Bedrock is unavailable");
+        });
+        model = resilient(stub, settings(Duration.ofSeconds(5), false, 1, 2));
+
+        assertThrows(RuntimeException.class, () -> model.call(PROMPT));
+        assertThrows(RuntimeException.class, () -> model.call(PROMPT));
+        IllegalStateException rejected = assertThrows(IllegalStateException.class, () -> model.call(PROMPT));
+
+        assertTrue(rejected.getMessage().startsWith("Bedrock indisponível"), rejected.getMessage());
+        assertEquals(2, stub.calls.get());
+        assertEquals(1, count("rejected"));
+    }
+
+    @Test
+    @DisplayName("Should retry a throttled stream before its first chunk")
+    void shouldRetryThrottledStream() {
+        AtomicInteger streams = new AtomicInteger();
+        ChatModel stub = new StubModel(call -> answer("")) {
+            @Override
+            public Flux<ChatResponse> stream(Prompt prompt) {
+                return streams.incrementAndGet() == 1
+                        ? Flux.error(new RuntimeException("ThrottlingException: Too many requests"))
+                        : Flux.just(answer("Plano "), answer("pronto"));
+            }
+        };
+        model = resilient(stub, settings(Duration.ofSeconds(5), false, 3, 5));
+
+        List<ChatResponse> chunks = model.stream(PROMPT).collectList().block();
+
+        assertEquals(2, chunks.size());
+        assertEquals(2, streams.get());
+        assertEquals(1, count("retry"));
+    }
+
+    @Test
+    @DisplayName("Should keep the jittered backoff between half and all of the capped exponential wait")
+    void shouldBoundBackoff() {
+        model = resilient(new StubModel(call -> answer("ok")), settings(Duration.ofSeconds(5), false, 3, 5));
+
+        for (int attempt = 1; attempt <= 6; attempt++) {
+            long cap = Math.min(40, 10L << (attempt - 1));
+            long backoff = model.backoff(attempt).toMillis();
+            assertTrue(backoff >= cap / 2 && backoff <= cap, attempt + ": " + backoff);
+        }
+    }
+
+    private ResilientChatModel resilient(ChatModel stub, ResilienceSettings settings) {
+        return new ResilientChatModel(stub, toolCallingManager, settings, new PipelineMetrics(meterRegistry));
+    }
+
+    private static ResilienceSettings settings(Duration timeout, boolean hedge, int minSamples, int failureThreshold) {
+        return new ResilienceSettings(timeout, hedge, 0.95, minSamples, Duration.ofMillis(50),
+                3, Duration.ofMillis(10), Duration.ofMillis(40), failureThreshold, Duration.ofMinutes(1));
+    }
+
+    private double count(String event) {
+        return meterRegistry.get(PipelineMetrics.MODEL_CALLS_COUNTER).tag("event", event).counter().count();
+    }
+
+    private static ChatResponse answer(String text) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+
+    private static ChatResponse sleepThenAnswer(Duration delay) {
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        return answer("lenta");
+    }
+
+    /**
+     * Same simple name as the Bedrock SDK exception, which is what the model looks at.
+     */
+    private static class ServiceUnavailableException extends RuntimeException {
+
+        ServiceUnavailableException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Local stand-in for Bedrock: answers the n-th call (from 1) with the given function.
+     */
+    private static class StubModel implements ChatModel {
+
+        final AtomicInteger calls = new AtomicInteger();
+        private final IntFunction<ChatResponse> answers;
+
+        StubModel(IntFunction<ChatResponse> answers) {
+            this.answers = answers;
+        }
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            return answers.apply(calls.incrementAndGet());
+        }
+    }
+}
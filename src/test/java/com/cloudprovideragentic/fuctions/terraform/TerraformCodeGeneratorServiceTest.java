@@ -1,14 +1,33 @@
 package com.cloudprovideragentic.fuctions.terraform;
 
+import com.cloudprovideragentic.fuctions.terraform.cache.PlanCache;
+import com.cloudprovideragentic.fuctions.terraform.metrics.PipelineMetrics;
 import com.cloudprovideragentic.fuctions.terraform.model.plans.TerraformPlanResult;
+import com.cloudprovideragentic.fuctions.terraform.template.TemplatePlanner;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.ChatClient.ChatClientRequestSpec;
 import org.springframework.ai.chat.client.ChatClient.CallResponseSpec;
+import org.springframework.ai.chat.client.ChatClient.StreamResponseSpec;
+import org.springframework.ai.chat.client.ResponseEntity;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import reactor.core.publisher.Flux;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -17,6 +36,19 @@ import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class TerraformCodeGeneratorServiceTest {
 
+    private static final int REPAIR_ROUNDS = 2;
+
+    private static final String PROVIDERS = """
+            terraform {
+              required_providers {
+                aws = { source = "hashicorp/aws" }
+              }
+            }
+            provider "aws" {
+              region = "us-east-1"
+            }
+            """;
+
     @Mock
     private ChatClient.Builder chatClientBuilder;
 
@@ -29,12 +61,32 @@ class TerraformCodeGeneratorServiceTest {
     @Mock
     private CallResponseSpec callResponseSpec;
 
+    @Mock
+    private StreamResponseSpec streamResponseSpec;
+
+    @TempDir
+    Path tempDir;
+
+    private PlanCache planCache;
+    private SimpleMeterRegistry meterRegistry;
+    private PipelineMetrics metrics;
+    private TemplatePlanner templates;
+
+    @BeforeEach
+    void setUp() {
+        planCache = new PlanCache(100, Duration.ofHours(1), tempDir.resolve("plan-cache.jsonl").toString(), "test-model");
+        meterRegistry = new SimpleMeterRegistry();
+        metrics = new PipelineMetrics(meterRegistry);
+        // Os pedidos dos testes passam pelo modelo; os templates têm testes próprios
+        templates = new TemplatePlanner(false, metrics);
+    }
+
     @Test
     @DisplayName("Should return TerraformPlanResult from model response")
     void shouldReturnPlanResultFromModel() {
         var expected = new TerraformPlanResult(
                 "Será criado: S3 bucket my-bucket com versionamento",
-                "resource \"aws_s3_bucket\" \"my-bucket\" {}"
+                PROVIDERS + "resource \"aws_s3_bucket\" \"my-bucket\" {}"
         );
 
         when(chatClientBuilder.build()).thenReturn(chatClient);
@@ -42,9 +94,9 @@ class TerraformCodeGeneratorServiceTest {
         when(requestSpec.system(anyString())).thenReturn(requestSpec);
         when(requestSpec.user(anyString())).thenReturn(requestSpec);
         when(requestSpec.call()).thenReturn(callResponseSpec);
-        when(callResponseSpec.entity(TerraformPlanResult.class)).thenReturn(expected);
+        when(callResponseSpec.responseEntity(TerraformPlanResult.class)).thenReturn(entity(expected));
 
-        var service = new TerraformCodeGeneratorService(chatClientBuilder);
+        var service = new TerraformCodeGeneratorService(chatClientBuilder, planCache, templates, metrics, REPAIR_ROUNDS);
         TerraformPlanResult result = service.generate("Criar bucket S3 my-bucket com versionamento");
 
         assertEquals(expected.planDescription(), result.planDescription());
@@ -55,16 +107,16 @@ class TerraformCodeGeneratorServiceTest {
     @DisplayName("Should pass user prompt to the chat client")
     void shouldPassUserPromptToChatClient() {
         String userPrompt = "Criar fila SQS FIFO chamada pedidos";
-        var planResult = new TerraformPlanResult("Descrição", "tf-code");
+        var planResult = new TerraformPlanResult("Descrição", PROVIDERS);
 
         when(chatClientBuilder.build()).thenReturn(chatClient);
         when(chatClient.prompt()).thenReturn(requestSpec);
         when(requestSpec.system(anyString())).thenReturn(requestSpec);
         when(requestSpec.user(anyString())).thenReturn(requestSpec);
         when(requestSpec.call()).thenReturn(callResponseSpec);
-        when(callResponseSpec.entity(TerraformPlanResult.class)).thenReturn(planResult);
+        when(callResponseSpec.responseEntity(TerraformPlanResult.class)).thenReturn(entity(planResult));
 
-        var service = new TerraformCodeGeneratorService(chatClientBuilder);
+        var service = new TerraformCodeGeneratorService(chatClientBuilder, planCache, templates, metrics, REPAIR_ROUNDS);
         service.generate(userPrompt);
 
         verify(requestSpec).user(userPrompt);
@@ -73,7 +125,7 @@ class TerraformCodeGeneratorServiceTest {
     @Test
     @DisplayName("Should strip markdown code fences from terraform code")
     void shouldStripMarkdownCodeFences() {
-        String rawCode = "```terraform\nresource \"aws_s3_bucket\" \"b\" {}\n```";
+        String rawCode = "```terraform\n" + PROVIDERS + "resource \"aws_s3_bucket\" \"b\" {}\n```";
         var modelResult = new TerraformPlanResult("Descrição", rawCode);
 
         when(chatClientBuilder.build()).thenReturn(chatClient);
@@ -81,9 +133,9 @@ class TerraformCodeGeneratorServiceTest {
         when(requestSpec.system(anyString())).thenReturn(requestSpec);
         when(requestSpec.user(anyString())).thenReturn(requestSpec);
         when(requestSpec.call()).thenReturn(callResponseSpec);
-        when(callResponseSpec.entity(TerraformPlanResult.class)).thenReturn(modelResult);
+        when(callResponseSpec.responseEntity(TerraformPlanResult.class)).thenReturn(entity(modelResult));
 
-        var service = new TerraformCodeGeneratorService(chatClientBuilder);
+        var service = new TerraformCodeGeneratorService(chatClientBuilder, planCache, templates, metrics, REPAIR_ROUNDS);
         TerraformPlanResult result = service.generate("Criar bucket");
 
         assertFalse(result.terraformCode().contains("```"));
@@ -98,9 +150,9 @@ class TerraformCodeGeneratorServiceTest {
         when(requestSpec.system(anyString())).thenReturn(requestSpec);
         when(requestSpec.user(anyString())).thenReturn(requestSpec);
         when(requestSpec.call()).thenReturn(callResponseSpec);
-        when(callResponseSpec.entity(TerraformPlanResult.class)).thenReturn(null);
+        when(callResponseSpec.responseEntity(TerraformPlanResult.class)).thenReturn(entity(null));
 
-        var service = new TerraformCodeGeneratorService(chatClientBuilder);
+        var service = new TerraformCodeGeneratorService(chatClientBuilder, planCache, templates, metrics, REPAIR_ROUNDS);
 
         assertThrows(IllegalStateException.class, () -> service.generate("Criar bucket"));
     }
@@ -110,7 +162,7 @@ class TerraformCodeGeneratorServiceTest {
     void shouldThrowWhenUserPromptIsNull() {
         when(chatClientBuilder.build()).thenReturn(chatClient);
 
-        var service = new TerraformCodeGeneratorService(chatClientBuilder);
+        var service = new TerraformCodeGeneratorService(chatClientBuilder, planCache, templates, metrics, REPAIR_ROUNDS);
 
         assertThrows(NullPointerException.class, () -> service.generate(null));
     }
@@ -124,8 +176,189 @@ class TerraformCodeGeneratorServiceTest {
         when(requestSpec.user(anyString())).thenReturn(requestSpec);
         when(requestSpec.call()).thenThrow(new RuntimeException("API unavailable"));
 
-        var service = new TerraformCodeGeneratorService(chatClientBuilder);
+        var service = new TerraformCodeGeneratorService(chatClientBuilder, planCache, templates, metrics, REPAIR_ROUNDS);
 
         assertThrows(RuntimeException.class, () -> service.generate("Criar bucket S3"));
     }
+
+    @Test
+    @DisplayName("Should serve near-identical prompts from the plan cache")
+    void shouldServeNearIdenticalPromptsFromCache() {
+        var planResult = new TerraformPlanResult("Descrição", PROVIDERS + "resource \"aws_s3_bucket\" \"x\" {}");
+
+        when(chatClientBuilder.build()).thenReturn(chatClient);
+        when(chatClient.prompt()).thenReturn(requestSpec);
+        when(requestSpec.system(anyString())).thenReturn(requestSpec);
+        when(requestSpec.user(anyString())).thenReturn(requestSpec);
+        when(requestSpec.call()).thenReturn(callResponseSpec);
+        when(callResponseSpec.responseEntity(TerraformPlanResult.class)).thenReturn(entity(planResult));
+
+        var service = new TerraformCodeGeneratorService(chatClientBuilder, planCache, templates, metrics, REPAIR_ROUNDS);
+        TerraformPlanResult first = service.generate("Bucket S3 x com versionamento em us-east-1");
+        TerraformPlanResult second = service.generate("  bucket S3 x com versionamento em us-east-1. ");
+
+        assertEquals(first, second);
+        verify(chatClient, times(1)).prompt();
+        assertEquals(1, planCache.stats().hits());
+    }
+
+    @Test
+    @DisplayName("Should show a cached plan to the streaming listener, description first")
+    void shouldStreamCachedPlan() {
+        var planResult = new TerraformPlanResult("Descrição", PROVIDERS + "resource \"aws_s3_bucket\" \"x\" {}");
+
+        when(chatClientBuilder.build()).thenReturn(chatClient);
+        when(chatClient.prompt()).thenReturn(requestSpec);
+        when(requestSpec.system(anyString())).thenReturn(requestSpec);
+        when(requestSpec.user(anyString())).thenReturn(requestSpec);
+        when(requestSpec.call()).thenReturn(callResponseSpec);
+        when(callResponseSpec.responseEntity(TerraformPlanResult.class)).thenReturn(entity(planResult));
+
+        List<String> shown = new ArrayList<>();
+        var service = new TerraformCodeGeneratorService(chatClientBuilder, planCache, templates, metrics, REPAIR_ROUNDS);
+        TerraformPlanResult first = service.generate("Bucket S3 x com versionamento em us-east-1");
+        TerraformPlanResult second = service.generate("Bucket S3 x com versionamento em us-east-1", shown::add);
+
+        assertEquals(first, second);
+        assertEquals(List.of("Descrição\n\n", first.terraformCode()), shown);
+        verify(requestSpec, never()).stream();
+    }
+
+    @Test
+    @DisplayName("Should send validation diagnostics back to the model and return the repaired plan")
+    void shouldRepairInvalidCode() {
+        var broken = new TerraformPlanResult("Descrição", PROVIDERS + "resource \"aws_s3_bucket\" \"b\" {\n");
+        var repaired = new TerraformPlanResult("Descrição", PROVIDERS + "resource \"aws_s3_bucket\" \"b\" {\n}\n");
+
+        when(chatClientBuilder.build()).thenReturn(chatClient);
+        when(chatClient.prompt()).thenReturn(requestSpec);
+        when(requestSpec.system(anyString())).thenReturn(requestSpec);
+        when(requestSpec.user(anyString())).thenReturn(requestSpec);
+        when(requestSpec.call()).thenReturn(callResponseSpec);
+        when(callResponseSpec.responseEntity(TerraformPlanResult.class)).thenReturn(entity(broken), entity(repaired));
+
+        var service = new TerraformCodeGeneratorService(chatClientBuilder, planCache, templates, metrics, REPAIR_ROUNDS);
+        TerraformPlanResult result = service.generate("Criar bucket b");
+
+        assertEquals(repaired.terraformCode().trim(), result.terraformCode());
+        verify(requestSpec).user(argThat((String message) ->
+                message.contains("Criar bucket b")
+                        && message.contains("linha 9: bloco resource \"aws_s3_bucket\" \"b\" não foi fechado")));
+        assertEquals(1, planCache.stats().size());
+    }
+
+    @Test
+    @DisplayName("Should reject the plan after the last repair round without caching it")
+    void shouldRejectCodeThatStaysInvalid() {
+        var json = new TerraformPlanResult("Descrição", "{ \"resource\": {} }");
+
+        when(chatClientBuilder.build()).thenReturn(chatClient);
+        when(chatClient.prompt()).thenReturn(requestSpec);
+        when(requestSpec.system(anyString())).thenReturn(requestSpec);
+        when(requestSpec.user(anyString())).thenReturn(requestSpec);
+        when(requestSpec.call()).thenReturn(callResponseSpec);
+        when(callResponseSpec.responseEntity(TerraformPlanResult.class)).thenReturn(entity(json));
+
+        var service = new TerraformCodeGeneratorService(chatClientBuilder, planCache, templates, metrics, REPAIR_ROUNDS);
+
+        IllegalStateException error = assertThrows(IllegalStateException.class, () -> service.generate("Criar bucket"));
+        assertTrue(error.getMessage().contains("JSON"));
+        verify(chatClient, times(REPAIR_ROUNDS + 1)).prompt();
+        assertEquals(0, planCache.stats().size());
+    }
+
+    @Test
+    @DisplayName("Should stream the description first and then the unescaped code")
+    void shouldStreamDescriptionThenCode() {
+        when(chatClientBuilder.build()).thenReturn(chatClient);
+        when(chatClient.prompt()).thenReturn(requestSpec);
+        when(requestSpec.system(anyString())).thenReturn(requestSpec);
+        when(requestSpec.user(anyString())).thenReturn(requestSpec);
+        when(requestSpec.stream()).thenReturn(streamResponseSpec);
+        when(streamResponseSpec.chatResponse()).thenReturn(Flux.just(
+                chunk("<thinking>gerar S3</thinking>{\"planDescription\": \"Bucket x\", "),
+                chunk("\"terraformCode\": \"terraform {\\n  required_providers {\\n    aws = { source = \\\"hashicorp/aws\\\" }\\n  }\\n}\\n"),
+                chunk("provider \\\"aws\\\" {}\\nresource \\\"aws_s3_bucket\\\" \\\"x\\\" {}\"}")
+        ));
+
+        List<String> shown = new ArrayList<>();
+        var service = new TerraformCodeGeneratorService(chatClientBuilder, planCache, templates, metrics, REPAIR_ROUNDS);
+        TerraformPlanResult result = service.generate("Criar bucket x", shown::add);
+
+        assertEquals("Bucket x\n\n", shown.getFirst());
+        assertEquals(result.terraformCode(), String.join("", shown.subList(1, shown.size())).trim());
+        assertEquals("Bucket x", result.planDescription());
+        assertTrue(result.terraformCode().endsWith("resource \"aws_s3_bucket\" \"x\" {}"));
+    }
+
+    @Test
+    @DisplayName("Should time the Bedrock call and record its token usage")
+    void shouldRecordPhaseAndTokenMetrics() {
+        var plan = new TerraformPlanResult("Descrição", PROVIDERS + "resource \"aws_s3_bucket\" \"m\" {}");
+        var metadata = ChatResponseMetadata.builder().usage(new DefaultUsage(1200, 300)).build();
+
+        when(chatClientBuilder.build()).thenReturn(chatClient);
+        when(chatClient.prompt()).thenReturn(requestSpec);
+        when(requestSpec.system(anyString())).thenReturn(requestSpec);
+        when(requestSpec.user(anyString())).thenReturn(requestSpec);
+        when(requestSpec.call()).thenReturn(callResponseSpec);
+        when(callResponseSpec.responseEntity(TerraformPlanResult.class))
+                .thenReturn(new ResponseEntity<>(new ChatResponse(List.of(new Generation(new AssistantMessage(""))), metadata), plan));
+
+        var service = new TerraformCodeGeneratorService(chatClientBuilder, planCache, templates, metrics, REPAIR_ROUNDS);
+        service.generate("Criar bucket m");
+
+        assertEquals(1, meterRegistry.get(PipelineMetrics.PHASE_TIMER)
+                .tag("phase", "bedrock.generate").tag("outcome", PipelineMetrics.OK).timer().count());
+        assertEquals(1, meterRegistry.get(PipelineMetrics.PHASE_TIMER)
+                .tag("phase", "hcl.validate").tag("outcome", PipelineMetrics.OK).timer().count());
+        assertEquals(1200, meterRegistry.get(PipelineMetrics.TOKENS_COUNTER)
+                .tag("operation", "bedrock.generate").tag("type", "prompt").counter().count());
+        assertEquals(300, meterRegistry.get(PipelineMetrics.TOKENS_COUNTER)
+                .tag("operation", "bedrock.generate").tag("type", "completion").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should answer a simple request from a template without calling the model")
+    void shouldAnswerFromTemplate() {
+        when(chatClientBuilder.build()).thenReturn(chatClient);
+
+        List<String> shown = new ArrayList<>();
+        var service = new TerraformCodeGeneratorService(chatClientBuilder, planCache,
+                new TemplatePlanner(true, metrics), metrics, REPAIR_ROUNDS);
+        TerraformPlanResult result = service.generate("Crie uma fila SQS FIFO chamada pedidos com DLQ", shown::add);
+
+        verify(chatClient, never()).prompt();
+        assertEquals(List.of(result.planDescription() + "\n\n", result.terraformCode()), shown);
+        assertTrue(result.terraformCode().contains("name                        = \"pedidos.fifo\""));
+        assertEquals(1, meterRegistry.get(PipelineMetrics.PHASE_TIMER)
+                .tag("phase", "template.plan").tag("outcome", PipelineMetrics.OK).timer().count());
+    }
+
+    @Test
+    @DisplayName("Should fall back to the model when no template fits the request")
+    void shouldFallBackToModel() {
+        var plan = new TerraformPlanResult("Tabela", PROVIDERS + "resource \"aws_dynamodb_table\" \"t\" {}");
+        when(chatClientBuilder.build()).thenReturn(chatClient);
+        when(chatClient.prompt()).thenReturn(requestSpec);
+        when(requestSpec.system(anyString())).thenReturn(requestSpec);
+        when(requestSpec.user(anyString())).thenReturn(requestSpec);
+        when(requestSpec.call()).thenReturn(callResponseSpec);
+        when(callResponseSpec.responseEntity(TerraformPlanResult.class)).thenReturn(entity(plan));
+
+        var service = new TerraformCodeGeneratorService(chatClientBuilder, planCache,
+                new TemplatePlanner(true, metrics), metrics, REPAIR_ROUNDS);
+
+        assertEquals(plan, service.generate("Crie uma tabela DynamoDB chamada sessoes"));
+        assertEquals(1, meterRegistry.get(PipelineMetrics.PHASE_TIMER)
+                .tag("phase", "template.plan").tag("outcome", PipelineMetrics.FALLBACK).timer().count());
+    }
+
+    private static ResponseEntity<ChatResponse, TerraformPlanResult> entity(TerraformPlanResult plan) {
+        return new ResponseEntity<>(null, plan);
+    }
+
+    private static ChatResponse chunk(String text) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
 }
@@ -0,0 +1,172 @@
+package com.cloudprovideragentic.fuctions.terraform;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TerraformInitCacheTest {
+
+    private static final String PROVIDERS = """
+            terraform {
+              required_providers {
+                aws = {
+                  source = "hashicorp/aws"
+                }
+              }
+            }
+
+            provider "aws" {
+              region = "us-east-1"
+            }
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    private Path workDir;
+    private TerraformInitCache initCache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        workDir = Files.createDirectories(tempDir.resolve("infra"));
+        initCache = new TerraformInitCache(tempDir.resolve("cache/plugins").toString(), "");
+    }
+
+    @Test
+    @DisplayName("Should write CLI config pointing at the plugin cache")
+    void shouldWriteCliConfig() throws Exception {
+        Path cliConfig = Path.of(initCache.environment().get("TF_CLI_CONFIG_FILE"));
+
+        assertTrue(Files.isDirectory(tempDir.resolve("cache/plugins")));
+        assertTrue(Files.readString(cliConfig).contains("plugin_cache_dir = \"" + tempDir.resolve("cache/plugins") + "\""));
+        assertFalse(Files.readString(cliConfig).contains("provider_installation"));
+    }
+
+    @Test
+    @DisplayName("Should configure filesystem mirror for mirrored providers")
+    void shouldConfigureFilesystemMirror() throws Exception {
+        Path mirror = Files.createDirectories(tempDir.resolve("mirror/registry.terraform.io/hashicorp/aws"));
+        TerraformInitCache cache = new TerraformInitCache(tempDir.resolve("cache2/plugins").toString(),
+                tempDir.resolve("mirror").toString());
+
+        String cliConfig = Files.readString(Path.of(cache.environment().get("TF_CLI_CONFIG_FILE")));
+
+        assertTrue(Files.isDirectory(mirror));
+        assertTrue(cliConfig.contains("filesystem_mirror"));
+        assertTrue(cliConfig.contains("include = [\"registry.terraform.io/hashicorp/aws\"]"));
+    }
+
+    @Test
+    @DisplayName("Should require init when work directory was never initialized")
+    void shouldRequireInitWhenNeverInitialized() throws Exception {
+        Files.writeString(workDir.resolve("main.tf"), PROVIDERS);
+
+        assertFalse(initCache.isUpToDate(workDir));
+    }
+
+    @Test
+    @DisplayName("Should skip init when only resources changed")
+    void shouldSkipInitWhenOnlyResourcesChanged() throws Exception {
+        Files.writeString(workDir.resolve("main.tf"), PROVIDERS);
+        initCache.markInitialized(workDir, Duration.ofMillis(100), true);
+
+        Files.writeString(workDir.resolve("main.tf"), PROVIDERS + "\nresource \"aws_sqs_queue\" \"q\" {\n  name = \"q\"\n}\n");
+
+        assertTrue(initCache.isUpToDate(workDir));
+    }
+
+    @Test
+    @DisplayName("Should require init when provider requirements change")
+    void shouldRequireInitWhenProvidersChange() throws Exception {
+        Files.writeString(workDir.resolve("main.tf"), PROVIDERS);
+        initCache.markInitialized(workDir, Duration.ofMillis(100), true);
+
+        Files.writeString(workDir.resolve("main.tf"), PROVIDERS.replace("source = \"hashicorp/aws\"",
+                "source = \"hashicorp/aws\"\n      version = \"~> 5.0\""));
+
+        assertFalse(initCache.isUpToDate(workDir));
+    }
+
+    @Test
+    @DisplayName("Should require init when a resource needs a provider the work directory did not use")
+    void shouldRequireInitWhenImplicitProvidersChange() throws Exception {
+        Files.writeString(workDir.resolve("main.tf"), PROVIDERS + "\nresource \"aws_sqs_queue\" \"q\" {}\n");
+        initCache.markInitialized(workDir, Duration.ofMillis(100), true);
+
+        Files.writeString(workDir.resolve("main.tf"), PROVIDERS + "\nresource \"aws_sqs_queue\" \"q\" {}\n"
+                + "data \"terraform_remote_state\" \"rede\" {}\n");
+        assertTrue(initCache.isUpToDate(workDir));
+
+        Files.writeString(workDir.resolve("main.tf"), PROVIDERS + "\nresource \"aws_sqs_queue\" \"q\" {}\n"
+                + "resource \"random_id\" \"sufixo\" {\n  byte_length = 4\n}\n");
+        assertFalse(initCache.isUpToDate(workDir));
+    }
+
+    @Test
+    @DisplayName("Should require init when lock file changes")
+    void shouldRequireInitWhenLockFileChanges() throws Exception {
+        Files.writeString(workDir.resolve("main.tf"), PROVIDERS);
+        Files.writeString(workDir.resolve(".terraform.lock.hcl"), "provider \"registry.terraform.io/hashicorp/aws\" {}");
+        initCache.markInitialized(workDir, Duration.ofMillis(100), true);
+
+        Files.writeString(workDir.resolve(".terraform.lock.hcl"), "provider \"registry.terraform.io/hashicorp/aws\" { version = \"6.0.0\" }");
+
+        assertFalse(initCache.isUpToDate(workDir));
+    }
+
+    @Test
+    @DisplayName("Should report cold, warm and skipped init timings")
+    void shouldReportInitTimings() throws Exception {
+        Files.writeString(workDir.resolve("main.tf"), PROVIDERS);
+
+        initCache.markInitialized(workDir, Duration.ofMillis(3000), true);
+        initCache.markInitialized(workDir, Duration.ofMillis(400), false);
+        initCache.markInitialized(workDir, Duration.ofMillis(600), false);
+        initCache.recordSkipped();
+
+        TerraformInitCache.InitStats stats = initCache.stats();
+        assertEquals(1, stats.coldInits());
+        assertEquals(3000, stats.coldAverageMillis());
+        assertEquals(2, stats.warmInits());
+        assertEquals(500, stats.warmAverageMillis());
+        assertEquals(1, stats.skippedInits());
+    }
+
+    @Test
+    @DisplayName("Should report cold cache until a provider is cached")
+    void shouldReportColdCache() throws Exception {
+        assertTrue(initCache.isCold());
+
+        Files.createDirectories(tempDir.resolve("cache/plugins/registry.terraform.io"));
+
+        assertFalse(initCache.isCold());
+    }
+
+    @Test
+    @DisplayName("Should count an init as installing until the lock file pins every provider at a cached version")
+    void shouldDetectProviderInstall() throws Exception {
+        Files.writeString(workDir.resolve("main.tf"), PROVIDERS + "\nresource \"aws_sqs_queue\" \"q\" {}\n");
+        assertTrue(initCache.installsProviders(workDir));
+
+        Files.writeString(workDir.resolve(".terraform.lock.hcl"), """
+                provider "registry.terraform.io/hashicorp/aws" {
+                  version     = "5.31.0"
+                  constraints = "~> 5.0"
+                }
+                """);
+        assertTrue(initCache.installsProviders(workDir));
+
+        Files.createDirectories(tempDir.resolve("cache/plugins/registry.terraform.io/hashicorp/aws/5.31.0"));
+        assertFalse(initCache.installsProviders(workDir));
+
+        Files.writeString(workDir.resolve("main.tf"), PROVIDERS + "\nresource \"random_id\" \"sufixo\" {}\n");
+        assertTrue(initCache.installsProviders(workDir));
+    }
+}
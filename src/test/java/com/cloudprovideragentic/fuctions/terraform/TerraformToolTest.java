@@ -1,10 +1,24 @@
 package com.cloudprovideragentic.fuctions.terraform;
 
+import com.cloudprovideragentic.fuctions.terraform.job.JobManager;
+import com.cloudprovideragentic.fuctions.terraform.job.JobState;
+import com.cloudprovideragentic.fuctions.terraform.job.TerraformJob;
+import com.cloudprovideragentic.fuctions.terraform.metrics.PipelineMetrics;
+import com.cloudprovideragentic.fuctions.terraform.model.jobs.JobLogRequest;
+import com.cloudprovideragentic.fuctions.terraform.model.jobs.JobRequest;
+import com.cloudprovideragentic.fuctions.terraform.model.jobs.JobResponse;
 import com.cloudprovideragentic.fuctions.terraform.model.plans.PlanResponse;
 import com.cloudprovideragentic.fuctions.terraform.model.plans.TerraformPlanResult;
 import com.cloudprovideragentic.fuctions.terraform.model.terraform.ExecuteRequest;
 import com.cloudprovideragentic.fuctions.terraform.model.terraform.TerraformRequest;
 import com.cloudprovideragentic.fuctions.terraform.model.terraform.TerraformResponse;
+import com.cloudprovideragentic.fuctions.terraform.process.OutputLine;
+import com.cloudprovideragentic.fuctions.terraform.session.PendingPlanStore;
+import com.cloudprovideragentic.fuctions.terraform.session.SessionContext;
+import com.cloudprovideragentic.fuctions.terraform.speculative.PreparedPlan;
+import com.cloudprovideragentic.fuctions.terraform.speculative.SpeculativePlanner;
+import com.cloudprovideragentic.fuctions.terraform.stack.StackName;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -12,11 +26,23 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-
-import java.util.function.Function;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -28,17 +54,26 @@ class TerraformToolTest {
     @Mock
     private TerraformExecutor executor;
 
-    private TerraformCodeHolder codeHolder;
+    private static final String SESSION = "sessao-1";
+    private static final ToolContext TOOL_CONTEXT = new ToolContext(Map.of(SessionContext.SESSION_ID, SESSION));
+
+    private PendingPlanStore planStore;
+    private SimpleMeterRegistry meterRegistry;
     private TerraformTool terraformTool;
-    private Function<TerraformRequest, PlanResponse> planejarInfraFunction;
-    private Function<ExecuteRequest, TerraformResponse> executarInfraFunction;
+    private BiFunction<TerraformRequest, ToolContext, PlanResponse> planejarInfraFunction;
+    private SpeculativePlanner speculativePlanner;
+    private JobManager jobManager;
+    private BiFunction<ExecuteRequest, ToolContext, JobResponse> executarInfraFunction;
 
     @BeforeEach
     void setUp() {
-        codeHolder = new TerraformCodeHolder();
-        terraformTool = new TerraformTool();
-        planejarInfraFunction = terraformTool.planejarInfra(codeGenerator, codeHolder);
-        executarInfraFunction = terraformTool.executarInfra(codeHolder, executor);
+        planStore = new PendingPlanStore(Duration.ofMinutes(30), DataSize.ofMegabytes(1));
+        meterRegistry = new SimpleMeterRegistry();
+        terraformTool = new TerraformTool(new PipelineMetrics(meterRegistry));
+        speculativePlanner = new SpeculativePlanner(executor, planStore, false);
+        planejarInfraFunction = terraformTool.planejarInfra(codeGenerator, planStore, speculativePlanner);
+        jobManager = new JobManager(executor, speculativePlanner, 100, Duration.ofHours(1), Duration.ZERO);
+        executarInfraFunction = terraformTool.executarInfra(planStore, speculativePlanner, jobManager);
     }
 
     @Nested
@@ -54,13 +89,15 @@ class TerraformToolTest {
 
             when(codeGenerator.generate(anyString())).thenReturn(planResult);
 
-            PlanResponse response = planejarInfraFunction.apply(new TerraformRequest("Criar bucket S3"));
+            PlanResponse response = planejarInfraFunction.apply(new TerraformRequest("Criar bucket S3", null), TOOL_CONTEXT);
 
             assertEquals("PLANO_GERADO", response.status());
             assertEquals(tfCode, response.terraformCode());
             assertEquals(description, response.planDescription());
-            assertTrue(codeHolder.hasPendingCode());
-            assertEquals(tfCode, codeHolder.retrieve());
+            assertTrue(planStore.hasPendingPlan(SESSION));
+            assertEquals(tfCode, planStore.get(SESSION).orElseThrow().terraformCode());
+            assertEquals(planStore.get(SESSION).orElseThrow().id(), response.planId());
+            assertEquals(StackName.DEFAULT, response.stack());
         }
 
         @Test
@@ -71,7 +108,7 @@ class TerraformToolTest {
 
             when(codeGenerator.generate(anyString())).thenReturn(planResult);
 
-            planejarInfraFunction.apply(new TerraformRequest(userPrompt));
+            planejarInfraFunction.apply(new TerraformRequest(userPrompt, null), TOOL_CONTEXT);
 
             verify(codeGenerator).generate(userPrompt);
         }
@@ -82,11 +119,43 @@ class TerraformToolTest {
             when(codeGenerator.generate(anyString()))
                     .thenThrow(new RuntimeException("Connection failed"));
 
-            PlanResponse response = planejarInfraFunction.apply(new TerraformRequest("Criar bucket"));
+            PlanResponse response = planejarInfraFunction.apply(new TerraformRequest("Criar bucket", null), TOOL_CONTEXT);
 
             assertEquals("ERRO", response.status());
             assertTrue(response.planDescription().contains("Connection failed"));
-            assertFalse(codeHolder.hasPendingCode());
+            assertFalse(planStore.hasPendingPlan(SESSION));
+        }
+
+        @Test
+        @DisplayName("Should time each call and count errors as failures")
+        void shouldRecordToolPhase() {
+            when(codeGenerator.generate(anyString()))
+                    .thenReturn(new TerraformPlanResult("Descrição", "tf-code"))
+                    .thenThrow(new RuntimeException("Connection failed"));
+
+            planejarInfraFunction.apply(new TerraformRequest("Criar bucket", null), TOOL_CONTEXT);
+            planejarInfraFunction.apply(new TerraformRequest("Criar fila", null), TOOL_CONTEXT);
+
+            assertEquals(1, meterRegistry.get(PipelineMetrics.PHASE_TIMER)
+                    .tag("phase", "tool.planejarInfra").tag("outcome", PipelineMetrics.OK).timer().count());
+            assertEquals(1, meterRegistry.get(PipelineMetrics.PHASE_TIMER)
+                    .tag("phase", "tool.planejarInfra").tag("outcome", PipelineMetrics.ERROR).timer().count());
+        }
+
+        @Test
+        @DisplayName("Should stream the plan to the listener the caller put in the tool context")
+        void shouldUseStreamingGenerationWithListener() {
+            var planResult = new TerraformPlanResult("Descrição", "tf-code");
+            Consumer<String> listener = text -> {};
+            when(codeGenerator.generate(anyString(), any())).thenReturn(planResult);
+            ToolContext streaming = new ToolContext(Map.of(SessionContext.SESSION_ID, SESSION,
+                    SessionContext.PLAN_LISTENER, listener));
+
+            PlanResponse response = planejarInfraFunction.apply(new TerraformRequest("Criar fila SQS", null), streaming);
+
+            assertEquals("PLANO_GERADO", response.status());
+            verify(codeGenerator).generate(eq("Criar fila SQS"), same(listener));
+            verify(codeGenerator, never()).generate(anyString());
         }
 
         @Test
@@ -95,9 +164,9 @@ class TerraformToolTest {
             when(codeGenerator.generate(anyString()))
                     .thenThrow(new RuntimeException("Model unavailable"));
 
-            planejarInfraFunction.apply(new TerraformRequest("Criar infra"));
+            planejarInfraFunction.apply(new TerraformRequest("Criar infra", null), TOOL_CONTEXT);
 
-            assertFalse(codeHolder.hasPendingCode());
+            assertFalse(planStore.hasPendingPlan(SESSION));
         }
     }
 
@@ -106,53 +175,188 @@ class TerraformToolTest {
     class ExecutarInfraTests {
 
         @Test
-        @DisplayName("Should execute infrastructure when user confirms")
-        void shouldExecuteWhenUserConfirms() {
+        @DisplayName("Should execute infrastructure in the background when user confirms")
+        void shouldExecuteWhenUserConfirms() throws Exception {
             String tfCode = "resource \"aws_s3_bucket\" \"test\" {}";
-            codeHolder.store(tfCode);
+            planStore.store(SESSION, StackName.DEFAULT, tfCode);
             var expectedResponse = new TerraformResponse("SUCESSO", tfCode, "Apply complete!");
 
-            when(executor.execute(tfCode)).thenReturn(expectedResponse);
+            when(executor.execute(eq(StackName.DEFAULT), eq(tfCode), any(), any())).thenReturn(expectedResponse);
 
-            TerraformResponse response = executarInfraFunction.apply(new ExecuteRequest(true));
+            JobResponse response = executarInfraFunction.apply(new ExecuteRequest(true), TOOL_CONTEXT);
 
-            assertEquals("SUCESSO", response.status());
-            assertFalse(codeHolder.hasPendingCode());
+            assertFalse(response.jobId().isBlank());
+            assertFalse(planStore.hasPendingPlan(SESSION));
+            assertEquals(JobState.SUCESSO, awaitJob(response).state());
         }
 
         @Test
         @DisplayName("Should cancel execution when user denies")
         void shouldCancelWhenUserDenies() {
-            codeHolder.store("some code");
+            planStore.store(SESSION, StackName.DEFAULT, "some code");
 
-            TerraformResponse response = executarInfraFunction.apply(new ExecuteRequest(false));
+            JobResponse response = executarInfraFunction.apply(new ExecuteRequest(false), TOOL_CONTEXT);
 
             assertEquals("CANCELADO", response.status());
-            assertFalse(codeHolder.hasPendingCode());
-            verify(executor, never()).execute(anyString());
+            assertFalse(planStore.hasPendingPlan(SESSION));
+            verify(executor, never()).execute(anyString(), anyString(), any(), any());
         }
 
         @Test
         @DisplayName("Should return error when no pending plan exists")
         void shouldReturnErrorWhenNoPendingPlan() {
-            TerraformResponse response = executarInfraFunction.apply(new ExecuteRequest(true));
+            JobResponse response = executarInfraFunction.apply(new ExecuteRequest(true), TOOL_CONTEXT);
 
             assertEquals("ERRO", response.status());
-            verify(executor, never()).execute(anyString());
+            verify(executor, never()).execute(anyString(), anyString(), any(), any());
         }
 
         @Test
-        @DisplayName("Should clear code holder after successful execution")
-        void shouldClearCodeHolderAfterExecution() {
+        @DisplayName("Should clear pending plan after successful execution")
+        void shouldClearPendingPlanAfterExecution() throws Exception {
             String tfCode = "resource {}";
-            codeHolder.store(tfCode);
+            planStore.store(SESSION, StackName.DEFAULT, tfCode);
 
-            when(executor.execute(tfCode))
+            when(executor.execute(eq(StackName.DEFAULT), eq(tfCode), any(), any()))
                     .thenReturn(new TerraformResponse("SUCESSO", tfCode, "Done"));
 
-            executarInfraFunction.apply(new ExecuteRequest(true));
+            awaitJob(executarInfraFunction.apply(new ExecuteRequest(true), TOOL_CONTEXT));
+
+            assertFalse(planStore.hasPendingPlan(SESSION));
+        }
+
+        @Test
+        @DisplayName("Should execute the plan on the stack it was planned for")
+        void shouldExecuteOnPlannedStack() throws Exception {
+            when(codeGenerator.generate(anyString())).thenReturn(new TerraformPlanResult("Descrição", "tf-code"));
+            when(executor.execute(eq("pagamentos"), eq("tf-code"), any(), any()))
+                    .thenReturn(new TerraformResponse("SUCESSO", "tf-code", "Done"));
+
+            planejarInfraFunction.apply(new TerraformRequest("Criar fila", "Pagamentos"), TOOL_CONTEXT);
+            JobResponse response = executarInfraFunction.apply(new ExecuteRequest(true), TOOL_CONTEXT);
 
-            assertFalse(codeHolder.hasPendingCode());
+            assertEquals("pagamentos", response.stack());
+            assertEquals(JobState.SUCESSO, awaitJob(response).state());
+        }
+
+        @Test
+        @DisplayName("Should apply the speculative plan prepared while the operator reviewed it")
+        void shouldApplySpeculativePlan() throws Exception {
+            SpeculativePlanner enabledPlanner = new SpeculativePlanner(executor, planStore, true);
+            JobManager manager = new JobManager(executor, enabledPlanner, 100, Duration.ofHours(1), Duration.ZERO);
+            PreparedPlan prepared = new PreparedPlan("id", StackName.DEFAULT, Path.of("speculative"), "fingerprint", List.of());
+            when(codeGenerator.generate(anyString())).thenReturn(new TerraformPlanResult("Descrição", "tf-code"));
+            when(executor.prepare(anyString(), eq(StackName.DEFAULT), eq("tf-code"))).thenReturn(Optional.of(prepared));
+            when(executor.execute(eq(StackName.DEFAULT), eq("tf-code"), any(), eq(prepared)))
+                    .thenReturn(new TerraformResponse("SUCESSO", "tf-code", "Done"));
+
+            terraformTool.planejarInfra(codeGenerator, planStore, enabledPlanner)
+                    .apply(new TerraformRequest("Criar fila", null), TOOL_CONTEXT);
+            JobResponse response = terraformTool.executarInfra(planStore, enabledPlanner, manager)
+                    .apply(new ExecuteRequest(true), TOOL_CONTEXT);
+
+            TerraformJob job = manager.find(SESSION, response.jobId()).orElseThrow();
+            assertTrue(job.await(Duration.ofSeconds(5)));
+            assertEquals(JobState.SUCESSO, job.state());
+            verify(executor).release(prepared);
         }
+
+        @Test
+        @DisplayName("Should discard the speculative plan when user denies")
+        void shouldDiscardSpeculativePlanWhenUserDenies() throws Exception {
+            SpeculativePlanner enabledPlanner = new SpeculativePlanner(executor, planStore, true);
+            PreparedPlan prepared = new PreparedPlan("id", StackName.DEFAULT, Path.of("speculative"), "fingerprint", List.of());
+            when(codeGenerator.generate(anyString())).thenReturn(new TerraformPlanResult("Descrição", "tf-code"));
+            when(executor.prepare(anyString(), anyString(), anyString())).thenReturn(Optional.of(prepared));
+
+            terraformTool.planejarInfra(codeGenerator, planStore, enabledPlanner)
+                    .apply(new TerraformRequest("Criar fila", null), TOOL_CONTEXT);
+            verify(executor, timeout(5000)).prepare(anyString(), anyString(), anyString());
+            terraformTool.executarInfra(planStore, enabledPlanner, jobManager).apply(new ExecuteRequest(false), TOOL_CONTEXT);
+
+            verify(executor, timeout(5000)).release(prepared);
+            verify(executor, never()).execute(anyString(), anyString(), any(), any());
+        }
+
+        @Test
+        @DisplayName("Should only execute the plan of the confirming session")
+        void shouldOnlyExecutePlanOfConfirmingSession() throws Exception {
+            ToolContext otherSession = new ToolContext(Map.of(SessionContext.SESSION_ID, "sessao-2"));
+            planStore.store(SESSION, StackName.DEFAULT, "codigo da sessao 1");
+            planStore.store("sessao-2", StackName.DEFAULT, "codigo da sessao 2");
+
+            when(executor.execute(eq(StackName.DEFAULT), eq("codigo da sessao 2"), any(), any()))
+                    .thenReturn(new TerraformResponse("SUCESSO", "codigo da sessao 2", "Done"));
+
+            JobResponse response = executarInfraFunction.apply(new ExecuteRequest(true), otherSession);
+
+            TerraformJob job = jobManager.find("sessao-2", response.jobId()).orElseThrow();
+            assertTrue(job.await(Duration.ofSeconds(5)));
+            assertEquals(JobState.SUCESSO, job.state());
+            assertTrue(planStore.hasPendingPlan(SESSION));
+            assertFalse(planStore.hasPendingPlan("sessao-2"));
+            assertTrue(jobManager.find(SESSION, response.jobId()).isEmpty());
+        }
+    }
+
+    @Nested
+    @DisplayName("statusInfra, logInfra and cancelarInfra")
+    class JobToolsTests {
+
+        @Test
+        @DisplayName("Should report the result of the latest job when no jobId is given")
+        void shouldReportLatestJobStatus() throws Exception {
+            planStore.store(SESSION, StackName.DEFAULT, "tf-code");
+            when(executor.execute(eq(StackName.DEFAULT), eq("tf-code"), any(), any()))
+                    .thenReturn(new TerraformResponse("SUCESSO", "tf-code", "Apply complete!"));
+            awaitJob(executarInfraFunction.apply(new ExecuteRequest(true), TOOL_CONTEXT));
+
+            JobResponse status = terraformTool.statusInfra(jobManager).apply(new JobRequest(null), TOOL_CONTEXT);
+
+            assertEquals("SUCESSO", status.status());
+            assertEquals("Apply complete!", status.output());
+        }
+
+        @Test
+        @DisplayName("Should tail the output and cancel a running job")
+        void shouldTailAndCancelRunningJob() throws Exception {
+            CountDownLatch started = new CountDownLatch(1);
+            planStore.store(SESSION, StackName.DEFAULT, "tf-code");
+            when(executor.execute(eq(StackName.DEFAULT), eq("tf-code"), any(), any())).thenAnswer(invocation -> {
+                Consumer<OutputLine> listener = invocation.getArgument(2);
+                listener.accept(new OutputLine("apply", OutputLine.Source.STDOUT, "aws_db_instance.main: Still creating..."));
+                started.countDown();
+                try {
+                    Thread.sleep(Duration.ofMinutes(5));
+                    return new TerraformResponse("SUCESSO", "tf-code", "");
+                } catch (InterruptedException e) {
+                    return new TerraformResponse("CANCELADO", "tf-code", "Execucao interrompida.");
+                }
+            });
+            JobResponse submitted = executarInfraFunction.apply(new ExecuteRequest(true), TOOL_CONTEXT);
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            JobResponse log = terraformTool.logInfra(jobManager).apply(new JobLogRequest(submitted.jobId(), 10), TOOL_CONTEXT);
+            JobResponse cancelled = terraformTool.cancelarInfra(jobManager).apply(new JobRequest(submitted.jobId()), TOOL_CONTEXT);
+
+            assertEquals("EM_EXECUCAO", log.status());
+            assertEquals("[apply] aws_db_instance.main: Still creating...", log.output());
+            assertEquals("CANCELADO", cancelled.status());
+            assertEquals(JobState.CANCELADO, awaitJob(submitted).state());
+        }
+
+        @Test
+        @DisplayName("Should return error for an unknown job")
+        void shouldReturnErrorForUnknownJob() {
+            JobResponse status = terraformTool.statusInfra(jobManager).apply(new JobRequest("inexistente"), TOOL_CONTEXT);
+
+            assertEquals("ERRO", status.status());
+        }
+    }
+
+    private TerraformJob awaitJob(JobResponse response) throws InterruptedException {
+        TerraformJob job = jobManager.find(SESSION, response.jobId()).orElseThrow();
+        assertTrue(job.await(Duration.ofSeconds(5)));
+        return job;
     }
 }
@@ -0,0 +1,70 @@
+package com.cloudprovideragentic.fuctions.terraform.backend;
+
+import com.cloudprovideragentic.fuctions.terraform.metrics.PipelineMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecutionBackendsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private LocalProcessBackend local;
+    private PooledProcessBackend pool;
+    private SimulatedBackend simulated;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        local = new LocalProcessBackend("terraform");
+        pool = new PooledProcessBackend(local, new PipelineMetrics(meterRegistry), 4);
+        simulated = new SimulatedBackend(Duration.ZERO);
+    }
+
+    @Test
+    @DisplayName("Should route a phase to its own backend and the others to the default")
+    void shouldRoutePhases() {
+        ExecutionBackends backends = new ExecutionBackends(List.of(local, pool, simulated),
+                "local", "", "", " pool ", meterRegistry);
+
+        assertSame(local, backends.forPhase("init"));
+        assertSame(local, backends.forPhase("plan"));
+        assertSame(pool, backends.forPhase("apply"));
+        assertSame(local, backends.forPhase("show"));
+    }
+
+    @Test
+    @DisplayName("Should reject an unknown backend listing the valid ones")
+    void shouldRejectUnknownBackend() {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> new ExecutionBackends(List.of(local, pool, simulated), "local", "", "remote", "", meterRegistry));
+
+        assertTrue(error.getMessage().contains("'remote'"));
+        assertTrue(error.getMessage().contains("local, pool, simulated"));
+    }
+
+    @Test
+    @DisplayName("Should explain that the simulated backend must be enabled")
+    void shouldRequireEnabledSimulatedBackend() {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> new ExecutionBackends(List.of(local, pool), "local", "", "simulated", "", meterRegistry));
+
+        assertTrue(error.getMessage().contains("terraform.backend.simulated.enabled=true"));
+    }
+
+    @Test
+    @DisplayName("Should publish active and queued gauges, and utilization for bounded backends")
+    void shouldPublishGauges() {
+        new ExecutionBackends(List.of(local, pool, simulated), "simulated", "", "", "", meterRegistry);
+
+        assertEquals(0.0, meterRegistry.get(ExecutionBackends.ACTIVE_GAUGE).tag("backend", "local").gauge().value());
+        assertEquals(0.0, meterRegistry.get(ExecutionBackends.QUEUED_GAUGE).tag("backend", "pool").gauge().value());
+        assertEquals(0.0, meterRegistry.get(ExecutionBackends.UTILIZATION_GAUGE).tag("backend", "pool").gauge().value());
+        assertNull(meterRegistry.find(ExecutionBackends.UTILIZATION_GAUGE).tag("backend", "local").gauge());
+    }
+}
@@ -0,0 +1,81 @@
+package com.cloudprovideragentic.fuctions.terraform.backend;
+
+import com.cloudprovideragentic.fuctions.terraform.metrics.PipelineMetrics;
+import com.cloudprovideragentic.fuctions.terraform.process.OutputBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PooledProcessBackendTest {
+
+    @Mock
+    private LocalProcessBackend processes;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Should run at most pool.size commands and queue the rest")
+    void shouldBoundConcurrentCommands() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PooledProcessBackend pool = new PooledProcessBackend(processes, new PipelineMetrics(meterRegistry), 2);
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        when(processes.launch(any(), any(), any(), any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return 0;
+        });
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Integer>> runs = List.of(
+                    executor.submit(() -> run(pool)), executor.submit(() -> run(pool)), executor.submit(() -> run(pool)));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            while (pool.queued() == 0) {
+                Thread.sleep(10);
+            }
+
+            assertEquals(2, pool.active());
+            assertEquals(1, pool.queued());
+            assertEquals(2, pool.capacity());
+
+            release.countDown();
+            for (Future<Integer> run : runs) {
+                assertEquals(0, run.get(5, TimeUnit.SECONDS));
+            }
+        }
+        assertEquals(0, pool.active());
+        assertEquals(3, meterRegistry.get(PipelineMetrics.PHASE_TIMER)
+                .tag("phase", "backend.pool.wait").tag("outcome", PipelineMetrics.OK).timer().count());
+    }
+
+    @Test
+    @DisplayName("Should reject a pool without slots")
+    void shouldRejectEmptyPool() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new PooledProcessBackend(processes, new PipelineMetrics(new SimpleMeterRegistry()), 0));
+    }
+
+    private int run(PooledProcessBackend pool) throws Exception {
+        return pool.run(new TerraformInvocation(tempDir, "apply", List.of("apply", "tfplan"), Map.of()),
+                new OutputBuffer(10, tempDir), new OutputBuffer(10, tempDir), line -> {});
+    }
+}
@@ -0,0 +1,138 @@
+package com.cloudprovideragentic.fuctions.terraform.cache;
+
+import com.cloudprovideragentic.fuctions.terraform.model.plans.TerraformPlanResult;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlanCacheTest {
+
+    private static final String SYSTEM_PROMPT = "system";
+    private static final TerraformPlanResult PLAN = new TerraformPlanResult("S3 bucket", "resource \"aws_s3_bucket\" \"b\" {}");
+
+    @TempDir
+    Path tempDir;
+
+    private final MutableClock clock = new MutableClock();
+
+    private PlanCache newCache(int maxEntries) {
+        return new PlanCache(maxEntries, Duration.ofHours(1), tempDir.resolve("cache.jsonl"), "nova-pro|0.8|1000", clock);
+    }
+
+    @Test
+    @DisplayName("Should normalize accents, punctuation, whitespace and leading capital")
+    void shouldNormalizePrompt() {
+        assertEquals("bucket S3 X com versao em us-east-1",
+                PlanCache.normalize("  Bucket S3 X, com versão   em us-east-1. "));
+    }
+
+    @Test
+    @DisplayName("Should preserve case of resource names")
+    void shouldPreserveCaseOfResourceNames() {
+        PlanCache cache = newCache(10);
+
+        assertNotEquals(cache.key("fila SQS Pedidos", SYSTEM_PROMPT), cache.key("fila SQS pedidos", SYSTEM_PROMPT));
+    }
+
+    @Test
+    @DisplayName("Should change key when system prompt changes")
+    void shouldChangeKeyWhenSystemPromptChanges() {
+        PlanCache cache = newCache(10);
+
+        assertNotEquals(cache.key("bucket", "v1"), cache.key("bucket", "v2"));
+    }
+
+    @Test
+    @DisplayName("Should count hits and misses")
+    void shouldCountHitsAndMisses() {
+        PlanCache cache = newCache(10);
+        String key = cache.key("bucket S3 x", SYSTEM_PROMPT);
+
+        assertTrue(cache.get(key).isEmpty());
+        cache.put(key, PLAN);
+
+        assertEquals(PLAN, cache.get(key).orElseThrow());
+        assertEquals(1, cache.stats().hits());
+        assertEquals(1, cache.stats().misses());
+    }
+
+    @Test
+    @DisplayName("Should evict least recently used entry when full")
+    void shouldEvictLeastRecentlyUsed() {
+        PlanCache cache = newCache(2);
+        cache.put("a", PLAN);
+        cache.put("b", PLAN);
+        cache.get("a");
+        cache.put("c", PLAN);
+
+        assertTrue(cache.get("a").isPresent());
+        assertTrue(cache.get("b").isEmpty());
+        assertTrue(cache.get("c").isPresent());
+    }
+
+    @Test
+    @DisplayName("Should expire entries after TTL")
+    void shouldExpireEntriesAfterTtl() {
+        PlanCache cache = newCache(10);
+        cache.put("a", PLAN);
+
+        clock.advance(Duration.ofHours(2));
+
+        assertTrue(cache.get("a").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should reload entries from disk after restart")
+    void shouldReloadEntriesFromDisk() {
+        newCache(10).put("a", PLAN);
+
+        PlanCache restarted = newCache(10);
+
+        assertEquals(PLAN, restarted.get("a").orElseThrow());
+    }
+
+    @Test
+    @DisplayName("Should compact the log when it grows past twice the capacity")
+    void shouldCompactLog() throws Exception {
+        PlanCache cache = newCache(2);
+        for (int i = 0; i < 10; i++) {
+            cache.put("k" + i, PLAN);
+        }
+
+        assertTrue(Files.readAllLines(tempDir.resolve("cache.jsonl")).size() <= 4);
+        assertTrue(newCache(2).get("k9").isPresent());
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
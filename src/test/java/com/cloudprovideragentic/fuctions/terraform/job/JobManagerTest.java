@@ -0,0 +1,261 @@
+package com.cloudprovideragentic.fuctions.terraform.job;
+
+import com.cloudprovideragentic.fuctions.terraform.TerraformExecutor;
+import com.cloudprovideragentic.fuctions.terraform.model.terraform.TerraformResponse;
+import com.cloudprovideragentic.fuctions.terraform.process.OutputLine;
+import com.cloudprovideragentic.fuctions.terraform.session.PendingPlan;
+import com.cloudprovideragentic.fuctions.terraform.session.PendingPlanStore;
+import com.cloudprovideragentic.fuctions.terraform.speculative.SpeculativePlanner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class JobManagerTest {
+
+    @Mock
+    private TerraformExecutor executor;
+
+    private final MutableClock clock = new MutableClock();
+    private JobManager jobManager;
+
+    @BeforeEach
+    void setUp() {
+        jobManager = new JobManager(executor, disabledPlanner(), 3, Duration.ofHours(1), Duration.ZERO, clock);
+    }
+
+    @Test
+    @DisplayName("Should reject a non-positive tail size")
+    void shouldRejectNonPositiveTailLines() {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> new JobManager(executor, disabledPlanner(), 0, Duration.ofHours(1), Duration.ZERO, clock));
+
+        assertTrue(error.getMessage().contains("terraform.jobs.tail-lines"));
+    }
+
+    @Test
+    @DisplayName("Should run several jobs at the same time")
+    void shouldRunJobsConcurrently() throws Exception {
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        when(executor.execute(anyString(), anyString(), any(), any())).thenAnswer(invocation -> {
+            bothRunning.countDown();
+            return bothRunning.await(5, TimeUnit.SECONDS)
+                    ? new TerraformResponse("SUCESSO", invocation.getArgument(1), "ok")
+                    : new TerraformResponse("ERRO", invocation.getArgument(1), "jobs executados em sequência");
+        });
+
+        TerraformJob first = jobManager.submit(plan("s1", "a"));
+        TerraformJob second = jobManager.submit(plan("s2", "b"));
+
+        assertTrue(first.await(Duration.ofSeconds(10)));
+        assertTrue(second.await(Duration.ofSeconds(10)));
+        assertEquals(JobState.SUCESSO, first.state());
+        assertEquals(JobState.SUCESSO, second.state());
+    }
+
+    @Test
+    @DisplayName("Should keep only the last output lines of a job")
+    void shouldKeepOutputTail() throws Exception {
+        when(executor.execute(anyString(), anyString(), any(), any())).thenAnswer(invocation -> {
+            Consumer<OutputLine> listener = invocation.getArgument(2);
+            for (int i = 1; i <= 5; i++) {
+                listener.accept(new OutputLine("plan", OutputLine.Source.STDOUT, "linha " + i));
+            }
+            return new TerraformResponse("ERRO", "codigo", "falhou");
+        });
+
+        TerraformJob job = jobManager.submit(plan("s1", "codigo"));
+
+        assertTrue(job.await(Duration.ofSeconds(5)));
+        assertEquals(JobState.ERRO, job.state());
+        assertEquals(List.of("[plan] linha 3", "[plan] linha 4", "[plan] linha 5"), job.tail(10));
+        assertEquals(List.of("[plan] linha 5"), job.tail(1));
+    }
+
+    @Test
+    @DisplayName("Should interrupt the execution when a job is cancelled")
+    void shouldInterruptCancelledJob() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        when(executor.execute(anyString(), anyString(), any(), any())).thenAnswer(invocation -> {
+            started.countDown();
+            try {
+                Thread.sleep(Duration.ofMinutes(5));
+                return new TerraformResponse("SUCESSO", "codigo", "");
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+                return new TerraformResponse("CANCELADO", "codigo", "Execucao interrompida.");
+            }
+        });
+        TerraformJob job = jobManager.submit(plan("s1", "codigo"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertTrue(jobManager.cancel(job));
+
+        assertTrue(job.await(Duration.ofSeconds(5)));
+        assertTrue(interrupted.get());
+        assertEquals(JobState.CANCELADO, job.state());
+        assertFalse(jobManager.cancel(job));
+    }
+
+    @Test
+    @DisplayName("Should only expose jobs to the session that started them")
+    void shouldIsolateJobsBySession() throws Exception {
+        when(executor.execute(eq("default"), anyString(), any(), any()))
+                .thenReturn(new TerraformResponse("SUCESSO", "codigo", "ok"));
+        TerraformJob job = jobManager.submit(plan("s1", "codigo"));
+        assertTrue(job.await(Duration.ofSeconds(5)));
+
+        assertTrue(jobManager.find("s1", job.id()).isPresent());
+        assertTrue(jobManager.find("s1", "").isPresent());
+        assertTrue(jobManager.find("s2", job.id()).isEmpty());
+        assertTrue(jobManager.find("s2", null).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should forget finished jobs after the retention period")
+    void shouldPurgeFinishedJobs() throws Exception {
+        when(executor.execute(anyString(), anyString(), any(), any()))
+                .thenReturn(new TerraformResponse("SUCESSO", "codigo", "ok"));
+        TerraformJob old = jobManager.submit(plan("s1", "a"));
+        assertTrue(old.await(Duration.ofSeconds(5)));
+
+        clock.advance(Duration.ofHours(2));
+        TerraformJob recent = jobManager.submit(plan("s1", "b"));
+        assertTrue(recent.await(Duration.ofSeconds(5)));
+
+        assertTrue(jobManager.find("s1", old.id()).isEmpty());
+        assertEquals(recent.id(), jobManager.find("s1", null).orElseThrow().id());
+    }
+
+    @Test
+    @DisplayName("Should apply plans confirmed on the same stack within the window as one batch")
+    void shouldBatchConfirmationsOnSameStack() throws Exception {
+        JobManager batching = new JobManager(executor, disabledPlanner(), 3,
+                Duration.ofHours(1), Duration.ofMillis(300), clock);
+        // A ordem do lote é a ordem em que os jobs entraram nele
+        when(executor.executeBatch(eq("default"), any(), any())).thenAnswer(invocation -> {
+            List<String> codes = invocation.getArgument(1);
+            assertEquals(2, codes.size());
+            return codes.stream().map(code -> code.equals("a")
+                    ? new TerraformResponse("SUCESSO", "a", "aplicado")
+                    : new TerraformResponse("ERRO", "b", "bucket já existe")).toList();
+        });
+
+        TerraformJob first = batching.submit(plan("s1", "a"));
+        TerraformJob second = batching.submit(plan("s2", "b"));
+
+        assertTrue(first.await(Duration.ofSeconds(5)));
+        assertTrue(second.await(Duration.ofSeconds(5)));
+        assertEquals(JobState.SUCESSO, first.state());
+        assertEquals(JobState.ERRO, second.state());
+        assertEquals("bucket já existe", second.result().output());
+        verify(executor, never()).execute(anyString(), anyString(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should drop a job cancelled while its batch is still open")
+    void shouldLeaveBatchWhenCancelledBeforeStart() throws Exception {
+        JobManager batching = new JobManager(executor, disabledPlanner(), 3,
+                Duration.ofHours(1), Duration.ofMillis(300), clock);
+        when(executor.execute(anyString(), eq("b"), any(), any()))
+                .thenReturn(new TerraformResponse("SUCESSO", "b", "ok"));
+
+        TerraformJob cancelled = batching.submit(plan("s1", "a"));
+        TerraformJob kept = batching.submit(plan("s2", "b"));
+        assertTrue(batching.cancel(cancelled));
+
+        assertTrue(cancelled.await(Duration.ofSeconds(5)));
+        assertTrue(kept.await(Duration.ofSeconds(5)));
+        assertEquals(JobState.CANCELADO, cancelled.state());
+        assertEquals(JobState.SUCESSO, kept.state());
+        verify(executor, never()).executeBatch(anyString(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should cancel only the caller's job once its batch is running")
+    void shouldKeepRunningBatchWhenOneJobIsCancelled() throws Exception {
+        JobManager batching = new JobManager(executor, disabledPlanner(), 3,
+                Duration.ofHours(1), Duration.ofMillis(100), clock);
+        CountDownLatch applying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        when(executor.executeBatch(eq("default"), any(), any())).thenAnswer(invocation -> {
+            applying.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            return List.of(new TerraformResponse("SUCESSO", "a", "aplicado"),
+                    new TerraformResponse("SUCESSO", "b", "aplicado"));
+        });
+
+        TerraformJob cancelled = batching.submit(plan("s1", "a"));
+        TerraformJob kept = batching.submit(plan("s2", "b"));
+        assertTrue(applying.await(5, TimeUnit.SECONDS));
+        assertTrue(batching.cancel(cancelled));
+        assertTrue(cancelled.await(Duration.ofSeconds(5)));
+        release.countDown();
+
+        assertTrue(kept.await(Duration.ofSeconds(5)));
+        assertEquals(JobState.CANCELADO, cancelled.state());
+        assertEquals(JobState.SUCESSO, kept.state());
+        assertFalse(interrupted.get());
+    }
+
+    private PendingPlan plan(String sessionId, String code) {
+        return new PendingPlan("plano-" + code, sessionId, "default", code, clock.instant());
+    }
+
+    private SpeculativePlanner disabledPlanner() {
+        return new SpeculativePlanner(executor, new PendingPlanStore(Duration.ofMinutes(30), DataSize.ofMegabytes(1)), false);
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private volatile Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
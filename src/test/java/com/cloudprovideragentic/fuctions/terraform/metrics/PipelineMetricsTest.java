@@ -0,0 +1,97 @@
+package com.cloudprovideragentic.fuctions.terraform.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineMetricsTest {
+
+    private SimpleMeterRegistry registry;
+    private PipelineMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new PipelineMetrics(registry);
+    }
+
+    @Test
+    @DisplayName("Should tag each phase with its outcome, counting an unclosed outcome as error")
+    void shouldRecordPhaseOutcome() {
+        try (PipelineMetrics.Phase phase = metrics.start("terraform.plan")) {
+            phase.succeeded(true);
+        }
+        try (PipelineMetrics.Phase ignored = metrics.start("terraform.plan")) {
+            // saída por exceção: nenhum resultado definido
+        }
+        try (PipelineMetrics.Phase phase = metrics.start("terraform.apply")) {
+            phase.outcome(PipelineMetrics.CANCELLED);
+        }
+
+        assertEquals(1, timerCount("terraform.plan", PipelineMetrics.OK));
+        assertEquals(1, timerCount("terraform.plan", PipelineMetrics.ERROR));
+        assertEquals(1, timerCount("terraform.apply", PipelineMetrics.CANCELLED));
+    }
+
+    @Test
+    @DisplayName("Should add up prompt and completion tokens per operation and ignore missing usage")
+    void shouldCountTokens() {
+        metrics.tokens("bedrock.generate", 1200, 300);
+        metrics.tokens("bedrock.generate", 800, null);
+        metrics.tokens("bedrock.repair", null, null);
+
+        assertEquals(2000, tokens("bedrock.generate", "prompt"));
+        assertEquals(300, tokens("bedrock.generate", "completion"));
+        assertNull(registry.find(PipelineMetrics.TOKENS_COUNTER).tag("operation", "bedrock.repair").counter());
+    }
+
+    @Test
+    @DisplayName("Should commit matching JFR events while a recording is running")
+    void shouldCommitJfrEvents(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("agent.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.cloudprovideragentic.Phase");
+            recording.enable("com.cloudprovideragentic.TokenUsage");
+            recording.start();
+
+            try (PipelineMetrics.Phase phase = metrics.start("bedrock.generate")) {
+                phase.succeeded(true);
+            }
+            metrics.tokens("bedrock.generate", 10, 5);
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        RecordedEvent phase = events.stream()
+                .filter(e -> e.getEventType().getName().equals("com.cloudprovideragentic.Phase"))
+                .findFirst().orElseThrow();
+        RecordedEvent usage = events.stream()
+                .filter(e -> e.getEventType().getName().equals("com.cloudprovideragentic.TokenUsage"))
+                .findFirst().orElseThrow();
+
+        assertEquals("bedrock.generate", phase.getString("phase"));
+        assertEquals(PipelineMetrics.OK, phase.getString("outcome"));
+        assertEquals(10, usage.getInt("promptTokens"));
+        assertEquals(5, usage.getInt("completionTokens"));
+    }
+
+    private long timerCount(String phase, String outcome) {
+        return registry.get(PipelineMetrics.PHASE_TIMER).tag("phase", phase).tag("outcome", outcome).timer().count();
+    }
+
+    private double tokens(String operation, String type) {
+        return registry.get(PipelineMetrics.TOKENS_COUNTER).tag("operation", operation).tag("type", type).counter().count();
+    }
+}
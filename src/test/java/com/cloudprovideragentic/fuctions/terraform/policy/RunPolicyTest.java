@@ -0,0 +1,188 @@
+package com.cloudprovideragentic.fuctions.terraform.policy;
+
+import com.cloudprovideragentic.fuctions.terraform.metrics.PipelineMetrics;
+import com.cloudprovideragentic.fuctions.terraform.process.OutputBuffer;
+import com.cloudprovideragentic.fuctions.terraform.process.ProcessResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RunPolicyTest {
+
+    private static final String BUCKET = "resource \"aws_s3_bucket\" \"logs\" {}";
+
+    @TempDir
+    Path tempDir;
+
+    private final MutableClock clock = new MutableClock();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private RunPolicy newPolicy(RefreshMode mode) {
+        return new RunPolicy(mode, Duration.ofMinutes(15), 8, 1, 3, new PipelineMetrics(meterRegistry), clock);
+    }
+
+    @Test
+    @DisplayName("Should always refresh in full mode")
+    void shouldRefreshInFullMode() {
+        RunPolicy policy = newPolicy(RefreshMode.FULL);
+
+        policy.record(policy.plan(tempDir, List.of(BUCKET)), result(0, ""), Duration.ofSeconds(1));
+        RunChoice choice = policy.plan(tempDir, List.of(BUCKET));
+
+        assertEquals("full", choice.refresh());
+        assertEquals(List.of("-parallelism=8"), choice.arguments());
+    }
+
+    @Test
+    @DisplayName("Should skip the refresh while the last full refresh is recent")
+    void shouldSkipRecentRefresh() {
+        RunPolicy policy = newPolicy(RefreshMode.RECENT);
+
+        RunChoice first = policy.plan(tempDir, List.of(BUCKET));
+        assertEquals("full", first.refresh());
+        policy.record(first, result(0, ""), Duration.ofSeconds(1));
+
+        clock.advance(Duration.ofMinutes(10));
+        RunChoice second = policy.plan(tempDir, List.of(BUCKET));
+        assertEquals("skipped", second.refresh());
+        assertTrue(second.arguments().contains("-refresh=false"));
+        policy.record(second, result(0, ""), Duration.ofSeconds(1));
+
+        clock.advance(Duration.ofMinutes(10));
+        assertEquals("full", policy.plan(tempDir, List.of(BUCKET)).refresh());
+    }
+
+    @Test
+    @DisplayName("Should not count a failed plan as a refresh")
+    void shouldNotCountFailedRefresh() {
+        RunPolicy policy = newPolicy(RefreshMode.RECENT);
+
+        policy.record(policy.plan(tempDir, List.of(BUCKET)), result(1, "Error: acesso negado"), Duration.ofSeconds(1));
+
+        assertEquals("full", policy.plan(tempDir, List.of(BUCKET)).refresh());
+    }
+
+    @Test
+    @DisplayName("Should target the resources and modules the code declares")
+    void shouldTargetDeclaredBlocks() throws Exception {
+        String code = BUCKET + "\nmodule \"vpc\" {}\ndata \"aws_caller_identity\" \"current\" {}";
+        Files.writeString(tempDir.resolve("main.tf"), "resource \"aws_iam_role\" \"app\" {}\n" + code);
+        RunPolicy policy = newPolicy(RefreshMode.TARGETED);
+
+        RunChoice choice = policy.plan(tempDir, List.of(code));
+
+        assertEquals("targeted", choice.refresh());
+        assertEquals(List.of("-parallelism=8", "-target=aws_s3_bucket.logs", "-target=module.vpc"), choice.arguments());
+    }
+
+    @Test
+    @DisplayName("Should refresh everything when the code declares nothing targetable")
+    void shouldRefreshAllWithoutTargets() {
+        RunPolicy policy = newPolicy(RefreshMode.TARGETED);
+
+        RunChoice choice = policy.plan(tempDir, List.of("variable \"region\" {}"));
+
+        assertEquals("full", choice.refresh());
+        assertEquals(List.of("-parallelism=8"), choice.arguments());
+    }
+
+    @Test
+    @DisplayName("Should halve parallelism on throttling and raise it by one after clean runs")
+    void shouldAdaptParallelism() {
+        RunPolicy policy = newPolicy(RefreshMode.FULL);
+
+        RunChoice throttled = policy.apply(tempDir);
+        policy.record(throttled, result(1, "Error: ThrottlingException: Rate exceeded"), Duration.ofSeconds(1));
+        assertEquals(4, policy.apply(tempDir).parallelism());
+
+        policy.record(policy.apply(tempDir), result(0, ""), Duration.ofSeconds(1));
+        assertEquals(5, policy.apply(tempDir).parallelism());
+
+        for (int i = 0; i < 10; i++) {
+            policy.record(policy.apply(tempDir), result(1, "Error: RequestLimitExceeded"), Duration.ofSeconds(1));
+        }
+        assertEquals(1, policy.apply(tempDir).parallelism());
+
+        for (int i = 0; i < 20; i++) {
+            policy.record(policy.apply(tempDir), result(0, ""), Duration.ofSeconds(1));
+        }
+        assertEquals(8, policy.apply(tempDir).parallelism());
+    }
+
+    @Test
+    @DisplayName("Should start large stacks at half the maximum parallelism")
+    void shouldStartLargeStacksLower() throws Exception {
+        Files.writeString(tempDir.resolve("main.tf"), """
+                resource "aws_s3_bucket" "a" {}
+                resource "aws_s3_bucket" "b" {}
+                resource "aws_s3_bucket" "c" {}
+                resource "aws_s3_bucket" "d" {}
+                """);
+
+        assertEquals(4, newPolicy(RefreshMode.FULL).apply(tempDir).parallelism());
+    }
+
+    @Test
+    @DisplayName("Should record each run with its refresh, parallelism and throttling")
+    void shouldRecordRuns() {
+        RunPolicy policy = newPolicy(RefreshMode.FULL);
+
+        policy.record(policy.apply(tempDir), result(1, "Error: TooManyRequestsException"), Duration.ofSeconds(2));
+
+        assertEquals(1, meterRegistry.get(PipelineMetrics.TERRAFORM_RUN_TIMER)
+                .tag("phase", "apply").tag("refresh", "none").tag("parallelism", "8").tag("throttled", "true")
+                .timer().count());
+    }
+
+    @Test
+    @DisplayName("Should reject an unknown refresh mode")
+    void shouldRejectUnknownMode() {
+        assertEquals(RefreshMode.TARGETED, RefreshMode.of(" Targeted "));
+        assertThrows(IllegalArgumentException.class, () -> RefreshMode.of("sometimes"));
+    }
+
+    private ProcessResult result(int exitCode, String stderrLine) {
+        OutputBuffer stdout = new OutputBuffer(100, tempDir);
+        OutputBuffer stderr = new OutputBuffer(100, tempDir);
+        if (!stderrLine.isEmpty()) {
+            stderr.append(stderrLine);
+        }
+        return new ProcessResult(exitCode, stdout, stderr);
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private volatile Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
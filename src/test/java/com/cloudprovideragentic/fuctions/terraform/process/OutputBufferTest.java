@@ -0,0 +1,92 @@
+package com.cloudprovideragentic.fuctions.terraform.process;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutputBufferTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Should keep all lines in memory while under capacity")
+    void shouldKeepLinesUnderCapacity() throws Exception {
+        try (OutputBuffer buffer = new OutputBuffer(3, tempDir)) {
+            buffer.append("a");
+            buffer.append("b");
+
+            assertEquals("a\nb\n", buffer.text());
+            assertEquals(0, buffer.spilledLines());
+            assertNull(buffer.spillFile());
+        }
+    }
+
+    @Test
+    @DisplayName("Should spill oldest lines to disk when capacity is exceeded")
+    void shouldSpillOldestLinesToDisk() throws Exception {
+        OutputBuffer buffer = new OutputBuffer(2, tempDir);
+        buffer.append("linha-1");
+        buffer.append("linha-2");
+        buffer.append("linha-3");
+        buffer.append("linha-4");
+        buffer.finish();
+
+        assertEquals(2, buffer.spilledLines());
+        assertEquals(List.of("linha-1", "linha-2"), Files.readAllLines(buffer.spillFile()));
+        assertTrue(buffer.text().startsWith("[... 2 linhas anteriores omitidas]\n"));
+        assertTrue(buffer.text().endsWith("linha-3\nlinha-4\n"));
+    }
+
+    @Test
+    @DisplayName("Should delete the spill file on close and keep the lines in memory")
+    void shouldDeleteSpillFileOnClose() {
+        OutputBuffer buffer = new OutputBuffer(1, tempDir);
+        buffer.append("linha-1");
+        buffer.append("linha-2");
+        Path spillFile = buffer.spillFile();
+
+        buffer.close();
+
+        assertFalse(Files.exists(spillFile));
+        assertTrue(buffer.text().endsWith("linha-2\n"));
+    }
+
+    @Test
+    @DisplayName("Should keep accepting lines and count the dropped ones when the spill file cannot be written")
+    void shouldDropLinesWhenSpillFails() throws Exception {
+        Path notADirectory = Files.createFile(tempDir.resolve("arquivo"));
+        OutputBuffer buffer = new OutputBuffer(2, notADirectory.resolve("spill"));
+
+        for (int i = 1; i <= 5; i++) {
+            buffer.append("linha-" + i);
+        }
+
+        assertEquals(3, buffer.droppedLines());
+        assertEquals(0, buffer.spilledLines());
+        assertNull(buffer.spillFile());
+        assertTrue(buffer.text().startsWith("[... 3 linhas anteriores omitidas; 3 perdidas por falha ao gravar o log"));
+        assertTrue(buffer.text().endsWith("linha-4\nlinha-5\n"));
+    }
+
+    @Test
+    @DisplayName("Should report empty buffer")
+    void shouldReportEmptyBuffer() {
+        OutputBuffer buffer = new OutputBuffer(1, tempDir);
+
+        assertTrue(buffer.isEmpty());
+        assertEquals("", buffer.text());
+    }
+
+    @Test
+    @DisplayName("Should reject non-positive capacity")
+    void shouldRejectNonPositiveCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new OutputBuffer(0, tempDir));
+    }
+}
@@ -0,0 +1,132 @@
+package com.cloudprovideragentic.fuctions.terraform.process;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProcessOutputPumpTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Should capture stdout and stderr separately")
+    void shouldCaptureBothStreams() throws Exception {
+        Process process = new ProcessBuilder("sh", "-c", "echo saida; echo erro 1>&2").start();
+        OutputBuffer stdout = new OutputBuffer(10, tempDir);
+        OutputBuffer stderr = new OutputBuffer(10, tempDir);
+
+        ProcessOutputPump pump = ProcessOutputPump.start(process, "plan", stdout, stderr, line -> {});
+        process.waitFor();
+        pump.await();
+
+        assertEquals("saida\n", stdout.text());
+        assertEquals("erro\n", stderr.text());
+    }
+
+    @Test
+    @DisplayName("Should publish every line to the listener with its phase and source")
+    void shouldPublishLinesToListener() throws Exception {
+        Process process = new ProcessBuilder("sh", "-c", "echo um; echo dois 1>&2").start();
+        List<OutputLine> received = new CopyOnWriteArrayList<>();
+
+        ProcessOutputPump pump = ProcessOutputPump.start(process, "init",
+                new OutputBuffer(10, tempDir), new OutputBuffer(10, tempDir), received::add);
+        process.waitFor();
+        pump.await();
+
+        assertTrue(received.contains(new OutputLine("init", OutputLine.Source.STDOUT, "um")));
+        assertTrue(received.contains(new OutputLine("init", OutputLine.Source.STDERR, "dois")));
+    }
+
+    @Test
+    @DisplayName("Should not block when output exceeds the pipe buffer")
+    void shouldNotBlockOnLargeOutput() throws Exception {
+        Process process = new ProcessBuilder("sh", "-c",
+                "i=0; while [ $i -lt 20000 ]; do echo \"linha $i com bastante texto\"; echo \"erro $i\" 1>&2; i=$((i+1)); done")
+                .start();
+        OutputBuffer stdout = new OutputBuffer(100, tempDir);
+        OutputBuffer stderr = new OutputBuffer(100, tempDir);
+
+        ProcessOutputPump pump = ProcessOutputPump.start(process, "apply", stdout, stderr, line -> {});
+        assertEquals(0, process.waitFor());
+        pump.await();
+
+        assertEquals(19900, stdout.spilledLines());
+        assertTrue(stdout.text().endsWith("linha 19999 com bastante texto\n"));
+    }
+
+    @Test
+    @DisplayName("Should keep draining when the spill file cannot be written")
+    void shouldKeepDrainingWhenSpillFails() throws Exception {
+        Process process = new ProcessBuilder("sh", "-c",
+                "i=0; while [ $i -lt 20000 ]; do echo \"linha $i com bastante texto\"; i=$((i+1)); done").start();
+        Path notADirectory = Files.createFile(tempDir.resolve("arquivo"));
+        OutputBuffer stdout = new OutputBuffer(100, notADirectory.resolve("spill"));
+
+        ProcessOutputPump pump = ProcessOutputPump.start(process, "apply", stdout, new OutputBuffer(10, tempDir), line -> {});
+        assertTrue(process.waitFor(30, TimeUnit.SECONDS));
+        pump.await();
+
+        assertEquals(19900, stdout.droppedLines());
+        assertTrue(stdout.text().endsWith("linha 19999 com bastante texto\n"));
+    }
+
+    @Test
+    @DisplayName("Should keep draining when the listener throws")
+    void shouldKeepDrainingWhenListenerThrows() throws Exception {
+        Process process = new ProcessBuilder("sh", "-c", "echo a; echo b").start();
+        OutputBuffer stdout = new OutputBuffer(10, tempDir);
+
+        ProcessOutputPump pump = ProcessOutputPump.start(process, "plan", stdout, new OutputBuffer(10, tempDir),
+                line -> { throw new IllegalStateException("falha"); });
+        process.waitFor();
+        pump.await();
+
+        assertEquals("a\nb\n", stdout.text());
+    }
+
+    @Test
+    @DisplayName("Should hand stdout to the reader and drain what it leaves unread")
+    void shouldStreamStdoutToReader() throws Exception {
+        Process process = new ProcessBuilder("sh", "-c",
+                "echo '{\"a\":1}'; i=0; while [ $i -lt 20000 ]; do echo \"resto $i\"; i=$((i+1)); done; echo erro 1>&2")
+                .start();
+        OutputBuffer stderr = new OutputBuffer(10, tempDir);
+        List<String> firstLines = new CopyOnWriteArrayList<>();
+
+        ProcessOutputPump pump = ProcessOutputPump.start(process, "show",
+                in -> firstLines.add(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)).readLine()),
+                stderr);
+        assertTrue(process.waitFor(30, TimeUnit.SECONDS));
+        pump.await();
+
+        assertEquals(List.of("{\"a\":1}"), firstLines);
+        assertEquals("erro\n", stderr.text());
+    }
+
+    @Test
+    @DisplayName("Should report a reader failure from await")
+    void shouldReportReaderFailure() throws Exception {
+        Process process = new ProcessBuilder("sh", "-c", "echo json").start();
+
+        ProcessOutputPump pump = ProcessOutputPump.start(process, "show",
+                in -> { throw new IOException("json inválido"); }, new OutputBuffer(10, tempDir));
+        process.waitFor();
+
+        IOException error = assertThrows(IOException.class, pump::await);
+        assertEquals("json inválido", error.getMessage());
+    }
+}
@@ -0,0 +1,62 @@
+package com.cloudprovideragentic.fuctions.terraform.prompt;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SystemPromptsTest {
+
+    @Test
+    @DisplayName("Should add only the modules of the services a request mentions")
+    void shouldAddMentionedModules() {
+        String prompt = SystemPrompts.forRequest("Crie uma fila SQS FIFO chamada pedidos com DLQ");
+
+        assertTrue(prompt.contains("INSTRUÇÕES PARA SQS:"));
+        assertFalse(prompt.contains("INSTRUÇÕES PARA S3:"));
+        assertFalse(prompt.contains("INSTRUÇÕES PARA ECS:"));
+        assertTrue(prompt.endsWith(SystemPrompts.OTHER_SERVICES));
+        assertTrue(prompt.length() < SystemPrompts.full().length());
+    }
+
+    @Test
+    @DisplayName("Should detect services by keyword, without case or accents")
+    void shouldDetectServices() {
+        assertEquals(Set.of(ServiceModule.S3, ServiceModule.SQS),
+                SystemPrompts.detect("Crie um BUCKET para uploads e uma fila para as notificações"));
+        assertEquals(Set.of(ServiceModule.ECS), SystemPrompts.detect("Suba um contêiner nginx no Fargate"));
+        assertEquals(Set.of(ServiceModule.LAMBDA, ServiceModule.API_GATEWAY),
+                SystemPrompts.detect("Função Lambda atrás de um API Gateway"));
+        assertEquals(Set.of(ServiceModule.RDS), SystemPrompts.detect("Crie um banco de dados PostgreSQL"));
+    }
+
+    @Test
+    @DisplayName("Should not match keywords inside other words")
+    void shouldMatchWholeWords() {
+        assertFalse(SystemPrompts.detect("Crie uma fila SQS para eventos").contains(ServiceModule.ECS));
+        assertFalse(SystemPrompts.detect("Crie uma fila SQS chamada filas3").contains(ServiceModule.S3));
+    }
+
+    @Test
+    @DisplayName("Should send every module when the request mentions none of them")
+    void shouldFallBackToAllModules() {
+        assertEquals(EnumSet.allOf(ServiceModule.class), SystemPrompts.detect("Crie uma tabela DynamoDB"));
+        assertEquals(SystemPrompts.full(), SystemPrompts.forRequest("Crie uma tabela DynamoDB"));
+    }
+
+    @Test
+    @DisplayName("Should start every prompt with the same base and modules in a fixed order")
+    void shouldKeepStablePrefix() {
+        String first = SystemPrompts.forRequest("fila SQS e bucket S3");
+        String second = SystemPrompts.forRequest("bucket S3 e fila SQS");
+
+        assertEquals(first, second);
+        assertTrue(first.startsWith(SystemPrompts.BASE));
+        assertTrue(SystemPrompts.full().startsWith(
+                "Você é um especialista em Terraform para AWS.\nDado o pedido do usuário, gere um JSON com exatamente esta estrutura:\n\n"));
+        assertTrue(first.indexOf("INSTRUÇÕES PARA S3:") < first.indexOf("INSTRUÇÕES PARA SQS:"));
+    }
+}
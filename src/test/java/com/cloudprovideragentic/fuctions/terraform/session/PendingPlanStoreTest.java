@@ -0,0 +1,189 @@
+package com.cloudprovideragentic.fuctions.terraform.session;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PendingPlanStoreTest {
+
+    private final MutableClock clock = new MutableClock();
+    private PendingPlanStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new PendingPlanStore(Duration.ofMinutes(30), 1024, clock);
+    }
+
+    @Test
+    @DisplayName("Should store and retrieve a plan with ID and creation time")
+    void shouldStoreAndRetrievePlan() {
+        PendingPlan plan = store.store("s1", "default", "resource \"aws_s3_bucket\" \"test\" {}");
+
+        PendingPlan retrieved = store.get("s1").orElseThrow();
+
+        assertEquals(plan, retrieved);
+        assertNotNull(retrieved.id());
+        assertEquals(clock.instant(), retrieved.createdAt());
+    }
+
+    @Test
+    @DisplayName("Should keep plans of different sessions isolated")
+    void shouldIsolateSessions() {
+        store.store("s1", "default", "codigo 1");
+        store.store("s2", "default", "codigo 2");
+
+        assertEquals("codigo 1", store.get("s1").orElseThrow().terraformCode());
+        assertEquals("codigo 2", store.get("s2").orElseThrow().terraformCode());
+    }
+
+    @Test
+    @DisplayName("Should replace the previous plan of the same session")
+    void shouldReplacePreviousPlanOfSession() {
+        PendingPlan first = store.store("s1", "default", "first code");
+        PendingPlan second = store.store("s1", "default", "second code");
+
+        assertNotEquals(first.id(), second.id());
+        assertEquals("second code", store.get("s1").orElseThrow().terraformCode());
+        assertEquals(second.sizeInBytes(), store.usedBytes());
+    }
+
+    @Test
+    @DisplayName("Should take a plan only once")
+    void shouldTakePlanOnlyOnce() {
+        store.store("s1", "default", "codigo");
+
+        assertTrue(store.take("s1").isPresent());
+        assertTrue(store.take("s1").isEmpty());
+        assertFalse(store.hasPendingPlan("s1"));
+        assertEquals(0, store.usedBytes());
+    }
+
+    @Test
+    @DisplayName("Should clear pending plan")
+    void shouldClearPendingPlan() {
+        store.store("s1", "default", "codigo");
+
+        store.clear("s1");
+
+        assertFalse(store.hasPendingPlan("s1"));
+    }
+
+    @Test
+    @DisplayName("Should expire plans after idle timeout")
+    void shouldExpireIdlePlans() {
+        store.store("s1", "default", "codigo");
+        clock.advance(Duration.ofMinutes(20));
+        assertTrue(store.hasPendingPlan("s1"));
+
+        clock.advance(Duration.ofMinutes(20));
+        assertTrue(store.hasPendingPlan("s1"), "access must refresh the idle timer");
+
+        clock.advance(Duration.ofMinutes(31));
+        assertFalse(store.hasPendingPlan("s1"));
+        assertEquals(0, store.usedBytes());
+    }
+
+    @Test
+    @DisplayName("Should evict least recently used sessions when memory cap is exceeded")
+    void shouldEvictWhenMemoryCapExceeded() {
+        String code = "x".repeat(200); // 400 bytes
+        store.store("s1", "default", code);
+        clock.advance(Duration.ofSeconds(1));
+        store.store("s2", "default", code);
+        clock.advance(Duration.ofSeconds(1));
+        store.store("s3", "default", code);
+
+        assertFalse(store.hasPendingPlan("s1"));
+        assertTrue(store.hasPendingPlan("s2"));
+        assertTrue(store.hasPendingPlan("s3"));
+        assertTrue(store.usedBytes() <= 1024);
+    }
+
+    @Test
+    @DisplayName("Should hand plans that leave the store without being taken to the discard listeners")
+    void shouldNotifyDiscardedPlans() {
+        List<String> discarded = new ArrayList<>();
+        store.onDiscard(plan -> discarded.add(plan.terraformCode()));
+        String code = "x".repeat(200); // 400 bytes
+
+        store.store("s1", "default", "substituido");
+        store.store("s1", "default", "cancelado");
+        store.clear("s1");
+        store.store("s2", "default", "confirmado");
+        store.take("s2");
+        store.store("s3", "default", "expirado");
+        clock.advance(Duration.ofMinutes(31));
+        store.evictExpired();
+        store.store("s4", "default", code);
+        clock.advance(Duration.ofSeconds(1));
+        store.store("s5", "default", code);
+        clock.advance(Duration.ofSeconds(1));
+        store.store("s6", "default", code);
+
+        assertEquals(List.of("substituido", "cancelado", "expirado", code), discarded);
+        assertFalse(store.hasPendingPlan("s4"));
+    }
+
+    @Test
+    @DisplayName("Should reject a plan larger than the memory cap")
+    void shouldRejectPlanLargerThanCap() {
+        assertThrows(IllegalArgumentException.class, () -> store.store("s1", "default", "x".repeat(600)));
+    }
+
+    @Test
+    @DisplayName("Should execute a plan at most once when confirmations race")
+    void shouldTakeAtMostOnceUnderConcurrency() throws Exception {
+        store.store("s1", "default", "codigo");
+        List<Callable<Boolean>> confirmations = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            confirmations.add(() -> store.take("s1").isPresent());
+        }
+
+        int taken = 0;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Future<Boolean> result : executor.invokeAll(confirmations)) {
+                taken += result.get() ? 1 : 0;
+            }
+        }
+
+        assertEquals(1, taken);
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.cloudprovideragentic.fuctions.terraform.shard;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StateShardManagerTest {
+
+    private static final String HEADER = """
+            terraform {
+              required_providers {
+                aws = {
+                  source = "hashicorp/aws"
+                }
+              }
+            }
+
+            provider "aws" {
+              region = "us-east-1"
+            }
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Should group resources into one shard per service")
+    void shouldShardByService() throws Exception {
+        StateShardManager manager = new StateShardManager("service");
+
+        List<Path> shards = manager.prepare(tempDir, HEADER + """
+                resource "aws_s3_bucket" "dados" {
+                  bucket = "dados"
+                }
+
+                resource "aws_s3_bucket_versioning" "dados" {
+                  bucket = aws_s3_bucket.dados.id
+                }
+
+                resource "aws_sqs_queue" "fila" {
+                  name = "fila"
+                }
+                """);
+
+        assertEquals(List.of(shard("s3"), shard("sqs")), shards);
+        String s3 = Files.readString(shard("s3").resolve("main.tf"));
+        assertTrue(s3.contains("bucket = aws_s3_bucket.dados.id"));
+        assertFalse(s3.contains("aws_sqs_queue"));
+        assertTrue(Files.readString(shard("sqs").resolve("providers.tf")).contains("provider \"aws\""));
+    }
+
+    @Test
+    @DisplayName("Should only return the shards touched by the new code")
+    void shouldOnlyRunTouchedShards() throws Exception {
+        StateShardManager manager = new StateShardManager("service");
+        manager.prepare(tempDir, HEADER + "resource \"aws_s3_bucket\" \"a\" {\n  bucket = \"a\"\n}\n");
+
+        List<Path> shards = manager.prepare(tempDir, HEADER + "resource \"aws_sqs_queue\" \"q\" {\n  name = \"q\"\n}\n");
+
+        assertEquals(List.of(shard("sqs")), shards);
+    }
+
+    @Test
+    @DisplayName("Should rewrite cross-shard references to remote state outputs and apply the producer first")
+    void shouldRewriteCrossShardReferences() throws Exception {
+        StateShardManager manager = new StateShardManager("service");
+        manager.prepare(tempDir, HEADER + "resource \"aws_sqs_queue\" \"dlq\" {\n  name = \"dlq\"\n}\n");
+
+        List<Path> shards = manager.prepare(tempDir, HEADER + """
+                resource "aws_sns_topic" "alertas" {
+                  name = "alertas"
+                }
+
+                resource "aws_sns_topic_subscription" "fila" {
+                  topic_arn = aws_sns_topic.alertas.arn
+                  endpoint  = aws_sqs_queue.dlq.arn
+                  protocol  = "sqs"
+                }
+                """);
+
+        assertEquals(List.of(shard("sqs"), shard("sns")), shards);
+        String sns = Files.readString(shard("sns").resolve("main.tf"));
+        assertTrue(sns.contains("endpoint  = data.terraform_remote_state.sqs.outputs.aws_sqs_queue__dlq__arn"));
+        assertTrue(sns.contains("topic_arn = aws_sns_topic.alertas.arn"));
+        assertTrue(Files.readString(shard("sns").resolve("remote_state.tf")).contains("path = \"../sqs/terraform.tfstate\""));
+        assertTrue(Files.readString(shard("sqs").resolve("exports.tf")).contains("value = aws_sqs_queue.dlq.arn"));
+    }
+
+    @Test
+    @DisplayName("Should rewrite indexed cross-shard references to list and map outputs")
+    void shouldRewriteIndexedCrossShardReferences() throws Exception {
+        StateShardManager manager = new StateShardManager("service");
+        manager.prepare(tempDir, HEADER + """
+                resource "aws_subnet" "publica" {
+                  count      = 2
+                  vpc_id     = "vpc-1"
+                  cidr_block = "10.0.${count.index}.0/24"
+                }
+
+                resource "aws_security_group" "app" {
+                  for_each = toset(["web", "api"])
+                  name     = each.key
+                }
+                """);
+
+        manager.prepare(tempDir, HEADER + """
+                resource "aws_ecs_service" "app" {
+                  name = "app"
+                  network_configuration {
+                    subnets         = aws_subnet.publica[*].id
+                    security_groups = [aws_security_group.app["web"].id]
+                    assign_public_ip = aws_subnet.publica[0].map_public_ip_on_launch
+                  }
+                }
+                """);
+
+        String ecs = Files.readString(shard("ecs").resolve("main.tf"));
+        assertTrue(ecs.contains("subnets         = data.terraform_remote_state.network.outputs.aws_subnet__publica__all__id[*]"));
+        assertTrue(ecs.contains(
+                "[data.terraform_remote_state.network.outputs.aws_security_group__app__each__id[\"web\"]]"));
+        assertTrue(ecs.contains(
+                "data.terraform_remote_state.network.outputs.aws_subnet__publica__all__map_public_ip_on_launch[0]"));
+        String exports = Files.readString(shard("network").resolve("exports.tf"));
+        assertTrue(exports.contains("value = aws_subnet.publica[*].id"));
+        assertTrue(exports.contains("value = aws_subnet.publica[*].map_public_ip_on_launch"));
+        assertTrue(exports.contains("value = { for key, item in aws_security_group.app : key => item.id }"));
+    }
+
+    @Test
+    @DisplayName("Should rewrite the providers of every shard when the stack's provider blocks change")
+    void shouldUpdateProvidersOfExistingShards() throws Exception {
+        StateShardManager manager = new StateShardManager("service");
+        manager.prepare(tempDir, HEADER + "resource \"aws_s3_bucket\" \"a\" {\n  bucket = \"a\"\n}\n");
+
+        List<Path> shards = manager.prepare(tempDir, HEADER.replace("us-east-1", "sa-east-1")
+                + "resource \"aws_sqs_queue\" \"q\" {\n  name = \"q\"\n}\n");
+
+        assertEquals(List.of(shard("s3"), shard("sqs")), shards);
+        assertTrue(Files.readString(shard("s3").resolve("providers.tf")).contains("sa-east-1"));
+        assertTrue(Files.readString(shard("sqs").resolve("providers.tf")).contains("sa-east-1"));
+    }
+
+    @Test
+    @DisplayName("Should not touch any shard when the code is already there unchanged")
+    void shouldSkipExistingResources() throws Exception {
+        StateShardManager manager = new StateShardManager("request");
+        String code = HEADER + "resource \"aws_s3_bucket\" \"a\" {\n  bucket = \"a\"\n}\n";
+        manager.prepare(tempDir, code);
+
+        assertTrue(manager.prepare(tempDir, code).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should replace a changed resource in the shard that owns it")
+    void shouldReplaceChangedResources() throws Exception {
+        StateShardManager manager = new StateShardManager("request");
+        List<Path> first = manager.prepare(tempDir, HEADER + "resource \"aws_s3_bucket\" \"a\" {\n  bucket = \"a\"\n}\n");
+
+        List<Path> second = manager.prepare(tempDir, HEADER + "resource \"aws_s3_bucket\" \"a\" {\n  bucket = \"a-v2\"\n}\n");
+
+        assertEquals(first, second);
+        String main = Files.readString(first.get(0).resolve("main.tf"));
+        assertTrue(main.contains("bucket = \"a-v2\""));
+        assertFalse(main.contains("bucket = \"a\"\n"));
+    }
+
+    @Test
+    @DisplayName("Should carry the data, variable and locals blocks a resource references into its shard")
+    void shouldCarryReferencedBlocks() throws Exception {
+        StateShardManager manager = new StateShardManager("service");
+
+        List<Path> shards = manager.prepare(tempDir, HEADER + """
+                variable "ambiente" {
+                  default = "dev"
+                }
+
+                locals {
+                  prefixo = "app-${var.ambiente}"
+                  sufixo  = "x"
+                }
+
+                data "aws_caller_identity" "atual" {}
+
+                resource "aws_s3_bucket" "dados" {
+                  bucket = "${local.prefixo}-${data.aws_caller_identity.atual.account_id}"
+                }
+
+                resource "aws_sqs_queue" "fila" {
+                  name = "fila"
+                }
+
+                output "bucket_arn" {
+                  value = aws_s3_bucket.dados.arn
+                }
+                """);
+
+        assertEquals(List.of(shard("s3"), shard("sqs")), shards);
+        String s3 = Files.readString(shard("s3").resolve("main.tf"));
+        assertTrue(s3.contains("variable \"ambiente\""));
+        assertTrue(s3.contains("prefixo = \"app-${var.ambiente}\""));
+        assertTrue(s3.contains("data \"aws_caller_identity\" \"atual\""));
+        assertTrue(s3.contains("output \"bucket_arn\""));
+        String sqs = Files.readString(shard("sqs").resolve("main.tf"));
+        assertFalse(sqs.contains("locals"));
+        assertFalse(sqs.contains("variable"));
+    }
+
+    @Test
+    @DisplayName("Should keep identical carried blocks and reject overlapping locals")
+    void shouldMergeCarriedBlocks() throws Exception {
+        StateShardManager manager = new StateShardManager("service");
+        String locals = "locals {\n  nome = \"a\"\n}\n";
+        manager.prepare(tempDir, HEADER + locals + "resource \"aws_s3_bucket\" \"a\" {\n  bucket = local.nome\n}\n");
+
+        List<Path> shards = manager.prepare(tempDir, HEADER + locals
+                + "resource \"aws_s3_bucket\" \"b\" {\n  bucket = \"${local.nome}-b\"\n}\n");
+
+        assertEquals(List.of(shard("s3")), shards);
+        String s3 = Files.readString(shard("s3").resolve("main.tf"));
+        assertEquals(s3.indexOf("locals"), s3.lastIndexOf("locals"));
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> manager.prepare(tempDir,
+                HEADER + "locals {\n  nome = \"c\"\n  outro = 1\n}\n"
+                + "resource \"aws_s3_bucket\" \"c\" {\n  bucket = local.nome\n}\n"));
+        assertTrue(error.getMessage().contains("shard s3"));
+    }
+
+    @Test
+    @DisplayName("Should reject code without resources when it declares other blocks")
+    void shouldRejectCodeWithoutResources() {
+        StateShardManager manager = new StateShardManager("service");
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> manager.prepare(tempDir, HEADER + "variable \"nome\" {}\n"));
+
+        assertTrue(error.getMessage().contains("var.nome"));
+    }
+
+    @Test
+    @DisplayName("Should put each request in its own shard")
+    void shouldShardByRequest() throws Exception {
+        StateShardManager manager = new StateShardManager("request");
+
+        List<Path> first = manager.prepare(tempDir, HEADER + "resource \"aws_s3_bucket\" \"a\" {\n  bucket = \"a\"\n}\n");
+        List<Path> second = manager.prepare(tempDir, HEADER + "resource \"aws_s3_bucket\" \"b\" {\n  bucket = \"b\"\n}\n");
+
+        assertEquals(1, first.size());
+        assertEquals(1, second.size());
+        assertNotEquals(first.get(0), second.get(0));
+    }
+
+    @Test
+    @DisplayName("Should map resource types to service shards")
+    void shouldMapServiceShards() {
+        assertEquals("s3", StateShardManager.serviceShard("aws_s3_bucket_public_access_block"));
+        assertEquals("network", StateShardManager.serviceShard("aws_security_group"));
+        assertEquals("network", StateShardManager.serviceShard("aws_route_table_association"));
+        assertEquals("rds", StateShardManager.serviceShard("aws_db_instance"));
+        assertEquals("ecs", StateShardManager.serviceShard("aws_ecs_service"));
+    }
+
+    @Test
+    @DisplayName("Should be disabled when mode is off")
+    void shouldBeDisabledWhenOff() {
+        assertFalse(new StateShardManager("off").enabled());
+        assertTrue(new StateShardManager("SERVICE").enabled());
+        assertThrows(IllegalArgumentException.class, () -> new StateShardManager("modulo"));
+    }
+
+    private Path shard(String name) {
+        return tempDir.resolve("shards").resolve(name);
+    }
+}
@@ -0,0 +1,155 @@
+package com.cloudprovideragentic.fuctions.terraform.speculative;
+
+import com.cloudprovideragentic.fuctions.terraform.TerraformExecutor;
+import com.cloudprovideragentic.fuctions.terraform.session.PendingPlan;
+import com.cloudprovideragentic.fuctions.terraform.session.PendingPlanStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SpeculativePlannerTest {
+
+    @Mock
+    private TerraformExecutor executor;
+
+    private PendingPlanStore planStore;
+    private SpeculativePlanner planner;
+
+    @BeforeEach
+    void setUp() {
+        planStore = new PendingPlanStore(Duration.ofMinutes(30), DataSize.ofMegabytes(1));
+        planner = new SpeculativePlanner(executor, planStore, true);
+    }
+
+    @Test
+    @DisplayName("Should hand the prepared plan to the confirmed pending plan")
+    void shouldClaimPreparedPlan() throws Exception {
+        PendingPlan plan = plan("p1", "s1");
+        PreparedPlan prepared = prepared("p1");
+        when(executor.prepare("p1", "default", "codigo")).thenReturn(Optional.of(prepared));
+
+        planner.start(plan);
+
+        assertEquals(Optional.of(prepared), planner.claim(plan));
+        assertEquals(Optional.empty(), planner.claim(plan));
+    }
+
+    @Test
+    @DisplayName("Should wait for a speculation that is still running")
+    void shouldWaitForRunningSpeculation() throws Exception {
+        PendingPlan plan = plan("p1", "s1");
+        PreparedPlan prepared = prepared("p1");
+        when(executor.prepare(anyString(), anyString(), anyString())).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return Optional.of(prepared);
+        });
+
+        planner.start(plan);
+
+        assertEquals(Optional.of(prepared), planner.claim(plan));
+    }
+
+    @Test
+    @DisplayName("Should not hand a speculation to a different plan of the session")
+    void shouldIgnoreSpeculationOfOtherPlan() throws Exception {
+        when(executor.prepare(anyString(), anyString(), anyString())).thenReturn(Optional.of(prepared("p1")));
+        planner.start(plan("p1", "s1"));
+
+        assertEquals(Optional.empty(), planner.claim(plan("p2", "s1")));
+        assertEquals(Optional.empty(), planner.claim(plan("p1", "s2")));
+    }
+
+    @Test
+    @DisplayName("Should stop a running speculation when it is discarded")
+    void shouldInterruptDiscardedSpeculation() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(executor.prepare(anyString(), anyString(), anyString())).thenAnswer(invocation -> {
+            started.countDown();
+            try {
+                Thread.sleep(Duration.ofMinutes(5));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return Optional.empty();
+        });
+        planner.start(plan("p1", "s1"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        planner.discard("s1");
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(Optional.empty(), planner.claim(plan("p1", "s1")));
+    }
+
+    @Test
+    @DisplayName("Should release the files of a finished speculation replaced by a new plan")
+    void shouldReleaseReplacedSpeculation() throws Exception {
+        PreparedPlan first = prepared("p1");
+        when(executor.prepare(eq("p1"), anyString(), anyString())).thenReturn(Optional.of(first));
+        when(executor.prepare(eq("p2"), anyString(), anyString())).thenReturn(Optional.of(prepared("p2")));
+        planner.start(plan("p1", "s1"));
+        verify(executor, timeout(5000)).prepare(eq("p1"), anyString(), anyString());
+
+        planner.start(plan("p2", "s1"));
+
+        verify(executor, timeout(5000)).release(first);
+        assertTrue(planner.claim(plan("p2", "s1")).isPresent());
+    }
+
+    @Test
+    @DisplayName("Should release the speculation of a pending plan that leaves the store unconfirmed")
+    void shouldReleaseSpeculationOfDiscardedPlan() throws Exception {
+        PendingPlanStore expiring = new PendingPlanStore(Duration.ofMillis(100), DataSize.ofMegabytes(1));
+        SpeculativePlanner expiringPlanner = new SpeculativePlanner(executor, expiring, true);
+        PreparedPlan prepared = prepared("p1");
+        when(executor.prepare(anyString(), anyString(), anyString())).thenReturn(Optional.of(prepared));
+        PendingPlan plan = expiring.store("s1", "default", "codigo");
+        expiringPlanner.start(plan);
+        verify(executor, timeout(5000)).prepare(eq(plan.id()), anyString(), anyString());
+
+        // Ninguém mais acessa a sessão: só a varredura periódica expira o plano
+        verify(executor, timeout(5000)).release(prepared);
+        assertEquals(Optional.empty(), expiringPlanner.claim(plan));
+    }
+
+    @Test
+    @DisplayName("Should do nothing when speculative planning is disabled")
+    void shouldDoNothingWhenDisabled() throws Exception {
+        SpeculativePlanner disabled = new SpeculativePlanner(executor, planStore, false);
+
+        disabled.start(plan("p1", "s1"));
+
+        assertEquals(Optional.empty(), disabled.claim(plan("p1", "s1")));
+        verify(executor, never()).prepare(anyString(), anyString(), anyString());
+        verify(executor, never()).release(any());
+    }
+
+    private static PendingPlan plan(String id, String sessionId) {
+        return new PendingPlan(id, sessionId, "default", "codigo", Instant.now());
+    }
+
+    private static PreparedPlan prepared(String planId) {
+        return new PreparedPlan(planId, "default", Path.of(".speculative", planId), "fingerprint", List.of());
+    }
+}
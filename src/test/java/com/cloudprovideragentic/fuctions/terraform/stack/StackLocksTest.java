@@ -0,0 +1,158 @@
+package com.cloudprovideragentic.fuctions.terraform.stack;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StackLocksTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Should write the lock file with the current holder")
+    void shouldWriteLockFile() throws Exception {
+        StackLocks locks = new StackLocks(Duration.ofSeconds(1));
+
+        try (StackLease ignored = locks.acquire("pagamentos", tempDir.resolve("pagamentos"))) {
+            Path lockFile = tempDir.resolve("pagamentos").resolve(StackLocks.LOCK_FILE);
+            assertTrue(Files.exists(lockFile));
+            assertFalse(Files.readString(lockFile).isBlank());
+        }
+    }
+
+    @Test
+    @DisplayName("Should time out when the same stack is held by another execution")
+    void shouldTimeOutOnBusyStack() throws Exception {
+        StackLocks locks = new StackLocks(Duration.ofMillis(200));
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            executor.submit(() -> {
+                try (StackLease ignored = locks.acquire("app", tempDir.resolve("app"))) {
+                    held.countDown();
+                    release.await();
+                }
+                return null;
+            });
+            assertTrue(held.await(5, TimeUnit.SECONDS));
+
+            assertThrows(TimeoutException.class, () -> locks.acquire("app", tempDir.resolve("app")));
+            release.countDown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should let executions on different stacks overlap")
+    void shouldRunDifferentStacksInParallel() throws Exception {
+        StackLocks locks = new StackLocks(Duration.ofSeconds(5));
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        CountDownLatch allInside = new CountDownLatch(2);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<?> a = executor.submit(() -> hold(locks, "stack-a", concurrent, maxConcurrent, allInside));
+            Future<?> b = executor.submit(() -> hold(locks, "stack-b", concurrent, maxConcurrent, allInside));
+            a.get(5, TimeUnit.SECONDS);
+            b.get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(2, maxConcurrent.get());
+    }
+
+    @Test
+    @DisplayName("Should serialize executions on the same stack")
+    void shouldSerializeSameStack() throws Exception {
+        StackLocks locks = new StackLocks(Duration.ofSeconds(5));
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 8; i++) {
+                executor.submit(() -> {
+                    try (StackLease ignored = locks.acquire("app", tempDir.resolve("app"))) {
+                        maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                        Thread.sleep(10);
+                        concurrent.decrementAndGet();
+                    }
+                    return null;
+                });
+            }
+        }
+
+        assertEquals(1, maxConcurrent.get());
+    }
+
+    @Test
+    @DisplayName("Should release the stack so it can be acquired again")
+    void shouldReleaseStack() throws Exception {
+        StackLocks locks = new StackLocks(Duration.ofMillis(200));
+
+        locks.acquire("app", tempDir.resolve("app")).close();
+
+        assertDoesNotThrow(() -> locks.acquire("app", tempDir.resolve("app")).close());
+    }
+
+    @Test
+    @DisplayName("Should let inits that install nothing share the plugin cache")
+    void shouldSharePluginCacheBetweenLinkingInits() throws Exception {
+        StackLocks locks = new StackLocks(Duration.ofMillis(200));
+        Path cache = tempDir.resolve("cache");
+
+        try (StackLease first = locks.acquirePluginCache(cache, false);
+             StackLease second = locks.acquirePluginCache(cache, false)) {
+            assertThrows(TimeoutException.class, () -> locks.acquirePluginCache(cache, true));
+        }
+
+        assertDoesNotThrow(() -> locks.acquirePluginCache(cache, true).close());
+    }
+
+    @Test
+    @DisplayName("Should give an installing init the plugin cache alone")
+    void shouldGiveInstallingInitExclusiveCache() throws Exception {
+        StackLocks locks = new StackLocks(Duration.ofMillis(200));
+        Path cache = tempDir.resolve("cache");
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            executor.submit(() -> {
+                try (StackLease ignored = locks.acquirePluginCache(cache, true)) {
+                    held.countDown();
+                    release.await();
+                }
+                return null;
+            });
+            assertTrue(held.await(5, TimeUnit.SECONDS));
+
+            assertThrows(TimeoutException.class, () -> locks.acquirePluginCache(cache, false));
+            release.countDown();
+        }
+        assertDoesNotThrow(() -> locks.acquirePluginCache(cache, false).close());
+    }
+
+    private Void hold(StackLocks locks, String stack, AtomicInteger concurrent, AtomicInteger maxConcurrent,
+                      CountDownLatch allInside) throws Exception {
+        try (StackLease ignored = locks.acquire(stack, tempDir.resolve(stack))) {
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            allInside.countDown();
+            allInside.await(2, TimeUnit.SECONDS);
+            concurrent.decrementAndGet();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,30 @@
+package com.cloudprovideragentic.fuctions.terraform.stack;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StackNameTest {
+
+    @Test
+    @DisplayName("Should default blank names to the default stack")
+    void shouldDefaultBlankNames() {
+        assertEquals(StackName.DEFAULT, StackName.of(null));
+        assertEquals(StackName.DEFAULT, StackName.of("  "));
+    }
+
+    @Test
+    @DisplayName("Should normalize case and whitespace")
+    void shouldNormalizeName() {
+        assertEquals("pagamentos-prod", StackName.of(" Pagamentos-Prod "));
+    }
+
+    @Test
+    @DisplayName("Should reject names that are not safe directory names")
+    void shouldRejectUnsafeNames() {
+        assertThrows(IllegalArgumentException.class, () -> StackName.of("../state"));
+        assertThrows(IllegalArgumentException.class, () -> StackName.of("a/b"));
+        assertThrows(IllegalArgumentException.class, () -> StackName.of("-inicio"));
+    }
+}
@@ -0,0 +1,77 @@
+package com.cloudprovideragentic.fuctions.terraform.summary;
+
+import com.cloudprovideragentic.fuctions.terraform.model.terraform.ResourceChange;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeSummaryTest {
+
+    private static final ResourceChange BUCKET =
+            new ResourceChange("aws_s3_bucket.logs", "create", Map.of("bucket", "meus-logs"), List.of());
+    private static final ResourceChange ROLE =
+            new ResourceChange("aws_iam_role.app", "update", Map.of("name", "app"), List.of("assume_role_policy"));
+    private static final ResourceChange SUBNET =
+            new ResourceChange("module.vpc.aws_subnet.a[0]", "replace", Map.of(), List.of("cidr_block"));
+
+    @Test
+    @DisplayName("Should list counts, one line per change and the apply outputs")
+    void shouldDescribeChanges() {
+        String apply = """
+                aws_s3_bucket.logs: Creating...
+                aws_s3_bucket.logs: Creation complete after 2s [id=meus-logs]
+
+                Apply complete! Resources: 1 added, 1 changed, 1 destroyed.
+
+                Outputs:
+
+                bucket_arn = "arn:aws:s3:::meus-logs"
+                """;
+
+        assertEquals("""
+                Plano aplicado: 1 para criar, 1 para alterar, 1 para substituir, 0 para destruir.
+                + aws_s3_bucket.logs (bucket=meus-logs)
+                ~ aws_iam_role.app (name=app): assume_role_policy
+                -/+ module.vpc.aws_subnet.a[0]: cidr_block
+                Outputs:
+                bucket_arn = "arn:aws:s3:::meus-logs"
+                """, ChangeSummary.describe(List.of(BUCKET, ROLE, SUBNET), apply));
+    }
+
+    @Test
+    @DisplayName("Should say there is nothing to change when the plan only reads data sources")
+    void shouldDescribeNoChanges() {
+        ResourceChange read = new ResourceChange("data.aws_caller_identity.current", "read", Map.of(), List.of());
+
+        assertEquals("""
+                Nenhuma alteração: a infraestrutura já corresponde ao código.
+                <= data.aws_caller_identity.current
+                """, ChangeSummary.describe(List.of(read), "Apply complete! Resources: 0 added, 0 changed, 0 destroyed."));
+    }
+
+    @Test
+    @DisplayName("Should cap the number of listed changes")
+    void shouldCapListedChanges() {
+        List<ResourceChange> changes = IntStream.range(0, ChangeSummary.MAX_LISTED_CHANGES + 5)
+                .mapToObj(i -> new ResourceChange("aws_sqs_queue.q" + i, "create", Map.of(), List.of()))
+                .toList();
+
+        String summary = ChangeSummary.describe(changes, "");
+
+        assertEquals(ChangeSummary.MAX_LISTED_CHANGES + 2, summary.lines().count());
+        assertTrue(summary.endsWith("... e mais 5 recursos.\n"));
+    }
+
+    @Test
+    @DisplayName("Should keep only the changes of the blocks a code declares")
+    void shouldSelectChangesDeclaredByCode() {
+        String code = "resource \"aws_s3_bucket\" \"logs\" {}\nmodule \"vpc\" {}";
+
+        assertEquals(List.of(BUCKET, SUBNET), ChangeSummary.declaredBy(List.of(BUCKET, ROLE, SUBNET), code));
+    }
+}
@@ -0,0 +1,93 @@
+package com.cloudprovideragentic.fuctions.terraform.summary;
+
+import com.cloudprovideragentic.fuctions.terraform.model.terraform.ResourceChange;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlanJsonReaderTest {
+
+    private static final String PLAN = """
+            {
+              "format_version": "1.2",
+              "prior_state": {"values": {"root_module": {"resources": [{"address": "aws_iam_role.app"}]}}},
+              "configuration": {"root_module": {}},
+              "resource_changes": [
+                {
+                  "address": "aws_s3_bucket.logs",
+                  "change": {
+                    "actions": ["create"],
+                    "before": null,
+                    "after": {"bucket": "meus-logs", "tags": {"Name": "logs"}, "force_destroy": false},
+                    "after_unknown": {"arn": true, "id": true},
+                    "after_sensitive": {"tags": {}}
+                  }
+                },
+                {
+                  "address": "aws_iam_role.app",
+                  "change": {
+                    "actions": ["update"],
+                    "before": {"name": "app", "assume_role_policy": "{}", "tags": null, "arn": "arn:aws:iam::1:role/app"},
+                    "after": {"name": "app", "assume_role_policy": "{\\"Version\\":\\"2012-10-17\\"}", "tags": {"Team": "infra"}},
+                    "after_unknown": {"arn": true}
+                  }
+                },
+                {
+                  "address": "aws_instance.web",
+                  "change": {
+                    "actions": ["delete", "create"],
+                    "before": {"ami": "ami-1", "instance_type": "t3.micro"},
+                    "after": {"ami": "ami-2", "instance_type": "t3.micro"},
+                    "replace_paths": [["ami"]]
+                  }
+                },
+                {
+                  "address": "aws_db_instance.old",
+                  "change": {
+                    "actions": ["delete"],
+                    "before": {"identifier": "old", "name": "segredo"},
+                    "after": null,
+                    "before_sensitive": {"name": true}
+                  }
+                },
+                {
+                  "address": "aws_sqs_queue.same",
+                  "change": {"actions": ["no-op"], "before": {"name": "q"}, "after": {"name": "q"}}
+                }
+              ],
+              "planned_values": {"root_module": {}}
+            }
+            """;
+
+    @Test
+    @DisplayName("Should reduce each resource change to address, action and key attributes")
+    void shouldReduceResourceChanges() throws IOException {
+        List<ResourceChange> changes = PlanJsonReader.read(new StringReader(PLAN));
+
+        assertEquals(List.of(
+                new ResourceChange("aws_s3_bucket.logs", "create", Map.of("bucket", "meus-logs", "tags.Name", "logs"), List.of()),
+                new ResourceChange("aws_iam_role.app", "update", Map.of("name", "app"), List.of("assume_role_policy", "tags")),
+                new ResourceChange("aws_instance.web", "replace", Map.of("instance_type", "t3.micro"), List.of("ami")),
+                new ResourceChange("aws_db_instance.old", "delete", Map.of("identifier", "old"), List.of())
+        ), changes);
+    }
+
+    @Test
+    @DisplayName("Should return no changes for a plan without resource changes")
+    void shouldReadEmptyPlan() throws IOException {
+        assertEquals(List.of(), PlanJsonReader.read(new StringReader("{\"format_version\":\"1.2\",\"planned_values\":{}}")));
+    }
+
+    @Test
+    @DisplayName("Should fail on output that is not a JSON plan")
+    void shouldRejectNonJson() {
+        assertThrows(IOException.class, () -> PlanJsonReader.read(new StringReader("Error: plano inválido")));
+        assertThrows(IOException.class, () -> PlanJsonReader.read(new StringReader("")));
+    }
+}
@@ -0,0 +1,58 @@
+package com.cloudprovideragentic.fuctions.terraform.template;
+
+import com.cloudprovideragentic.fuctions.terraform.template.RequestIntent.Kind;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntentParserTest {
+
+    @Test
+    @DisplayName("Should parse a bucket with its name and options")
+    void shouldParseBucket() {
+        assertEquals(Optional.of(new RequestIntent(Kind.S3_BUCKET, "meus-logs", "us-east-1", true, true, false, false, 0)),
+                IntentParser.parse("Crie um bucket S3 chamado meus-logs com versionamento e criptografia."));
+    }
+
+    @Test
+    @DisplayName("Should parse a queue with FIFO, DLQ, visibility timeout and region")
+    void shouldParseQueue() {
+        assertEquals(Optional.of(new RequestIntent(Kind.SQS_QUEUE, "Pedidos", "sa-east-1", false, false, true, true, 60)),
+                IntentParser.parse("Crie uma fila SQS FIFO chamada Pedidos com dead letter queue, "
+                                   + "timeout de visibilidade de 60 segundos na região sa-east-1"));
+    }
+
+    @Test
+    @DisplayName("Should take a quoted name and infer FIFO from the .fifo suffix")
+    void shouldParseQuotedFifoName() {
+        RequestIntent intent = IntentParser.parse("Create an SQS queue \"orders.fifo\"").orElseThrow();
+
+        assertEquals("orders.fifo", intent.name());
+        assertTrue(intent.fifo());
+        assertEquals(IntentParser.DEFAULT_VISIBILITY_TIMEOUT, intent.visibilityTimeoutSeconds());
+    }
+
+    @Test
+    @DisplayName("Should leave to the model any request it does not fully understand")
+    void shouldRejectUncertainRequests() {
+        List<String> requests = List.of(
+            "Crie um bucket S3",                                              // sem nome
+            "Crie um bucket S3 chamado logs e uma fila chamada eventos",      // dois recursos
+            "Crie dois buckets S3 chamados a e b",                            // plural
+            "Crie um bucket S3 chamado logs sem versionamento",               // negação
+            "Crie um bucket S3 chamado logs com lifecycle de 30 dias",        // opção sem template
+            "Crie uma fila SQS chamada pedidos com versionamento",            // opção de outro serviço
+            "Crie um bucket S3 chamado Logs_Maiusculos",                      // nome de bucket inválido
+            "Crie uma fila SQS chamada pedidos com timeout",                  // timeout sem valor
+            "Crie uma tabela DynamoDB chamada sessoes"                        // outro serviço
+        );
+
+        for (String request : requests) {
+            assertEquals(Optional.empty(), IntentParser.parse(request), request);
+        }
+    }
+}
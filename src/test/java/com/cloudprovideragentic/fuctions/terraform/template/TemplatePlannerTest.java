@@ -0,0 +1,72 @@
+package com.cloudprovideragentic.fuctions.terraform.template;
+
+import com.cloudprovideragentic.fuctions.terraform.metrics.PipelineMetrics;
+import com.cloudprovideragentic.fuctions.terraform.model.plans.TerraformPlanResult;
+import com.cloudprovideragentic.fuctions.terraform.template.RequestIntent.Kind;
+import com.cloudprovideragentic.fuctions.terraform.utils.HclValidator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TemplatePlannerTest {
+
+    private final PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry());
+
+    @Test
+    @DisplayName("Should render a bucket with versioning, encryption and public access block")
+    void shouldRenderBucket() {
+        TerraformPlanResult plan = TemplatePlanner.render(
+                new RequestIntent(Kind.S3_BUCKET, "meus-logs", "us-east-2", true, true, false, false, 0));
+
+        assertEquals("Será criado o bucket S3 meus-logs na região us-east-2, com versionamento habilitado, "
+                     + "criptografia SSE-S3 (AES256) e acesso público bloqueado.", plan.planDescription());
+        assertTrue(plan.terraformCode().contains("region = \"us-east-2\""));
+        assertTrue(plan.terraformCode().contains("resource \"aws_s3_bucket_versioning\" \"meus-logs\""));
+        assertTrue(plan.terraformCode().contains("sse_algorithm = \"AES256\""));
+        assertTrue(plan.terraformCode().contains("""
+                resource "aws_s3_bucket_public_access_block" "meus-logs" {
+                  bucket                  = aws_s3_bucket.meus-logs.id
+                  block_public_acls       = true
+                """));
+        assertEquals(List.of(), HclValidator.validate(plan.terraformCode()));
+    }
+
+    @Test
+    @DisplayName("Should render a FIFO queue and its FIFO dead letter queue")
+    void shouldRenderQueueWithDeadLetterQueue() {
+        TerraformPlanResult plan = TemplatePlanner.render(
+                new RequestIntent(Kind.SQS_QUEUE, "pedidos", "us-east-1", false, false, true, true, 60));
+
+        assertTrue(plan.terraformCode().contains("""
+                resource "aws_sqs_queue" "pedidos_dlq" {
+                  name                        = "pedidos-dlq.fifo"
+                  fifo_queue                  = true
+                  content_based_deduplication = true
+                }
+                """));
+        assertTrue(plan.terraformCode().contains("visibility_timeout_seconds  = 60"));
+        assertTrue(plan.terraformCode().contains("deadLetterTargetArn = aws_sqs_queue.pedidos_dlq.arn"));
+        assertTrue(plan.terraformCode().contains("maxReceiveCount     = " + TemplatePlanner.MAX_RECEIVE_COUNT));
+        assertTrue(plan.planDescription().startsWith("Será criada a fila SQS FIFO pedidos.fifo na região us-east-1"));
+        assertEquals(List.of(), HclValidator.validate(plan.terraformCode()));
+    }
+
+    @Test
+    @DisplayName("Should turn resource names into valid Terraform labels")
+    void shouldBuildLabels() {
+        assertEquals("logs_example_com", TemplatePlanner.label("logs.example.com"));
+        assertEquals("_2024-logs", TemplatePlanner.label("2024-logs"));
+    }
+
+    @Test
+    @DisplayName("Should return nothing when templates are disabled")
+    void shouldSkipWhenDisabled() {
+        assertEquals(Optional.empty(), new TemplatePlanner(false, metrics).plan("Crie um bucket S3 chamado logs"));
+        assertTrue(new TemplatePlanner(true, metrics).plan("Crie um bucket S3 chamado logs").isPresent());
+    }
+}
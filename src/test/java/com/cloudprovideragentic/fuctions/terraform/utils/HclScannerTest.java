@@ -0,0 +1,131 @@
+package com.cloudprovideragentic.fuctions.terraform.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HclScannerTest {
+
+    @Test
+    @DisplayName("Should find every top-level block type with its address")
+    void shouldFindAllBlockTypes() throws Exception {
+        String code = corpus("all-block-types.tf");
+
+        List<TerraformBlock> blocks = HclScanner.scan(code);
+
+        assertEquals(List.of("terraform", "provider.aws", "var.region", "data.aws_caller_identity.current",
+                "module.vpc", "aws_ecs_cluster.main", "output.account_id"), addresses(blocks));
+        assertEquals("resource \"aws_ecs_cluster\" \"main\" { name = \"main\" }", blocks.get(5).text(code));
+    }
+
+    @Test
+    @DisplayName("Should ignore braces inside heredocs")
+    void shouldSkipHeredocs() throws Exception {
+        String code = corpus("heredoc-policy.tf");
+
+        List<TerraformBlock> blocks = HclScanner.scan(code);
+
+        assertEquals(List.of("aws_iam_role.task_execution", "aws_iam_role_policy.inline"), addresses(blocks));
+        assertTrue(blocks.get(0).text(code).endsWith("EOF\n}"));
+        assertTrue(blocks.get(1).text(code).endsWith("POLICY\n}"));
+    }
+
+    @Test
+    @DisplayName("Should ignore braces inside strings, interpolations and template directives")
+    void shouldSkipInterpolations() throws Exception {
+        String code = corpus("interpolation.tf");
+
+        List<TerraformBlock> blocks = HclScanner.scan(code);
+
+        assertEquals(List.of("locals", "aws_sqs_queue.principal", "aws_sqs_queue.dlq"), addresses(blocks));
+        assertTrue(blocks.get(1).text(code).endsWith("tambem nao\"\n}"));
+    }
+
+    @Test
+    @DisplayName("Should ignore blocks and braces inside comments")
+    void shouldSkipComments() throws Exception {
+        String code = corpus("comments.tf");
+
+        List<TerraformBlock> blocks = HclScanner.scan(code);
+
+        assertEquals(List.of("aws_s3_bucket.dados"), addresses(blocks));
+        assertTrue(blocks.get(0).text(code).endsWith("/* e { aqui */\n}"));
+    }
+
+    @Test
+    @DisplayName("Should handle compact generated code with nested jsonencode")
+    void shouldScanGeneratedCode() throws Exception {
+        String code = corpus("generated-ecs.tf");
+
+        List<TerraformBlock> blocks = HclScanner.scan(code);
+
+        assertEquals(List.of("terraform", "provider.aws", "aws_ecs_task_definition.app", "aws_ecs_service.app"),
+                addresses(blocks));
+        assertTrue(blocks.get(3).text(code).startsWith("resource \"aws_ecs_service\" \"app\" {"));
+    }
+
+    @Test
+    @DisplayName("Should report offsets into the original source")
+    void shouldReportOffsets() {
+        String code = "\n\nresource \"aws_s3_bucket\" \"a\" {}\nresource \"aws_s3_bucket\" \"b\" {\n}\n";
+
+        List<TerraformBlock> blocks = HclScanner.scan(code);
+
+        assertEquals(2, blocks.get(0).start());
+        assertEquals(code.indexOf("{}") + 2, blocks.get(0).end());
+        assertEquals(code.length() - 1, blocks.get(1).end());
+    }
+
+    @Test
+    @DisplayName("Should fail on a block that is never closed")
+    void shouldFailOnUnclosedBlock() {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> HclScanner.scan("resource \"aws_s3_bucket\" \"a\" {\n  bucket = \"a\"\n"));
+
+        assertTrue(error.getMessage().contains("aws_s3_bucket"));
+    }
+
+    @Test
+    @DisplayName("Should report structural problems and keep the closed blocks when asked to")
+    void shouldReportStructuralProblems() {
+        String code = "resource \"aws_s3_bucket\" \"a\" {\n  tags = [\"a\"}\n}\n"
+                      + "resource \"aws_s3_bucket\" \"b\" {\n  bucket = \"b\n}\n"
+                      + "resource \"aws_sqs_queue\" \"q\" {\n";
+        List<String> problems = new ArrayList<>();
+
+        List<TerraformBlock> blocks = HclScanner.scan(code, (offset, message) -> problems.add(message));
+
+        assertEquals(List.of("aws_s3_bucket.a", "aws_s3_bucket.b"), addresses(blocks));
+        assertEquals(List.of("'}' fecha '[' aberto na linha 2; esperado ']'", "string não fechada",
+                "bloco resource \"aws_sqs_queue\" \"q\" não foi fechado"), problems);
+    }
+
+    @Test
+    @DisplayName("Should list the attributes set directly in a block body")
+    void shouldListBodyAttributes() {
+        String code = "locals {\n  prefixo = \"a = b\"\n  tags = {\n    time = \"x\"\n  }\n  # comentario = 1\n"
+                      + "  igual   = 1 == 1\n}\n";
+
+        List<TerraformBlock> blocks = HclScanner.scan(code);
+
+        assertEquals(List.of("prefixo", "tags", "igual"), HclScanner.attributes(code, blocks.get(0)));
+    }
+
+    private static List<String> addresses(List<TerraformBlock> blocks) {
+        return blocks.stream().map(TerraformBlock::address).toList();
+    }
+
+    private static String corpus(String name) throws IOException {
+        try (InputStream in = HclScannerTest.class.getResourceAsStream("/hcl/" + name)) {
+            assertNotNull(in, "corpus não encontrado: " + name);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
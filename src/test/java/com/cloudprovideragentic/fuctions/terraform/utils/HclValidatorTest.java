@@ -0,0 +1,129 @@
+package com.cloudprovideragentic.fuctions.terraform.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HclValidatorTest {
+
+    private static final String PROVIDERS = """
+            terraform {
+              required_providers {
+                aws = {
+                  source = "hashicorp/aws"
+                }
+              }
+            }
+
+            provider "aws" {
+              region = "us-east-1"
+            }
+            """;
+
+    @Test
+    @DisplayName("Should accept complete generated code")
+    void shouldAcceptGeneratedCode() throws Exception {
+        assertEquals(List.of(), HclValidator.validate(corpus("generated-ecs.tf")));
+        assertEquals(List.of(), HclValidator.validate(corpus("all-block-types.tf")));
+    }
+
+    @Test
+    @DisplayName("Should not confuse delimiters inside strings, templates, heredocs and comments")
+    void shouldSkipDelimitersInLiterals() throws Exception {
+        for (String name : List.of("interpolation.tf", "heredoc-policy.tf", "comments.tf")) {
+            assertEquals(List.of(), HclValidator.validate(PROVIDERS + corpus(name)), name);
+        }
+    }
+
+    @Test
+    @DisplayName("Should report a block that is never closed")
+    void shouldReportUnclosedBlock() {
+        List<HclDiagnostic> diagnostics = HclValidator.validate(PROVIDERS
+                + "resource \"aws_s3_bucket\" \"a\" {\n  tags = {\n    Name = \"a\"\n");
+
+        assertEquals(List.of(
+                new HclDiagnostic(13, "'{' não foi fechado"),
+                new HclDiagnostic(12, "bloco resource \"aws_s3_bucket\" \"a\" não foi fechado")
+        ), diagnostics);
+    }
+
+    @Test
+    @DisplayName("Should report a closing delimiter that does not match")
+    void shouldReportMismatchedDelimiter() {
+        List<HclDiagnostic> diagnostics = HclValidator.validate(PROVIDERS
+                + "resource \"aws_ecs_service\" \"s\" {\n  subnets = [aws_subnet.a.id}\n}\n");
+
+        assertEquals(1, diagnostics.size());
+        assertEquals(13, diagnostics.getFirst().line());
+        assertTrue(diagnostics.getFirst().message().contains("esperado ']'"));
+    }
+
+    @Test
+    @DisplayName("Should reject Terraform JSON format")
+    void shouldRejectJsonFormat() {
+        List<HclDiagnostic> diagnostics = HclValidator.validate(
+                "{ \"resource\": { \"aws_s3_bucket\": { \"b\": { \"bucket\": \"b\" } } } }");
+
+        assertEquals(1, diagnostics.size());
+        assertTrue(diagnostics.getFirst().message().contains("JSON"));
+    }
+
+    @Test
+    @DisplayName("Should report markdown fences left in the code")
+    void shouldReportMarkdownFences() {
+        List<HclDiagnostic> diagnostics = HclValidator.validate(PROVIDERS + "```\n");
+
+        assertEquals(List.of(new HclDiagnostic(12, "cerca de código markdown (```) no código; remova-a")), diagnostics);
+    }
+
+    @Test
+    @DisplayName("Should report unterminated strings and heredocs")
+    void shouldReportUnterminatedLiterals() {
+        List<HclDiagnostic> diagnostics = HclValidator.validate(PROVIDERS
+                + "resource \"aws_s3_bucket\" \"a\" {\n  bucket = \"a\n}\n"
+                + "resource \"aws_iam_policy\" \"p\" {\n  policy = <<EOF\n{}\n}\n");
+
+        assertEquals(new HclDiagnostic(13, "string não fechada"), diagnostics.getFirst());
+        assertTrue(diagnostics.stream().anyMatch(d -> d.message().equals("heredoc <<EOF não foi fechado")));
+    }
+
+    @Test
+    @DisplayName("Should report unknown blocks, wrong label counts and top-level attributes")
+    void shouldReportBlockStructure() {
+        assertEquals(List.of(
+                new HclDiagnostic(12, "atributo 'region' fora de um bloco")
+        ), HclValidator.validate(PROVIDERS + "region = \"us-east-1\"\n"));
+
+        assertEquals(List.of(
+                new HclDiagnostic(12, "bloco resource precisa de 2 rótulo(s), encontrado(s) 1"),
+                new HclDiagnostic(13, "tipo de bloco desconhecido 'resources'")
+        ), HclValidator.validate(PROVIDERS + "resource \"aws_s3_bucket\" {}\nresources \"aws_s3_bucket\" \"b\" {}\n"));
+    }
+
+    @Test
+    @DisplayName("Should require the terraform block and the aws provider")
+    void shouldRequireProviderBlocks() {
+        List<HclDiagnostic> diagnostics = HclValidator.validate("resource \"aws_s3_bucket\" \"b\" {}\n");
+
+        assertEquals(List.of(
+                new HclDiagnostic(0, "bloco terraform { required_providers { aws = { source = \"hashicorp/aws\" } } } ausente"),
+                new HclDiagnostic(0, "bloco provider \"aws\" ausente")
+        ), diagnostics);
+        assertEquals("bloco provider \"aws\" ausente", diagnostics.get(1).toString());
+        assertEquals(List.of(new HclDiagnostic(1, "bloco terraform sem required_providers para aws (source = \"hashicorp/aws\")")),
+                HclValidator.validate("terraform {}\nprovider \"aws\" {}\n"));
+    }
+
+    private static String corpus(String name) throws IOException {
+        try (InputStream in = HclValidatorTest.class.getResourceAsStream("/hcl/" + name)) {
+            assertNotNull(in, "corpus não encontrado: " + name);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
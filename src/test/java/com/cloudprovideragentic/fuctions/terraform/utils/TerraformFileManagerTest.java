@@ -1,5 +1,8 @@
 package com.cloudprovideragentic.fuctions.terraform.utils;
 
+import com.cloudprovideragentic.fuctions.terraform.metrics.PipelineMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -8,6 +11,8 @@ import org.junit.jupiter.api.io.TempDir;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.zip.CRC32C;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -22,7 +27,7 @@ class TerraformFileManagerTest {
 
     @BeforeEach
     void setUp() {
-        fileManager = new TerraformFileManager();
+        fileManager = new TerraformFileManager(new PipelineMetrics(new SimpleMeterRegistry()));
         originalUserDir = System.getProperty("user.dir");
         System.setProperty("user.dir", tempDir.toString());
     }
@@ -210,6 +215,212 @@ class TerraformFileManagerTest {
         assertEquals(1, countOccurrences(content, "provider \"aws\""));
     }
 
+    @Test
+    @DisplayName("Should append data, variable and output blocks along with resources")
+    void shouldAppendNonResourceBlocks() throws Exception {
+        fileManager.prepareInfraDirectory("provider \"aws\" {}\nresource \"aws_s3_bucket\" \"b1\" {}");
+        fileManager.prepareInfraDirectory("""
+                provider "aws" {}
+
+                variable "queue_name" {
+                  default = "q1"
+                }
+
+                data "aws_caller_identity" "current" {}
+
+                resource "aws_sqs_queue" "q1" {
+                  name   = var.queue_name
+                  policy = <<EOF
+                {"Statement": [{"Sid": "}"}]}
+                EOF
+                }
+
+                output "queue_url" {
+                  value = aws_sqs_queue.q1.url
+                }
+                """);
+
+        String content = Files.readString(tempDir.resolve("infra/main.tf"));
+
+        assertTrue(content.contains("variable \"queue_name\""));
+        assertTrue(content.contains("data \"aws_caller_identity\" \"current\" {}"));
+        assertTrue(content.contains("{\"Statement\": [{\"Sid\": \"}\"}]}\nEOF\n}"));
+        assertTrue(content.contains("output \"queue_url\""));
+        assertEquals(1, countOccurrences(content, "provider \"aws\""));
+    }
+
+    @Test
+    @DisplayName("Should not duplicate a block that is emitted again unchanged")
+    void shouldSkipIdenticalBlocks() throws Exception {
+        String code = "provider \"aws\" {}\n\nresource \"aws_s3_bucket\" \"example\" {\n  bucket = \"example\"\n}\n";
+
+        fileManager.prepareInfraDirectory(code);
+        fileManager.prepareInfraDirectory(code);
+
+        String content = Files.readString(tempDir.resolve("infra/main.tf"));
+        assertEquals(code, content);
+    }
+
+    @Test
+    @DisplayName("Should replace changed blocks in place and keep later blocks addressable")
+    void shouldReplaceChangedBlocks() throws Exception {
+        fileManager.prepareInfraDirectory("""
+                provider "aws" {}
+
+                resource "aws_s3_bucket" "a" {
+                  bucket = "a"
+                }
+
+                resource "aws_sqs_queue" "q" {
+                  name = "q"
+                }
+                """);
+
+        fileManager.prepareInfraDirectory("resource \"aws_s3_bucket\" \"a\" {\n  bucket = \"a-renomeado-com-nome-maior\"\n}");
+        fileManager.prepareInfraDirectory("resource \"aws_sqs_queue\" \"q\" {\n  name = \"q2\"\n}");
+
+        String content = Files.readString(tempDir.resolve("infra/main.tf"));
+        assertEquals("""
+                provider "aws" {}
+
+                resource "aws_s3_bucket" "a" {
+                  bucket = "a-renomeado-com-nome-maior"
+                }
+
+                resource "aws_sqs_queue" "q" {
+                  name = "q2"
+                }
+                """, content);
+    }
+
+    @Test
+    @DisplayName("Should rebuild the block index when main.tf is edited by hand")
+    void shouldRebuildIndexAfterManualEdit() throws Exception {
+        fileManager.prepareInfraDirectory("resource \"aws_s3_bucket\" \"a\" {\n  bucket = \"a\"\n}\n");
+        Path mainTf = tempDir.resolve("infra/main.tf");
+        Files.writeString(mainTf, "# editado manualmente\n" + Files.readString(mainTf));
+
+        fileManager.prepareInfraDirectory("resource \"aws_s3_bucket\" \"a\" {\n  bucket = \"b\"\n}");
+
+        assertEquals("# editado manualmente\nresource \"aws_s3_bucket\" \"a\" {\n  bucket = \"b\"\n}\n",
+                Files.readString(mainTf));
+    }
+
+    @Test
+    @DisplayName("Should rebuild the block index when an edit keeps the size and modification time")
+    void shouldRebuildIndexAfterSameSizeEdit() throws Exception {
+        fileManager.prepareInfraDirectory("resource \"aws_s3_bucket\" \"a\" {\n  bucket = \"a\"\n}\n");
+        Path mainTf = tempDir.resolve("infra/main.tf");
+        FileTime modified = Files.getLastModifiedTime(mainTf);
+        Files.writeString(mainTf, "\n" + Files.readString(mainTf).stripTrailing());
+        // Simula um filesystem de timestamps grossos: a edição cai no mesmo instante do índice
+        Files.setLastModifiedTime(mainTf, modified);
+        Files.setLastModifiedTime(tempDir.resolve("infra/.agent-index.json"), modified);
+
+        fileManager.prepareInfraDirectory("resource \"aws_s3_bucket\" \"a\" {\n  bucket = \"b\"\n}");
+
+        assertEquals("\nresource \"aws_s3_bucket\" \"a\" {\n  bucket = \"b\"\n}", Files.readString(mainTf));
+    }
+
+    @Test
+    @DisplayName("Should keep the index checksum in step with main.tf across appends and replacements")
+    void shouldTrackIndexChecksumIncrementally() throws Exception {
+        Path mainTf = tempDir.resolve("infra/main.tf");
+        Path indexFile = tempDir.resolve("infra/.agent-index.json");
+        fileManager.prepareInfraDirectory("resource \"aws_s3_bucket\" \"a\" {\n  bucket = \"á\"\n}\n");
+
+        fileManager.prepareInfraDirectory("resource \"aws_s3_bucket\" \"b\" {\n  bucket = \"b\"\n}");
+        assertEquals(crc32c(Files.readAllBytes(mainTf)), new ObjectMapper().readTree(indexFile.toFile()).get("checksum").asLong());
+
+        fileManager.prepareInfraDirectory("resource \"aws_s3_bucket\" \"a\" {\n  bucket = \"ç\"\n}");
+        assertEquals(crc32c(Files.readAllBytes(mainTf)), new ObjectMapper().readTree(indexFile.toFile()).get("checksum").asLong());
+    }
+
+    private static long crc32c(byte[] content) {
+        CRC32C crc = new CRC32C();
+        crc.update(content);
+        return crc.getValue();
+    }
+
+    @Test
+    @DisplayName("Should replace a locals block that a new locals block redefines")
+    void shouldReplaceRedefinedLocals() throws Exception {
+        fileManager.prepareInfraDirectory("locals {\n  nome = \"a\"\n}\n\nresource \"aws_s3_bucket\" \"a\" {\n  bucket = local.nome\n}\n");
+
+        fileManager.prepareInfraDirectory("locals {\n  nome = \"b\"\n}");
+        fileManager.prepareInfraDirectory("locals {\n  nome   = \"b\"\n  sufixo = \"x\"\n}");
+        fileManager.prepareInfraDirectory("locals {\n  outro = 1\n}");
+
+        String content = Files.readString(tempDir.resolve("infra/main.tf"));
+        assertEquals(1, countOccurrences(content, "locals {\n  nome"));
+        assertTrue(content.startsWith("locals {\n  nome   = \"b\"\n  sufixo = \"x\"\n}\n"));
+        assertTrue(content.contains("locals {\n  outro = 1\n}"));
+    }
+
+    @Test
+    @DisplayName("Should reject a locals block that drops names of the block it redefines")
+    void shouldRejectPartialLocals() throws Exception {
+        fileManager.prepareInfraDirectory("locals {\n  nome   = \"a\"\n  sufixo = \"x\"\n}\n");
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> fileManager.prepareInfraDirectory("locals {\n  nome = \"b\"\n}"));
+
+        assertTrue(error.getMessage().contains("[nome, sufixo]"));
+        assertTrue(Files.readString(tempDir.resolve("infra/main.tf")).contains("nome   = \"a\""));
+    }
+
+    @Test
+    @DisplayName("Should copy the working state so a copy can be planned without touching the stack")
+    void shouldCopyWorkingState() throws Exception {
+        Path infraDir = fileManager.prepareInfraDirectory("resource \"aws_s3_bucket\" \"a\" {}\n");
+        Files.writeString(infraDir.resolve("terraform.tfstate"), "{\"serial\": 1}");
+        String fingerprint = fileManager.workingStateFingerprint(infraDir);
+        Path copy = tempDir.resolve("copia");
+
+        fileManager.copyWorkingState(infraDir, copy);
+        fileManager.prepareDirectory(copy, "resource \"aws_sqs_queue\" \"q\" {}");
+
+        assertEquals("{\"serial\": 1}", Files.readString(copy.resolve("terraform.tfstate")));
+        assertTrue(Files.readString(copy.resolve("main.tf")).contains("aws_sqs_queue"));
+        assertFalse(Files.readString(infraDir.resolve("main.tf")).contains("aws_sqs_queue"));
+        assertEquals(fingerprint, fileManager.workingStateFingerprint(infraDir));
+    }
+
+    @Test
+    @DisplayName("Should change the working state fingerprint when the state changes")
+    void shouldChangeFingerprintWhenStateChanges() throws Exception {
+        Path infraDir = fileManager.prepareInfraDirectory("resource \"aws_s3_bucket\" \"a\" {}\n");
+        String before = fileManager.workingStateFingerprint(infraDir);
+
+        Files.writeString(infraDir.resolve("terraform.tfstate"), "{\"serial\": 2}");
+
+        assertNotEquals(before, fileManager.workingStateFingerprint(infraDir));
+    }
+
+    @Test
+    @DisplayName("Should delete a directory tree")
+    void shouldDeleteDirectoryTree() throws Exception {
+        Path dir = tempDir.resolve("arvore");
+        Files.createDirectories(dir.resolve("a/b"));
+        Files.writeString(dir.resolve("a/b/arquivo"), "x");
+
+        fileManager.deleteDirectory(dir);
+        fileManager.deleteDirectory(dir);
+
+        assertFalse(Files.exists(dir));
+    }
+
+    @Test
+    @DisplayName("Should write named stacks to their own directory")
+    void shouldWriteNamedStacksToOwnDirectory() throws Exception {
+        fileManager.prepareInfraDirectory("resource \"aws_s3_bucket\" \"default\" {}");
+        Path stackDir = fileManager.prepareStackDirectory("pagamentos", "resource \"aws_sqs_queue\" \"q\" {}");
+
+        assertEquals(tempDir.resolve("infra/stacks/pagamentos"), stackDir);
+        assertEquals("resource \"aws_sqs_queue\" \"q\" {}", Files.readString(stackDir.resolve("main.tf")));
+        assertFalse(Files.readString(tempDir.resolve("infra/main.tf")).contains("aws_sqs_queue"));
+    }
+
     private int countOccurrences(String text, String substring) {
         int count = 0;
         int index = 0;
@@ -0,0 +1,13 @@
+/*
+resource "aws_s3_bucket" "comentado" {
+  bucket = "nao-existe"
+}
+*/
+
+// resource "aws_s3_bucket" "tambem_comentado" {
+# provider "aws" {
+
+resource "aws_s3_bucket" "dados" { # chave { no comentário
+  bucket = "dados" // outra } aqui
+  /* e { aqui */
+}
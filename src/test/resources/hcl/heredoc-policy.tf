@@ -0,0 +1,24 @@
+# Política IAM em heredoc com chaves desbalanceadas no texto
+resource "aws_iam_role" "task_execution" {
+  name = "ecs-task-execution"
+
+  assume_role_policy = <<EOF
+{
+  "Version": "2012-10-17",
+  "Statement": [{
+    "Effect": "Allow",
+    "Principal": { "Service": "ecs-tasks.amazonaws.com" },
+    "Action": "sts:AssumeRole",
+    "Sid": "chave { solta"
+  }]
+}
+EOF
+}
+
+resource "aws_iam_role_policy" "inline" {
+  role   = aws_iam_role.task_execution.id
+  policy = <<-POLICY
+    {
+      "Statement": [{ "Effect": "Allow", "Action": "s3:*", "Resource": "${aws_s3_bucket.dados.arn}/*" }
+    POLICY
+}
@@ -0,0 +1,18 @@
+locals {
+  prefix = "app-${var.env}"
+  tags   = { Name = "${local.prefix}-{core}", Owner = "time-}" }
+}
+
+resource "aws_sqs_queue" "principal" {
+  name           = "${local.prefix}-${lookup({ a = "b}" }, "a", "x")}.fifo"
+  fifo_queue     = true
+  redrive_policy = jsonencode({
+    deadLetterTargetArn = aws_sqs_queue.dlq.arn
+    maxReceiveCount     = 5
+  })
+  description = "literal $${nao_interpola} e %%{ tambem nao"
+}
+
+resource "aws_sqs_queue" "dlq" {
+  name = "%{ if var.env == "prod" }dlq-prod%{ else }dlq-${var.env}%{ endif }"
+}